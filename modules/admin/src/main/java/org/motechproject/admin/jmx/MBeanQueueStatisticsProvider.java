@@ -0,0 +1,30 @@
+package org.motechproject.admin.jmx;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.messaging.QueueStatisticsProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Provides the event module with the sizes of the broker queues, read through JMX. Published as an OSGi service,
+ * used for adjusting the number of event consumers to the backlog of events.
+ */
+@Component
+public class MBeanQueueStatisticsProvider implements QueueStatisticsProvider {
+
+    @Autowired
+    private MotechMBeanServer mBeanServer;
+
+    @Override
+    public long getQueueSize(String queueName) {
+        try {
+            QueueViewMBean queueViewMBean = mBeanServer.getQueueViewMBean(queueName);
+            return (queueViewMBean == null) ? -1 : queueViewMBean.getQueueSize();
+        } catch (IOException e) {
+            throw new MotechException(String.format("Could not access the MBean of the queue %s", queueName), e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.motechproject.admin.web.controller;
+
+import org.motechproject.admin.security.SecurityConstants;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Responsible for the event metrics view in the Admin UI.
+ * Uses {@link org.motechproject.event.metrics.EventMetricsService} for retrieving the metrics of the event pipeline.
+ */
+@Controller
+public class EventMetricsController {
+
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
+    /**
+     * Returns the metrics of event subjects: publish counts, queue wait times, handling times, retries and discards.
+     * @return a list of {@link org.motechproject.event.metrics.SubjectMetrics}, one for each subject
+     */
+    @RequestMapping(value = "/events/metrics/subjects", method = RequestMethod.GET)
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @ResponseBody
+    public List<SubjectMetrics> subjectMetrics() {
+        return eventMetricsService.getSubjectMetrics();
+    }
+
+    /**
+     * Returns the metrics of event listeners: handled and failed counts and handling times.
+     * @return a list of {@link org.motechproject.event.metrics.ListenerMetrics}, one for each listener
+     */
+    @RequestMapping(value = "/events/metrics/listeners", method = RequestMethod.GET)
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @ResponseBody
+    public List<ListenerMetrics> listenerMetrics() {
+        return eventMetricsService.getListenerMetrics();
+    }
+
+    /**
+     * Discards the metrics gathered so far.
+     */
+    @RequestMapping(value = "/events/metrics/reset", method = RequestMethod.POST)
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        eventMetricsService.reset();
+    }
+}
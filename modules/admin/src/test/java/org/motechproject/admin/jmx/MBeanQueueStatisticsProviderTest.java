@@ -0,0 +1,44 @@
+package org.motechproject.admin.jmx;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class MBeanQueueStatisticsProviderTest {
+
+    @InjectMocks
+    MBeanQueueStatisticsProvider statisticsProvider = new MBeanQueueStatisticsProvider();
+
+    @Mock
+    MotechMBeanServer mBeanServer;
+
+    @Before
+    public void before() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void shouldReturnSizeOfQueue() throws IOException {
+        QueueViewMBean queueViewMBean = mock(QueueViewMBean.class);
+        given(mBeanServer.getQueueViewMBean("QueueForEvents-sms")).willReturn(queueViewMBean);
+        given(queueViewMBean.getQueueSize()).willReturn(42L);
+
+        assertEquals(42L, statisticsProvider.getQueueSize("QueueForEvents-sms"));
+    }
+
+    @Test
+    public void shouldReturnMinusOneForUnknownQueue() throws IOException {
+        given(mBeanServer.getQueueViewMBean("unknown")).willReturn(null);
+
+        assertEquals(-1L, statisticsProvider.getQueueSize("unknown"));
+    }
+}
@@ -0,0 +1,19 @@
+package org.motechproject.scheduler.contract;
+
+/**
+ * The way the entries of a {@link BucketedSchedulableJob} are delivered to listeners when the job is fired.
+ */
+public enum BucketDelivery {
+
+    /**
+     * A single event is published, carrying the entries of all recipients in its
+     * {@link BucketedSchedulableJob#ENTRIES_KEY} parameter, so that a listener can process them in bulk.
+     */
+    BATCH,
+
+    /**
+     * An event is published for every entry, with the parameters of the entry added to the parameters of the job.
+     * All events of the bucket are published together, in a single batch.
+     */
+    STREAM
+}
@@ -0,0 +1,30 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Represents ID for BucketedSchedulableJob.
+ */
+public class BucketedJobId extends JobId {
+
+    public static final String SUFFIX_BUCKETEDJOBID = "-bucket";
+
+    /**
+     * Constructor.
+     *
+     * @param subject  the subject of {@code MotechEvent} fired, when job is triggered
+     * @param id  the "JobID" parameter for {@code MotechEvent} fired, when job is triggered, identifying the bucket
+     */
+    public BucketedJobId(String subject, String id) {
+        super(subject, id, SUFFIX_BUCKETEDJOBID);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bucketEvent  the {@code MotechEvent} fired, when job is triggered
+     */
+    public BucketedJobId(MotechEvent bucketEvent) {
+        super(bucketEvent, SUFFIX_BUCKETEDJOBID);
+    }
+}
@@ -0,0 +1,161 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.event.MotechEvent;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bucketed Schedulable Job - a data carrier class for a job fired once, in the future, on behalf of many recipients.
+ * Instead of scheduling a run once job for every recipient of the same event at the same time, the entries of all
+ * of them are stored under a single trigger, so the scheduler fires once per bucket and the listener can process
+ * the recipients in bulk. The bucket is identified by the subject and the "JobID" parameter of its event.
+ * <p/>
+ * The parameters of the event are common to all entries, every entry holds the parameters specific to a single
+ * recipient. How the entries are delivered is defined by {@link BucketDelivery}.
+ * <p/>
+ * This class is immutable
+ */
+public final class BucketedSchedulableJob implements SchedulableJob, Serializable {
+
+    /**
+     * The parameter holding the entries in events of jobs delivered in batches.
+     */
+    public static final String ENTRIES_KEY = "BucketEntries";
+
+    /**
+     * The parameter holding the key of the entry in events of jobs delivered as streams.
+     */
+    public static final String ENTRY_KEY = "BucketEntryKey";
+
+    /**
+     * The job data key under which the delivery mode is stored.
+     */
+    public static final String DELIVERY_KEY = "BucketDelivery";
+
+    private static final long serialVersionUID = 1L;
+
+    private final MotechEvent motechEvent;
+    private final Date startDate;
+    private final LinkedHashMap<String, HashMap<String, Object>> entries;
+    private final BucketDelivery delivery;
+
+    /**
+     * Constructor, for a job delivered in a single event.
+     *
+     * @param motechEvent  the event published when the job is fired, with the parameters common to all entries
+     * @param startDate  the date and time when the job will be fired
+     * @param entries  the parameters of every recipient, by a key unique within the bucket, such as the external ID
+     * @throws IllegalArgumentException if any of the arguments is null or there are no entries
+     */
+    public BucketedSchedulableJob(MotechEvent motechEvent, Date startDate,
+                                  Map<String, ? extends Map<String, Object>> entries) {
+        this(motechEvent, startDate, entries, BucketDelivery.BATCH);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param motechEvent  the event published when the job is fired, with the parameters common to all entries
+     * @param startDate  the date and time when the job will be fired
+     * @param entries  the parameters of every recipient, by a key unique within the bucket, such as the external ID
+     * @param delivery  the way the entries are delivered to listeners
+     * @throws IllegalArgumentException if any of the arguments is null or there are no entries
+     */
+    public BucketedSchedulableJob(MotechEvent motechEvent, Date startDate,
+                                  Map<String, ? extends Map<String, Object>> entries, BucketDelivery delivery) {
+        if (motechEvent == null) {
+            throw new IllegalArgumentException("MotechEvent can not be null");
+        }
+        if (startDate == null) {
+            throw new IllegalArgumentException("Start date can not be null");
+        }
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("Bucket entries can not be empty");
+        }
+        if (delivery == null) {
+            throw new IllegalArgumentException("Bucket delivery can not be null");
+        }
+
+        this.motechEvent = motechEvent;
+        this.startDate = startDate;
+        this.delivery = delivery;
+        this.entries = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Map<String, Object>> entry : entries.entrySet()) {
+            this.entries.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the entries carried by an event of a job delivered in a batch.
+     *
+     * @param motechEvent  the event published by the job
+     * @return the parameters of every recipient, by their keys, empty if the event carries no entries
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Map<String, Object>> getEntries(MotechEvent motechEvent) {
+        Object entries = motechEvent.getParameters().get(ENTRIES_KEY);
+        return (entries instanceof Map) ? (Map<String, Map<String, Object>>) entries :
+                Collections.<String, Map<String, Object>>emptyMap();
+    }
+
+    @Override
+    public MotechEvent getMotechEvent() {
+        return motechEvent;
+    }
+
+    @Override
+    public boolean isIgnorePastFiresAtStart() {
+        return true;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Map<String, Map<String, Object>> getEntries() {
+        return Collections.<String, Map<String, Object>>unmodifiableMap(entries);
+    }
+
+    public BucketDelivery getDelivery() {
+        return delivery;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        BucketedSchedulableJob that = (BucketedSchedulableJob) o;
+
+        return motechEvent.equals(that.motechEvent) && startDate.equals(that.startDate)
+                && entries.equals(that.entries) && delivery == that.delivery;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = motechEvent.hashCode();
+        result = 31 * result + startDate.hashCode();
+        result = 31 * result + entries.hashCode();
+        result = 31 * result + delivery.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BucketedSchedulableJob{" +
+                "motechEvent=" + motechEvent +
+                ", startDate=" + startDate +
+                ", entries=" + entries.size() +
+                ", delivery=" + delivery +
+                '}';
+    }
+}
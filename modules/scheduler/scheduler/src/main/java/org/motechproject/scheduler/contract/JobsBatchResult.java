@@ -0,0 +1,109 @@
+package org.motechproject.scheduler.contract;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of scheduling or unscheduling a batch of jobs. A failure of a single job does not prevent the remaining
+ * jobs of the batch from being processed, failed jobs are reported together with the jobs processed successfully.
+ */
+public class JobsBatchResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> succeededJobIds = new ArrayList<>();
+    private final List<Failure> failures = new ArrayList<>();
+
+    /**
+     * Records a job processed successfully.
+     *
+     * @param jobId  the ID of the job
+     */
+    public void addSucceeded(String jobId) {
+        succeededJobIds.add(jobId);
+    }
+
+    /**
+     * Records a job which could not be processed.
+     *
+     * @param index  the position of the job in the batch
+     * @param jobId  the ID of the job, null if it could not be determined
+     * @param message  the reason of the failure
+     */
+    public void addFailure(int index, String jobId, String message) {
+        failures.add(new Failure(index, jobId, message));
+    }
+
+    /**
+     * @return the IDs of the jobs processed successfully
+     */
+    public List<String> getSucceededJobIds() {
+        return Collections.unmodifiableList(succeededJobIds);
+    }
+
+    /**
+     * @return the jobs which could not be processed, in the order they appeared in the batch
+     */
+    public List<Failure> getFailures() {
+        List<Failure> sorted = new ArrayList<>(failures);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("JobsBatchResult{succeeded=%d, failures=%s}", succeededJobIds.size(), failures);
+    }
+
+    /**
+     * A job of the batch which could not be processed.
+     */
+    public static class Failure implements Serializable, Comparable<Failure> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final String jobId;
+        private final String message;
+
+        public Failure(int index, String jobId, String message) {
+            this.index = index;
+            this.jobId = jobId;
+            this.message = message;
+        }
+
+        /**
+         * @return the position of the job in the batch
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the ID of the job, null if it could not be determined
+         */
+        public String getJobId() {
+            return jobId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public int compareTo(Failure other) {
+            return Integer.compare(index, other.index);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Failure{index=%d, jobId='%s', message='%s'}", index, jobId, message);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.motechproject.scheduler.factory;
 
+import org.apache.commons.lang.StringUtils;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
 import org.quartz.Scheduler;
@@ -22,6 +23,23 @@ import static java.lang.Boolean.getBoolean;
 @Component("motechSchedulerFactoryBean")
 public class MotechSchedulerFactoryBean {
 
+    /**
+     * The value of the thread count and batch size properties which makes them sized automatically.
+     */
+    public static final String AUTO = "auto";
+
+    private static final String THREAD_COUNT = "org.quartz.threadPool.threadCount";
+    private static final String BATCH_SIZE = "org.quartz.scheduler.batchTriggerAcquisitionMaxCount";
+    private static final String IS_CLUSTERED = "org.quartz.jobStore.isClustered";
+    private static final String INSTANCE_ID = "org.quartz.scheduler.instanceId";
+    private static final String MAX_CONNECTIONS = "org.quartz.dataSource.motechDS.maxConnections";
+
+    private static final int MIN_THREAD_COUNT = 3;
+    private static final int THREADS_PER_PROCESSOR = 2;
+    private static final int DEFAULT_MAX_CONNECTIONS = 10;
+    // connections used by the scheduler itself, for acquiring triggers, handling misfires and cluster check-ins
+    private static final int RESERVED_CONNECTIONS = 3;
+
     private ApplicationContext applicationContext;
 
     private SchedulerFactoryBean schedulerFactoryBean;
@@ -46,7 +64,7 @@ public class MotechSchedulerFactoryBean {
     @PostConstruct
     public void init() {
         schedulerFactoryBean = new SchedulerFactoryBean();
-        schedulerFactoryBean.setQuartzProperties(schedulerProperties);
+        schedulerFactoryBean.setQuartzProperties(resolveExecutionProperties(schedulerProperties));
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
         schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
         schedulerFactoryBean.setApplicationContext(applicationContext);
@@ -83,6 +101,53 @@ public class MotechSchedulerFactoryBean {
         return getQuartzSchedulerFactoryBean().getScheduler();
     }
 
+    /**
+     * Returns the Quartz properties the scheduler was created with.
+     *
+     * @return the properties of scheduler
+     */
+    public Properties getSchedulerProperties() {
+        return schedulerProperties;
+    }
+
+    /**
+     * Returns a copy of the given properties with the automatically sized settings resolved. The thread pool is
+     * sized to the number of processors, but never above the number of database connections the worker threads can
+     * use. Triggers are acquired in batches as large as the thread pool, so that a single transaction acquires
+     * enough triggers for all idle threads. Clustered schedulers get generated instance IDs, unless set explicitly.
+     *
+     * @param properties the configured properties of scheduler
+     * @return the properties the scheduler should be created with
+     */
+    static Properties resolveExecutionProperties(Properties properties) {
+        Properties resolved = new Properties();
+        resolved.putAll(properties);
+
+        String threadCount = properties.getProperty(THREAD_COUNT);
+        if (StringUtils.isBlank(threadCount) || AUTO.equalsIgnoreCase(threadCount.trim())) {
+            int maxConnections = getIntWithDefault(properties.getProperty(MAX_CONNECTIONS), DEFAULT_MAX_CONNECTIONS);
+            int processorThreads = Runtime.getRuntime().availableProcessors() * THREADS_PER_PROCESSOR;
+            threadCount = String.valueOf(Math.max(MIN_THREAD_COUNT,
+                    Math.min(processorThreads, maxConnections - RESERVED_CONNECTIONS)));
+            resolved.setProperty(THREAD_COUNT, threadCount);
+        }
+
+        String batchSize = properties.getProperty(BATCH_SIZE);
+        if (batchSize != null && AUTO.equalsIgnoreCase(batchSize.trim())) {
+            resolved.setProperty(BATCH_SIZE, threadCount.trim());
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty(IS_CLUSTERED)) && !properties.containsKey(INSTANCE_ID)) {
+            resolved.setProperty(INSTANCE_ID, "AUTO");
+        }
+
+        return resolved;
+    }
+
+    private static int getIntWithDefault(String s, int defaultValue) {
+        return StringUtils.isNumeric(StringUtils.trimToNull(s)) ? Integer.parseInt(s.trim()) : defaultValue;
+    }
+
     private boolean getBooleanWithDefault(String s, boolean defaultValue) {
         return s != null ? getBoolean(s) : defaultValue;
     }
@@ -2,13 +2,17 @@ package org.motechproject.scheduler.service;
 
 import org.joda.time.DateTime;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -119,12 +123,45 @@ public interface MotechSchedulerService {
      */
     void safeScheduleRunOnceJob(RunOnceSchedulableJob schedulableJob);
 
+    /**
+     * Schedules {@code BucketedSchedulableJob}. The job is fired once, at its start date, publishing either a single
+     * event carrying all entries of the bucket or an event for every entry, depending on the delivery of the job.
+     * If a bucket with the same subject and "JobID" parameter exists, it will be replaced, so that entries can be
+     * added to or removed from a bucket by rescheduling it.
+     *
+     * @param schedulableJob  the {@code BucketedSchedulableJob} to be scheduled, not null
+     */
+    void scheduleBucketedJob(BucketedSchedulableJob schedulableJob);
+
     /**
      * Same as safeScheduleDayOfWeekJob with intervening = true
      * @param dayOfWeekSchedulableJob
      */
     void scheduleDayOfWeekJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob);
 
+    /**
+     * Schedules the given jobs. Jobs of all types accepted by the single job methods, i.e. {@code CronSchedulableJob},
+     * {@code RepeatingSchedulableJob}, {@code RepeatingPeriodSchedulableJob}, {@code RunOnceSchedulableJob},
+     * {@code BucketedSchedulableJob} and {@code DayOfWeekSchedulableJob}, can be mixed in one batch. Jobs are stored in chunks, each in a single
+     * transaction, which makes this method considerably faster than scheduling the jobs one by one.
+     *
+     * If a job with the same job ID as one of the given exists, it will be replaced. Invalid jobs, or jobs which could
+     * not be stored, do not prevent scheduling of the remaining ones and are reported in the returned result.
+     *
+     * @param schedulableJobs  the jobs to be scheduled, not null
+     * @return the result holding the IDs of the scheduled jobs and the failures
+     */
+    JobsBatchResult scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs);
+
+    /**
+     * Unschedules the jobs with the given IDs. Jobs are removed in chunks, each in a single transaction.
+     * Jobs which do not exist are ignored, jobs which could not be removed are reported in the returned result.
+     *
+     * @param jobIds  the IDs of the jobs to be unscheduled, not null
+     * @return the result holding the IDs of the jobs no longer scheduled and the failures
+     */
+    JobsBatchResult unscheduleJobs(Collection<? extends JobId> jobIds);
+
     /**
      * Unschedules a job with the given job ID
      *  @param subject : String representing domain operation eg. "pill-reminder", "outbox-call" or motechEvent.getSubject()
@@ -163,14 +200,14 @@ public interface MotechSchedulerService {
     void safeUnscheduleJob(String subject, String externalId);
 
     /**
-     * Unschedules all jobs with given prefix.
+     * Unschedules all jobs with IDs starting with the given prefix.
      *
      * @param jobIdPrefix the jobs prefix
      */
     void unscheduleAllJobs(String jobIdPrefix);
 
     /**
-     * Unschedules all jobs with given prefix. Logs all exceptions instead of throwing them.
+     * Unschedules all jobs with IDs starting with the given prefix. Logs all exceptions instead of throwing them.
      *
      * @param jobIdPrefix the jobs prefix
      */
@@ -205,6 +242,20 @@ public interface MotechSchedulerService {
      */
     void safeUnscheduleRunOnceJob(String subject, String externalId);
 
+    /**
+     * Unschedules a bucketed job with the given job ID
+     *  @param subject : String representing domain operation eg. "pill-reminder", "outbox-call" or motechEvent.getSubject()
+     * @param bucketId  : the "JobID" parameter of the event of the bucket.
+     */
+    void unscheduleBucketedJob(String subject, String bucketId);
+
+    /**
+     * Same as unscheduleBucketedJob except that it would not throw an exception if the job doesn't exist
+     * @param subject
+     * @param bucketId
+     */
+    void safeUnscheduleBucketedJob(String subject, String bucketId);
+
     /**
      * Returns list of dates at which job will be triggered.
      *
@@ -217,7 +268,8 @@ public interface MotechSchedulerService {
     List<Date> getScheduledJobTimings(String subject, String externalJobId, Date startDate, Date endDate);
 
     /**
-     * Returns list of dates at which jobs will be triggered.
+     * Returns list of dates at which jobs will be triggered, for all jobs of the given subject with external IDs
+     * starting with the given prefix.
      *
      * @param subject  the subject of job, not null
      * @param externalJobIdPrefix  the prefix of jobs
@@ -0,0 +1,60 @@
+package org.motechproject.scheduler.service;
+
+import org.motechproject.event.metrics.LatencyStatistics;
+
+import javax.management.MXBean;
+
+/**
+ * Provides the metrics of job execution on this node, gathered since the module was started or the metrics were
+ * reset. It is published as an OSGi service and registered in the platform MBean server under {@link #OBJECT_NAME}.
+ */
+@MXBean
+public interface SchedulerMetricsService {
+
+    /**
+     * The name under which the metrics are registered in the MBean server.
+     */
+    String OBJECT_NAME = "org.motechproject.scheduler:type=SchedulerMetrics";
+
+    /**
+     * Returns the number of job executions started on this node.
+     *
+     * @return the number of fired triggers
+     */
+    long getFiredCount();
+
+    /**
+     * Returns the number of triggers which missed their fire time, because no worker thread was available for longer
+     * than the misfire threshold.
+     *
+     * @return the number of misfired triggers
+     */
+    long getMisfiredCount();
+
+    /**
+     * Returns the statistics of the delays between the scheduled fire times of triggers and the times their jobs
+     * were actually started. Growing delays mean that the worker threads can not keep up with the jobs.
+     *
+     * @return the statistics of the firing lag
+     */
+    LatencyStatistics getFiringLag();
+
+    /**
+     * Returns the statistics of the execution times of jobs.
+     *
+     * @return the statistics of the execution times
+     */
+    LatencyStatistics getExecutionTime();
+
+    /**
+     * Returns the number of worker threads executing jobs.
+     *
+     * @return the size of the thread pool
+     */
+    int getThreadPoolSize();
+
+    /**
+     * Discards all metrics gathered so far.
+     */
+    void reset();
+}
@@ -0,0 +1,673 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTimeConstants;
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.Calendar;
+import org.quartz.JobPersistenceException;
+import org.quartz.ListenerManager;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.motechproject.commons.date.util.DateUtil.now;
+
+/**
+ * An index of the fire times of triggers, kept in the database in buckets holding the fire times of one trigger
+ * during one day. The fire times are materialized for a limited horizon when a trigger is scheduled and removed
+ * when the trigger is unscheduled, finalized or misfires, so the fire times of many triggers over a time range are
+ * read with a single indexed query, without deserializing the triggers. Fire times of triggers with indexed ranges
+ * not covering the requested range, such as triggers scheduled before the index existed, are computed from the
+ * triggers, which are then indexed again. When the scheduler does not use a JDBC job store, all fire times are
+ * computed from the triggers.
+ * <p>
+ * The index is updated by a single background thread, so scheduling a trigger only queues it for indexing. Queued
+ * updates are written in batches, each in one transaction. Until the update of a trigger is written, its fire times
+ * are computed from the trigger.
+ */
+public class FireTimeIndex extends SchedulerListenerSupport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FireTimeIndex.class);
+
+    /**
+     * The property holding the number of days, starting from the scheduling time, for which fire times are indexed.
+     */
+    public static final String HORIZON_DAYS = "scheduler.fireTimeIndex.horizonDays";
+
+    private static final int DEFAULT_HORIZON_DAYS = 120;
+    private static final int MAX_INDEXED_FIRE_TIMES = 20000;
+    private static final int TRIGGERS_PER_BATCH = 100;
+    private static final int ROWS_PER_STATEMENT_BATCH = 1000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String BUCKETS = "FIRE_TIME_BUCKETS";
+    private static final String RANGES = "FIRE_TIME_RANGES";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String TRIGGER_NAME = "TRIGGER_NAME";
+    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    private static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
+    private static final String BUCKET = "BUCKET";
+    private static final String FIRE_TIMES = "FIRE_TIMES";
+    private static final String INDEXED_FROM = "INDEXED_FROM";
+    private static final String INDEXED_UNTIL = "INDEXED_UNTIL";
+    private static final String AND = " AND ";
+    private static final char SEPARATOR = ',';
+    private static final char ESCAPE = '!';
+
+    private final Scheduler scheduler;
+    private final Properties sqlProperties;
+    private final TriggerKeyFinder triggerKeyFinder;
+    private final long horizon;
+
+    /**
+     * Triggers waiting to be indexed, keyed by their keys. A null value means the fire times of the trigger are to be
+     * removed. Guarded by itself, like the fields below.
+     */
+    private final Map<TriggerKey, Trigger> pendingUpdates = new LinkedHashMap<>();
+    private final Set<TriggerKey> updatesInProgress = new HashSet<>();
+    private boolean indexing;
+
+    private ExecutorService indexer;
+    private volatile boolean enabled;
+
+    /**
+     * @param scheduler the scheduler owning the triggers
+     * @param sqlProperties the Quartz properties of the scheduler
+     * @param triggerKeyFinder the finder used for computing fire times when the index is not used
+     */
+    public FireTimeIndex(Scheduler scheduler, Properties sqlProperties, TriggerKeyFinder triggerKeyFinder) {
+        this.scheduler = scheduler;
+        this.sqlProperties = sqlProperties;
+        this.triggerKeyFinder = triggerKeyFinder;
+
+        String horizonDays = StringUtils.trimToNull(sqlProperties.getProperty(HORIZON_DAYS));
+        this.horizon = (long) DateTimeConstants.MILLIS_PER_DAY
+                * (StringUtils.isNumeric(horizonDays) ? Integer.parseInt(horizonDays) : DEFAULT_HORIZON_DAYS);
+    }
+
+    /**
+     * Registers the index as a listener of the scheduler, so that it is kept up to date with the triggers. The index
+     * is used only if the scheduler uses a JDBC job store and the registration succeeds.
+     */
+    public void register() {
+        if (StringUtils.isBlank(sqlProperties.getProperty(DATA_SOURCE))) {
+            return;
+        }
+
+        try {
+            ListenerManager listenerManager = scheduler.getListenerManager();
+            listenerManager.addSchedulerListener(this);
+            listenerManager.addTriggerListener(new TriggerListenerSupport() {
+                @Override
+                public String getName() {
+                    return "motechFireTimeIndex";
+                }
+
+                @Override
+                public void triggerMisfired(Trigger trigger) {
+                    // misfire handling moves the fire times of the trigger without notifying scheduler listeners
+                    queueUpdate(trigger.getKey(), null);
+                }
+            });
+            enabled = true;
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to register the fire time index, fire times will be computed from the triggers", e);
+        }
+    }
+
+    /**
+     * Returns the fire times of the trigger with the given name within the given range, bounds included.
+     *
+     * @param group the group of the trigger
+     * @param name the name of the trigger
+     * @param startDate the start of the range
+     * @param endDate the end of the range
+     * @return the fire times of the trigger, empty if it does not exist
+     * @throws SchedulerException if the fire times could not be read
+     */
+    public List<Date> getFireTimes(String group, String name, Date startDate, Date endDate) throws SchedulerException {
+        return getFireTimes(group, name, false, startDate, endDate);
+    }
+
+    /**
+     * Returns the fire times of the triggers with names starting with the given prefix within the given range,
+     * bounds included. The fire times of each trigger are returned together, ordered by time.
+     *
+     * @param group the group of the triggers
+     * @param prefix the prefix of the trigger names, not empty
+     * @param startDate the start of the range
+     * @param endDate the end of the range
+     * @return the fire times of the matching triggers
+     * @throws SchedulerException if the fire times could not be read
+     */
+    public List<Date> getFireTimesWithPrefix(String group, String prefix, Date startDate, Date endDate)
+            throws SchedulerException {
+        return getFireTimes(group, prefix, true, startDate, endDate);
+    }
+
+    @Override
+    public void jobScheduled(Trigger trigger) {
+        // the trigger is copied, since the scheduler keeps modifying it
+        queueUpdate(trigger.getKey(), (Trigger) ((OperableTrigger) trigger).clone());
+    }
+
+    @Override
+    public void jobUnscheduled(TriggerKey triggerKey) {
+        queueUpdate(triggerKey, null);
+    }
+
+    @Override
+    public void triggerFinalized(Trigger trigger) {
+        queueUpdate(trigger.getKey(), null);
+    }
+
+    @Override
+    public void schedulerShuttingdown() {
+        ExecutorService indexerToStop;
+        synchronized (pendingUpdates) {
+            enabled = false;
+            indexerToStop = indexer;
+        }
+
+        if (indexerToStop != null) {
+            // the updates already queued are still written
+            indexerToStop.shutdown();
+            try {
+                if (!indexerToStop.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Fire times were still being indexed after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<Date> getFireTimes(String group, String name, boolean prefix, Date startDate, Date endDate)
+            throws SchedulerException {
+        if (!enabled) {
+            List<TriggerKey> keys = prefix ? triggerKeyFinder.findByPrefix(group, name) :
+                    singletonKey(group, name);
+            return computeFireTimes(keys, startDate, endDate);
+        }
+
+        try {
+            Map<String, IndexedRange> triggers = readTriggers(group, name, prefix);
+            Map<String, IndexedRange> covered = findCovered(group, triggers, startDate, endDate);
+
+            List<Date> fireTimes = covered.isEmpty() ? new ArrayList<Date>() :
+                    readFireTimes(group, name, prefix, covered, startDate, endDate);
+
+            for (Map.Entry<String, IndexedRange> entry : triggers.entrySet()) {
+                if (!covered.containsKey(entry.getKey())) {
+                    fireTimes.addAll(computeFireTimes(new TriggerKey(entry.getKey(), group), entry.getValue(),
+                            startDate, endDate));
+                }
+            }
+
+            return fireTimes;
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Unable to read the fire times of triggers " + name, e);
+        }
+    }
+
+    private Map<String, IndexedRange> findCovered(String group, Map<String, IndexedRange> triggers, Date startDate,
+                                                  Date endDate) {
+        Map<String, IndexedRange> covered = new HashMap<>();
+        for (Map.Entry<String, IndexedRange> entry : triggers.entrySet()) {
+            IndexedRange range = entry.getValue();
+            // the indexed fire times of triggers waiting for an update are outdated
+            if (range != null && range.covers(startDate, endDate) &&
+                    !isUpdatePending(new TriggerKey(entry.getKey(), group))) {
+                covered.put(entry.getKey(), range);
+            }
+        }
+        return covered;
+    }
+
+    private List<TriggerKey> singletonKey(String group, String name) throws SchedulerException {
+        List<TriggerKey> keys = new ArrayList<>();
+        TriggerKey key = new TriggerKey(name, group);
+        if (scheduler.checkExists(key)) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private List<Date> computeFireTimes(List<TriggerKey> keys, Date startDate, Date endDate)
+            throws SchedulerException {
+        List<Date> fireTimes = new ArrayList<>();
+        for (TriggerKey key : keys) {
+            Trigger trigger = scheduler.getTrigger(key);
+            if (trigger != null) {
+                fireTimes.addAll(computeFireTimes(trigger, startDate, endDate, Integer.MAX_VALUE));
+            }
+        }
+        return fireTimes;
+    }
+
+    private List<Date> computeFireTimes(TriggerKey key, IndexedRange range, Date startDate, Date endDate)
+            throws SchedulerException {
+        Trigger trigger = scheduler.getTrigger(key);
+        if (trigger == null) {
+            return new ArrayList<>();
+        }
+
+        if ((range == null || range.isStale(now().toDate(), endDate, horizon)) && !isUpdatePending(key)) {
+            queueUpdate(key, trigger);
+        }
+
+        return computeFireTimes(trigger, startDate, endDate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the fire times the same way {@link org.quartz.TriggerUtils#computeFireTimesBetween} does, but stops
+     * after the given number of fire times.
+     */
+    private List<Date> computeFireTimes(Trigger trigger, Date from, Date to, int maxCount) {
+        OperableTrigger operableTrigger = (OperableTrigger) ((OperableTrigger) trigger).clone();
+        Calendar calendar = new BaseCalendar();
+
+        if (operableTrigger.getNextFireTime() == null) {
+            operableTrigger.setStartTime(from);
+            operableTrigger.setEndTime(to);
+            operableTrigger.computeFirstFireTime(calendar);
+        }
+
+        List<Date> fireTimes = new ArrayList<>();
+        Date fireTime = operableTrigger.getNextFireTime();
+        while (fireTime != null && !fireTime.after(to) && fireTimes.size() < maxCount) {
+            if (!fireTime.before(from)) {
+                fireTimes.add(fireTime);
+            }
+            operableTrigger.triggered(calendar);
+            fireTime = operableTrigger.getNextFireTime();
+        }
+
+        return fireTimes;
+    }
+
+    private void queueUpdate(TriggerKey triggerKey, Trigger trigger) {
+        synchronized (pendingUpdates) {
+            if (!enabled) {
+                return;
+            }
+
+            pendingUpdates.put(triggerKey, trigger);
+            if (indexing) {
+                return;
+            }
+
+            try {
+                getIndexer().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writePendingUpdates();
+                    }
+                });
+                indexing = true;
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("The fire time indexer is shut down, unable to index trigger {}", triggerKey);
+            }
+        }
+    }
+
+    private boolean isUpdatePending(TriggerKey triggerKey) {
+        synchronized (pendingUpdates) {
+            return pendingUpdates.containsKey(triggerKey) || updatesInProgress.contains(triggerKey);
+        }
+    }
+
+    private ExecutorService getIndexer() {
+        if (indexer == null) {
+            indexer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "motech-fire-time-indexer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return indexer;
+    }
+
+    private void writePendingUpdates() {
+        Map<TriggerKey, Trigger> updates = takePendingUpdates();
+        while (!updates.isEmpty()) {
+            try {
+                write(updates);
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Unable to index the fire times of " + updates.size() + " triggers", e);
+                removeAll(updates.keySet());
+            }
+            updates = takePendingUpdates();
+        }
+    }
+
+    /**
+     * Takes the next batch of pending updates. The keys of the taken updates are kept as in progress, until the next
+     * batch is taken. Once there are no more updates, the indexing task finishes.
+     */
+    private Map<TriggerKey, Trigger> takePendingUpdates() {
+        synchronized (pendingUpdates) {
+            updatesInProgress.clear();
+
+            Map<TriggerKey, Trigger> updates = new LinkedHashMap<>();
+            Iterator<Map.Entry<TriggerKey, Trigger>> it = pendingUpdates.entrySet().iterator();
+            while (it.hasNext() && updates.size() < TRIGGERS_PER_BATCH) {
+                Map.Entry<TriggerKey, Trigger> update = it.next();
+                updates.put(update.getKey(), update.getValue());
+                it.remove();
+            }
+
+            updatesInProgress.addAll(updates.keySet());
+            indexing = !updates.isEmpty();
+            return updates;
+        }
+    }
+
+    /**
+     * Writes the batch of updates in a single transaction. The fire times of all the triggers are deleted, then the
+     * fire times of the triggers which are not removed are indexed, starting from now.
+     */
+    private void write(Map<TriggerKey, Trigger> updates) throws SQLException {
+        Date from = now().toDate();
+
+        try (Connection conn = getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                delete(conn, updates.keySet());
+                insert(conn, updates.values(), from);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        LOGGER.debug("Indexed the fire times of {} triggers", updates.size());
+    }
+
+    private void removeAll(Collection<TriggerKey> triggerKeys) {
+        try (Connection conn = getConnection()) {
+            delete(conn, triggerKeys);
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Unable to remove the indexed fire times of triggers " + triggerKeys, e);
+        }
+    }
+
+    private void delete(Connection conn, Collection<TriggerKey> triggerKeys) throws SQLException {
+        for (String table : new String[] {BUCKETS, RANGES}) {
+            String sql = "DELETE FROM " + getTableName(table) + " WHERE " + getKeyCondition();
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (TriggerKey triggerKey : triggerKeys) {
+                    setKey(stmt, triggerKey);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    private void insert(Connection conn, Collection<Trigger> triggers, Date from) throws SQLException {
+        String bucketSql = "INSERT INTO " + getTableName(BUCKETS) + " (" + getCorrectNameRepresentation(SCHED_NAME)
+                + ", " + getCorrectNameRepresentation(TRIGGER_NAME) + ", " + getCorrectNameRepresentation(TRIGGER_GROUP)
+                + ", " + getCorrectNameRepresentation(BUCKET) + ", " + getCorrectNameRepresentation(FIRE_TIMES)
+                + ") VALUES (?, ?, ?, ?, ?)";
+        String rangeSql = "INSERT INTO " + getTableName(RANGES) + " (" + getCorrectNameRepresentation(SCHED_NAME)
+                + ", " + getCorrectNameRepresentation(TRIGGER_NAME) + ", " + getCorrectNameRepresentation(TRIGGER_GROUP)
+                + ", " + getCorrectNameRepresentation(INDEXED_FROM) + ", "
+                + getCorrectNameRepresentation(INDEXED_UNTIL) + ") VALUES (?, ?, ?, ?, ?)";
+
+        try (PreparedStatement bucketStmt = conn.prepareStatement(bucketSql);
+             PreparedStatement rangeStmt = conn.prepareStatement(rangeSql)) {
+            int bucketRows = 0;
+            for (Trigger trigger : triggers) {
+                if (trigger == null) {
+                    continue;
+                }
+
+                Date until = new Date(from.getTime() + horizon);
+                List<Date> fireTimes = computeFireTimes(trigger, from, until, MAX_INDEXED_FIRE_TIMES);
+                if (fireTimes.size() == MAX_INDEXED_FIRE_TIMES) {
+                    // very frequent triggers are indexed only up to the last fire time that fits
+                    until = fireTimes.get(fireTimes.size() - 1);
+                }
+
+                bucketRows += addBuckets(bucketStmt, trigger.getKey(), fireTimes);
+                if (bucketRows >= ROWS_PER_STATEMENT_BATCH) {
+                    bucketStmt.executeBatch();
+                    bucketRows = 0;
+                }
+
+                setKey(rangeStmt, trigger.getKey());
+                rangeStmt.setLong(4, from.getTime());
+                rangeStmt.setLong(5, until.getTime());
+                rangeStmt.addBatch();
+            }
+
+            bucketStmt.executeBatch();
+            rangeStmt.executeBatch();
+        }
+    }
+
+    private int addBuckets(PreparedStatement stmt, TriggerKey triggerKey, List<Date> fireTimes) throws SQLException {
+        Map<Long, StringBuilder> buckets = new TreeMap<>();
+        for (Date fireTime : fireTimes) {
+            long bucket = Math.floorDiv(fireTime.getTime(), (long) DateTimeConstants.MILLIS_PER_DAY);
+            StringBuilder offsets = buckets.get(bucket);
+            if (offsets == null) {
+                offsets = new StringBuilder();
+                buckets.put(bucket, offsets);
+            } else {
+                offsets.append(SEPARATOR);
+            }
+            offsets.append(fireTime.getTime() - bucket * DateTimeConstants.MILLIS_PER_DAY);
+        }
+
+        for (Map.Entry<Long, StringBuilder> bucket : buckets.entrySet()) {
+            setKey(stmt, triggerKey);
+            stmt.setLong(4, bucket.getKey());
+            stmt.setString(5, bucket.getValue().toString());
+            stmt.addBatch();
+        }
+        return buckets.size();
+    }
+
+    /**
+     * Reads the names of the matching triggers together with their indexed ranges, null for triggers not indexed.
+     * The ranges hold the next fire times of the triggers, since times which have already passed are not returned.
+     */
+    private Map<String, IndexedRange> readTriggers(String group, String name, boolean prefix) throws SQLException,
+            SchedulerException {
+        String sql = "SELECT t." + getCorrectNameRepresentation(TRIGGER_NAME) + ", r."
+                + getCorrectNameRepresentation(INDEXED_FROM) + ", r." + getCorrectNameRepresentation(INDEXED_UNTIL)
+                + ", t." + getCorrectNameRepresentation(NEXT_FIRE_TIME) + " FROM " + getTableName(TRIGGERS) + " t LEFT JOIN " + getTableName(RANGES) + " r ON r."
+                + getCorrectNameRepresentation(SCHED_NAME) + " = t." + getCorrectNameRepresentation(SCHED_NAME)
+                + " AND r." + getCorrectNameRepresentation(TRIGGER_NAME) + " = t."
+                + getCorrectNameRepresentation(TRIGGER_NAME) + " AND r." + getCorrectNameRepresentation(TRIGGER_GROUP)
+                + " = t." + getCorrectNameRepresentation(TRIGGER_GROUP)
+                + " WHERE " + getNameCondition("t.", prefix);
+
+        Map<String, IndexedRange> triggers = new LinkedHashMap<>();
+        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            setName(stmt, group, name, prefix);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long from = rs.getLong(2);
+                    boolean indexed = !rs.wasNull();
+                    triggers.put(rs.getString(1), indexed ? new IndexedRange(from, rs.getLong(3), rs.getLong(4)) : null);
+                }
+            }
+        }
+        return triggers;
+    }
+
+    private List<Date> readFireTimes(String group, String name, boolean prefix, Map<String, IndexedRange> covered,
+                                     Date startDate, Date endDate) throws SQLException, SchedulerException {
+        String sql = "SELECT " + getCorrectNameRepresentation(TRIGGER_NAME) + ", " + getCorrectNameRepresentation(BUCKET)
+                + ", " + getCorrectNameRepresentation(FIRE_TIMES) + " FROM " + getTableName(BUCKETS)
+                + " WHERE " + getNameCondition("", prefix) + AND + getCorrectNameRepresentation(BUCKET)
+                + " BETWEEN ? AND ? ORDER BY " + getCorrectNameRepresentation(TRIGGER_NAME) + ", "
+                + getCorrectNameRepresentation(BUCKET);
+
+        List<Date> fireTimes = new ArrayList<>();
+        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            setName(stmt, group, name, prefix);
+            stmt.setLong(4, Math.floorDiv(startDate.getTime(), (long) DateTimeConstants.MILLIS_PER_DAY));
+            stmt.setLong(5, Math.floorDiv(endDate.getTime(), (long) DateTimeConstants.MILLIS_PER_DAY));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    IndexedRange range = covered.get(rs.getString(1));
+                    if (range != null) {
+                        readBucket(rs.getLong(2), rs.getString(3), range.getFirstFireTime(startDate), endDate,
+                                fireTimes);
+                    }
+                }
+            }
+        }
+        return fireTimes;
+    }
+
+    private void readBucket(long bucket, String offsets, long startTime, Date endDate, List<Date> fireTimes) {
+        long bucketStart = bucket * DateTimeConstants.MILLIS_PER_DAY;
+        for (String offset : StringUtils.split(offsets, SEPARATOR)) {
+            long fireTime = bucketStart + Long.parseLong(offset);
+            if (fireTime >= startTime && fireTime <= endDate.getTime()) {
+                fireTimes.add(new Date(fireTime));
+            }
+        }
+    }
+
+    private String getKeyCondition() {
+        return getCorrectNameRepresentation(SCHED_NAME) + " = ?" + AND + getCorrectNameRepresentation(TRIGGER_NAME)
+                + " = ?" + AND + getCorrectNameRepresentation(TRIGGER_GROUP) + " = ?";
+    }
+
+    private void setKey(PreparedStatement stmt, TriggerKey triggerKey) throws SQLException {
+        try {
+            stmt.setString(1, scheduler.getSchedulerName());
+        } catch (SchedulerException e) {
+            throw new SQLException("Unable to read the name of the scheduler", e);
+        }
+        stmt.setString(2, triggerKey.getName());
+        stmt.setString(3, triggerKey.getGroup());
+    }
+
+    private String getNameCondition(String alias, boolean prefix) {
+        // a LIKE pattern without a leading wildcard is evaluated as a range scan of the index on the trigger names
+        return alias + getCorrectNameRepresentation(SCHED_NAME) + " = ?" + AND + alias
+                + getCorrectNameRepresentation(TRIGGER_GROUP) + " = ?" + AND + alias
+                + getCorrectNameRepresentation(TRIGGER_NAME) + (prefix ? " LIKE ? ESCAPE '" + ESCAPE + "'" : " = ?");
+    }
+
+    private void setName(PreparedStatement stmt, String group, String name, boolean prefix) throws SQLException,
+            SchedulerException {
+        stmt.setString(1, scheduler.getSchedulerName());
+        stmt.setString(2, group);
+        stmt.setString(3, prefix ? escapeLikePattern(name) + '%' : name);
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private Connection getConnection() throws SQLException {
+        return DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+    }
+
+    private String getTableName(String table) {
+        return getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX, DEFAULT_TABLE_PREFIX) + table);
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+
+    /**
+     * The range of time for which the fire times of a trigger are indexed.
+     */
+    private static final class IndexedRange {
+
+        private final long from;
+        private final long until;
+        private final long nextFireTime;
+
+        private IndexedRange(long from, long until, long nextFireTime) {
+            this.from = from;
+            this.until = until;
+            this.nextFireTime = nextFireTime;
+        }
+
+        /**
+         * Returns the earliest fire time which can be returned for the given start of the requested range. Fire times
+         * are returned from the next fire time of the trigger, the same way as if they were computed from the trigger.
+         * Quartz stores a negative next fire time for triggers which will not fire again.
+         */
+        private long getFirstFireTime(Date startDate) {
+            return Math.max(startDate.getTime(), nextFireTime);
+        }
+
+        private boolean covers(Date startDate, Date endDate) {
+            return from <= startDate.getTime() && until >= endDate.getTime();
+        }
+
+        /**
+         * Returns true if the trigger should be indexed again, starting from now. That is the case when the range
+         * has already passed, or when it spans the whole horizon but ends before the requested range. Ranges of very
+         * frequent triggers, which were cut short, are kept until they pass.
+         */
+        private boolean isStale(Date now, Date endDate, long horizon) {
+            return until < now.getTime() || (until - from >= horizon && until < endDate.getTime());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.motechproject.scheduler.service.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers the last job of the pages returned for recent job searches. When a page following a remembered one is
+ * requested, it is read with keyset pagination, starting right after the last job of the remembered page, so that
+ * browsing through the jobs does not require skipping all jobs of the previous pages. Only a limited number of
+ * searches is remembered, the least recently used ones are forgotten first.
+ */
+public class JobsPageCursors {
+
+    private static final int MAX_SEARCHES = 32;
+    private static final int MAX_PAGES_PER_SEARCH = 1000;
+
+    private final Map<String, TreeMap<Integer, Cursor>> searches = new LinkedHashMap<String, TreeMap<Integer, Cursor>>(
+            MAX_SEARCHES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TreeMap<Integer, Cursor>> eldest) {
+            return size() > MAX_SEARCHES;
+        }
+    };
+
+    /**
+     * Returns the closest remembered page preceding the given page of a search.
+     *
+     * @param search the key of the search
+     * @param page the number of the requested page, starting from 1
+     * @return the number of the preceding page and the cursor of its last job, null if no preceding page is remembered
+     */
+    public synchronized Map.Entry<Integer, Cursor> findPreceding(String search, int page) {
+        TreeMap<Integer, Cursor> pages = searches.get(search);
+        return (pages == null) ? null : pages.floorEntry(page - 1);
+    }
+
+    /**
+     * Remembers the last job of a page returned for a search.
+     *
+     * @param search the key of the search
+     * @param page the number of the page, starting from 1
+     * @param cursor the cursor of the last job of the page
+     */
+    public synchronized void put(String search, int page, Cursor cursor) {
+        TreeMap<Integer, Cursor> pages = searches.get(search);
+        if (pages == null) {
+            pages = new TreeMap<>();
+            searches.put(search, pages);
+        }
+
+        pages.put(page, cursor);
+        if (pages.size() > MAX_PAGES_PER_SEARCH) {
+            pages.pollFirstEntry();
+        }
+    }
+
+    /**
+     * The position of a job in the sorted list of jobs.
+     */
+    public static class Cursor {
+
+        private final Object sortValue;
+        private final String triggerName;
+        private final String triggerGroup;
+
+        /**
+         * @param sortValue the value of the sort column of the job
+         * @param triggerName the name of the trigger of the job
+         * @param triggerGroup the group of the trigger of the job
+         */
+        public Cursor(Object sortValue, String triggerName, String triggerGroup) {
+            this.sortValue = sortValue;
+            this.triggerName = triggerName;
+            this.triggerGroup = triggerGroup;
+        }
+
+        public Object getSortValue() {
+            return sortValue;
+        }
+
+        public String getTriggerName() {
+            return triggerName;
+        }
+
+        public String getTriggerGroup() {
+            return triggerGroup;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.motechproject.commons.sql.util.Drivers;
+import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobsSearchSettings;
+import org.quartz.DateBuilder;
+import org.quartz.Trigger;
+import org.quartz.impl.jdbcjobstore.Constants;
+import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.impl.triggers.CalendarIntervalTriggerImpl;
+import org.quartz.impl.triggers.CronTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+import org.quartz.spi.OperableTrigger;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Builds the parameterized SQL queries used for browsing the scheduled jobs and reads their results. A page of jobs
+ * is read with a single query joining the triggers table with the tables of cron, simple and calendar interval
+ * triggers, from which the triggers are recreated in memory, so that no further queries are needed for building
+ * the {@link JobBasicInfo} of the returned jobs. Pages are ordered by the sort column and then by the trigger key,
+ * which allows reading the next page with keyset pagination, starting right after the last job of the previous page,
+ * instead of skipping all jobs of the previous pages.
+ */
+public class JobsQueryBuilder {
+
+    public static final String TRIGGER_NAME = "TRIGGER_NAME";
+    public static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    public static final String JOB_NAME = "JOB_NAME";
+    public static final String TRIGGER_STATE = "TRIGGER_STATE";
+    public static final String TRIGGER_TYPE = "TRIGGER_TYPE";
+    public static final String START_TIME = "START_TIME";
+    public static final String END_TIME = "END_TIME";
+    public static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
+
+    /**
+     * The columns of the triggers table read by the page query, in the order of the selected columns.
+     */
+    public static final List<String> TRIGGER_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            TRIGGER_NAME, TRIGGER_GROUP, JOB_NAME, TRIGGER_STATE, TRIGGER_TYPE, START_TIME, END_TIME, NEXT_FIRE_TIME
+    ));
+
+    private static final String DATE_FORMAT_PATTERN = "Y-MM-dd HH:mm:ss";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String WAITING = "WAITING";
+    private static final String OR = " OR ";
+    private static final String AND = " AND ";
+    private static final String DESC = "DESC";
+    private static final char ESCAPE = '!';
+
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String CRON_TRIGGERS = "CRON_TRIGGERS";
+    private static final String SIMPLE_TRIGGERS = "SIMPLE_TRIGGERS";
+    private static final String SIMPROP_TRIGGERS = "SIMPROP_TRIGGERS";
+
+    private static final String TRIGGERS_ALIAS = "t";
+    private static final String CRON_ALIAS = "c";
+    private static final String SIMPLE_ALIAS = "s";
+    private static final String SIMPROP_ALIAS = "p";
+
+    private static final List<String> CRON_COLUMNS = Arrays.asList("CRON_EXPRESSION");
+    private static final List<String> SIMPLE_COLUMNS = Arrays.asList("REPEAT_COUNT", "REPEAT_INTERVAL", "TIMES_TRIGGERED");
+    private static final List<String> SIMPROP_COLUMNS = Arrays.asList("STR_PROP_1", "STR_PROP_2", "INT_PROP_1",
+            "INT_PROP_2", "BOOL_PROP_1", "BOOL_PROP_2");
+
+    private static final int CRON_COLUMNS_START = TRIGGER_COLUMNS.size() + 1;
+    private static final int SIMPLE_COLUMNS_START = CRON_COLUMNS_START + CRON_COLUMNS.size();
+    private static final int SIMPROP_COLUMNS_START = SIMPLE_COLUMNS_START + SIMPLE_COLUMNS.size();
+
+    private final Properties sqlProperties;
+    private final String schedulerName;
+
+    /**
+     * @param sqlProperties the Quartz properties of the scheduler
+     * @param schedulerName the name of the scheduler owning the jobs
+     */
+    public JobsQueryBuilder(Properties sqlProperties, String schedulerName) {
+        this.sqlProperties = sqlProperties;
+        this.schedulerName = schedulerName;
+    }
+
+    /**
+     * Builds the query reading a page of jobs matching the search settings. If a cursor is given, only the jobs
+     * following the job it points to are read.
+     *
+     * @param settings the filter, sorting and pagination settings
+     * @param cursor the position after which jobs are read, null to read from the start
+     * @param offset the number of jobs to skip after the cursor
+     * @return the query of the page
+     */
+    public Query buildPageQuery(JobsSearchSettings settings, JobsPageCursors.Cursor cursor, int offset) {
+        Query query = new Query();
+        String sortColumn = column(TRIGGERS_ALIAS, getSortColumn(settings.getSortColumn()));
+        String triggerName = column(TRIGGERS_ALIAS, TRIGGER_NAME);
+        String triggerGroup = column(TRIGGERS_ALIAS, TRIGGER_GROUP);
+        boolean descending = DESC.equalsIgnoreCase(settings.getSortDirection());
+
+        query.append("SELECT ").append(selectColumns())
+                .append(" FROM ").append(table(TRIGGERS)).append(' ').append(TRIGGERS_ALIAS)
+                .append(leftJoin(CRON_TRIGGERS, CRON_ALIAS))
+                .append(leftJoin(SIMPLE_TRIGGERS, SIMPLE_ALIAS))
+                .append(leftJoin(SIMPROP_TRIGGERS, SIMPROP_ALIAS));
+        appendWhereCondition(query, settings);
+
+        if (cursor != null) {
+            // (sort, name, group) > (?, ?, ?), written out since row value comparison is not supported everywhere
+            String op = descending ? " < ?" : " > ?";
+            query.append(AND).append("(").append(sortColumn).append(op, cursor.getSortValue())
+                    .append(OR).append("(").append(sortColumn).append(" = ?", cursor.getSortValue())
+                    .append(AND).append("(").append(triggerName).append(op, cursor.getTriggerName())
+                    .append(OR).append("(").append(triggerName).append(" = ?", cursor.getTriggerName())
+                    .append(AND).append(triggerGroup).append(op, cursor.getTriggerGroup())
+                    .append("))))");
+        }
+
+        String direction = descending ? " DESC" : " ASC";
+        query.append(" ORDER BY ").append(sortColumn).append(direction)
+                .append(", ").append(triggerName).append(direction)
+                .append(", ").append(triggerGroup).append(direction);
+
+        if (settings.getRows() != null && settings.getPage() != null) {
+            query.append(" LIMIT ?", settings.getRows()).append(" OFFSET ?", offset);
+        }
+
+        return query;
+    }
+
+    /**
+     * Builds the query counting the jobs matching the search settings.
+     *
+     * @param settings the filter settings
+     * @return the count query
+     */
+    public Query buildCountQuery(JobsSearchSettings settings) {
+        Query query = new Query();
+        query.append("SELECT COUNT(*) FROM ").append(table(TRIGGERS)).append(' ').append(TRIGGERS_ALIAS);
+        appendWhereCondition(query, settings);
+        return query;
+    }
+
+    /**
+     * Recreates the trigger of the current row of a page query, without reading it from the job store.
+     *
+     * @param rs the result of a page query
+     * @return the trigger of the current row
+     * @throws SQLException if the row could not be read
+     */
+    public OperableTrigger readTrigger(ResultSet rs) throws SQLException {
+        String type = rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_TYPE) + 1);
+        AbstractTrigger<?> trigger;
+
+        if (Constants.TTYPE_CRON.equals(type)) {
+            trigger = readCronTrigger(rs);
+        } else if (Constants.TTYPE_CAL_INT.equals(type)) {
+            trigger = readCalendarIntervalTrigger(rs);
+        } else {
+            // simple triggers, as well as other types, for which only the common properties are used
+            trigger = readSimpleTrigger(rs);
+        }
+
+        trigger.setKey(triggerKey(rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_NAME) + 1),
+                rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_GROUP) + 1)));
+        trigger.setStartTime(toDate(rs.getLong(TRIGGER_COLUMNS.indexOf(START_TIME) + 1)));
+        trigger.setEndTime(toDate(rs.getLong(TRIGGER_COLUMNS.indexOf(END_TIME) + 1)));
+        trigger.setNextFireTime(toDate(rs.getLong(TRIGGER_COLUMNS.indexOf(NEXT_FIRE_TIME) + 1)));
+
+        return trigger;
+    }
+
+    /**
+     * Reads the state of the trigger from the current row of a page query.
+     *
+     * @param rs the result of a page query
+     * @return the state of the trigger
+     * @throws SQLException if the row could not be read
+     */
+    public Trigger.TriggerState readTriggerState(ResultSet rs) throws SQLException {
+        String state = rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_STATE) + 1);
+
+        if (Constants.STATE_PAUSED.equals(state) || Constants.STATE_PAUSED_BLOCKED.equals(state)) {
+            return Trigger.TriggerState.PAUSED;
+        } else if (Constants.STATE_BLOCKED.equals(state)) {
+            return Trigger.TriggerState.BLOCKED;
+        } else if (Constants.STATE_ERROR.equals(state)) {
+            return Trigger.TriggerState.ERROR;
+        } else if (Constants.STATE_COMPLETE.equals(state)) {
+            return Trigger.TriggerState.COMPLETE;
+        }
+        return Trigger.TriggerState.NORMAL;
+    }
+
+    /**
+     * Reads the position of the job in the current row of a page query, used for reading the following page.
+     *
+     * @param rs the result of a page query
+     * @param settings the settings the query was built for
+     * @return the cursor pointing to the job of the current row
+     * @throws SQLException if the row could not be read
+     */
+    public JobsPageCursors.Cursor readCursor(ResultSet rs, JobsSearchSettings settings) throws SQLException {
+        return new JobsPageCursors.Cursor(
+                rs.getObject(TRIGGER_COLUMNS.indexOf(getSortColumn(settings.getSortColumn())) + 1),
+                rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_NAME) + 1),
+                rs.getString(TRIGGER_COLUMNS.indexOf(TRIGGER_GROUP) + 1)
+        );
+    }
+
+    /**
+     * Returns the column of the triggers table by which the jobs are sorted.
+     *
+     * @param column the sort column of the jobs grid
+     * @return the name of the column of the triggers table
+     */
+    public static String getSortColumn(String column) {
+        String sortColumn;
+
+        if ("startDate".equalsIgnoreCase(column)) {
+            sortColumn = START_TIME;
+        } else if ("endDate".equalsIgnoreCase(column)) {
+            sortColumn = END_TIME;
+        } else if ("status".equalsIgnoreCase(column)) {
+            sortColumn = TRIGGER_STATE;
+        } else if ("jobType".equalsIgnoreCase(column)) {
+            sortColumn = TRIGGER_TYPE;
+        } else {
+            sortColumn = JOB_NAME;
+        }
+
+        return sortColumn;
+    }
+
+    private String selectColumns() {
+        List<String> columns = new ArrayList<>();
+        for (String name : TRIGGER_COLUMNS) {
+            columns.add(column(TRIGGERS_ALIAS, name));
+        }
+        for (String name : CRON_COLUMNS) {
+            columns.add(column(CRON_ALIAS, name));
+        }
+        for (String name : SIMPLE_COLUMNS) {
+            columns.add(column(SIMPLE_ALIAS, name));
+        }
+        for (String name : SIMPROP_COLUMNS) {
+            columns.add(column(SIMPROP_ALIAS, name));
+        }
+        return StringUtils.join(columns, ", ");
+    }
+
+    private String leftJoin(String table, String alias) {
+        StringBuilder sb = new StringBuilder(" LEFT JOIN ").append(table(table)).append(' ').append(alias).append(" ON ");
+        boolean addAnd = false;
+        for (String name : Arrays.asList(SCHED_NAME, TRIGGER_NAME, TRIGGER_GROUP)) {
+            checkAndAddElement(sb, AND, addAnd);
+            sb.append(column(alias, name)).append(" = ").append(column(TRIGGERS_ALIAS, name));
+            addAnd = true;
+        }
+        return sb.toString();
+    }
+
+    private void appendWhereCondition(Query query, JobsSearchSettings settings) {
+        query.append(" WHERE ").append(column(TRIGGERS_ALIAS, SCHED_NAME)).append(" = ?", schedulerName);
+
+        appendFilter(query, buildDateRangeFilter(settings));
+        appendFilter(query, buildActivityFilter(settings));
+        appendFilter(query, buildStatusFilter(settings));
+
+        if (isNotBlank(settings.getName())) {
+            Query nameFilter = new Query();
+            nameFilter.append(column(TRIGGERS_ALIAS, JOB_NAME))
+                    .append(" LIKE ?", '%' + escapeLikePattern(settings.getName()) + '%')
+                    .append(" ESCAPE '").append(ESCAPE).append('\'');
+            appendFilter(query, nameFilter);
+        }
+    }
+
+    private void appendFilter(Query query, Query filter) {
+        if (!filter.isEmpty()) {
+            query.append(AND).append("(").append(filter).append(")");
+        }
+    }
+
+    private Query buildDateRangeFilter(JobsSearchSettings settings) {
+        Query filter = new Query();
+        boolean addAnd = false;
+
+        if (isNotBlank(settings.getTimeFrom())) {
+            DateTime dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).parseDateTime(settings.getTimeFrom());
+            filter.append(column(TRIGGERS_ALIAS, START_TIME)).append(" >= ?", dateFrom.getMillis());
+            addAnd = true;
+        }
+
+        if (isNotBlank(settings.getTimeTo())) {
+            DateTime dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).parseDateTime(settings.getTimeTo());
+            if (addAnd) {
+                filter.append(AND);
+            }
+            filter.append(column(TRIGGERS_ALIAS, END_TIME)).append(" <= ?", dateTo.getMillis());
+        }
+
+        return filter;
+    }
+
+    private Query buildActivityFilter(JobsSearchSettings settings) {
+        Query filter = new Query();
+        String[] activityElements = settings.getActivity().split(",");
+        String startTime = column(TRIGGERS_ALIAS, START_TIME);
+        String endTime = column(TRIGGERS_ALIAS, END_TIME);
+        long now = DateTime.now().getMillis();
+
+        if (activityElements.length < 3) {
+            boolean addOr = false;
+            for (String element : activityElements) {
+                if (addOr) {
+                    filter.append(OR);
+                }
+                if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
+                    filter.append(startTime).append(" > ?", now);
+                } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
+                    filter.append(endTime).append(" < ?", now);
+                } else {
+                    filter.append(" (").append(startTime).append(" <= ?", now)
+                            .append(AND).append(endTime).append(" >= ?", now).append(")");
+                }
+                addOr = true;
+            }
+        }
+
+        return filter;
+    }
+
+    private Query buildStatusFilter(JobsSearchSettings settings) {
+        Query filter = new Query();
+        String[] statusElements = settings.getStatus().split(",");
+        String triggerState = column(TRIGGERS_ALIAS, TRIGGER_STATE);
+
+        if (statusElements.length < 4) {
+            boolean addOr = false;
+            for (String element : statusElements) {
+                if (addOr) {
+                    filter.append(OR);
+                }
+                if (Trigger.TriggerState.ERROR.toString().equals(element)) {
+                    filter.append(triggerState).append(" = ?", Constants.STATE_ERROR);
+                } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
+                    filter.append(triggerState).append(" = ?", Constants.STATE_BLOCKED);
+                } else if (Trigger.TriggerState.PAUSED.toString().equals(element)) {
+                    filter.append(triggerState).append(" = ?", Constants.STATE_PAUSED);
+                } else {
+                    filter.append(triggerState).append(" = ?", Trigger.TriggerState.NORMAL.toString())
+                            .append(OR).append(triggerState).append(" = ?", Constants.STATE_COMPLETE)
+                            .append(OR).append(triggerState).append(" = ?", WAITING);
+                }
+                addOr = true;
+            }
+        }
+
+        return filter;
+    }
+
+    private AbstractTrigger<?> readCronTrigger(ResultSet rs) throws SQLException {
+        CronTriggerImpl trigger = new CronTriggerImpl();
+        String cronExpression = rs.getString(CRON_COLUMNS_START);
+        try {
+            trigger.setCronExpression(cronExpression);
+        } catch (ParseException e) {
+            throw new SQLException("Invalid cron expression " + cronExpression, e);
+        }
+        return trigger;
+    }
+
+    private AbstractTrigger<?> readSimpleTrigger(ResultSet rs) throws SQLException {
+        SimpleTriggerImpl trigger = new SimpleTriggerImpl();
+        trigger.setRepeatCount(rs.getInt(SIMPLE_COLUMNS_START));
+        trigger.setRepeatInterval(rs.getLong(SIMPLE_COLUMNS_START + 1));
+        trigger.setTimesTriggered(rs.getInt(SIMPLE_COLUMNS_START + 2));
+        return trigger;
+    }
+
+    private AbstractTrigger<?> readCalendarIntervalTrigger(ResultSet rs) throws SQLException {
+        CalendarIntervalTriggerImpl trigger = new CalendarIntervalTriggerImpl();
+        trigger.setRepeatIntervalUnit(DateBuilder.IntervalUnit.valueOf(rs.getString(SIMPROP_COLUMNS_START)));
+        String timeZone = rs.getString(SIMPROP_COLUMNS_START + 1);
+        if (timeZone != null) {
+            trigger.setTimeZone(TimeZone.getTimeZone(timeZone));
+        }
+        trigger.setRepeatInterval(rs.getInt(SIMPROP_COLUMNS_START + 2));
+        trigger.setTimesTriggered(rs.getInt(SIMPROP_COLUMNS_START + 3));
+        trigger.setPreserveHourOfDayAcrossDaylightSavings(rs.getBoolean(SIMPROP_COLUMNS_START + 4));
+        trigger.setSkipDayIfHourDoesNotExist(rs.getBoolean(SIMPROP_COLUMNS_START + 5));
+        return trigger;
+    }
+
+    private Date toDate(long millis) {
+        // Quartz stores missing times as 0 or -1
+        return (millis > 0) ? new Date(millis) : null;
+    }
+
+    private void checkAndAddElement(StringBuilder sb, String element, boolean condition) {
+        if (condition) {
+            sb.append(element);
+        }
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private String table(String name) {
+        return getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX, DEFAULT_TABLE_PREFIX) + name);
+    }
+
+    private String column(String alias, String name) {
+        return alias + '.' + getCorrectNameRepresentation(name);
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+
+    /**
+     * An SQL query together with the values of its parameters.
+     */
+    public static class Query {
+
+        private final StringBuilder sql = new StringBuilder();
+        private final List<Object> parameters = new ArrayList<>();
+
+        Query append(Object sqlPart) {
+            if (sqlPart instanceof Query) {
+                sql.append(((Query) sqlPart).sql);
+                parameters.addAll(((Query) sqlPart).parameters);
+            } else {
+                sql.append(sqlPart);
+            }
+            return this;
+        }
+
+        Query append(String sqlPart, Object parameter) {
+            sql.append(sqlPart);
+            parameters.add(parameter);
+            return this;
+        }
+
+        boolean isEmpty() {
+            return sql.length() == 0;
+        }
+
+        public String getSql() {
+            return sql.toString();
+        }
+
+        public List<Object> getParameters() {
+            return Collections.unmodifiableList(parameters);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s", sql, parameters);
+        }
+    }
+}
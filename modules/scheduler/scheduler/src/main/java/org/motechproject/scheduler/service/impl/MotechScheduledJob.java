@@ -2,6 +2,8 @@ package org.motechproject.scheduler.service.impl;
 
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.scheduler.contract.BucketDelivery;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
 import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
@@ -12,6 +14,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,12 +24,16 @@ import java.util.Map;
  * its execute method will be called when a MOTECH job in quartz triggers. Since jobs in MOTECH are basically {@link org.motechproject.event.MotechEvent}s
  * getting published on a quartz schedule, upon execution this class retrieves the {@link org.motechproject.event.listener.EventRelay}
  * from the application context and uses it to immediately publish the event scheduled with this job. For every execution
- * a new copy of the event is constructed.
+ * a new copy of the event is constructed. Jobs scheduled as {@link BucketedSchedulableJob}s publish either a single
+ * event carrying all entries of the bucket, or an event for every entry, sent together in one batch. The event relay is looked up once and reused for all executions, until
+ * the application context of the module changes.
  */
 public class MotechScheduledJob implements Job {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechScheduledJob.class);
 
+    private static volatile CachedEventRelay cachedEventRelay;
+
     /**
      * Executes the job called by Quartz.
      *
@@ -34,8 +43,6 @@ public class MotechScheduledJob implements Job {
     @SuppressWarnings("unchecked")
     public void execute(JobExecutionContext jobExecutionContext) {
 
-        LOGGER.info("executing...");
-
         try {
             JobDetail jobDetail = jobExecutionContext.getJobDetail();
             JobDataMap jobDataMap = jobDetail.getJobDataMap();
@@ -46,9 +53,10 @@ public class MotechScheduledJob implements Job {
             params.remove(MotechEvent.EVENT_TYPE_KEY_NAME);
             params.put("JobID", jobId);
 
-            MotechEvent motechEvent = new MotechEvent(eventType, params);
-
-            LOGGER.info("Sending Motech Event Message: " + motechEvent);
+            Object delivery = params.remove(BucketedSchedulableJob.DELIVERY_KEY);
+            List<MotechEvent> motechEvents = BucketDelivery.STREAM.name().equals(delivery) ?
+                    toEntryEvents(eventType, params) : null;
+            MotechEvent motechEvent = (motechEvents == null) ? new MotechEvent(eventType, params) : null;
 
             SchedulerContext schedulerContext;
             try {
@@ -59,10 +67,61 @@ public class MotechScheduledJob implements Job {
             }
 
             ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
-            EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
+            send(getEventRelay(applicationContext), motechEvent, motechEvents);
         } catch (RuntimeException e) {
             LOGGER.error("Job execution failed.", e);
         }
     }
+
+    private static void send(EventRelay eventRelay, MotechEvent motechEvent, List<MotechEvent> motechEvents) {
+        if (motechEvents == null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Sending Motech Event Message: {}", motechEvent);
+            }
+            eventRelay.sendEventMessage(motechEvent);
+        } else {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Sending {} Motech Event Messages of a bucketed job", motechEvents.size());
+            }
+            eventRelay.sendEventMessages(motechEvents);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<MotechEvent> toEntryEvents(String eventType, Map<String, Object> params) {
+        Object entries = params.remove(BucketedSchedulableJob.ENTRIES_KEY);
+        if (!(entries instanceof Map)) {
+            return new ArrayList<>();
+        }
+
+        List<MotechEvent> motechEvents = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : ((Map<String, Map<String, Object>>) entries).entrySet()) {
+            Map<String, Object> entryParams = new HashMap<>(params);
+            entryParams.putAll(entry.getValue());
+            entryParams.put(BucketedSchedulableJob.ENTRY_KEY, entry.getKey());
+            entryParams.put("JobID", params.get("JobID"));
+            motechEvents.add(new MotechEvent(eventType, entryParams));
+        }
+        return motechEvents;
+    }
+
+    private static EventRelay getEventRelay(ApplicationContext applicationContext) {
+        CachedEventRelay cached = cachedEventRelay;
+        if (cached == null || cached.applicationContext != applicationContext) {
+            cached = new CachedEventRelay(applicationContext, applicationContext.getBean(EventRelay.class));
+            cachedEventRelay = cached;
+        }
+        return cached.eventRelay;
+    }
+
+    private static class CachedEventRelay {
+
+        private final ApplicationContext applicationContext;
+        private final EventRelay eventRelay;
+
+        CachedEventRelay(ApplicationContext applicationContext, EventRelay eventRelay) {
+            this.applicationContext = applicationContext;
+            this.eventRelay = eventRelay;
+        }
+    }
 }
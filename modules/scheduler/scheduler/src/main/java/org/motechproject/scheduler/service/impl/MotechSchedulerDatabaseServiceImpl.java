@@ -3,8 +3,8 @@ package org.motechproject.scheduler.service.impl;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
-import org.motechproject.commons.sql.util.Drivers;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BucketedJobId;
 import org.motechproject.scheduler.contract.EventInfo;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
@@ -16,8 +16,8 @@ import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.quartz.CalendarIntervalTrigger;
-import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
@@ -25,7 +25,7 @@ import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
-import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
 import org.quartz.spi.OperableTrigger;
 import org.quartz.utils.DBConnectionManager;
 import org.slf4j.Logger;
@@ -35,18 +35,21 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 /**
- * Motech Scheduler Database Service implementation
+ * Motech Scheduler Database Service implementation. A page of jobs is read with a single query, the pages following
+ * recently returned ones are read with keyset pagination and job counts are cached for a short time.
  *
  * @see MotechSchedulerDatabaseService
  */
@@ -56,17 +59,12 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerDatabaseServiceImpl.class);
     private static final String DATE_FORMAT_PATTERN = "Y-MM-dd HH:mm:ss";
     private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
-    private static final String START_TIME = "START_TIME";
-    private static final String END_TIME = "END_TIME";
-    private static final String TRIGGER_NAME = "TRIGGER_NAME";
-    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
-    private static final String TRIGGER_STATE = "TRIGGER_STATE";
-    private static final String TRIGGER_TYPE = "TRIGGER_TYPE";
-    private static final String WAITING = "WAITING";
-    private static final String JOB_NAME = "JOB_NAME";
-    private static final String TRIGGERS = "TRIGGERS";
-    private static final String OR = " OR ";
-    private static final String AND = " AND ";
+    private static final String SEPARATOR = "|";
+    /**
+     * Time for which job counts are cached, unless the jobs are changed earlier.
+     */
+    private static final long COUNT_CACHE_TIME = TimeUnit.SECONDS.toNanos(30);
+    private static final int MAX_CACHED_COUNTS = 100;
 
     @Autowired
     private Properties sqlProperties;
@@ -76,67 +74,122 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     @Autowired
     private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
 
+    private final JobsPageCursors pageCursors = new JobsPageCursors();
+    private final Map<String, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+
     @PostConstruct
-    public void init() {
+    public void init() throws SchedulerException {
         scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        scheduler.getListenerManager().addSchedulerListener(new SchedulerListenerSupport() {
+            @Override
+            public void jobScheduled(Trigger trigger) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void jobUnscheduled(TriggerKey triggerKey) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void triggerFinalized(Trigger trigger) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void triggerPaused(TriggerKey triggerKey) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void triggersPaused(String triggerGroup) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void triggerResumed(TriggerKey triggerKey) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void triggersResumed(String triggerGroup) {
+                cachedCounts.clear();
+            }
+
+            @Override
+            public void schedulingDataCleared() {
+                cachedCounts.clear();
+            }
+        });
     }
 
+    /*
+     * Counting millions of triggers takes a while, so the counts are cached for a short time, they are dropped
+     * as soon as any job is scheduled, unscheduled, paused or resumed by this scheduler instance.
+     */
     @Override
     public int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
-        String query = buildJobsCountSqlQuery(jobsSearchSettings);
-        int rowCount;
+        String countKey = buildCountKey(jobsSearchSettings);
+        CachedCount cachedCount = cachedCounts.get(countKey);
+        if (cachedCount != null && !cachedCount.isExpired()) {
+            return cachedCount.getCount();
+        }
+
         try {
-            rowCount = executeCountQuery(query);
+            JobsQueryBuilder.Query query = getQueryBuilder().buildCountQuery(jobsSearchSettings);
             LOGGER.debug("Executing {}", query);
+            int rowCount = executeCountQuery(query);
+
+            if (cachedCounts.size() >= MAX_CACHED_COUNTS) {
+                cachedCounts.clear();
+            }
+            cachedCounts.put(countKey, new CachedCount(rowCount));
             return rowCount;
-        } catch (SQLException e) {
+        } catch (SQLException | SchedulerException e) {
             throw new MotechSchedulerJobRetrievalException("Jobs counting failed.", e);
         }
     }
 
-
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
-        List<JobBasicInfo> jobBasicInfos = new LinkedList<>();
+        List<JobBasicInfo> jobBasicInfos = new ArrayList<>();
         if (!isNotBlank(jobsSearchSettings.getActivity()) || !isNotBlank(jobsSearchSettings.getStatus())) {
             return jobBasicInfos;
         }
-        String query = buildJobsBasicInfoSqlQuery(jobsSearchSettings);
-        LOGGER.debug("Executing {}", query);
 
-        List<String> columnNames = new LinkedList<>();
-        columnNames.add(TRIGGER_NAME);
-        columnNames.add(TRIGGER_GROUP);
-        List<List<Object>> objects;
+        String searchKey = buildSearchKey(jobsSearchSettings);
+        int page = 0;
+        int offset = 0;
+        Map.Entry<Integer, JobsPageCursors.Cursor> preceding = null;
+
+        if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
+            page = Math.max(jobsSearchSettings.getPage(), 1);
+            preceding = pageCursors.findPreceding(searchKey, page);
+            int firstPage = (preceding == null) ? 1 : preceding.getKey() + 1;
+            offset = (page - firstPage) * jobsSearchSettings.getRows();
+        }
 
         try {
-            objects = executeQuery(query, columnNames);
-
-            for (List<Object> row : objects) {
-                JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
+            JobsQueryBuilder queryBuilder = getQueryBuilder();
+            JobsQueryBuilder.Query query = queryBuilder.buildPageQuery(jobsSearchSettings,
+                    (preceding == null) ? null : preceding.getValue(), offset);
+            LOGGER.debug("Executing {}", query);
+
+            try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+                    PreparedStatement stmt = conn.prepareStatement(query.getSql())) {
+                setParameters(stmt, query);
+                JobsPageCursors.Cursor lastCursor = null;
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        jobBasicInfos.add(toJobBasicInfo(queryBuilder.readTrigger(rs), queryBuilder.readTriggerState(rs)));
+                        lastCursor = queryBuilder.readCursor(rs, jobsSearchSettings);
+                    }
+                }
+
+                if (page > 0 && lastCursor != null) {
+                    pageCursors.put(searchKey, page, lastCursor);
                 }
-                String endDate = getEndDate(trigger, jobType);
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info
-                ));
             }
 
             return jobBasicInfos;
@@ -152,25 +205,25 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
         try {
             for (String groupName : scheduler.getJobGroupNames()) {
-                for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
-                    if (jobKey.getName().equals(jobBasicInfo.getName())) {
-                        EventInfo eventInfo = new EventInfo();
-                        String subject;
-
-                        eventInfo.setParameters(
-                           scheduler.getJobDetail(jobKey).getJobDataMap().getWrappedMap()
-                        );
-
-                        if (eventInfo.getParameters().containsKey(MotechEvent.EVENT_TYPE_KEY_NAME)) {
-                            subject = eventInfo.getParameters().get(MotechEvent.EVENT_TYPE_KEY_NAME).toString();
-                            eventInfo.getParameters().remove(MotechEvent.EVENT_TYPE_KEY_NAME);
-                        } else {
-                            subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
-                        }
-
-                        eventInfo.setSubject(subject);
-                        eventInfos.add(eventInfo);
+                JobKey jobKey = new JobKey(jobBasicInfo.getName(), groupName);
+                JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+                if (jobDetail != null) {
+                    EventInfo eventInfo = new EventInfo();
+                    String subject;
+
+                    eventInfo.setParameters(
+                       jobDetail.getJobDataMap().getWrappedMap()
+                    );
+
+                    if (eventInfo.getParameters().containsKey(MotechEvent.EVENT_TYPE_KEY_NAME)) {
+                        subject = eventInfo.getParameters().get(MotechEvent.EVENT_TYPE_KEY_NAME).toString();
+                        eventInfo.getParameters().remove(MotechEvent.EVENT_TYPE_KEY_NAME);
+                    } else {
+                        subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
                     }
+
+                    eventInfo.setSubject(subject);
+                    eventInfos.add(eventInfo);
                 }
             }
 
@@ -181,198 +234,59 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
-        List<List<Object>> rows = new LinkedList<>();
-
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
-
-            while (rs.next()) {
-                List<Object> row = new LinkedList<>();
-                if (columns != null) {
-                    for (String name : columns) {
-                        row.add(rs.getObject(name));
-                    }
-                }
-                rows.add(row);
-            }
-        }
-        return rows;
+    private JobsQueryBuilder getQueryBuilder() throws SchedulerException {
+        return new JobsQueryBuilder(sqlProperties, scheduler.getSchedulerName());
     }
 
-    private int executeCountQuery(String query) throws SQLException {
-        int rowConut = 0;
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
-            rs.next();
-            rowConut = rs.getInt(1);
+    private JobBasicInfo toJobBasicInfo(Trigger trigger, Trigger.TriggerState triggerState) throws SchedulerException {
+        String jobName = trigger.getKey().getName();
+        String jobType = getJobType(jobName);
+        String nextFireDate = "";
+        if (trigger.getNextFireTime() != null) {
+            nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
         }
-        return rowConut;
-    }
 
-    private void checkAndAddElement(StringBuilder sb, String element, boolean condition) {
-        if (condition) {
-            sb.append(element);
-        }
+        return new JobBasicInfo(
+                getJobActivity(trigger),
+                getJobStatus(triggerState),
+                jobName,
+                getStartDate(trigger),
+                nextFireDate,
+                getEndDate(trigger, jobType),
+                jobType,
+                getJobInfo(trigger, jobType)
+        );
     }
 
-    private String buildDateRangeFilter(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder dateRangeSb = new StringBuilder();
-        boolean addAnd = false;
-        DateTime dateFrom;
-        DateTime dateTo;
-        if (StringUtils.isNotBlank(jobsSearchSettings.getTimeFrom())) {
-            dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
-                    .parseDateTime(jobsSearchSettings.getTimeFrom());
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" >= ").append(dateFrom.getMillis());
-            addAnd = true;
-        }
-
-        if (StringUtils.isNotBlank(jobsSearchSettings.getTimeTo())) {
-            dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
-                    .parseDateTime(jobsSearchSettings.getTimeTo());
-            checkAndAddElement(dateRangeSb, AND, addAnd);
-            dateRangeSb.append(getCorrectNameRepresentation(END_TIME)).append(" <= ").append(dateTo.getMillis());
+    private void setParameters(PreparedStatement stmt, JobsQueryBuilder.Query query) throws SQLException {
+        List<Object> parameters = query.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
         }
-        return dateRangeSb.toString();
     }
 
-    private String buildActivityFilter(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder activitySb = new StringBuilder();
-        String[] activityElements = jobsSearchSettings.getActivity().split(",");
-        boolean addOr = false;
-        if (activityElements.length < 3) {
-            for(String element : activityElements) {
-                checkAndAddElement(activitySb, OR, addOr);
-                if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(START_TIME)).append(" > ").append(DateTime.now().getMillis());
-                } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
-                    activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" < ").append(DateTime.now().getMillis());
-                } else {
-                    activitySb.append(" (").append(getCorrectNameRepresentation(START_TIME)).append(" <= ").append(DateTime.now().getMillis());
-                    checkAndAddElement(activitySb, AND, true);
-                    activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" >= ").append(DateTime.now().getMillis())
-                            .append(")");
-                }
-                addOr = true;
-            }
-        }
-        return activitySb.toString();
-    }
-
-    private String buildStatusFilter(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder statusSb = new StringBuilder();
-        String[] statusElements = jobsSearchSettings.getStatus().split(",");
-        boolean addOr = false; if (statusElements.length < 4) {
-            for(String element : statusElements) {
-                checkAndAddElement(statusSb, OR, addOr);
-                statusSb.append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
-                if (Trigger.TriggerState.ERROR.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.ERROR.toString()).append("\'");
-                } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.BLOCKED.toString()).append("\'");
-                } else if (Trigger.TriggerState.PAUSED.toString().equals(element)) {
-                    statusSb.append("\'").append(Trigger.TriggerState.PAUSED.toString()).append("\'");
-                } else {
-                    statusSb.append("\'").append(Trigger.TriggerState.NORMAL.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
-                    statusSb.append("\'").append(Trigger.TriggerState.COMPLETE.toString()).append("\'");
-                    statusSb.append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
-                    statusSb.append("\'").append(WAITING).append("\'");
-                }
-                addOr = true;
-            }
-        }
-        return statusSb.toString();
-    }
-
-    private List<String> buildFilters(JobsSearchSettings jobsSearchSettings) {
-        List<String> filters = new ArrayList<>();
-        String dateRangeFilter = buildDateRangeFilter(jobsSearchSettings);
-        if (isNotBlank(dateRangeFilter)) {
-            filters.add(dateRangeFilter);
-        }
-        String activityFilter = buildActivityFilter(jobsSearchSettings);
-        if (isNotBlank(activityFilter)) {
-            filters.add(activityFilter);
-        }
-        String statusFilter = buildStatusFilter(jobsSearchSettings);
-        if (isNotBlank(statusFilter)) {
-            filters.add(statusFilter);
-        }
-        StringBuilder nameSb = new StringBuilder();
-        if (isNotBlank(jobsSearchSettings.getName())) {
-            nameSb.append(getCorrectNameRepresentation(JOB_NAME)).append(" LIKE ").append("\'%").append(jobsSearchSettings.getName())
-                    .append("%\'");
-            filters.add(nameSb.toString());
-        }
-
-        return filters;
-    }
-
-    private String getCorrectNameRepresentation(String name) {
-        return sqlProperties.get("org.quartz.dataSource.motechDS.driver").equals(Drivers.MYSQL_DRIVER) ? name : "\"" + name.toLowerCase() + "\"";
-    }
-
-    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings) {
-        List<String> filters = buildFilters(jobsSearchSettings);
-
-        StringBuilder sb = new StringBuilder();
-        boolean addAnd = false;
-        if (filters.size() > 0) {
-            sb.append(" WHERE ");
-        }
-        for (String filter : filters) {
-            if (filter.length() > 0) {
-                checkAndAddElement(sb, AND, addAnd);
-                sb.append("(").append(filter).append(")");
-                addAnd = true;
+    private int executeCountQuery(JobsQueryBuilder.Query query) throws SQLException {
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+                PreparedStatement stmt = conn.prepareStatement(query.getSql())) {
+            setParameters(stmt, query);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
             }
         }
-        return sb.toString();
     }
 
-    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder sb = new StringBuilder("SELECT * FROM ");
-        sb = sb.append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS));
-        sb = sb.append(buildWhereCondition(jobsSearchSettings));
-        if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
-            sb = sb.append(" ORDER BY ").append(getCorrectNameRepresentation(getSortColumn(jobsSearchSettings.getSortColumn())))
-                    .append(" ").append(jobsSearchSettings.getSortDirection().toUpperCase());
-        }
-        if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
-            int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
-            sb = sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(offset);
-        }
-
-        return sb.toString();
+    private String buildCountKey(JobsSearchSettings settings) {
+        return StringUtils.join(new Object[] {
+                settings.getName(), settings.getActivity(), settings.getStatus(), settings.getTimeFrom(), settings.getTimeTo()
+        }, SEPARATOR);
     }
 
-    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ");
-        sb = sb.append(getCorrectNameRepresentation(sqlProperties.get("org.quartz.jobStore.tablePrefix").toString() + TRIGGERS));
-        sb = sb.append(buildWhereCondition(jobsSearchSettings));
-        return sb.toString();
-    }
-
-    private String getSortColumn(String column) {
-        String sortColumn;
-
-        if (column.equalsIgnoreCase("startDate")) {
-            sortColumn = START_TIME;
-        } else if (column.equalsIgnoreCase("endDate")) {
-            sortColumn = END_TIME;
-        } else if (column.equalsIgnoreCase("status")) {
-            sortColumn = TRIGGER_STATE;
-        } else if (column.equalsIgnoreCase("jobType")) {
-            sortColumn = TRIGGER_TYPE;
-        } else {
-            sortColumn = JOB_NAME;
-        }
-
-        return sortColumn;
+    private String buildSearchKey(JobsSearchSettings settings) {
+        return StringUtils.join(new Object[] {
+                buildCountKey(settings), settings.getRows(), JobsQueryBuilder.getSortColumn(settings.getSortColumn()),
+                settings.getSortDirection()
+        }, SEPARATOR);
     }
 
     private String getJobInfo(Trigger trigger, String jobType) throws SchedulerException {
@@ -398,22 +312,20 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
             return String.format("%d/%s", timesTriggered, repeatMaxCount);
         } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
-            CronScheduleBuilder cronScheduleBuilder = (CronScheduleBuilder) trigger.getScheduleBuilder();
-
-            CronTrigger cronTrigger = (CronTrigger) cronScheduleBuilder.build();
-
-            return cronTrigger.getCronExpression();
+            return (trigger instanceof CronTrigger) ? ((CronTrigger) trigger).getCronExpression() : "-";
         } else {
             return "-";
         }
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
-        if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
+    private String getJobType(String jobName) {
+        if (jobName.endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
-        } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
+        } else if (jobName.endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)
+                || jobName.endsWith(BucketedJobId.SUFFIX_BUCKETEDJOBID)) {
+            // bucketed jobs are stored with simple triggers, just like repeating jobs
             return JobBasicInfo.JOBTYPE_REPEATING;
-        } else if (jobKey.getName().endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
+        } else if (jobName.endsWith(RepeatingPeriodJobId.SUFFIX_REPEATPERIODJOBID)) {
             return JobBasicInfo.JOBTYPE_PERIOD;
         } else {
             return JobBasicInfo.JOBTYPE_CRON;
@@ -455,8 +367,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
+    private String getJobStatus(Trigger.TriggerState currentTriggerState) {
         if (currentTriggerState == Trigger.TriggerState.ERROR) {
             return JobBasicInfo.STATUS_ERROR;
         } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
@@ -467,4 +378,22 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             return JobBasicInfo.STATUS_OK;
         }
     }
+
+    private static final class CachedCount {
+
+        private final int count;
+        private final long time = System.nanoTime();
+
+        private CachedCount(int count) {
+            this.count = count;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isExpired() {
+            return System.nanoTime() - time > COUNT_CACHE_TIME;
+        }
+    }
 }
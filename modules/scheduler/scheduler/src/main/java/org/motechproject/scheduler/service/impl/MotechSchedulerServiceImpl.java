@@ -7,10 +7,13 @@ import org.joda.time.Period;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BucketedJobId;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
 import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
 import org.motechproject.scheduler.contract.RepeatingJobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodJobId;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
@@ -28,6 +31,7 @@ import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
+import org.quartz.JobKey;
 import org.quartz.ScheduleBuilder;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
@@ -36,8 +40,6 @@ import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
-import org.quartz.impl.calendar.BaseCalendar;
-import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.triggers.CronTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 import org.slf4j.Logger;
@@ -46,10 +48,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static java.lang.String.format;
 import static org.motechproject.commons.date.util.DateUtil.newDateTime;
@@ -73,11 +80,19 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
     private static final String LOG_SUBJECT_EXTERNALID = "subject: %s, externalId: %s";
+    /**
+     * Number of jobs stored or removed in a single transaction by the batch methods.
+     */
+    private static final int BATCH_SIZE = 500;
 
     private SettingsFacade schedulerSettings;
 
     private Scheduler scheduler;
 
+    private TriggerKeyFinder triggerKeyFinder;
+
+    private FireTimeIndex fireTimeIndex;
+
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
@@ -87,6 +102,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public MotechSchedulerServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean, SettingsFacade schedulerSettings) {
         this.schedulerSettings = schedulerSettings;
         this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        this.triggerKeyFinder = new TriggerKeyFinder(scheduler, motechSchedulerFactoryBean.getSchedulerProperties());
+        this.fireTimeIndex = new FireTimeIndex(scheduler, motechSchedulerFactoryBean.getSchedulerProperties(),
+                triggerKeyFinder);
+        fireTimeIndex.register();
         constructMisfirePoliciesMaps();
     }
 
@@ -109,6 +128,23 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
 
+        JobSchedule schedule = buildCronJobSchedule(cronSchedulableJob);
+        JobId jobId = schedule.getJobId();
+
+        Trigger existingTrigger;
+        try {
+            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()), e);
+        }
+        if (existingTrigger != null) {
+            unscheduleJob(jobId.value());
+        }
+
+        scheduleJob(schedule.getJobDetail(), schedule.getTrigger());
+    }
+
+    private JobSchedule buildCronJobSchedule(CronSchedulableJob cronSchedulableJob) {
         MotechEvent motechEvent = assertCronJob(cronSchedulableJob);
 
         JobId jobId = new CronJobId(motechEvent);
@@ -138,16 +174,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(cronSchedulableJob.getEndTime())
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()), e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (cronSchedulableJob.isIgnorePastFiresAtStart() && newDateTime(cronSchedulableJob.getStartTime()).isBefore(now)) {
@@ -166,7 +192,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .build();
         }
 
-        scheduleJob(jobDetail, trigger);
+        return new JobSchedule(jobId, jobDetail, trigger);
     }
 
     private MotechEvent assertCronJob(CronSchedulableJob cronSchedulableJob) {
@@ -297,6 +323,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleRepeatingJob(RepeatingSchedulableJob repeatingSchedulableJob) {
         logObjectIfNotNull(repeatingSchedulableJob);
 
+        JobSchedule schedule = buildRepeatingJobSchedule(repeatingSchedulableJob);
+        scheduleJob(schedule.getJobDetail(), schedule.getTrigger());
+    }
+
+    private JobSchedule buildRepeatingJobSchedule(RepeatingSchedulableJob repeatingSchedulableJob) {
         MotechEvent motechEvent = assertArgumentNotNull(repeatingSchedulableJob);
 
         Date jobStartTime = repeatingSchedulableJob.getStartTime();
@@ -340,13 +371,18 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
 
         Trigger trigger = buildJobDetail(repeatingSchedulableJob, jobStartTime, jobEndTime, jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger);
+        return new JobSchedule(jobId, jobDetail, trigger);
     }
 
     @Override
     public void scheduleRepeatingPeriodJob(RepeatingPeriodSchedulableJob repeatingPeriodSchedulableJob) {
         logObjectIfNotNull(repeatingPeriodSchedulableJob);
 
+        JobSchedule schedule = buildRepeatingPeriodJobSchedule(repeatingPeriodSchedulableJob);
+        scheduleJob(schedule.getJobDetail(), schedule.getTrigger());
+    }
+
+    private JobSchedule buildRepeatingPeriodJobSchedule(RepeatingPeriodSchedulableJob repeatingPeriodSchedulableJob) {
         MotechEvent motechEvent = assertArgumentNotNull(repeatingPeriodSchedulableJob);
 
         assertArgumentNotNull("Job start date", repeatingPeriodSchedulableJob.getStartTime());
@@ -369,7 +405,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(repeatingPeriodSchedulableJob, repeatingPeriodSchedulableJob.getStartTime(),
                 repeatingPeriodSchedulableJob.getEndTime(), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger);
+        return new JobSchedule(jobId, jobDetail, trigger);
     }
 
     @Override
@@ -477,6 +513,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleRunOnceJob(RunOnceSchedulableJob schedulableJob) {
         logObjectIfNotNull(schedulableJob);
 
+        JobSchedule schedule = buildRunOnceJobSchedule(schedulableJob);
+        scheduleJob(schedule.getJobDetail(), schedule.getTrigger());
+    }
+
+    private JobSchedule buildRunOnceJobSchedule(RunOnceSchedulableJob schedulableJob) {
         assertArgumentNotNull("RunOnceSchedulableJob", schedulableJob);
         MotechEvent motechEvent = schedulableJob.getMotechEvent();
 
@@ -509,7 +550,58 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(jobStartDate)
                 .build();
 
-        scheduleJob(jobDetail, trigger);
+        return new JobSchedule(jobId, jobDetail, trigger);
+    }
+
+    @Override
+    public void scheduleBucketedJob(BucketedSchedulableJob schedulableJob) {
+        logObjectIfNotNull(schedulableJob);
+
+        JobSchedule schedule = buildBucketedJobSchedule(schedulableJob);
+        try {
+            scheduler.scheduleJob(schedule.getJobDetail(), Collections.singleton(schedule.getTrigger()), true);
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not schedule the bucketed job:\n %s\n%s\n%s",
+                    schedule.getJobDetail(), schedule.getTrigger(), e.getMessage()), e);
+        }
+    }
+
+    private JobSchedule buildBucketedJobSchedule(BucketedSchedulableJob schedulableJob) {
+        assertArgumentNotNull("BucketedSchedulableJob", schedulableJob);
+        MotechEvent motechEvent = schedulableJob.getMotechEvent();
+
+        Date jobStartDate = schedulableJob.getStartDate();
+        Date currentDate = DateUtil.now().toDate();
+        if (jobStartDate.before(currentDate)) {
+            String errorMessage = "Invalid BucketedSchedulableJob. The job start date can not be in the past. \n" +
+                    " Job start date: " + jobStartDate.toString() +
+                    " Attempted to schedule at:" + currentDate.toString();
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        JobId jobId = new BucketedJobId(motechEvent);
+        JobDetail jobDetail = newJob(MotechScheduledJob.class)
+                .withIdentity(jobId.value(), JOB_GROUP_NAME)
+                .build();
+
+        JobDataMap jobDataMap = jobDetail.getJobDataMap();
+        putMotechEventDataToJobDataMap(jobDataMap, motechEvent);
+        jobDataMap.put(BucketedSchedulableJob.ENTRIES_KEY, new LinkedHashMap<>(schedulableJob.getEntries()));
+        jobDataMap.put(BucketedSchedulableJob.DELIVERY_KEY, schedulableJob.getDelivery().name());
+
+        SimpleScheduleBuilder simpleSchedule = simpleSchedule()
+                .withRepeatCount(0)
+                .withIntervalInSeconds(0)
+                .withMisfireHandlingInstructionFireNow();
+
+        Trigger trigger = newTrigger()
+                .withIdentity(triggerKey(jobId.value(), JOB_GROUP_NAME))
+                .forJob(jobDetail)
+                .withSchedule(simpleSchedule)
+                .startAt(jobStartDate)
+                .build();
+
+        return new JobSchedule(jobId, jobDetail, trigger);
     }
 
     private MotechEvent assertArgumentNotNull(SchedulableJob schedulableJob) {
@@ -537,6 +629,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void scheduleDayOfWeekJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         logObjectIfNotNull(dayOfWeekSchedulableJob);
 
+        scheduleJob(toCronSchedulableJob(dayOfWeekSchedulableJob));
+    }
+
+    private CronSchedulableJob toCronSchedulableJob(DayOfWeekSchedulableJob dayOfWeekSchedulableJob) {
         MotechEvent motechEvent = dayOfWeekSchedulableJob.getMotechEvent();
         LocalDate start = dayOfWeekSchedulableJob.getStartDate();
         LocalDate end = dayOfWeekSchedulableJob.getEndDate();
@@ -545,10 +641,180 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         CronScheduleBuilder cronScheduleBuilder = CronScheduleBuilder.atHourAndMinuteOnGivenDaysOfWeek(time.getHour(),
                 time.getMinute(), dayOfWeekSchedulableJob.getCronDays().toArray(new Integer[0]));
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
-        CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
+        return new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
                 start.toDate(), end != null ? end.toDate() : null, dayOfWeekSchedulableJob.isIgnorePastFiresAtStart());
+    }
 
-        scheduleJob(cronSchedulableJob);
+    @Override
+    public JobsBatchResult scheduleJobs(Collection<? extends SchedulableJob> schedulableJobs) {
+        assertArgumentNotNull("SchedulableJobs", schedulableJobs);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Scheduling a batch of {} jobs", schedulableJobs.size());
+        }
+
+        JobsBatchResult result = new JobsBatchResult();
+        List<JobSchedule> chunk = new ArrayList<>();
+        Set<JobKey> chunkKeys = new HashSet<>();
+
+        int index = 0;
+        for (SchedulableJob schedulableJob : schedulableJobs) {
+            JobSchedule schedule = buildJobSchedule(schedulableJob, index, result);
+            if (schedule != null) {
+                // a job can appear in a chunk only once, later occurrences replace the earlier ones in order
+                if (chunk.size() >= BATCH_SIZE || !chunkKeys.add(schedule.getJobDetail().getKey())) {
+                    storeJobSchedules(chunk, result);
+                    chunk.clear();
+                    chunkKeys.clear();
+                    chunkKeys.add(schedule.getJobDetail().getKey());
+                }
+                chunk.add(schedule);
+            }
+            index++;
+        }
+        storeJobSchedules(chunk, result);
+
+        return result;
+    }
+
+    @Override
+    public JobsBatchResult unscheduleJobs(Collection<? extends JobId> jobIds) {
+        assertArgumentNotNull("JobIds", jobIds);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Unscheduling a batch of {} jobs", jobIds.size());
+        }
+
+        JobsBatchResult result = new JobsBatchResult();
+        List<IndexedTriggerKey> chunk = new ArrayList<>();
+
+        int index = 0;
+        for (JobId jobId : jobIds) {
+            if (jobId == null) {
+                result.addFailure(index, null, "ScheduledJobID cannot be null");
+            } else {
+                chunk.add(new IndexedTriggerKey(index, triggerKey(jobId.value(), JOB_GROUP_NAME)));
+                if (chunk.size() >= BATCH_SIZE) {
+                    removeTriggers(chunk, result);
+                    chunk.clear();
+                }
+            }
+            index++;
+        }
+        removeTriggers(chunk, result);
+
+        return result;
+    }
+
+    private JobSchedule buildJobSchedule(SchedulableJob schedulableJob, int index, JobsBatchResult result) {
+        try {
+            return buildJobSchedule(schedulableJob).withIndex(index);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to schedule job {} of the batch", schedulableJob, e);
+            result.addFailure(index, getJobIdValue(schedulableJob), e.getMessage());
+            return null;
+        }
+    }
+
+    private JobSchedule buildJobSchedule(SchedulableJob schedulableJob) {
+        if (schedulableJob instanceof CronSchedulableJob) {
+            return buildCronJobSchedule((CronSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RepeatingSchedulableJob) {
+            return buildRepeatingJobSchedule((RepeatingSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RepeatingPeriodSchedulableJob) {
+            return buildRepeatingPeriodJobSchedule((RepeatingPeriodSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof RunOnceSchedulableJob) {
+            return buildRunOnceJobSchedule((RunOnceSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof BucketedSchedulableJob) {
+            return buildBucketedJobSchedule((BucketedSchedulableJob) schedulableJob);
+        } else if (schedulableJob instanceof DayOfWeekSchedulableJob) {
+            return buildCronJobSchedule(toCronSchedulableJob((DayOfWeekSchedulableJob) schedulableJob));
+        }
+        throw new IllegalArgumentException("Unsupported SchedulableJob: " + schedulableJob);
+    }
+
+    private String getJobIdValue(SchedulableJob schedulableJob) {
+        MotechEvent motechEvent = (schedulableJob == null) ? null : schedulableJob.getMotechEvent();
+        if (motechEvent == null) {
+            return null;
+        } else if (schedulableJob instanceof RepeatingSchedulableJob) {
+            return new RepeatingJobId(motechEvent).value();
+        } else if (schedulableJob instanceof RepeatingPeriodSchedulableJob) {
+            return new RepeatingPeriodJobId(motechEvent).value();
+        } else if (schedulableJob instanceof RunOnceSchedulableJob) {
+            return new RunOnceJobId(motechEvent).value();
+        } else if (schedulableJob instanceof BucketedSchedulableJob) {
+            return new BucketedJobId(motechEvent).value();
+        }
+        return new CronJobId(motechEvent).value();
+    }
+
+    private void storeJobSchedules(List<JobSchedule> schedules, JobsBatchResult result) {
+        if (schedules.isEmpty()) {
+            return;
+        }
+
+        Map<JobDetail, Set<? extends Trigger>> triggersAndJobs = new HashMap<>();
+        for (JobSchedule schedule : schedules) {
+            triggersAndJobs.put(schedule.getJobDetail(), Collections.singleton(schedule.getTrigger()));
+        }
+
+        try {
+            // all jobs of the chunk are stored in a single transaction
+            scheduler.scheduleJobs(triggersAndJobs, true);
+            for (JobSchedule schedule : schedules) {
+                result.addSucceeded(schedule.getJobId().value());
+            }
+        } catch (SchedulerException e) {
+            // the transaction was rolled back, find the failing jobs by storing them one by one
+            LOGGER.warn("Unable to schedule a batch of {} jobs, scheduling them one by one", schedules.size(), e);
+            for (JobSchedule schedule : schedules) {
+                storeJobSchedule(schedule, result);
+            }
+        }
+    }
+
+    private void storeJobSchedule(JobSchedule schedule, JobsBatchResult result) {
+        try {
+            scheduler.scheduleJobs(Collections.<JobDetail, Set<? extends Trigger>>singletonMap(schedule.getJobDetail(),
+                    Collections.singleton(schedule.getTrigger())), true);
+            result.addSucceeded(schedule.getJobId().value());
+        } catch (SchedulerException e) {
+            LOGGER.error("Unable to schedule job {}", schedule.getJobId(), e);
+            result.addFailure(schedule.getIndex(), schedule.getJobId().value(), e.getMessage());
+        }
+    }
+
+    private void removeTriggers(List<IndexedTriggerKey> triggerKeys, JobsBatchResult result) {
+        if (triggerKeys.isEmpty()) {
+            return;
+        }
+
+        List<TriggerKey> keys = new ArrayList<>(triggerKeys.size());
+        for (IndexedTriggerKey triggerKey : triggerKeys) {
+            keys.add(triggerKey.getKey());
+        }
+
+        try {
+            // all triggers of the chunk are removed in a single transaction
+            scheduler.unscheduleJobs(keys);
+            for (TriggerKey key : keys) {
+                result.addSucceeded(key.getName());
+            }
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to unschedule a batch of {} jobs, unscheduling them one by one", keys.size(), e);
+            for (IndexedTriggerKey triggerKey : triggerKeys) {
+                removeTrigger(triggerKey, result);
+            }
+        }
+    }
+
+    private void removeTrigger(IndexedTriggerKey triggerKey, JobsBatchResult result) {
+        try {
+            scheduler.unscheduleJob(triggerKey.getKey());
+            result.addSucceeded(triggerKey.getKey().getName());
+        } catch (SchedulerException e) {
+            LOGGER.error("Unable to unschedule job {}", triggerKey.getKey().getName(), e);
+            result.addFailure(triggerKey.getIndex(), triggerKey.getKey().getName(), e.getMessage());
+        }
     }
 
     @Override
@@ -601,6 +867,31 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    @Override
+    public void unscheduleBucketedJob(String subject, String bucketId) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(format("unscheduling bucketed job: " + LOG_SUBJECT_EXTERNALID, subject, bucketId));
+        }
+
+        JobId jobId = new BucketedJobId(subject, bucketId);
+        logObjectIfNotNull(jobId);
+
+        unscheduleJob(jobId.value());
+    }
+
+    @Override
+    public void safeUnscheduleBucketedJob(String subject, String bucketId) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(format("safe unscheduling bucketed job: " + LOG_SUBJECT_EXTERNALID, subject, bucketId));
+        }
+        try {
+            unscheduleBucketedJob(subject, bucketId);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to unschedule the bucketed job with subject {} and bucketId {}",
+                    subject, bucketId, e);
+        }
+    }
+
     @Override
     public void unscheduleJob(String subject, String externalId) {
         if (LOGGER.isDebugEnabled()) {
@@ -688,11 +979,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
+            for (List<TriggerKey> chunk : findTriggerKeysInChunks(jobIdPrefix)) {
+                try {
+                    scheduler.unscheduleJobs(chunk);
+                } catch (SchedulerException e) {
+                    LOGGER.warn("Unable to unschedule a batch of {} jobs, unscheduling them one by one", chunk.size(), e);
+                    for (TriggerKey triggerKey : chunk) {
+                        safeUnscheduleJob(triggerKey.getName());
+                    }
                 }
             }
         } catch (SchedulerException e) {
@@ -704,14 +998,10 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void unscheduleAllJobs(String jobIdPrefix) {
         try {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
+                LOGGER.debug("Unscheduling jobs with prefix: {}", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
-                }
+            for (List<TriggerKey> chunk : findTriggerKeysInChunks(jobIdPrefix)) {
+                scheduler.unscheduleJobs(chunk);
             }
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not unschedule jobs given jobIdPrefix: %s %s",
@@ -719,20 +1009,29 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    private List<List<TriggerKey>> findTriggerKeysInChunks(String jobIdPrefix) throws SchedulerException {
+        List<List<TriggerKey>> chunks = new ArrayList<>();
+        if (StringUtils.isEmpty(jobIdPrefix)) {
+            return chunks;
+        }
+
+        List<TriggerKey> triggerKeys = triggerKeyFinder.findByPrefix(JOB_GROUP_NAME, jobIdPrefix);
+        for (int i = 0; i < triggerKeys.size(); i += BATCH_SIZE) {
+            chunks.add(triggerKeys.subList(i, Math.min(i + BATCH_SIZE, triggerKeys.size())));
+        }
+        return chunks;
+    }
+
     /*
      * Assumes that the externalJobId is non-repeating in nature. Thus the fetch is for jobId.value() and not
      * jobId.repeatingId()
-     * Uses quartz API to fetch the exact triggers. Fast
+     * Reads the fire times from the fire time index, without loading the trigger. Fast
      */
     @Override
     public List<Date> getScheduledJobTimings(String subject, String externalJobId, Date startDate, Date endDate) {
         JobId jobId = new CronJobId(subject, externalJobId);
-        Trigger trigger;
         try {
-            trigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-            return TriggerUtils.computeFireTimesBetween(
-                    (OperableTrigger) trigger, new BaseCalendar(), startDate, endDate);
-
+            return fireTimeIndex.getFireTimes(JOB_GROUP_NAME, jobId.value(), startDate, endDate);
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format(
                     "Can not get scheduled job timings given subject and externalJobId for dates : %s %s %s %s %s",
@@ -741,7 +1040,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     /*
-     * Loads all triggers and then loops over them to find the applicable trigger using string comparison. This
+     * Reads the fire times of the triggers with names starting with the prefix from the fire time index. This
      * will work regardless of the jobId being cron or repeating.
      */
     @Override
@@ -750,17 +1049,13 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
-        try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
-                    Trigger trigger = scheduler.getTrigger(triggerKey);
-                    messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
-                            (OperableTrigger) trigger, new BaseCalendar(), startDate, endDate));
-                }
-            }
+        if (StringUtils.isEmpty(externalJobIdPrefix)) {
+            return messageTimings;
+        }
 
+        try {
+            messageTimings.addAll(fireTimeIndex.getFireTimesWithPrefix(JOB_GROUP_NAME, jobId.value(), startDate,
+                    endDate));
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format(
                     "Can not get scheduled job timings given subject and externalJobIdPrefix for dates : %s %s %s %s %s",
@@ -787,14 +1082,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDataMap.put(MotechEvent.EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
-        }
-        return names;
-    }
-
     /**
      * Asserts that given object is not null.
      *
@@ -818,4 +1105,64 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             LOGGER.debug(obj.toString());
         }
     }
+
+    /**
+     * The job detail and trigger built from a {@code SchedulableJob}, ready to be stored.
+     */
+    private static final class JobSchedule {
+
+        private final JobId jobId;
+        private final JobDetail jobDetail;
+        private final Trigger trigger;
+        private int index;
+
+        private JobSchedule(JobId jobId, JobDetail jobDetail, Trigger trigger) {
+            this.jobId = jobId;
+            this.jobDetail = jobDetail;
+            this.trigger = trigger;
+        }
+
+        public JobId getJobId() {
+            return jobId;
+        }
+
+        public JobDetail getJobDetail() {
+            return jobDetail;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public JobSchedule withIndex(int index) {
+            this.index = index;
+            return this;
+        }
+    }
+
+    /**
+     * The key of a trigger to be removed, together with the position of its job in the batch.
+     */
+    private static final class IndexedTriggerKey {
+
+        private final int index;
+        private final TriggerKey key;
+
+        private IndexedTriggerKey(int index, TriggerKey key) {
+            this.index = index;
+            this.key = key;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public TriggerKey getKey() {
+            return key;
+        }
+    }
 }
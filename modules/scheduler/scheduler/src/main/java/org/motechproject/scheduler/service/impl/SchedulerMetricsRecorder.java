@@ -0,0 +1,163 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.event.metrics.LatencyHistogram;
+import org.motechproject.event.metrics.LatencyStatistics;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.SchedulerMetricsService;
+import org.quartz.JobExecutionContext;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the metrics of job execution. It is registered as a trigger listener of the scheduler, so it is notified
+ * of every trigger fired, completed or misfired on this node. Recording takes no locks, so it does not slow down
+ * the worker threads.
+ */
+@Component("schedulerMetricsRecorder")
+public class SchedulerMetricsRecorder implements SchedulerMetricsService, TriggerListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsRecorder.class);
+
+    private static final String LISTENER_NAME = "motechSchedulerMetrics";
+
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+
+    private volatile Counters counters = new Counters();
+
+    @Autowired
+    public SchedulerMetricsRecorder(MotechSchedulerFactoryBean motechSchedulerFactoryBean) {
+        this.motechSchedulerFactoryBean = motechSchedulerFactoryBean;
+    }
+
+    /**
+     * Registers this recorder as a listener of all triggers and the metrics in the platform MBean server.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            motechSchedulerFactoryBean.getQuartzScheduler().getListenerManager().addTriggerListener(this);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to register the scheduler metrics listener", e);
+        }
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            StandardMBean mBean = new StandardMBean(this, SchedulerMetricsService.class, true);
+            try {
+                mBeanServer.registerMBean(mBean, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                // left over by a previous instance of the module
+                mBeanServer.unregisterMBean(objectName);
+                mBeanServer.registerMBean(mBean, objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the scheduler metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    @PreDestroy
+    public void destroy() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the scheduler metrics MBean", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return LISTENER_NAME;
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+        Counters current = counters;
+        current.fired.incrementAndGet();
+        if (context.getScheduledFireTime() != null) {
+            current.firingLag.record(context.getFireTime().getTime() - context.getScheduledFireTime().getTime());
+        }
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext context) {
+        return false;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        counters.misfired.incrementAndGet();
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                CompletedExecutionInstruction triggerInstructionCode) {
+        counters.executionTime.record(context.getJobRunTime());
+    }
+
+    @Override
+    public long getFiredCount() {
+        return counters.fired.get();
+    }
+
+    @Override
+    public long getMisfiredCount() {
+        return counters.misfired.get();
+    }
+
+    @Override
+    public LatencyStatistics getFiringLag() {
+        return counters.firingLag.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getExecutionTime() {
+        return counters.executionTime.getStatistics();
+    }
+
+    @Override
+    public int getThreadPoolSize() {
+        try {
+            return motechSchedulerFactoryBean.getQuartzScheduler().getMetaData().getThreadPoolSize();
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to read the size of the scheduler thread pool", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void reset() {
+        counters = new Counters();
+    }
+
+    private static class Counters {
+
+        private final AtomicLong fired = new AtomicLong();
+        private final AtomicLong misfired = new AtomicLong();
+        private final LatencyHistogram firingLag = new LatencyHistogram();
+        private final LatencyHistogram executionTime = new LatencyHistogram();
+    }
+}
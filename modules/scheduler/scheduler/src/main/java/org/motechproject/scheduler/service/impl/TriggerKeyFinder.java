@@ -0,0 +1,131 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.JobPersistenceException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.utils.DBConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Finds the keys of the triggers with names starting with a given prefix. When the scheduler uses a JDBC job store,
+ * the keys are read with a single query on the triggers table, which uses the index on the trigger names, so the
+ * cost depends on the number of matching triggers only. For other job stores, the keys of all triggers in the group
+ * are loaded and filtered.
+ */
+public class TriggerKeyFinder {
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String TRIGGER_NAME = "TRIGGER_NAME";
+    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final char ESCAPE = '!';
+
+    private final Scheduler scheduler;
+    private final Properties sqlProperties;
+
+    /**
+     * @param scheduler the scheduler owning the triggers
+     * @param sqlProperties the Quartz properties of the scheduler
+     */
+    public TriggerKeyFinder(Scheduler scheduler, Properties sqlProperties) {
+        this.scheduler = scheduler;
+        this.sqlProperties = sqlProperties;
+    }
+
+    /**
+     * Returns the keys of the triggers in the given group, with names starting with the given prefix.
+     *
+     * @param group the group of the triggers
+     * @param prefix the prefix of the trigger names, not empty
+     * @return the keys of the matching triggers
+     * @throws SchedulerException if the triggers could not be read
+     */
+    public List<TriggerKey> findByPrefix(String group, String prefix) throws SchedulerException {
+        String dataSource = sqlProperties.getProperty(DATA_SOURCE);
+        if (StringUtils.isBlank(dataSource)) {
+            return filterByPrefix(scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(group)), prefix);
+        }
+
+        try {
+            return queryByPrefix(dataSource, group, prefix);
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Unable to find triggers with prefix " + prefix, e);
+        }
+    }
+
+    private List<TriggerKey> queryByPrefix(String dataSource, String group, String prefix) throws SQLException,
+            SchedulerException {
+        List<TriggerKey> keys = new ArrayList<>();
+
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(dataSource);
+                PreparedStatement stmt = conn.prepareStatement(buildPrefixQuery())) {
+            stmt.setString(1, scheduler.getSchedulerName());
+            stmt.setString(2, group);
+            stmt.setString(3, escapeLikePattern(prefix) + '%');
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(triggerKey(rs.getString(1), group));
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    private String buildPrefixQuery() {
+        String tablePrefix = sqlProperties.getProperty(TABLE_PREFIX, DEFAULT_TABLE_PREFIX);
+
+        // a LIKE pattern without a leading wildcard is evaluated as a range scan of the index on the trigger names
+        return new StringBuilder("SELECT ").append(getCorrectNameRepresentation(TRIGGER_NAME))
+                .append(" FROM ").append(getCorrectNameRepresentation(tablePrefix + TRIGGERS))
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ?")
+                .append(" AND ").append(getCorrectNameRepresentation(TRIGGER_GROUP)).append(" = ?")
+                .append(" AND ").append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ?")
+                .append(" ESCAPE '").append(ESCAPE).append('\'')
+                .toString();
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+
+    private List<TriggerKey> filterByPrefix(Collection<TriggerKey> triggerKeys, String prefix) {
+        List<TriggerKey> keys = new ArrayList<>();
+        for (TriggerKey key : triggerKeys) {
+            if (key.getName().startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -44,7 +44,13 @@ public class JobsController {
     @ResponseBody
     public JobsRecords retrieveJobInfo(JobsSearchSettings jobsSearchSettings) throws SchedulerException, SQLException {
         List<JobBasicInfo> jobs = motechSchedulerDatabaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
-        int rowCount = jobs.size() == 0 ? 0 : motechSchedulerDatabaseService.countJobs(jobsSearchSettings);
+        int rowCount;
+        if (jobs.isEmpty() || isOnlyPage(jobsSearchSettings, jobs.size())) {
+            // all matching jobs have been returned, no need to count them
+            rowCount = jobs.size();
+        } else {
+            rowCount = motechSchedulerDatabaseService.countJobs(jobsSearchSettings);
+        }
         previousJobsRecords = new JobsRecords(
             jobsSearchSettings.getPage(), jobsSearchSettings.getRows(), rowCount, jobs
         );
@@ -52,6 +58,12 @@ public class JobsController {
         return previousJobsRecords;
     }
 
+    private boolean isOnlyPage(JobsSearchSettings jobsSearchSettings, int jobsCount) {
+        Integer page = jobsSearchSettings.getPage();
+        Integer rows = jobsSearchSettings.getRows();
+        return page != null && page <= 1 && rows != null && jobsCount < rows;
+    }
+
     /**
      * Returns detailed information about job with given ID.
      *
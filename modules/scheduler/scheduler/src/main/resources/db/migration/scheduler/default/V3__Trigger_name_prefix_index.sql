@@ -0,0 +1,5 @@
+--
+-- Index for finding triggers by the prefix of their names, varchar_pattern_ops allows
+-- LIKE 'prefix%' to be evaluated with an index scan regardless of the database collation
+--
+create index idx_qrtz_t_g_name_prefix on qrtz_triggers(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME varchar_pattern_ops);
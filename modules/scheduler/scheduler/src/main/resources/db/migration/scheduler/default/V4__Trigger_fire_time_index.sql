@@ -0,0 +1,26 @@
+--
+-- Index of the fire times of triggers, the fire times of a trigger during one day are kept in a single bucket
+-- as comma separated offsets in milliseconds from the start of the day (UTC). The ranges hold the period of time
+-- for which the fire times of each trigger were materialized.
+--
+CREATE TABLE qrtz_fire_time_buckets
+  (
+    SCHED_NAME VARCHAR(120) NOT NULL,
+    TRIGGER_NAME VARCHAR(200) NOT NULL,
+    TRIGGER_GROUP VARCHAR(200) NOT NULL,
+    BUCKET BIGINT NOT NULL,
+    FIRE_TIMES TEXT NOT NULL,
+    PRIMARY KEY (SCHED_NAME,TRIGGER_NAME,TRIGGER_GROUP,BUCKET)
+);
+
+CREATE TABLE qrtz_fire_time_ranges
+  (
+    SCHED_NAME VARCHAR(120) NOT NULL,
+    TRIGGER_NAME VARCHAR(200) NOT NULL,
+    TRIGGER_GROUP VARCHAR(200) NOT NULL,
+    INDEXED_FROM BIGINT NOT NULL,
+    INDEXED_UNTIL BIGINT NOT NULL,
+    PRIMARY KEY (SCHED_NAME,TRIGGER_NAME,TRIGGER_GROUP)
+);
+
+create index idx_qrtz_ftb_g_name_prefix on qrtz_fire_time_buckets(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME varchar_pattern_ops,BUCKET);
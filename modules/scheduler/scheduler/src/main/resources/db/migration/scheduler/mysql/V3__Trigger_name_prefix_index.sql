@@ -0,0 +1,4 @@
+--
+-- Index for finding triggers by the prefix of their names within a group
+--
+CREATE INDEX IDX_QRTZ_T_G_NAME_PREFIX ON QRTZ_TRIGGERS(SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME);
@@ -0,0 +1,23 @@
+--
+-- Index of the fire times of triggers, the fire times of a trigger during one day are kept in a single bucket
+-- as comma separated offsets in milliseconds from the start of the day (UTC). The ranges hold the period of time
+-- for which the fire times of each trigger were materialized.
+--
+CREATE TABLE QRTZ_FIRE_TIME_BUCKETS (
+SCHED_NAME VARCHAR(120) NOT NULL,
+TRIGGER_NAME VARCHAR(200) NOT NULL,
+TRIGGER_GROUP VARCHAR(200) NOT NULL,
+BUCKET BIGINT(13) NOT NULL,
+FIRE_TIMES MEDIUMTEXT NOT NULL,
+PRIMARY KEY (SCHED_NAME,TRIGGER_NAME,TRIGGER_GROUP,BUCKET),
+INDEX IDX_QRTZ_FTB_G_NAME_PREFIX (SCHED_NAME,TRIGGER_GROUP,TRIGGER_NAME,BUCKET))
+ENGINE=InnoDB;
+
+CREATE TABLE QRTZ_FIRE_TIME_RANGES (
+SCHED_NAME VARCHAR(120) NOT NULL,
+TRIGGER_NAME VARCHAR(200) NOT NULL,
+TRIGGER_GROUP VARCHAR(200) NOT NULL,
+INDEXED_FROM BIGINT(13) NOT NULL,
+INDEXED_UNTIL BIGINT(13) NOT NULL,
+PRIMARY KEY (SCHED_NAME,TRIGGER_NAME,TRIGGER_GROUP))
+ENGINE=InnoDB;
@@ -0,0 +1,94 @@
+package org.motechproject.scheduler.benchmark;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.CoalescingMode;
+import org.motechproject.event.listener.EventRelay;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An event relay which only counts the events sent through it, so that benchmarks measure the scheduler alone,
+ * without the broker.
+ */
+public class CountingEventRelay implements EventRelay {
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong firstSentAt = new AtomicLong();
+    private final AtomicLong lastSentAt = new AtomicLong();
+
+    @Override
+    public void sendEventMessage(MotechEvent motechEvent) {
+        record(1);
+    }
+
+    @Override
+    public void broadcastEventMessage(MotechEvent motechEvent) {
+        record(1);
+    }
+
+    @Override
+    public void sendEventMessages(Collection<MotechEvent> motechEvents) {
+        record(motechEvents.size());
+    }
+
+    @Override
+    public void broadcastEventMessages(Collection<MotechEvent> motechEvents) {
+        record(motechEvents.size());
+    }
+
+    @Override
+    public void sendCoalescedEventMessage(MotechEvent motechEvent, String coalescingKey, CoalescingMode mode) {
+        record(1);
+    }
+
+    @Override
+    public void broadcastCoalescedEventMessage(MotechEvent motechEvent, String coalescingKey, CoalescingMode mode) {
+        record(1);
+    }
+
+    /**
+     * Waits until the given number of events was sent since the last reset.
+     *
+     * @param count the number of events to wait for
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all events were sent, false if the time ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long count, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (sent.get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return the time in milliseconds between the first and the last event sent since the last reset
+     */
+    public long getSendingTime() {
+        return lastSentAt.get() - firstSentAt.get();
+    }
+
+    public void reset() {
+        sent.set(0);
+        firstSentAt.set(0);
+        lastSentAt.set(0);
+    }
+
+    private void record(int count) {
+        long now = System.currentTimeMillis();
+        firstSentAt.compareAndSet(0, now);
+        lastSentAt.set(now);
+        sent.addAndGet(count);
+    }
+}
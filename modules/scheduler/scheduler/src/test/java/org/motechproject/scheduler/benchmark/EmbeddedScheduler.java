@@ -0,0 +1,148 @@
+package org.motechproject.scheduler.benchmark;
+
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl;
+import org.motechproject.scheduler.service.impl.SchedulerMetricsRecorder;
+import org.motechproject.server.config.SettingsFacade;
+import org.quartz.Scheduler;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * A scheduler running in the JVM of the benchmark, with its JDBC job store kept in an in-memory H2 database. The
+ * schema is created from the PostgreSQL migrations of the module, H2 runs in the PostgreSQL compatibility mode.
+ * Events of the fired jobs are sent to a {@link CountingEventRelay}.
+ */
+public class EmbeddedScheduler {
+
+    private static final String URL = "jdbc:h2:mem:motechquartz;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+    private static final String MIGRATIONS = "/db/migration/scheduler/default/";
+    private static final String[] SCRIPTS = {
+        "V1__Base_version_2.1.sql", "V2__MOTECH-1482.sql", "V3__Trigger_name_prefix_index.sql",
+        "V4__Trigger_fire_time_index.sql"
+    };
+
+    private final CountingEventRelay eventRelay = new CountingEventRelay();
+    private final MotechSchedulerFactoryBean schedulerFactoryBean;
+    private final MotechSchedulerServiceImpl schedulerService;
+    private final SchedulerMetricsRecorder metricsRecorder;
+
+    /**
+     * Creates the database and starts the scheduler.
+     *
+     * @param threadCount the number of worker threads, or "auto"
+     * @throws SQLException if the schema could not be created
+     * @throws IOException if the migrations could not be read
+     */
+    public EmbeddedScheduler(String threadCount) throws SQLException, IOException {
+        createSchema();
+
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("eventRelay", eventRelay);
+        applicationContext.refresh();
+
+        schedulerFactoryBean = new MotechSchedulerFactoryBean(applicationContext, getQuartzProperties(threadCount));
+        schedulerFactoryBean.init();
+
+        schedulerService = new MotechSchedulerServiceImpl(schedulerFactoryBean, new SettingsFacade());
+        metricsRecorder = new SchedulerMetricsRecorder(schedulerFactoryBean);
+        metricsRecorder.init();
+    }
+
+    public MotechSchedulerServiceImpl getSchedulerService() {
+        return schedulerService;
+    }
+
+    public CountingEventRelay getEventRelay() {
+        return eventRelay;
+    }
+
+    public SchedulerMetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    public Scheduler getQuartzScheduler() {
+        return schedulerFactoryBean.getQuartzScheduler();
+    }
+
+    /**
+     * Opens a connection to the database of the job store.
+     *
+     * @return the connection
+     * @throws SQLException if the connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(URL, "sa", "");
+    }
+
+    /**
+     * Stops the scheduler and drops the database.
+     *
+     * @throws SQLException if the database could not be dropped
+     */
+    public void shutdown() throws SQLException {
+        metricsRecorder.destroy();
+        schedulerFactoryBean.shutdown();
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private void createSchema() throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            for (String script : SCRIPTS) {
+                for (String sql : readStatements(script)) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private String[] readStatements(String script) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream(MIGRATIONS + script), StandardCharsets.UTF_8))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().startsWith("--")) {
+                    sb.append(line).append('\n');
+                }
+            }
+            // H2 has no operator classes, the indexes are created without them
+            return sb.toString().replace(" varchar_pattern_ops", "").trim().split(";\\s*");
+        }
+    }
+
+    private Properties getQuartzProperties(String threadCount) {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechBenchmarkScheduler");
+        properties.setProperty("org.quartz.scheduler.batchTriggerAcquisitionMaxCount", MotechSchedulerFactoryBean.AUTO);
+        properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        properties.setProperty("org.quartz.threadPool.threadCount", threadCount);
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.impl.jdbcjobstore.JobStoreTX");
+        properties.setProperty("org.quartz.jobStore.driverDelegateClass", "org.quartz.impl.jdbcjobstore.PostgreSQLDelegate");
+        properties.setProperty("org.quartz.jobStore.dataSource", "motechDS");
+        properties.setProperty("org.quartz.jobStore.tablePrefix", "QRTZ_");
+        properties.setProperty("org.quartz.jobStore.acquireTriggersWithinLock", "true");
+        properties.setProperty("org.quartz.jobStore.misfireThreshold", "1000");
+        properties.setProperty("org.quartz.jobStore.driverDelegateInitString",
+                "triggerPersistenceDelegateClasses=org.motechproject.scheduler.trigger.PeriodIntervalTriggerPersistenceDelegate");
+        properties.setProperty("org.quartz.dataSource.motechDS.driver", "org.h2.Driver");
+        properties.setProperty("org.quartz.dataSource.motechDS.URL", URL);
+        properties.setProperty("org.quartz.dataSource.motechDS.user", "sa");
+        properties.setProperty("org.quartz.dataSource.motechDS.password", "");
+        properties.setProperty("org.quartz.dataSource.motechDS.maxConnections", "30");
+        return properties;
+    }
+}
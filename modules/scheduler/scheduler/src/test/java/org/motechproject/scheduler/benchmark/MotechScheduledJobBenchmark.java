@@ -0,0 +1,101 @@
+package org.motechproject.scheduler.benchmark;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.service.impl.MotechScheduledJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.JobDetailImpl;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Measures the work done by {@link MotechScheduledJob} for every firing: building the event from the job data and
+ * handing it to the event relay, which only counts the events. Run with <code>mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=org.motechproject.scheduler.benchmark.MotechScheduledJobBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MotechScheduledJobBenchmark {
+
+    private final MotechScheduledJob job = new MotechScheduledJob();
+
+    private Scheduler scheduler;
+    private JobDetailImpl jobDetail;
+    private OperableTrigger trigger;
+    private Date fireTime;
+
+    @Setup
+    public void setUp() throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechJobBenchmarkScheduler");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        scheduler = new StdSchedulerFactory(properties).getScheduler();
+
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("eventRelay", new CountingEventRelay());
+        applicationContext.refresh();
+        scheduler.getContext().put("applicationContext", applicationContext);
+
+        JobDetail detail = newJob(MotechScheduledJob.class)
+                .withIdentity("org.motechproject.messagecampaign.fired-campaign-message-patient-12345")
+                .usingJobData(MotechEvent.EVENT_TYPE_KEY_NAME, "org.motechproject.messagecampaign.fired-campaign-message")
+                .usingJobData("ExternalID", "patient-12345")
+                .usingJobData("CampaignName", "Pregnancy Campaign")
+                .usingJobData("MessageKey", "week-12")
+                .build();
+        jobDetail = (JobDetailImpl) detail;
+
+        fireTime = new Date();
+        trigger = (OperableTrigger) newTrigger().forJob(detail).startAt(fireTime)
+                .withSchedule(simpleSchedule().withIntervalInHours(1).repeatForever()).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SchedulerException {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void execute() {
+        // the job store hands every firing its own copy of the job data, the job modifies it
+        JobDetailImpl firedJobDetail = (JobDetailImpl) jobDetail.clone();
+        TriggerFiredBundle bundle = new TriggerFiredBundle(firedJobDetail, trigger, null, false, fireTime, fireTime,
+                null, null);
+        job.execute(new JobExecutionContextImpl(scheduler, bundle, job));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MotechScheduledJobBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package org.motechproject.scheduler.benchmark;
+
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.motechproject.scheduler.trigger.PeriodIntervalTriggerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.BaseCalendar;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures computing fire times of period interval triggers, for a single fire time and for the 90 days schedules
+ * rendered for patients. Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.motechproject.scheduler.benchmark.PeriodIntervalTriggerBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PeriodIntervalTriggerBenchmark {
+
+    @Param({ "PT1H", "P1D", "P1W" })
+    private String repeatPeriod;
+
+    private PeriodIntervalTriggerImpl trigger;
+    private Date from;
+    private Date to;
+
+    @Setup
+    public void setUp() {
+        DateTime start = new DateTime(2015, 3, 1, 8, 0);
+
+        trigger = new PeriodIntervalTriggerImpl();
+        trigger.setName("benchmark-trigger");
+        trigger.setGroup("default");
+        trigger.setRepeatPeriod(Period.parse(repeatPeriod));
+        trigger.setStartTime(start.toDate());
+        trigger.computeFirstFireTime(null);
+
+        from = start.plusDays(30).toDate();
+        to = start.plusDays(120).toDate();
+    }
+
+    @Benchmark
+    public Date fireTimeAfter() {
+        return trigger.getFireTimeAfter(from);
+    }
+
+    @Benchmark
+    public List<Date> fireTimesOf90Days() {
+        return TriggerUtils.computeFireTimesBetween(trigger, new BaseCalendar(), from, to);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PeriodIntervalTriggerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
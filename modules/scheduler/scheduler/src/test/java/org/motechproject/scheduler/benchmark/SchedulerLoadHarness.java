@@ -0,0 +1,176 @@
+package org.motechproject.scheduler.benchmark;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.metrics.LatencyStatistics;
+import org.motechproject.scheduler.contract.CronJobId;
+import org.motechproject.scheduler.contract.CronSchedulableJob;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.RunOnceJobId;
+import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.motechproject.commons.date.util.DateUtil.now;
+
+/**
+ * Measures the throughput of the scheduler service and the sustained firing rate of jobs, with the scheduler running
+ * against an embedded H2 job store. The results are printed as CSV and optionally written to a file, so that they
+ * can be compared across versions. Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.motechproject.scheduler.benchmark.SchedulerLoadHarness -Dexec.args="[jobs] [threads] [file]"</code>,
+ * by default 2000 jobs are used and the thread pool is sized automatically.
+ */
+public final class SchedulerLoadHarness {
+
+    private static final String SUBJECT = "org.motechproject.scheduler.benchmark";
+    private static final int DEFAULT_JOBS = 2000;
+    private static final int FIRING_DELAY_SECONDS = 5;
+    private static final int FIRING_TIMEOUT_MINUTES = 10;
+
+    private final EmbeddedScheduler embeddedScheduler;
+    private final MotechSchedulerService schedulerService;
+    private final int jobs;
+    private final Map<String, String> results = new LinkedHashMap<>();
+
+    private SchedulerLoadHarness(EmbeddedScheduler embeddedScheduler, int jobs) {
+        this.embeddedScheduler = embeddedScheduler;
+        this.schedulerService = embeddedScheduler.getSchedulerService();
+        this.jobs = jobs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int jobs = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_JOBS;
+        String threadCount = (args.length > 1) ? args[1] : "auto";
+
+        EmbeddedScheduler embeddedScheduler = new EmbeddedScheduler(threadCount);
+        try {
+            SchedulerLoadHarness harness = new SchedulerLoadHarness(embeddedScheduler, jobs);
+            harness.run();
+            harness.report((args.length > 2) ? args[2] : null);
+        } finally {
+            embeddedScheduler.shutdown();
+        }
+    }
+
+    private void run() throws InterruptedException {
+        results.put("jobs", String.valueOf(jobs));
+        results.put("threadPoolSize", String.valueOf(embeddedScheduler.getMetricsRecorder().getThreadPoolSize()));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            schedulerService.scheduleJob(new CronSchedulableJob(createEvent(i), "0 0 12 * * ?"));
+        }
+        recordThroughput("schedule", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            schedulerService.rescheduleJob(SUBJECT, jobId(i), "0 30 14 * * ?");
+        }
+        recordThroughput("reschedule", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            schedulerService.getScheduledJobTimings(SUBJECT, jobId(i), now().toDate(), now().plusDays(90).toDate());
+        }
+        recordThroughput("jobTimings", start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            schedulerService.unscheduleJob(SUBJECT, jobId(i));
+        }
+        recordThroughput("unschedule", start);
+
+        List<SchedulableJob> batch = new ArrayList<>(jobs);
+        List<JobId> batchIds = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            batch.add(new CronSchedulableJob(createEvent(i), "0 0 12 * * ?"));
+            batchIds.add(new CronJobId(SUBJECT, jobId(i)));
+        }
+
+        start = System.nanoTime();
+        schedulerService.scheduleJobs(batch);
+        recordThroughput("batchSchedule", start);
+
+        start = System.nanoTime();
+        schedulerService.unscheduleJobs(batchIds);
+        recordThroughput("batchUnschedule", start);
+
+        measureFiring();
+    }
+
+    private void measureFiring() throws InterruptedException {
+        CountingEventRelay eventRelay = embeddedScheduler.getEventRelay();
+        eventRelay.reset();
+        embeddedScheduler.getMetricsRecorder().reset();
+
+        Date fireTime = now().plusSeconds(FIRING_DELAY_SECONDS).toDate();
+        List<SchedulableJob> batch = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            batch.add(new RunOnceSchedulableJob(createEvent(i), fireTime));
+        }
+        schedulerService.scheduleJobs(batch);
+
+        boolean completed = eventRelay.await(jobs, FIRING_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        long sendingTime = Math.max(1, eventRelay.getSendingTime());
+        results.put("firing.completed", String.valueOf(completed));
+        results.put("firing.eventsPerSecond", format(eventRelay.getSent() * 1000.0 / sendingTime));
+
+        LatencyStatistics lag = embeddedScheduler.getMetricsRecorder().getFiringLag();
+        results.put("firing.lag.p50Millis", String.valueOf(lag.getP50()));
+        results.put("firing.lag.p99Millis", String.valueOf(lag.getP99()));
+        results.put("firing.lag.maxMillis", String.valueOf(lag.getMaxTime()));
+        results.put("firing.misfired", String.valueOf(embeddedScheduler.getMetricsRecorder().getMisfiredCount()));
+
+        List<JobId> firedIds = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            firedIds.add(new RunOnceJobId(SUBJECT, jobId(i)));
+        }
+        schedulerService.unscheduleJobs(firedIds);
+    }
+
+    private void recordThroughput(String name, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        results.put(name + ".opsPerSecond", format(jobs / seconds));
+    }
+
+    private void report(String file) throws IOException {
+        StringBuilder csv = new StringBuilder("metric,value\n");
+        for (Map.Entry<String, String> result : results.entrySet()) {
+            csv.append(result.getKey()).append(',').append(result.getValue()).append('\n');
+        }
+
+        System.out.print(csv);
+        if (file != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+                writer.print(csv);
+            }
+        }
+    }
+
+    private MotechEvent createEvent(int i) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId(i));
+        params.put("ExternalID", "patient-" + i);
+        params.put("MessageKey", "week-12");
+        return new MotechEvent(SUBJECT, params);
+    }
+
+    private String jobId(int i) {
+        return "job-" + i;
+    }
+
+    private String format(double value) {
+        return String.format(Locale.ENGLISH, "%.1f", value);
+    }
+}
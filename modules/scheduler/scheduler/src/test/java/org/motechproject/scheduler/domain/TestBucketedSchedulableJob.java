@@ -0,0 +1,90 @@
+package org.motechproject.scheduler.domain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BucketDelivery;
+import org.motechproject.scheduler.contract.BucketedJobId;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBucketedSchedulableJob {
+
+    private MotechEvent motechEvent;
+    private Map<String, Map<String, Object>> entries;
+    private Date startDate;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("JobID", "bucket");
+        motechEvent = new MotechEvent("TestEvent", params);
+
+        entries = new LinkedHashMap<>();
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("phone", "123");
+        entries.put("patient1", entry);
+
+        startDate = new Date();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newConstructor_NullEvent() {
+        new BucketedSchedulableJob(null, startDate, entries);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newConstructor_NullDate() {
+        new BucketedSchedulableJob(motechEvent, null, entries);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newConstructor_NoEntries() {
+        new BucketedSchedulableJob(motechEvent, startDate, new HashMap<String, Map<String, Object>>());
+    }
+
+    @Test
+    public void shouldCopyEntriesAndDefaultToBatchDelivery() {
+        BucketedSchedulableJob job = new BucketedSchedulableJob(motechEvent, startDate, entries);
+        entries.put("patient2", new HashMap<String, Object>());
+
+        assertEquals(BucketDelivery.BATCH, job.getDelivery());
+        assertEquals(1, job.getEntries().size());
+        assertEquals("123", job.getEntries().get("patient1").get("phone"));
+    }
+
+    @Test
+    public void shouldReadEntriesOfBatchEvent() {
+        Map<String, Object> params = new HashMap<>();
+        params.put(BucketedSchedulableJob.ENTRIES_KEY, entries);
+
+        assertEquals(entries, BucketedSchedulableJob.getEntries(new MotechEvent("TestEvent", params)));
+        assertTrue(BucketedSchedulableJob.getEntries(motechEvent).isEmpty());
+    }
+
+    @Test
+    public void equalsTest() {
+        BucketedSchedulableJob job1 = new BucketedSchedulableJob(motechEvent, startDate, entries);
+        BucketedSchedulableJob job1Same = new BucketedSchedulableJob(motechEvent, startDate, entries);
+        BucketedSchedulableJob job2 = new BucketedSchedulableJob(motechEvent, startDate, entries,
+                BucketDelivery.STREAM);
+
+        assertTrue(job1.equals(job1Same));
+        assertEquals(job1.hashCode(), job1Same.hashCode());
+        assertFalse(job1.equals(job2));
+        assertFalse(job1.equals(null));
+    }
+
+    @Test
+    public void shouldBuildJobId() {
+        assertEquals("TestEvent-bucket-bucket", new BucketedJobId(motechEvent).value());
+    }
+}
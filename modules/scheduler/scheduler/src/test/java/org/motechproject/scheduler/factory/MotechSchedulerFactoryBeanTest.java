@@ -0,0 +1,57 @@
+package org.motechproject.scheduler.factory;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MotechSchedulerFactoryBeanTest {
+
+    private static final String THREAD_COUNT = "org.quartz.threadPool.threadCount";
+    private static final String BATCH_SIZE = "org.quartz.scheduler.batchTriggerAcquisitionMaxCount";
+    private static final String MAX_CONNECTIONS = "org.quartz.dataSource.motechDS.maxConnections";
+    private static final String IS_CLUSTERED = "org.quartz.jobStore.isClustered";
+    private static final String INSTANCE_ID = "org.quartz.scheduler.instanceId";
+
+    @Test
+    public void shouldSizeThreadPoolWithinDatabaseConnections() {
+        Properties properties = new Properties();
+        properties.setProperty(THREAD_COUNT, MotechSchedulerFactoryBean.AUTO);
+        properties.setProperty(BATCH_SIZE, MotechSchedulerFactoryBean.AUTO);
+        properties.setProperty(MAX_CONNECTIONS, "5");
+
+        Properties resolved = MotechSchedulerFactoryBean.resolveExecutionProperties(properties);
+
+        assertEquals("3", resolved.getProperty(THREAD_COUNT));
+        assertEquals("3", resolved.getProperty(BATCH_SIZE));
+        assertEquals(MotechSchedulerFactoryBean.AUTO, properties.getProperty(THREAD_COUNT));
+    }
+
+    @Test
+    public void shouldKeepExplicitSettings() {
+        Properties properties = new Properties();
+        properties.setProperty(THREAD_COUNT, "7");
+        properties.setProperty(BATCH_SIZE, MotechSchedulerFactoryBean.AUTO);
+
+        Properties resolved = MotechSchedulerFactoryBean.resolveExecutionProperties(properties);
+
+        assertEquals("7", resolved.getProperty(THREAD_COUNT));
+        assertEquals("7", resolved.getProperty(BATCH_SIZE));
+        assertFalse(resolved.containsKey(INSTANCE_ID));
+    }
+
+    @Test
+    public void shouldGenerateInstanceIdsForClusteredSchedulers() {
+        Properties properties = new Properties();
+        properties.setProperty(THREAD_COUNT, "3");
+        properties.setProperty(IS_CLUSTERED, "true");
+
+        Properties resolved = MotechSchedulerFactoryBean.resolveExecutionProperties(properties);
+
+        assertTrue(resolved.containsKey(INSTANCE_ID));
+        assertEquals("AUTO", resolved.getProperty(INSTANCE_ID));
+    }
+}
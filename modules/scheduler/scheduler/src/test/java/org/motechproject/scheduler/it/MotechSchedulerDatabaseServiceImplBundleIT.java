@@ -10,6 +10,7 @@ import org.junit.runner.RunWith;
 import org.motechproject.commons.date.model.DayOfWeek;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
 import org.motechproject.scheduler.contract.JobBasicInfo;
@@ -112,6 +113,38 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldGetJobTimesOfRescheduledJobs() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 6, 7, 15, 10, 0, 0));
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id");
+            schedulerService.scheduleJob(
+                    new CronSchedulableJob(
+                            new MotechEvent("test_event", params),
+                            "0 0 12 * * ?"
+                    ));
+            schedulerService.rescheduleJob("test_event", "job_id", "0 0 14 * * ?");
+
+            List<Date> eventTimes = schedulerService.getScheduledJobTimingsWithPrefix("test_event", "job",
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0).toDate(),
+                    newDateTime(CURRENT_YEAR + 6, 7, 16, 23, 0, 0).toDate());
+            assertEquals(asList(
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 14, 0, 0).toDate(),
+                    newDateTime(CURRENT_YEAR + 6, 7, 16, 14, 0, 0).toDate()),
+                    eventTimes);
+
+            schedulerService.unscheduleJob("test_event", "job_id");
+
+            assertEquals(0, schedulerService.getScheduledJobTimings("test_event", "job_id",
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0).toDate(),
+                    newDateTime(CURRENT_YEAR + 6, 7, 16, 23, 0, 0).toDate()).size());
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     @Test
     public void shouldGetScheduledJobsBasicInfo() throws SchedulerException, SQLException {
         try {
@@ -144,6 +177,19 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
                     )
             );
 
+            Map<String, Object> bucketParams = new HashMap<>();
+            bucketParams.put(MotechSchedulerService.JOB_ID_KEY, "bucket_id");
+            Map<String, Map<String, Object>> entries = new HashMap<>();
+            entries.put("recipient", new HashMap<String, Object>());
+
+            schedulerService.scheduleBucketedJob(
+                    new BucketedSchedulableJob(
+                            new MotechEvent("test_event_2", bucketParams),
+                            newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0).toDate(),
+                            entries
+                    )
+            );
+
 
             for (String groupName : scheduler.getJobGroupNames()) {
                 for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
@@ -183,6 +229,16 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
                             JobBasicInfo.JOBTYPE_REPEATING, ""
                     )
             );
+            expectedJobBasicInfos.add(
+                    new JobBasicInfo(
+                            JobBasicInfo.ACTIVITY_NOTSTARTED, JobBasicInfo.STATUS_OK,
+                            "test_event_2-bucket_id-bucket",
+                            format("%s-07-15 12:00:00", CURRENT_YEAR + 6),
+                            format("%s-07-15 12:00:00", CURRENT_YEAR + 6),
+                            format("%s-07-15 12:00:00", CURRENT_YEAR + 6),
+                            JobBasicInfo.JOBTYPE_REPEATING, ""
+                    )
+            );
 
 
             List<JobBasicInfo> jobBasicInfos;
@@ -200,10 +256,11 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
                         assertEquals(expectedJob.getStatus(), job.getStatus());
                         assertEquals(expectedJob.getStartDate(), job.getStartDate());
                         assertEquals(expectedJob.getNextFireDate(), job.getNextFireDate());
+                        assertEquals(expectedJob.getJobType(), job.getJobType());
                     }
                 }
             }
-            assertEquals(3, testJobsCount);
+            assertEquals(4, testJobsCount);
         } finally {
             stopFakingTime();
         }
@@ -431,6 +488,38 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldBrowseThroughPagesOfJobs() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 1, 7, 13, 10, 0, 0));
+            addTestJobs();
+
+            for (String sortColumn : asList("name", "startDate", "jobType")) {
+                for (String direction : asList("asc", "desc")) {
+                    JobsSearchSettings jobsSearchSettings = getGridSettings(null, null, sortColumn, direction);
+                    jobsSearchSettings.setName("test_event");
+                    List<String> allJobs = extract(databaseService.getScheduledJobsBasicInfo(jobsSearchSettings),
+                            on(JobBasicInfo.class).getName());
+
+                    // the following pages are read starting after the last job of the previous one
+                    List<String> browsedJobs = new ArrayList<>();
+                    for (int page = 1; page <= 3; page++) {
+                        jobsSearchSettings = getGridSettings(page, 2, sortColumn, direction);
+                        jobsSearchSettings.setName("test_event");
+                        List<JobBasicInfo> jobs = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+                        assertEquals(2, jobs.size());
+                        browsedJobs.addAll(extract(jobs, on(JobBasicInfo.class).getName()));
+                    }
+
+                    assertEquals(sortColumn + " " + direction, allJobs, browsedJobs);
+                    assertEquals(6, databaseService.countJobs(jobsSearchSettings));
+                }
+            }
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     private void addTestJobs() {
         Map<String, Object> params = new HashMap<>();
         params.put(MotechSchedulerService.JOB_ID_KEY, "job_id1");
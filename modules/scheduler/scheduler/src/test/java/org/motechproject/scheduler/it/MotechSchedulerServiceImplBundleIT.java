@@ -12,12 +12,17 @@ import org.motechproject.commons.date.model.Time;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.scheduler.contract.BucketDelivery;
+import org.motechproject.scheduler.contract.BucketedSchedulableJob;
 import org.motechproject.scheduler.contract.CronJobId;
 import org.motechproject.scheduler.contract.CronSchedulableJob;
 import org.motechproject.scheduler.contract.DayOfWeekSchedulableJob;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.contract.JobsBatchResult;
 import org.motechproject.scheduler.contract.RepeatingPeriodSchedulableJob;
 import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerService;
@@ -29,6 +34,8 @@ import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
 import org.ops4j.pax.exam.spi.reactors.PerSuite;
 import org.ops4j.pax.exam.util.Filter;
 import org.osgi.framework.BundleContext;
+import org.quartz.CronTrigger;
+import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.quartz.Trigger;
@@ -42,6 +49,8 @@ import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.motechproject.commons.date.util.DateUtil.newDate;
@@ -343,6 +352,39 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         schedulerService.scheduleRunOnceJob(null);
     }
 
+    @Test
+    public void shouldScheduleBucketedJob() throws SchedulerException {
+        try {
+            fakeNow(newDateTime(2020, 7, 15, 10, 0, 0));
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "bucket_id");
+            MotechEvent event = new MotechEvent("test_event", params);
+
+            Map<String, Map<String, Object>> entries = new HashMap<>();
+            entries.put("patient1", new HashMap<String, Object>());
+            schedulerService.scheduleBucketedJob(new BucketedSchedulableJob(event,
+                    newDateTime(2020, 7, 15, 12, 0, 0).toDate(), entries));
+
+            entries.put("patient2", new HashMap<String, Object>());
+            schedulerService.scheduleBucketedJob(new BucketedSchedulableJob(event,
+                    newDateTime(2020, 7, 15, 13, 0, 0).toDate(), entries, BucketDelivery.STREAM));
+
+            List<DateTime> fireTimes = getFireTimes("test_event-bucket_id-bucket");
+            assertEquals(asList(newDateTime(2020, 7, 15, 13, 0, 0)), fireTimes);
+
+            Map<?, ?> storedEntries = (Map<?, ?>) scheduler.getJobDetail(
+                    new JobKey("test_event-bucket_id-bucket", "default")).getJobDataMap()
+                    .get(BucketedSchedulableJob.ENTRIES_KEY);
+            assertEquals(2, storedEntries.size());
+
+            schedulerService.unscheduleBucketedJob("test_event", "bucket_id");
+            assertNull(scheduler.getTrigger(triggerKey("test_event-bucket_id-bucket", "default")));
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     @Test
     public void shouldScheduleRepeatJobBoundByCount() throws SchedulerException {
         try {
@@ -602,6 +644,90 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         assertNull(scheduler.getTrigger(triggerKey("test_event3-job_id", "default")));
     }
 
+    @Test
+    public void shouldUnscheduleOnlyJobsStartingWithTheGivenJobIdPrefix() throws SchedulerException {
+        try {
+            schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", jobParams("job_id")), "0 0 12 * * ?"));
+            schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("other_test_event", jobParams("job_id")), "0 0 13 * * ?"));
+            schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("testXevent", jobParams("job_id")), "0 0 14 * * ?"));
+
+            schedulerService.unscheduleAllJobs("test_event");
+
+            assertNull(scheduler.getTrigger(triggerKey("test_event-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("other_test_event-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("testXevent-job_id", "default")));
+        } finally {
+            schedulerService.unscheduleAllJobs("other_test_event");
+            schedulerService.unscheduleAllJobs("testXevent");
+        }
+    }
+
+    @Test
+    public void shouldScheduleBatchOfJobsReportingFailures() throws SchedulerException {
+        try {
+            fakeNow(newDateTime(2020, 7, 15, 10, 0, 0));
+
+            List<SchedulableJob> jobs = new ArrayList<>();
+            jobs.add(new CronSchedulableJob(new MotechEvent("test_event", jobParams("batch_cron")), "0 0 12 * * ?"));
+            jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", jobParams("batch_runonce")),
+                    newDateTime(2020, 7, 15, 12, 0, 0).toDate()));
+            jobs.add(new CronSchedulableJob(new MotechEvent("test_event", jobParams("batch_invalid")), "invalid"));
+            jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", jobParams("batch_past")),
+                    newDateTime(2020, 7, 15, 8, 0, 0).toDate()));
+
+            JobsBatchResult result = schedulerService.scheduleJobs(jobs);
+
+            assertEquals(asList("test_event-batch_cron", "test_event-batch_runonce-runonce"), result.getSucceededJobIds());
+            assertEquals(2, result.getFailures().size());
+            assertEquals(2, result.getFailures().get(0).getIndex());
+            assertEquals("test_event-batch_invalid", result.getFailures().get(0).getJobId());
+            assertEquals(3, result.getFailures().get(1).getIndex());
+
+            assertEquals(asList(newDateTime(2020, 7, 15, 12, 0, 0)), getFireTimes("test_event-batch_runonce-runonce"));
+            assertNotNull(scheduler.getTrigger(triggerKey("test_event-batch_cron", "default")));
+            assertNull(scheduler.getTrigger(triggerKey("test_event-batch_invalid", "default")));
+        } finally {
+            stopFakingTime();
+        }
+    }
+
+    @Test
+    public void shouldReplaceExistingJobsWhenSchedulingBatch() throws SchedulerException {
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", jobParams("batch_job")), "0 0 12 * * ?"));
+
+        JobsBatchResult result = schedulerService.scheduleJobs(asList(
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("batch_job")), "0 0 13 * * ?"),
+                new CronSchedulableJob(new MotechEvent("test_event", jobParams("batch_job")), "0 0 14 * * ?")));
+
+        assertFalse(result.hasFailures());
+        assertEquals("0 0 14 * * ?",
+                ((CronTrigger) scheduler.getTrigger(triggerKey("test_event-batch_job", "default"))).getCronExpression());
+    }
+
+    @Test
+    public void shouldUnscheduleBatchOfJobs() throws SchedulerException {
+        List<JobId> jobIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MotechEvent event = new MotechEvent("test_event", jobParams("batch_" + i));
+            schedulerService.scheduleJob(new CronSchedulableJob(event, "0 0 12 * * ?"));
+            jobIds.add(new CronJobId(event));
+        }
+        jobIds.add(new CronJobId("test_event", "not_scheduled"));
+
+        JobsBatchResult result = schedulerService.unscheduleJobs(jobIds);
+
+        assertFalse(result.hasFailures());
+        for (int i = 0; i < 3; i++) {
+            assertNull(scheduler.getTrigger(triggerKey("test_event-batch_" + i, "default")));
+        }
+    }
+
+    private Map<String, Object> jobParams(String jobId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+        return params;
+    }
+
     private List<DateTime> getFireTimes(String triggerKey) throws SchedulerException {
         Trigger trigger = scheduler.getTrigger(triggerKey(triggerKey, "default"));
         List<DateTime> fireTimes = new ArrayList<>();
@@ -0,0 +1,126 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.scheduler.benchmark.EmbeddedScheduler;
+import org.motechproject.scheduler.contract.CronJobId;
+import org.motechproject.scheduler.contract.CronSchedulableJob;
+import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.quartz.Scheduler;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.spi.OperableTrigger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FireTimeIndexTest {
+
+    private static final String SUBJECT = "test_event";
+    private static final String JOB_ID = "job_id";
+
+    private EmbeddedScheduler embeddedScheduler;
+    private MotechSchedulerService schedulerService;
+
+    @Before
+    public void setUp() throws Exception {
+        embeddedScheduler = new EmbeddedScheduler("1");
+        schedulerService = embeddedScheduler.getSchedulerService();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        embeddedScheduler.shutdown();
+    }
+
+    @Test
+    public void shouldIndexBatchOfScheduledJobsInBackground() throws Exception {
+        List<SchedulableJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            jobs.add(new CronSchedulableJob(createEvent(JOB_ID + i), "0 0 12 * * ?"));
+        }
+
+        schedulerService.scheduleJobs(jobs);
+
+        assertTrue(awaitIndexed(250));
+    }
+
+    @Test
+    public void shouldNotReturnIndexedFireTimesWhichHavePassed() throws Exception {
+        schedulerService.scheduleJob(new CronSchedulableJob(createEvent(JOB_ID), "0/2 * * * * ?"));
+        assertTrue(awaitIndexed(1));
+        Date startDate = new Date(readIndexedFrom());
+
+        assertTrue(embeddedScheduler.getEventRelay().await(2, 10, TimeUnit.SECONDS));
+
+        // keep the next fire time of the trigger still while the fire times are compared
+        Scheduler scheduler = embeddedScheduler.getQuartzScheduler();
+        TriggerKey triggerKey = new TriggerKey(new CronJobId(SUBJECT, JOB_ID).value(),
+                MotechSchedulerServiceImpl.JOB_GROUP_NAME);
+        scheduler.pauseTrigger(triggerKey);
+
+        Date endDate = new Date(startDate.getTime() + TimeUnit.MINUTES.toMillis(1));
+        List<Date> expected = TriggerUtils.computeFireTimesBetween((OperableTrigger) scheduler.getTrigger(triggerKey),
+                new BaseCalendar(), startDate, endDate);
+
+        List<Date> covered = schedulerService.getScheduledJobTimings(SUBJECT, JOB_ID, startDate, endDate);
+        deleteIndexedRanges();
+        List<Date> uncovered = schedulerService.getScheduledJobTimings(SUBJECT, JOB_ID, startDate, endDate);
+
+        assertFalse(expected.isEmpty());
+        assertTrue(expected.get(0).getTime() > startDate.getTime() + TimeUnit.SECONDS.toMillis(2));
+        assertEquals(expected, covered);
+        assertEquals(expected, uncovered);
+    }
+
+    private MotechEvent createEvent(String jobId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+        return new MotechEvent(SUBJECT, params);
+    }
+
+    private boolean awaitIndexed(int count) throws SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < deadline) {
+            if (queryLong("SELECT COUNT(*) FROM qrtz_fire_time_ranges") >= count) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private long readIndexedFrom() throws SQLException {
+        return queryLong("SELECT MIN(indexed_from) FROM qrtz_fire_time_ranges");
+    }
+
+    private void deleteIndexedRanges() throws SQLException {
+        try (Connection conn = embeddedScheduler.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM qrtz_fire_time_ranges");
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Connection conn = embeddedScheduler.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.metrics.LatencyStatistics;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class SchedulerMetricsRecorderTest {
+
+    @Mock
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+
+    @Mock
+    private Trigger trigger;
+
+    @Mock
+    private JobExecutionContext context;
+
+    private SchedulerMetricsRecorder recorder;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        recorder = new SchedulerMetricsRecorder(motechSchedulerFactoryBean);
+    }
+
+    @Test
+    public void shouldRecordFiringLagAndExecutionTime() {
+        when(context.getScheduledFireTime()).thenReturn(new Date(10000));
+        when(context.getFireTime()).thenReturn(new Date(10150));
+        when(context.getJobRunTime()).thenReturn(30L);
+
+        recorder.triggerFired(trigger, context);
+        recorder.triggerComplete(trigger, context, Trigger.CompletedExecutionInstruction.NOOP);
+
+        assertEquals(1, recorder.getFiredCount());
+
+        LatencyStatistics firingLag = recorder.getFiringLag();
+        assertEquals(1, firingLag.getCount());
+        assertEquals(150, firingLag.getMaxTime());
+
+        LatencyStatistics executionTime = recorder.getExecutionTime();
+        assertEquals(1, executionTime.getCount());
+        assertEquals(30, executionTime.getMaxTime());
+    }
+
+    @Test
+    public void shouldCountMisfiresAndReset() {
+        recorder.triggerMisfired(trigger);
+        recorder.triggerMisfired(trigger);
+
+        assertEquals(2, recorder.getMisfiredCount());
+
+        recorder.reset();
+
+        assertEquals(0, recorder.getMisfiredCount());
+        assertEquals(0, recorder.getFiringLag().getCount());
+    }
+}
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -74,6 +75,26 @@ public class JobsControllerTest {
         verify(motechSchedulerDatabaseService).getScheduledJobsBasicInfo(jobsSearchSettings);
     }
 
+    @Test
+    public void shouldCountJobsOnlyIfThereAreMorePages() throws SchedulerException, SQLException {
+        List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
+        JobsSearchSettings jobsSearchSettings = getDefaultGridSettings();
+        when(motechSchedulerDatabaseService.getScheduledJobsBasicInfo(jobsSearchSettings)).thenReturn(jobBasicInfos);
+
+        JobsRecords result = jobsController.retrieveJobInfo(jobsSearchSettings);
+
+        assertEquals(Integer.valueOf(jobBasicInfos.size()), result.getRecords());
+        verify(motechSchedulerDatabaseService, never()).countJobs(jobsSearchSettings);
+
+        jobsSearchSettings.setRows(jobBasicInfos.size());
+        when(motechSchedulerDatabaseService.countJobs(jobsSearchSettings)).thenReturn(25);
+
+        result = jobsController.retrieveJobInfo(jobsSearchSettings);
+
+        assertEquals(Integer.valueOf(25), result.getRecords());
+        verify(motechSchedulerDatabaseService).countJobs(jobsSearchSettings);
+    }
+
     @Test
     public void shouldGetJobeDetailedInfo() throws SchedulerException, SQLException {
         List<JobBasicInfo> jobBasicInfos = getTestJobBasicInfos();
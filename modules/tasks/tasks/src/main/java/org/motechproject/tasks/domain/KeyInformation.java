@@ -31,6 +31,15 @@ public final class KeyInformation {
      */
     public static final String ADDITIONAL_DATA_PREFIX = "ad";
 
+    /**
+     * The pattern of fields within a string, see {@link #parseAll(String)}. The first group of a match is the field.
+     */
+    public static final Pattern FIELD_PATTERN = Pattern.compile("\\{\\{((.*?))(\\}\\})(?![^(]*\\))");
+
+    private static final Pattern ADDITIONAL_DATA_PATTERN = Pattern.compile(
+            "([a-zA-Z0-9]+)\\.([\\.a-zA-Z0-9\\-]+)#(\\d+)\\.(.+)"
+    );
+
     private static final int DATA_PROVIDER_ID_IDX = 1;
     private static final int OBJECT_TYPE_IDX = 2;
     private static final int OBJECT_ID_IDX = 3;
@@ -110,8 +119,7 @@ public final class KeyInformation {
         if (prefix.equalsIgnoreCase(TRIGGER_PREFIX)) {
             key = new KeyInformation(input, prefix, withoutManipulation, manipulations);
         } else if (prefix.equalsIgnoreCase(ADDITIONAL_DATA_PREFIX)) {
-            Pattern pattern = Pattern.compile("([a-zA-Z0-9]+)\\.([\\.a-zA-Z0-9\\-]+)#(\\d+)\\.(.+)");
-            Matcher matcher = pattern.matcher(withoutManipulation);
+            Matcher matcher = ADDITIONAL_DATA_PATTERN.matcher(withoutManipulation);
 
             if (matcher.matches()) {
                 String dataProviderId = matcher.group(DATA_PROVIDER_ID_IDX);
@@ -165,8 +173,7 @@ public final class KeyInformation {
      */
     public static List<KeyInformation> parseAll(String input) {
         List<KeyInformation> keys = new ArrayList<>();
-        Pattern pattern = Pattern.compile("\\{\\{((.*?))(\\}\\})(?![^(]*\\))");
-        Matcher matcher = pattern.matcher(isEmpty(input) ? "" : input);
+        Matcher matcher = FIELD_PATTERN.matcher(isEmpty(input) ? "" : input);
 
         while (matcher.find()) {
             keys.add(KeyInformation.parse(matcher.group(1)));
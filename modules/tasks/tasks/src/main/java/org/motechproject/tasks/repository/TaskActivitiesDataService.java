@@ -1,5 +1,7 @@
 package org.motechproject.tasks.repository;
 
+import org.joda.time.DateTime;
+import org.motechproject.commons.api.Range;
 import org.motechproject.mds.annotations.Lookup;
 import org.motechproject.mds.annotations.LookupField;
 import org.motechproject.mds.query.QueryParams;
@@ -17,6 +19,8 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
 
     String TASK = "task";
     String ACTIVITY_TYPE = "activityType";
+    String MESSAGE = "message";
+    String DATE = "date";
 
     /**
      * Returns the list of activities for the given task id.
@@ -51,4 +55,40 @@ public interface TaskActivitiesDataService extends MotechDataService<TaskActivit
     long countByTaskAndActivityTypes(@LookupField(name = TASK) final Long task,
                                      @LookupField(name = ACTIVITY_TYPE) final Set<TaskActivityType> activityTypes);
 
+    /**
+     * Returns the activities with their date in the given range. Leaving the min value empty will result in
+     * retrieving all activities older than the max value.
+     *
+     * @param date  the range in which the date of the activity must fall
+     * @param queryParams  the query parameters to use
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Date")
+    List<TaskActivity> byDate(@LookupField(name = DATE) final Range<DateTime> date, QueryParams queryParams);
+
+    /**
+     * Returns the activities with the given message and their date in the given range.
+     *
+     * @param message  the message key of the activity
+     * @param date  the range in which the date of the activity must fall
+     * @param queryParams  the query parameters to use
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Message and Date")
+    List<TaskActivity> byMessageAndDate(@LookupField(name = MESSAGE) final String message,
+                                        @LookupField(name = DATE) final Range<DateTime> date,
+                                        QueryParams queryParams);
+
+    /**
+     * Returns the activities of the given task, with the given message and their date in the given range.
+     *
+     * @param task  the id of the task
+     * @param message  the message key of the activity
+     * @param date  the range in which the date of the activity must fall
+     * @return the list of matching task activities
+     */
+    @Lookup(name = "By Task, Message and Date")
+    List<TaskActivity> byTaskMessageAndDate(@LookupField(name = TASK) final Long task,
+                                            @LookupField(name = MESSAGE) final String message,
+                                            @LookupField(name = DATE) final Range<DateTime> date);
 }
@@ -0,0 +1,222 @@
+package org.motechproject.tasks.service;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the OSGi services called by task actions and of the invokers of their methods. A service is looked up in
+ * the bundle context on its first use only, and every method of the service is resolved once for each signature,
+ * into an {@link ActionInvoker} bound to the service. Cached services are released whenever a service registered under
+ * their interface changes, e.g. when the bundle providing the service is stopped, so that they are looked up again on
+ * their next use.
+ */
+class ActionInvokerCache implements ServiceListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionInvokerCache.class);
+
+    private final BundleContext bundleContext;
+    private final Map<String, BoundService> services = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param bundleContext  the context used to look up the services, not null
+     */
+    ActionInvokerCache(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    /**
+     * Starts listening to changes of the services.
+     */
+    void open() {
+        bundleContext.addServiceListener(this);
+    }
+
+    /**
+     * Stops listening to changes of the services and releases all cached services.
+     */
+    synchronized void close() {
+        bundleContext.removeServiceListener(this);
+
+        for (BoundService service : services.values()) {
+            release(service);
+        }
+        services.clear();
+    }
+
+    /**
+     * Returns the service registered under the given interface.
+     *
+     * @param serviceInterface  the interface of the service
+     * @return the service, null if there is no such service
+     */
+    BoundService getService(String serviceInterface) {
+        BoundService service = services.get(serviceInterface);
+        return (service == null) ? lookupService(serviceInterface) : service;
+    }
+
+    @Override
+    public synchronized void serviceChanged(ServiceEvent event) {
+        String[] interfaces = (String[]) event.getServiceReference().getProperty(Constants.OBJECTCLASS);
+
+        for (String serviceInterface : interfaces) {
+            BoundService service = services.remove(serviceInterface);
+            if (service != null) {
+                LOGGER.debug("Service {} changed, releasing it", serviceInterface);
+                release(service);
+            }
+        }
+    }
+
+    private synchronized BoundService lookupService(String serviceInterface) {
+        BoundService service = services.get(serviceInterface);
+
+        if (service == null) {
+            ServiceReference reference = bundleContext.getServiceReference(serviceInterface);
+            Object object = (reference == null) ? null : bundleContext.getService(reference);
+
+            if (object != null) {
+                service = new BoundService(reference, object);
+                services.put(serviceInterface, service);
+            }
+        }
+
+        return service;
+    }
+
+    private void release(BoundService service) {
+        try {
+            bundleContext.ungetService(service.reference);
+        } catch (IllegalStateException e) {
+            LOGGER.debug("Unable to release service, the bundle context is no longer valid", e);
+        }
+    }
+
+    /**
+     * A service held by the cache, with the invokers of its methods.
+     */
+    static final class BoundService {
+        private final ServiceReference reference;
+        private final Object service;
+        private final Map<List<Object>, ActionInvoker> invokers = new ConcurrentHashMap<>();
+
+        private BoundService(ServiceReference reference, Object service) {
+            this.reference = reference;
+            this.service = service;
+        }
+
+        /**
+         * Returns the invoker of the given method of this service.
+         *
+         * @param methodName  the name of the method
+         * @param parameterTypes  the types of the method parameters
+         * @return the invoker
+         * @throws NoSuchMethodException if the service does not have such method
+         */
+        ActionInvoker getInvoker(String methodName, Class[] parameterTypes) throws NoSuchMethodException {
+            List<Object> signature = new ArrayList<>(parameterTypes.length + 1);
+            signature.add(methodName);
+            signature.addAll(Arrays.asList(parameterTypes));
+
+            ActionInvoker invoker = invokers.get(signature);
+
+            if (invoker == null) {
+                invoker = new ActionInvoker(service, service.getClass().getMethod(methodName, parameterTypes));
+                invokers.put(signature, invoker);
+            }
+
+            return invoker;
+        }
+    }
+
+    /**
+     * Invokes a method of a service with an array of arguments. The method is pre-bound to the service as a method
+     * handle, so invoking it costs about as much as calling it directly. Methods which can not be accessed through
+     * a method handle, and arguments which do not exactly match the parameters of the method, are handled
+     * reflectively, so that arguments are converted and rejected the same way as by {@link Method#invoke}.
+     */
+    static final class ActionInvoker {
+        private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+        private final Object service;
+        private final Method method;
+        private final Class<?>[] parameterTypes;
+        private final Class<?>[] argumentTypes;
+        private final MethodHandle handle;
+
+        private ActionInvoker(Object service, Method method) {
+            this.service = service;
+            this.method = method;
+            this.parameterTypes = method.getParameterTypes();
+            this.argumentTypes = MethodType.methodType(void.class, parameterTypes).wrap().parameterArray();
+
+            MethodHandle bound;
+            try {
+                bound = MethodHandles.lookup().unreflect(method).asFixedArity().bindTo(service)
+                        .asSpreader(Object[].class, parameterTypes.length).asType(INVOKER_TYPE);
+            } catch (IllegalAccessException e) {
+                LOGGER.debug("Method {} will be invoked reflectively", method, e);
+                bound = null;
+            }
+            this.handle = bound;
+        }
+
+        /**
+         * Invokes the method with the given arguments.
+         *
+         * @param args  the arguments, in the order of the method parameters
+         * @return the value returned by the method, null for void methods
+         * @throws InvocationTargetException if the method threw an exception or an error
+         * @throws IllegalAccessException if the method can not be accessed
+         * @throws IllegalArgumentException if the arguments do not fit the method parameters
+         */
+        Object invoke(Object[] args) throws InvocationTargetException, IllegalAccessException {
+            if (handle == null || !matchesExactly(args)) {
+                return method.invoke(service, args);
+            }
+
+            // the arguments were checked, so anything thrown here comes from the method itself and is wrapped
+            // the same way as by Method.invoke, errors included
+            try {
+                return (Object) handle.invokeExact(args);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private boolean matchesExactly(Object[] args) {
+            if (args == null || args.length != argumentTypes.length) {
+                return false;
+            }
+
+            for (int i = 0; i < args.length; i++) {
+                boolean matches = (args[i] == null)
+                        ? !parameterTypes[i].isPrimitive()
+                        : argumentTypes[i].isInstance(args[i]);
+
+                if (!matches) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A key of a task, e.g. <i>trigger.message?format(Ala,cat)?capitalize</i>, compiled once into its
+ * {@link KeyInformation} and the chain of its {@link ManipulationStep}s. Compiled keys are cached by their string
+ * representation, so keys used by the actions and filters of tasks are parsed only on their first use.
+ */
+final class CompiledKey {
+
+    private static final int CACHE_SIZE = 4096;
+    private static final Map<String, CompiledKey> CACHE = new ConcurrentHashMap<>();
+
+    private final KeyInformation keyInformation;
+    private final List<ManipulationStep> manipulations;
+
+    private CompiledKey(KeyInformation keyInformation) {
+        this.keyInformation = keyInformation;
+
+        List<ManipulationStep> steps = new ArrayList<>(keyInformation.getManipulations().size());
+        for (String manipulation : keyInformation.getManipulations()) {
+            steps.add(ManipulationStep.compile(manipulation));
+        }
+        this.manipulations = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Returns the compiled form of the given key.
+     *
+     * @param key  the string representation of the key, not null
+     * @return the compiled key
+     * @throws IllegalArgumentException if the key has incorrect format, see {@link KeyInformation#parse(String)}
+     */
+    static CompiledKey compile(String key) {
+        CompiledKey compiled = CACHE.get(key);
+
+        if (compiled == null) {
+            compiled = new CompiledKey(KeyInformation.parse(key));
+            cache(key, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Returns the compiled form of the given key.
+     *
+     * @param keyInformation  the key, not null
+     * @return the compiled key
+     */
+    static CompiledKey compile(KeyInformation keyInformation) {
+        CompiledKey compiled = CACHE.get(keyInformation.getOriginalKey());
+
+        if (compiled == null || !compiled.keyInformation.equals(keyInformation)) {
+            compiled = new CompiledKey(keyInformation);
+            cache(keyInformation.getOriginalKey(), compiled);
+        }
+
+        return compiled;
+    }
+
+    private static void cache(String key, CompiledKey compiled) {
+        if (CACHE.size() >= CACHE_SIZE) {
+            CACHE.clear();
+        }
+        CACHE.put(key, compiled);
+    }
+
+    KeyInformation getKeyInformation() {
+        return keyInformation;
+    }
+
+    List<ManipulationStep> getManipulations() {
+        return manipulations;
+    }
+}
@@ -0,0 +1,111 @@
+package org.motechproject.tasks.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of the objects found by data providers. A burst of trigger events handled within the time to live
+ * of the cache, e.g. events published for many recipients at once, executes every identical lookup of its tasks only
+ * once. Objects are cached only if they were found, so data sources which are missing are looked up every time.
+ */
+class DataSourceLookupCache {
+
+    private static final int CACHE_SIZE = 4096;
+
+    private final Map<LookupKey, CachedObject> cache = new ConcurrentHashMap<>();
+    private final long timeToLive;
+
+    /**
+     * Class constructor.
+     *
+     * @param timeToLive  the time, in milliseconds, for which the found objects are cached
+     */
+    DataSourceLookupCache(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the object found by the given lookup, if it is still cached.
+     *
+     * @param providerName  the name of the data provider
+     * @param type  the type of the object
+     * @param lookupName  the name of the lookup
+     * @param lookupFields  the fields of the lookup
+     * @return the cached object, null if the lookup has to be executed
+     */
+    Object get(String providerName, String type, String lookupName, Map<String, String> lookupFields) {
+        LookupKey key = new LookupKey(providerName, type, lookupName, lookupFields);
+        CachedObject cached = cache.get(key);
+
+        if (cached != null && cached.expiresAt < System.currentTimeMillis()) {
+            cache.remove(key);
+            cached = null;
+        }
+
+        return (cached == null) ? null : cached.object;
+    }
+
+    /**
+     * Caches the object found by the given lookup. Null objects are not cached.
+     *
+     * @param providerName  the name of the data provider
+     * @param type  the type of the object
+     * @param lookupName  the name of the lookup
+     * @param lookupFields  the fields of the lookup
+     * @param object  the found object
+     */
+    void put(String providerName, String type, String lookupName, Map<String, String> lookupFields, Object object) {
+        if (object != null) {
+            if (cache.size() >= CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(new LookupKey(providerName, type, lookupName, lookupFields),
+                    new CachedObject(object, System.currentTimeMillis() + timeToLive));
+        }
+    }
+
+    private static final class CachedObject {
+        private final Object object;
+        private final long expiresAt;
+
+        private CachedObject(Object object, long expiresAt) {
+            this.object = object;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class LookupKey {
+        private final String providerName;
+        private final String type;
+        private final String lookupName;
+        private final Map<String, String> lookupFields;
+
+        private LookupKey(String providerName, String type, String lookupName, Map<String, String> lookupFields) {
+            this.providerName = providerName;
+            this.type = type;
+            this.lookupName = lookupName;
+            this.lookupFields = new HashMap<>(lookupFields);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LookupKey)) {
+                return false;
+            }
+
+            LookupKey other = (LookupKey) obj;
+            return Objects.equals(providerName, other.providerName) && Objects.equals(type, other.type) &&
+                    Objects.equals(lookupName, other.lookupName) && Objects.equals(lookupFields, other.lookupFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerName, type, lookupName, lookupFields);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package org.motechproject.tasks.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.WordUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * A single manipulation of a key, compiled once from its string representation, e.g. <i>datetime(yyyy-MM-dd)</i>.
+ * The arguments of the manipulation, such as date formatters, split patterns and indexes, are parsed when the
+ * manipulation is compiled, so applying it does not parse any strings. If the arguments can not be parsed, they are
+ * parsed again every time the manipulation is applied, so that it fails the same way as it would without compilation.
+ */
+final class ManipulationStep {
+
+    private static final int JOIN_PATTERN_BEGIN_INDEX = 5;
+    private static final int DATETIME_PATTERN_BEGIN_INDEX = 9;
+    private static final int FORMAT_PATTERN_BEGIN_INDEX = 7;
+    private static final int SUBSTRING_PATTERN_BEGIN_INDEX = 10;
+    private static final int SPLIT_PATTERN_BEGIN_INDEX = 6;
+    private static final int PLUS_DAYS_PATTERN_BEGIN_INDEX = 9;
+    private static final int MINUS_DAYS_PATTERN_BEGIN_INDEX = 10;
+    private static final int PLUS_HOURS_PATTERN_BEGIN_INDEX = 10;
+    private static final int MINUS_HOURS_PATTERN_BEGIN_INDEX = 11;
+    private static final int PLUS_MINUTES_PATTERN_BEGIN_INDEX = 12;
+    private static final int MINUS_MINUTES_PATTERN_BEGIN_INDEX = 13;
+    private static final int PARSE_DATE_PATTERN_BEGIN_INDEX = 10;
+
+    private static final String PARSED_DATE_PATTERN = "yyyy-MM-dd HH:mm Z";
+    private static final String WARNING = "task.warning.manipulation";
+
+    private enum Kind {
+        FORMAT, JOIN, DATETIME, SUBSTRING, SPLIT, PARSEDATE, DATE_CHANGE, SIMPLE
+    }
+
+    private enum DateField {
+        DAYS, HOURS, MINUTES
+    }
+
+    private final String manipulation;
+    private final Kind kind;
+    private final Object argument;
+    private final boolean compiled;
+
+    private ManipulationStep(String manipulation, Kind kind, Object argument, boolean compiled) {
+        this.manipulation = manipulation;
+        this.kind = kind;
+        this.argument = argument;
+        this.compiled = compiled;
+    }
+
+    /**
+     * Compiles the given manipulation of a key. Manipulations containing <i>format</i> are treated as format
+     * manipulations, which may refer to other keys.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the compiled manipulation
+     */
+    static ManipulationStep compile(String manipulation) {
+        return compile(manipulation, manipulation.contains("format") ? Kind.FORMAT : kindOf(manipulation));
+    }
+
+    /**
+     * Compiles the given manipulation of a value, format manipulations are not recognized.
+     *
+     * @param manipulation  the string representation of the manipulation, not null
+     * @return the compiled manipulation
+     */
+    static ManipulationStep compileValueManipulation(String manipulation) {
+        return compile(manipulation, kindOf(manipulation));
+    }
+
+    private static ManipulationStep compile(String manipulation, Kind kind) {
+        try {
+            return new ManipulationStep(manipulation, kind, parseArgument(kind, manipulation), true);
+        } catch (RuntimeException e) {
+            return new ManipulationStep(manipulation, kind, null, false);
+        }
+    }
+
+    private static Kind kindOf(String manipulation) {
+        String lowerCase = manipulation.toLowerCase();
+        Kind kind;
+
+        if (lowerCase.contains("join")) {
+            kind = Kind.JOIN;
+        } else if (lowerCase.contains("datetime")) {
+            kind = Kind.DATETIME;
+        } else if (lowerCase.contains("substring")) {
+            kind = Kind.SUBSTRING;
+        } else if (lowerCase.contains("split")) {
+            kind = Kind.SPLIT;
+        } else if (lowerCase.contains("parsedate")) {
+            kind = Kind.PARSEDATE;
+        } else if (lowerCase.contains("plus") || lowerCase.contains("minus")) {
+            kind = Kind.DATE_CHANGE;
+        } else {
+            kind = Kind.SIMPLE;
+        }
+
+        return kind;
+    }
+
+    /**
+     * Checks whether this is a format manipulation, which has to be applied by the {@link KeyEvaluator}, since its
+     * arguments may refer to other keys.
+     *
+     * @return true if this is a format manipulation
+     */
+    boolean isFormat() {
+        return kind == Kind.FORMAT;
+    }
+
+    /**
+     * Returns the arguments of the format manipulation. Arguments which refer to keys are returned as
+     * {@link KeyInformation}, the others as strings.
+     *
+     * @return the arguments, empty if the manipulation has no arguments
+     */
+    Object[] getFormatArguments() {
+        return (Object[]) argument();
+    }
+
+    String getManipulation() {
+        return manipulation;
+    }
+
+    /**
+     * Applies this manipulation to the given value. Must not be used for format manipulations.
+     *
+     * @param value  the value to be manipulated
+     * @return the manipulated value
+     * @throws MotechException if the manipulation is unknown or the date can not be formatted
+     */
+    String apply(String value) {
+        String result;
+
+        switch (kind) {
+            case JOIN:
+                result = StringUtils.join(value.split(" "), (String) argument());
+                break;
+            case DATETIME:
+                result = formatDateTime(value);
+                break;
+            case SUBSTRING:
+                result = substring(value, (int[]) argument());
+                break;
+            case SPLIT:
+                Object[] split = (Object[]) argument();
+                result = ((Pattern) split[0]).split(value)[(Integer) split[1]];
+                break;
+            case PARSEDATE:
+                result = ((DateTimeFormatter) argument()).parseDateTime(value).toString(PARSED_DATE_PATTERN);
+                break;
+            case DATE_CHANGE:
+                result = changeDateTime(value, (Object[]) argument());
+                break;
+            default:
+                result = simpleManipulation(value, (String) argument());
+        }
+
+        return result;
+    }
+
+    private Object argument() {
+        return compiled ? argument : parseArgument(kind, manipulation);
+    }
+
+    private String formatDateTime(String value) {
+        try {
+            return ((DateTimeFormatter) argument()).print(new DateTime(value));
+        } catch (IllegalArgumentException e) {
+            throw new MotechException("error.date.format", e);
+        }
+    }
+
+    private static String substring(String value, int[] indexes) {
+        switch (indexes.length) {
+            case 1:
+                return value.substring(indexes[0]);
+            case 2:
+                return value.substring(indexes[0], indexes[1]);
+            default:
+                throw new IllegalArgumentException("Incorrect pattern for substring manipulation");
+        }
+    }
+
+    private static String changeDateTime(String value, Object[] change) {
+        DateTime dateTime = new DateTime(value);
+        int amount = (Integer) change[1];
+
+        switch ((DateField) change[0]) {
+            case DAYS:
+                return dateTime.plusDays(amount).toString();
+            case HOURS:
+                return dateTime.plusHours(amount).toString();
+            default:
+                return dateTime.plusMinutes(amount).toString();
+        }
+    }
+
+    private static String simpleManipulation(String value, String manipulation) {
+        String result;
+        switch (manipulation) {
+            case "toupper":
+                result = value.toUpperCase();
+                break;
+            case "tolower":
+                result = value.toLowerCase();
+                break;
+            case "capitalize":
+                result = WordUtils.capitalize(value);
+                break;
+            default:
+                try {
+                    result = URLEncoder.encode(value, "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new MotechException("URLEncode manipulator error.", e);
+                }
+        }
+        return result;
+    }
+
+    private static Object parseArgument(Kind kind, String manipulation) {
+        Object result;
+
+        switch (kind) {
+            case FORMAT:
+                result = parseFormatArguments(argumentOf(manipulation, FORMAT_PATTERN_BEGIN_INDEX));
+                break;
+            case JOIN:
+                result = argumentOf(manipulation, JOIN_PATTERN_BEGIN_INDEX);
+                break;
+            case DATETIME:
+                result = DateTimeFormat.forPattern(argumentOf(manipulation, DATETIME_PATTERN_BEGIN_INDEX));
+                break;
+            case SUBSTRING:
+                result = parseIndexes(argumentOf(manipulation, SUBSTRING_PATTERN_BEGIN_INDEX));
+                break;
+            case SPLIT:
+                String[] split = argumentOf(manipulation, SPLIT_PATTERN_BEGIN_INDEX).split(",");
+                result = new Object[]{Pattern.compile(split[0]), Integer.parseInt(split[1])};
+                break;
+            case PARSEDATE:
+                result = DateTimeFormat.forPattern(argumentOf(manipulation, PARSE_DATE_PATTERN_BEGIN_INDEX));
+                break;
+            case DATE_CHANGE:
+                result = parseDateChange(manipulation.toLowerCase());
+                break;
+            default:
+                result = parseSimpleManipulation(manipulation.toLowerCase().replace("()", ""));
+        }
+
+        return result;
+    }
+
+    private static String argumentOf(String manipulation, int beginIndex) {
+        return manipulation.substring(beginIndex, manipulation.length() - 1);
+    }
+
+    private static Object[] parseFormatArguments(String formatElements) {
+        if (!isNotBlank(formatElements)) {
+            return new Object[0];
+        }
+
+        String[] items = formatElements.split(",");
+        Object[] arguments = new Object[items.length];
+
+        for (int i = 0; i < items.length; ++i) {
+            String item = items[i];
+
+            if (item.startsWith("{{") && item.endsWith("}}")) {
+                arguments[i] = KeyInformation.parse(item.substring(2, item.length() - 2));
+            } else {
+                arguments[i] = item;
+            }
+        }
+
+        return arguments;
+    }
+
+    private static int[] parseIndexes(String pattern) {
+        String[] splitValue = pattern.contains(",") ? pattern.split(",") : new String[]{pattern};
+        int[] indexes = new int[splitValue.length];
+
+        for (int i = 0; i < splitValue.length; ++i) {
+            indexes[i] = Integer.parseInt(splitValue[i]);
+        }
+
+        return indexes;
+    }
+
+    private static Object[] parseDateChange(String manipulation) {
+        Object[] change;
+
+        if (manipulation.contains("plusdays")) {
+            change = dateChange(DateField.DAYS, manipulation, PLUS_DAYS_PATTERN_BEGIN_INDEX, 1);
+        } else if (manipulation.contains("minusdays")) {
+            change = dateChange(DateField.DAYS, manipulation, MINUS_DAYS_PATTERN_BEGIN_INDEX, -1);
+        } else if (manipulation.contains("plushours")) {
+            change = dateChange(DateField.HOURS, manipulation, PLUS_HOURS_PATTERN_BEGIN_INDEX, 1);
+        } else if (manipulation.contains("minushours")) {
+            change = dateChange(DateField.HOURS, manipulation, MINUS_HOURS_PATTERN_BEGIN_INDEX, -1);
+        } else if (manipulation.contains("plusminutes")) {
+            change = dateChange(DateField.MINUTES, manipulation, PLUS_MINUTES_PATTERN_BEGIN_INDEX, 1);
+        } else if (manipulation.contains("minusminutes")) {
+            change = dateChange(DateField.MINUTES, manipulation, MINUS_MINUTES_PATTERN_BEGIN_INDEX, -1);
+        } else {
+            throw new MotechException(WARNING);
+        }
+
+        return change;
+    }
+
+    private static Object[] dateChange(DateField field, String manipulation, int beginIndex, int sign) {
+        return new Object[]{field, sign * Integer.parseInt(argumentOf(manipulation, beginIndex))};
+    }
+
+    private static String parseSimpleManipulation(String manipulation) {
+        switch (manipulation) {
+            case "toupper":
+            case "tolower":
+            case "capitalize":
+            case "urlencode":
+                return manipulation;
+            default:
+                throw new MotechException(WARNING);
+        }
+    }
+}
@@ -13,14 +13,13 @@ import org.motechproject.tasks.domain.TaskActionInformation;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -41,6 +40,7 @@ public class TaskActionExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskActionExecutor.class);
 
     private BundleContext bundleContext;
+    private ActionInvokerCache invokers;
     private EventRelay eventRelay;
 
     private TaskService taskService;
@@ -203,7 +203,7 @@ public class TaskActionExecutor {
     }
 
     private Object getValue(String row) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
+        List<KeyInformation> keys = TaskTemplate.compile(row).getKeys();
 
         Object result;
         if (keys.isEmpty()) {
@@ -218,21 +218,18 @@ public class TaskActionExecutor {
 
     private boolean callActionServiceMethod(ActionEvent action, Map<String, Object> parameters)
             throws TaskHandlerException {
-        ServiceReference reference = bundleContext.getServiceReference(
-                action.getServiceInterface()
-        );
-        boolean serviceAvailable = reference != null;
+        ActionInvokerCache.BoundService service = getInvokers().getService(action.getServiceInterface());
+        boolean serviceAvailable = service != null;
 
         if (serviceAvailable) {
-            Object service = bundleContext.getService(reference);
             String serviceMethod = action.getServiceMethod();
             MethodHandler methodHandler = new MethodHandler(action, parameters);
 
             try {
-                Method method = service.getClass().getMethod(serviceMethod, methodHandler.getClasses());
+                ActionInvokerCache.ActionInvoker invoker = service.getInvoker(serviceMethod, methodHandler.getClasses());
 
                 try {
-                    method.invoke(service, methodHandler.getObjects());
+                    invoker.invoke(methodHandler.getObjects());
                 } catch (IllegalAccessException | InvocationTargetException e) {
                     throw new TaskHandlerException(
                             ACTION, "task.error.serviceMethodInvokeError", e,
@@ -250,7 +247,27 @@ public class TaskActionExecutor {
         return serviceAvailable;
     }
 
-    void setBundleContext(BundleContext bundleContext) {
+    private synchronized ActionInvokerCache getInvokers() {
+        if (invokers == null) {
+            invokers = new ActionInvokerCache(bundleContext);
+            invokers.open();
+        }
+        return invokers;
+    }
+
+    /**
+     * Releases the services used by actions.
+     */
+    @PreDestroy
+    public synchronized void releaseServices() {
+        if (invokers != null) {
+            invokers.close();
+            invokers = null;
+        }
+    }
+
+    synchronized void setBundleContext(BundleContext bundleContext) {
+        releaseServices();
         this.bundleContext = bundleContext;
     }
 }
@@ -19,7 +19,6 @@ import java.util.List;
 import java.util.Map;
 
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
-import static org.motechproject.tasks.domain.KeyInformation.parse;
 
 /**
  * The <code>TaskFilterExecutor</code> applies a list of filters in a #{@link TaskContext}.
@@ -62,7 +61,7 @@ public class TaskFilterExecutor {
 
         boolean filterCheck = false;
         for (Filter filter : filters) {
-            KeyInformation key = parse(filter.getKey());
+            KeyInformation key = CompiledKey.compile(filter.getKey()).getKeyInformation();
             Object value;
             try {
                 KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
@@ -1,17 +1,27 @@
 package org.motechproject.tasks.service;
 
+import org.motechproject.commons.api.BatchDataProvider;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.tasks.domain.DataSource;
 import org.motechproject.tasks.domain.FilterSet;
+import org.motechproject.tasks.domain.KeyInformation;
 import org.motechproject.tasks.domain.Lookup;
 import org.motechproject.tasks.domain.TaskConfigStep;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.motechproject.tasks.events.constants.TaskFailureCause.DATA_SOURCE;
 import static org.motechproject.tasks.events.constants.TaskFailureCause.FILTER;
@@ -23,6 +33,10 @@ import static org.motechproject.tasks.events.constants.TaskFailureCause.FILTER;
  * <ul>
  * <li><b>evalConfigSteps</b> - executes all config steps (load data sources, check filters) defined in the task,</li>
  * </ul>
+ * <p/>
+ * Consecutive data sources which do not refer to each other are looked up together: lookups of the same type and
+ * lookup name are passed at once to providers implementing {@link BatchDataProvider}, and the remaining lookups are
+ * executed concurrently, if an executor was given. Objects found recently are taken from the lookup cache.
  *
  * @see TaskTriggerHandler
  * @see TaskActionExecutor
@@ -33,6 +47,8 @@ class TaskInitializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskInitializer.class);
 
     private TaskContext taskContext;
+    private DataSourceLookupCache lookupCache;
+    private ExecutorService lookupExecutor;
 
     /**
      * Class constructor.
@@ -40,7 +56,20 @@ class TaskInitializer {
      * @param taskContext  the task context
      */
     TaskInitializer(TaskContext taskContext) {
+        this(taskContext, null, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param taskContext  the task context
+     * @param lookupCache  the cache of found data source objects, null if objects should not be cached
+     * @param lookupExecutor  the executor of concurrent lookups, null if lookups should be executed one by one
+     */
+    TaskInitializer(TaskContext taskContext, DataSourceLookupCache lookupCache, ExecutorService lookupExecutor) {
         this.taskContext = taskContext;
+        this.lookupCache = lookupCache;
+        this.lookupExecutor = lookupExecutor;
     }
 
     /**
@@ -56,15 +85,19 @@ class TaskInitializer {
         boolean result = true;
 
         TaskFilterExecutor taskFilterExecutor = new TaskFilterExecutor();
+        List<DataSource> pending = new ArrayList<>();
 
         while (result && iterator.hasNext()) {
             TaskConfigStep step = iterator.next();
 
             if (step instanceof DataSource) {
                 DataSource ds = (DataSource) step;
-                taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(ds, dataProviders), ds.isFailIfDataNotFound());
-                LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
+                if (refersToAny(ds, pending)) {
+                    loadDataSources(pending, dataProviders);
+                }
+                pending.add(ds);
             } else if (step instanceof FilterSet) {
+                loadDataSources(pending, dataProviders);
                 try {
                     FilterSet filterSet = (FilterSet) step;
 
@@ -74,10 +107,122 @@ class TaskInitializer {
                 }
             }
         }
+        loadDataSources(pending, dataProviders);
+
         return result;
     }
 
-    private Object getDataSourceObject(DataSource dataSource, Map<String, DataProvider> providers)
+    private void loadDataSources(List<DataSource> dataSources, Map<String, DataProvider> providers)
+            throws TaskHandlerException {
+        List<PendingLookup> lookups = new ArrayList<>(dataSources.size());
+        TaskHandlerException error = null;
+
+        // lookup fields are evaluated in order, a failing data source stops the loading as it did before
+        try {
+            for (DataSource dataSource : dataSources) {
+                lookups.add(new PendingLookup(dataSource, getProvider(dataSource, providers),
+                        getLookupFields(dataSource)));
+            }
+        } catch (TaskHandlerException e) {
+            error = e;
+        }
+        dataSources.clear();
+
+        executeLookups(lookups);
+
+        for (PendingLookup lookup : lookups) {
+            DataSource ds = lookup.dataSource;
+            taskContext.addDataSourceObject(ds.getObjectId().toString(), lookup.getResult(), ds.isFailIfDataNotFound());
+            LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void executeLookups(List<PendingLookup> lookups) throws TaskHandlerException {
+        List<LookupCall> calls = new ArrayList<>();
+        for (List<PendingLookup> batch : groupIntoBatches(lookups)) {
+            calls.add(new LookupCall(batch));
+        }
+
+        if (lookupExecutor == null || calls.size() < 2) {
+            for (LookupCall call : calls) {
+                call.call();
+            }
+        } else {
+            try {
+                for (Future<Void> future : lookupExecutor.invokeAll(calls)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TaskHandlerException(DATA_SOURCE, "task.error.unrecognizedError", e);
+            } catch (ExecutionException e) {
+                throw new TaskHandlerException(DATA_SOURCE, "task.error.unrecognizedError", e.getCause());
+            }
+        }
+    }
+
+    private Collection<List<PendingLookup>> groupIntoBatches(List<PendingLookup> lookups) {
+        Map<String, List<PendingLookup>> batches = new LinkedHashMap<>();
+
+        for (PendingLookup lookup : lookups) {
+            DataSource ds = lookup.dataSource;
+            Object cached = (lookupCache == null) ? null
+                    : lookupCache.get(lookup.provider.getName(), ds.getType(), ds.getName(), lookup.lookupFields);
+
+            if (cached != null) {
+                lookup.result = cached;
+            } else {
+                // only providers able to execute many lookups at once get them in a single batch
+                String batchKey = (lookup.provider instanceof BatchDataProvider)
+                        ? lookup.provider.getName() + '\n' + ds.getType() + '\n' + ds.getName()
+                        : String.valueOf(batches.size());
+                List<PendingLookup> batch = batches.get(batchKey);
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                    batches.put(batchKey, batch);
+                }
+                batch.add(lookup);
+            }
+        }
+
+        return batches.values();
+    }
+
+    private boolean refersToAny(DataSource dataSource, List<DataSource> others) {
+        for (Lookup lookup : dataSource.getLookup()) {
+            for (KeyInformation key : TaskTemplate.compile(lookup.getValue()).getKeys()) {
+                // format manipulations may refer to other data sources as well
+                if (key.hasManipulations() || (key.fromAdditionalData() && containsObject(others, key.getObjectId()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsObject(List<DataSource> dataSources, Long objectId) {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource.getObjectId().equals(objectId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, String> getLookupFields(DataSource dataSource) throws TaskHandlerException {
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
+        Map<String, String> lookupFields = new HashMap<>();
+        for (Lookup lookup : dataSource.getLookup()) {
+            lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
+        }
+        return lookupFields;
+    }
+
+    private DataProvider getProvider(DataSource dataSource, Map<String, DataProvider> providers)
             throws TaskHandlerException {
         if (providers == null || providers.isEmpty()) {
             throw new TaskHandlerException(
@@ -93,12 +238,78 @@ class TaskInitializer {
             );
         }
 
-        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
-        Map<String, String> lookupFields = new HashMap<>();
-        for (Lookup lookup : dataSource.getLookup()) {
-            lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
+        return provider;
+    }
+
+    /**
+     * A data source waiting for its object to be looked up.
+     */
+    private static final class PendingLookup {
+        private final DataSource dataSource;
+        private final DataProvider provider;
+        private final Map<String, String> lookupFields;
+        private volatile Object result;
+        private volatile RuntimeException failure;
+
+        private PendingLookup(DataSource dataSource, DataProvider provider, Map<String, String> lookupFields) {
+            this.dataSource = dataSource;
+            this.provider = provider;
+            this.lookupFields = lookupFields;
+        }
+
+        private Object getResult() {
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Executes a batch of lookups of the same provider, type and lookup name. Failures are stored in the lookups, so
+     * that they are thrown in the order of the data sources of the task.
+     */
+    private final class LookupCall implements Callable<Void> {
+        private final List<PendingLookup> batch;
+
+        private LookupCall(List<PendingLookup> batch) {
+            this.batch = batch;
         }
 
-        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+        @Override
+        public Void call() {
+            PendingLookup first = batch.get(0);
+            DataSource ds = first.dataSource;
+
+            try {
+                if (batch.size() == 1) {
+                    first.result = first.provider.lookup(ds.getType(), ds.getName(), first.lookupFields);
+                } else {
+                    List<Map<String, String>> lookupFields = new ArrayList<>(batch.size());
+                    for (PendingLookup lookup : batch) {
+                        lookupFields.add(lookup.lookupFields);
+                    }
+
+                    List<Object> results = ((BatchDataProvider) first.provider).lookupAll(ds.getType(), ds.getName(),
+                            lookupFields);
+                    for (int i = 0; i < batch.size(); ++i) {
+                        batch.get(i).result = results.get(i);
+                    }
+                }
+            } catch (RuntimeException e) {
+                for (PendingLookup lookup : batch) {
+                    lookup.failure = e;
+                }
+            }
+
+            if (lookupCache != null) {
+                for (PendingLookup lookup : batch) {
+                    lookupCache.put(first.provider.getName(), ds.getType(), ds.getName(), lookup.lookupFields,
+                            lookup.result);
+                }
+            }
+
+            return null;
+        }
     }
 }
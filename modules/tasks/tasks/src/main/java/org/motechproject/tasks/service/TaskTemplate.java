@@ -0,0 +1,132 @@
+package org.motechproject.tasks.service;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+/**
+ * A template used in a task, e.g. <i>You get the following message: {{trigger.message}}</i>, compiled once into a list
+ * of tokens. Every token is either a literal text or a {@link CompiledKey} to be replaced with its manipulated value.
+ * The keys of a template are found as described in {@link KeyInformation#parseAll(String)}. Other occurrences of
+ * the same keys in the literal text, e.g. within parentheses, are replaced as well. Compiled templates are cached by
+ * their text, so templates of tasks are parsed only on their first use.
+ */
+final class TaskTemplate {
+
+    private static final int CACHE_SIZE = 4096;
+    private static final Map<String, TaskTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final List<Object> tokens;
+    private final List<KeyInformation> keys;
+
+    private TaskTemplate(List<Object> tokens, List<KeyInformation> keys) {
+        this.tokens = Collections.unmodifiableList(tokens);
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns the compiled form of the given template.
+     *
+     * @param template  the template, null is treated as an empty template
+     * @return the compiled template
+     * @throws IllegalArgumentException if any of the keys has incorrect format
+     */
+    static TaskTemplate compile(String template) {
+        String text = isEmpty(template) ? "" : template;
+        TaskTemplate compiled = CACHE.get(text);
+
+        if (compiled == null) {
+            compiled = parse(text);
+            if (CACHE.size() >= CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(text, compiled);
+        }
+
+        return compiled;
+    }
+
+    private static TaskTemplate parse(String template) {
+        List<CompiledKey> found = new ArrayList<>();
+        List<int[]> positions = new ArrayList<>();
+        Matcher matcher = KeyInformation.FIELD_PATTERN.matcher(template);
+
+        while (matcher.find()) {
+            found.add(CompiledKey.compile(matcher.group(1)));
+            positions.add(new int[]{matcher.start(), matcher.end()});
+        }
+
+        Set<CompiledKey> distinct = new LinkedHashSet<>(found);
+        List<Object> tokens = new ArrayList<>();
+        List<KeyInformation> keys = new ArrayList<>(found.size());
+        int literalStart = 0;
+
+        for (int i = 0; i < found.size(); ++i) {
+            addLiteral(tokens, template.substring(literalStart, positions.get(i)[0]), distinct);
+            tokens.add(found.get(i));
+            keys.add(found.get(i).getKeyInformation());
+            literalStart = positions.get(i)[1];
+        }
+        addLiteral(tokens, template.substring(literalStart), distinct);
+
+        return new TaskTemplate(tokens, keys);
+    }
+
+    private static void addLiteral(List<Object> tokens, String literal, Set<CompiledKey> keys) {
+        int start = 0;
+
+        while (start < literal.length()) {
+            CompiledKey next = null;
+            int nextIndex = literal.length();
+
+            for (CompiledKey key : keys) {
+                int index = literal.indexOf(placeholder(key), start);
+                if (index != -1 && index < nextIndex) {
+                    next = key;
+                    nextIndex = index;
+                }
+            }
+
+            if (nextIndex > start) {
+                tokens.add(literal.substring(start, nextIndex));
+            }
+            if (next != null) {
+                tokens.add(next);
+                nextIndex += placeholder(next).length();
+            }
+            start = nextIndex;
+        }
+    }
+
+    private static String placeholder(CompiledKey key) {
+        return "{{" + key.getKeyInformation().getOriginalKey() + "}}";
+    }
+
+    /**
+     * Returns the tokens of this template, either literal strings or {@link CompiledKey}s.
+     *
+     * @return the tokens
+     */
+    List<Object> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the keys found in this template, in the same order as {@link KeyInformation#parseAll(String)}.
+     *
+     * @return the keys
+     */
+    List<KeyInformation> getKeys() {
+        return keys;
+    }
+}
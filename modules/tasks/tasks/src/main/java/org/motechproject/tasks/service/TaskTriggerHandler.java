@@ -25,10 +25,18 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ReflectionUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.motechproject.tasks.events.constants.EventDataKeys.HANDLER_ERROR_PARAM;
 import static org.motechproject.tasks.events.constants.EventDataKeys.TASK_FAIL_FAILURE_DATE;
@@ -51,6 +59,8 @@ import static org.motechproject.tasks.service.HandlerPredicates.withServiceName;
 public class TaskTriggerHandler implements TriggerHandler {
 
     private static final String TASK_POSSIBLE_ERRORS_KEY = "task.possible.errors";
+    private static final String TASK_LOOKUP_THREADS_KEY = "task.lookup.threads";
+    private static final String TASK_LOOKUP_CACHE_TTL_KEY = "task.lookup.cache.ttl";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskTriggerHandler.class);
 
@@ -63,6 +73,11 @@ public class TaskTriggerHandler implements TriggerHandler {
 
     private TaskActionExecutor executor;
 
+    private DataSourceLookupCache lookupCache;
+    private ExecutorService lookupExecutor;
+
+    private final ConcurrentMap<Long, FailureCounter> failureCounters = new ConcurrentHashMap<>();
+
     @Autowired
     public TaskTriggerHandler(TaskService taskService, TaskActivityService activityService,
                               EventListenerRegistryService registryService, EventRelay eventRelay,
@@ -80,6 +95,39 @@ public class TaskTriggerHandler implements TriggerHandler {
         }
     }
 
+    /**
+     * Starts the executor of concurrent data source lookups and the lookup cache, as configured in the tasks settings.
+     */
+    @PostConstruct
+    public void startLookups() {
+        int threads = getIntProperty(TASK_LOOKUP_THREADS_KEY);
+        long timeToLive = getIntProperty(TASK_LOOKUP_CACHE_TTL_KEY);
+
+        if (threads > 1) {
+            final AtomicInteger counter = new AtomicInteger();
+            lookupExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "tasks-lookup-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        if (timeToLive > 0) {
+            lookupCache = new DataSourceLookupCache(timeToLive);
+        }
+    }
+
+    @PreDestroy
+    public void stopLookups() {
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            lookupExecutor = null;
+        }
+        lookupCache = null;
+    }
+
     @Override
     public final void registerHandlerFor(String subject) {
         LOGGER.info("Registering handler for {}", subject);
@@ -125,7 +173,7 @@ public class TaskTriggerHandler implements TriggerHandler {
 
         for (Task task : tasks) {
             TaskContext taskContext = new TaskContext(task, parameters, activityService);
-            TaskInitializer initializer = new TaskInitializer(taskContext);
+            TaskInitializer initializer = new TaskInitializer(taskContext, lookupCache, lookupExecutor);
 
             try {
                 LOGGER.info("Executing all actions from task: {}", task.getName());
@@ -148,21 +196,27 @@ public class TaskTriggerHandler implements TriggerHandler {
         LOGGER.warn("Omitted task: {} with ID: {} because: {}", task.getName(), task.getId(), e);
 
         activityService.addError(task, e);
-        task.incrementFailuresInRow();
 
-        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), task.getFailuresInRow());
+        FailureCounter counter = getFailureCounter(task);
+        int failureNumber = counter.increment();
+        task.setFailuresInRow(failureNumber);
+
+        LOGGER.warn("The number of failures for task: {} is: {}", task.getName(), failureNumber);
 
-        int failureNumber = task.getFailuresInRow();
         int possibleErrorsNumber = getPossibleErrorsNumber();
 
-        if (failureNumber >= possibleErrorsNumber) {
+        // the counter is shared by all threads handling the task and is persisted only when the task
+        // starts failing or gets disabled, only the thread which removes the counter disables the task
+        if (failureNumber >= possibleErrorsNumber && removeFailureCounter(task, counter)) {
             task.setEnabled(false);
 
             activityService.addWarning(task);
             publishTaskDisabledMessage(task.getName());
-        }
 
-        taskService.save(task);
+            taskService.save(task);
+        } else if (failureNumber == 1) {
+            taskService.save(task);
+        }
 
         Map<String, Object> errorParam = new HashMap<>();
         errorParam.put(TASK_FAIL_MESSAGE, e.getMessage());
@@ -185,8 +239,12 @@ public class TaskTriggerHandler implements TriggerHandler {
         LOGGER.debug("All actions from task: {} with ID: {} were successfully executed", task.getName(), task.getId());
 
         activityService.addSuccess(task);
-        task.resetFailuresInRow();
-        taskService.save(task);
+
+        FailureCounter counter = (task.getId() == null) ? null : failureCounters.remove(task.getId());
+        if (task.getFailuresInRow() > 0 || (counter != null && counter.get() > 0)) {
+            task.resetFailuresInRow();
+            taskService.save(task);
+        }
 
         eventRelay.sendEventMessage(new MotechEvent(
             createHandlerSuccessSubject(task.getName()),
@@ -194,6 +252,32 @@ public class TaskTriggerHandler implements TriggerHandler {
         ));
     }
 
+    /**
+     * Returns the counter of failures in row for the given task. Counters are kept by task id, so they survive
+     * reloads of the cached tasks. A new counter starts from the persisted number of failures, it is also
+     * started over if the reloaded task has no failures, which means the task was re-enabled in the meantime.
+     */
+    private FailureCounter getFailureCounter(Task task) {
+        if (task.getId() == null) {
+            return new FailureCounter(task);
+        }
+
+        FailureCounter counter = failureCounters.get(task.getId());
+        while (counter == null || (counter.task != task && task.getFailuresInRow() == 0 && counter.get() > 0)) {
+            FailureCounter created = new FailureCounter(task);
+            boolean stored = (counter == null)
+                    ? failureCounters.putIfAbsent(task.getId(), created) == null
+                    : failureCounters.replace(task.getId(), counter, created);
+            counter = stored ? created : failureCounters.get(task.getId());
+        }
+
+        return counter;
+    }
+
+    private boolean removeFailureCounter(Task task, FailureCounter counter) {
+        return task.getId() == null || failureCounters.remove(task.getId(), counter);
+    }
+
     public void addDataProvider(DataProvider provider) {
         if (dataProviders == null) {
             dataProviders = new HashMap<>();
@@ -238,9 +322,45 @@ public class TaskTriggerHandler implements TriggerHandler {
         return number;
     }
 
+    private int getIntProperty(String key) {
+        String property = settings.getProperty(key);
+        int number = 0;
+
+        if (property != null) {
+            try {
+                number = Integer.parseInt(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number, it is set to zero", key);
+            }
+        }
+
+        return number;
+    }
+
     @Autowired(required = false)
     public void setBundleContext(BundleContext bundleContext) {
         this.executor.setBundleContext(bundleContext);
     }
 
+    /**
+     * Number of failures in row of a task, together with the task instance it was started for.
+     */
+    private static final class FailureCounter {
+        private final Task task;
+        private final AtomicInteger count;
+
+        private FailureCounter(Task task) {
+            this.task = task;
+            this.count = new AtomicInteger(task.getFailuresInRow());
+        }
+
+        private int increment() {
+            return count.incrementAndGet();
+        }
+
+        private int get() {
+            return count.get();
+        }
+    }
+
 }
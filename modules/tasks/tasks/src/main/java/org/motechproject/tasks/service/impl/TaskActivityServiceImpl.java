@@ -1,65 +1,333 @@
 package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.joda.time.DateTime;
+import org.motechproject.commons.api.Range;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
+import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Records the activities of tasks. Once started, the activities are written behind: they are buffered in memory and
+ * stored in batches, one transaction per batch, so that handling a trigger does not wait for the database. When the
+ * buffer is full, or the service has not been started, activities are stored immediately. The buffer is flushed
+ * before activities are read or deleted, and when the service is stopped. A batch which can not be stored is stored
+ * again one activity at a time, so that a single activity which can not be stored does not drop the others.
+ * <p/>
+ * The service also maintains the activities table: success activities older than the configured number of days are
+ * rolled up into a single activity per task and day, and activities older than the retention period are deleted.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
 
+    static final String FLUSH_INTERVAL_KEY = "task.activity.flush.interval";
+    static final String BUFFER_SIZE_KEY = "task.activity.buffer.size";
+    static final String RETENTION_DAYS_KEY = "task.activity.retention.days";
+    static final String ROLLUP_DAYS_KEY = "task.activity.rollup.days";
+
+    static final String SUCCESS_MESSAGE = "task.success.ok";
+    static final String ROLLUP_MESSAGE = "task.success.rollup";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_BUFFER_SIZE = 10000;
+    private static final int BATCH_SIZE = 500;
+    private static final long MAINTENANCE_INTERVAL_HOURS = 1;
+
     private TaskActivitiesDataService taskActivitiesDataService;
+    private SettingsFacade settings;
+
+    private volatile BlockingQueue<TaskActivity> buffer;
+    private ScheduledExecutorService writer;
 
     @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
         this.taskActivitiesDataService = taskActivitiesDataService;
     }
 
+    /**
+     * Starts writing the activities behind and schedules the maintenance of the activities table.
+     */
+    @PostConstruct
+    public void start() {
+        long flushInterval = getSetting(FLUSH_INTERVAL_KEY, DEFAULT_FLUSH_INTERVAL);
+
+        buffer = new ArrayBlockingQueue<>((int) getSetting(BUFFER_SIZE_KEY, DEFAULT_BUFFER_SIZE));
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tasks-activity-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        writer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        writer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, MAINTENANCE_INTERVAL_HOURS, MAINTENANCE_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    /**
+     * Stops the writer and stores all buffered activities.
+     */
+    @PreDestroy
+    public void stop() {
+        if (writer != null) {
+            writer.shutdownNow();
+            writer = null;
+        }
+
+        // activities recorded from now on are stored immediately, the ones already buffered are stored below
+        BlockingQueue<TaskActivity> queue = buffer;
+        buffer = null;
+        flush(queue);
+    }
+
+    /**
+     * Stores all buffered activities, in batches of at most {@value #BATCH_SIZE} activities per transaction.
+     */
+    public void flush() {
+        flush(buffer);
+    }
+
+    private synchronized void flush(BlockingQueue<TaskActivity> queue) {
+        if (queue == null) {
+            return;
+        }
+
+        List<TaskActivity> batch = new ArrayList<>(BATCH_SIZE);
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            try {
+                createAll(batch);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to store {} task activities in one transaction, storing them one by one",
+                        batch.size(), e);
+                createEach(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Rolls up the old success activities and deletes the activities older than the retention period, as configured
+     * in the tasks settings.
+     */
+    public void maintain() {
+        DateTime now = DateUtil.now();
+        long rollupDays = getSetting(ROLLUP_DAYS_KEY, 0);
+        long retentionDays = getSetting(RETENTION_DAYS_KEY, 0);
+
+        try {
+            if (rollupDays > 0) {
+                rollUpSuccesses(now.minusDays((int) rollupDays).withTimeAtStartOfDay());
+            }
+            if (retentionDays > 0) {
+                deleteActivitiesOlderThan(now.minusDays((int) retentionDays));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to maintain the task activities", e);
+        }
+    }
+
+    @Autowired
+    public void setSettings(@Qualifier("tasksSettings") SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    private void record(TaskActivity activity) {
+        BlockingQueue<TaskActivity> queue = buffer;
+        if (queue == null || !queue.offer(activity)) {
+            taskActivitiesDataService.create(activity);
+        } else if (buffer != queue) {
+            // stopped in the meantime, the buffer might have been flushed before the activity was added to it
+            flush(queue);
+        }
+    }
+
+    private void createAll(final List<TaskActivity> activities) {
+        taskActivitiesDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (TaskActivity activity : activities) {
+                    taskActivitiesDataService.create(activity);
+                }
+            }
+        });
+    }
+
+    private void createEach(List<TaskActivity> activities) {
+        for (TaskActivity activity : activities) {
+            try {
+                taskActivitiesDataService.create(activity);
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to store task activity {} of task {}", activity.getMessage(), activity.getTask(), e);
+            }
+        }
+    }
+
+    private void deleteActivitiesOlderThan(DateTime cutoff) {
+        Range<DateTime> range = new Range<>(null, cutoff);
+        List<TaskActivity> page = taskActivitiesDataService.byDate(range, new QueryParams(1, BATCH_SIZE));
+
+        while (!page.isEmpty()) {
+            deleteAll(page);
+            page = taskActivitiesDataService.byDate(range, new QueryParams(1, BATCH_SIZE));
+        }
+    }
+
+    private void rollUpSuccesses(DateTime cutoff) {
+        Range<DateTime> range = new Range<>(null, cutoff.minusMillis(1));
+        List<TaskActivity> page = taskActivitiesDataService.byMessageAndDate(SUCCESS_MESSAGE, range,
+                new QueryParams(1, BATCH_SIZE));
+
+        while (!page.isEmpty()) {
+            rollUp(page);
+            page = taskActivitiesDataService.byMessageAndDate(SUCCESS_MESSAGE, range, new QueryParams(1, BATCH_SIZE));
+        }
+    }
+
+    private void rollUp(final List<TaskActivity> successes) {
+        final Map<Long, Map<DateTime, Integer>> counts = new LinkedHashMap<>();
+        for (TaskActivity success : successes) {
+            Map<DateTime, Integer> days = counts.get(success.getTask());
+            if (days == null) {
+                days = new LinkedHashMap<>();
+                counts.put(success.getTask(), days);
+            }
+
+            DateTime day = success.getDate().withTimeAtStartOfDay();
+            Integer count = days.get(day);
+            days.put(day, (count == null) ? 1 : count + 1);
+        }
+
+        taskActivitiesDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (Map.Entry<Long, Map<DateTime, Integer>> task : counts.entrySet()) {
+                    for (Map.Entry<DateTime, Integer> day : task.getValue().entrySet()) {
+                        addToRollup(task.getKey(), day.getKey(), day.getValue());
+                    }
+                }
+                for (TaskActivity success : successes) {
+                    taskActivitiesDataService.delete(success);
+                }
+            }
+        });
+    }
+
+    private void addToRollup(Long taskId, DateTime day, int count) {
+        List<TaskActivity> existing = taskActivitiesDataService.byTaskMessageAndDate(taskId, ROLLUP_MESSAGE,
+                new Range<>(day, day));
+
+        if (existing.isEmpty()) {
+            TaskActivity rollup = new TaskActivity(ROLLUP_MESSAGE, String.valueOf(count), taskId,
+                    TaskActivityType.SUCCESS);
+            rollup.setDate(day);
+            taskActivitiesDataService.create(rollup);
+        } else {
+            TaskActivity rollup = existing.get(0);
+            rollup.setField(String.valueOf(Integer.parseInt(rollup.getFields().get(0)) + count));
+            taskActivitiesDataService.update(rollup);
+        }
+    }
+
+    private void deleteAll(final List<TaskActivity> activities) {
+        taskActivitiesDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (TaskActivity activity : activities) {
+                    taskActivitiesDataService.delete(activity);
+                }
+            }
+        });
+    }
+
+    private long getSetting(String key, long defaultValue) {
+        String property = (settings == null) ? null : settings.getProperty(key);
+        long value = defaultValue;
+
+        if (property != null) {
+            try {
+                value = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("The value of key: {} is not a number, using {} instead", key, defaultValue);
+            }
+        }
+
+        return value;
+    }
+
     @Override
     public void addError(Task task, TaskHandlerException e) {
-        taskActivitiesDataService.create(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(),
-                TaskActivityType.ERROR, ExceptionUtils.getStackTrace(e)));
+        record(new TaskActivity(e.getMessage(), e.getArgs(), task.getId(), TaskActivityType.ERROR,
+                ExceptionUtils.getStackTrace(e)));
     }
 
     @Override
     public void addSuccess(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.success.ok", task.getId(),
-                TaskActivityType.SUCCESS));
+        record(new TaskActivity(SUCCESS_MESSAGE, task.getId(), TaskActivityType.SUCCESS));
     }
 
     @Override
     public void addWarning(Task task) {
-        taskActivitiesDataService.create(new TaskActivity("task.warning.taskDisabled", task.getId(),
-                TaskActivityType.WARNING));
+        record(new TaskActivity("task.warning.taskDisabled", task.getId(), TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field) {
-        taskActivitiesDataService.create(new TaskActivity(key, field, task.getId(),
-                TaskActivityType.WARNING));
+        record(new TaskActivity(key, field, task.getId(), TaskActivityType.WARNING));
     }
 
     @Override
     public void addWarning(Task task, String key, String field, Exception e) {
-        taskActivitiesDataService.create(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)),
-                task.getId(), TaskActivityType.WARNING, ExceptionUtils.getStackTrace(e.getCause())));
+        record(new TaskActivity(key, new ArrayList<>(Arrays.asList(field)), task.getId(), TaskActivityType.WARNING,
+                ExceptionUtils.getStackTrace(e.getCause())));
     }
 
     @Override
     public void deleteActivitiesForTask(Long taskId) {
+        flush();
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
@@ -67,21 +335,25 @@ public class TaskActivityServiceImpl implements TaskActivityService {
 
     @Override
     public List<TaskActivity> getLatestActivities() {
+        flush();
         return taskActivitiesDataService.retrieveAll(new QueryParams(1, 10, new Order("date", Order.Direction.DESC)));
     }
 
     @Override
     public List<TaskActivity> getTaskActivities(Long taskId, Set<TaskActivityType> activityTypes, QueryParams queryParams) {
+        flush();
         return taskActivitiesDataService.byTaskAndActivityTypes(taskId, activityTypes, queryParams);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, Set<TaskActivityType> activityTypes) {
+        flush();
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, activityTypes);
     }
 
     @Override
     public long getTaskActivitiesCount(Long taskId, TaskActivityType type) {
+        flush();
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
     }
 }
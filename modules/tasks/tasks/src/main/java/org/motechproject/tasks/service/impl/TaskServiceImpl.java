@@ -39,6 +39,7 @@ import org.motechproject.tasks.service.TaskService;
 import org.motechproject.tasks.service.TriggerHandler;
 import org.motechproject.tasks.validation.TaskValidator;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.slf4j.Logger;
@@ -48,6 +49,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -67,6 +70,7 @@ import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 import static org.motechproject.tasks.service.HandlerPredicates.tasksWithRegisteredChannel;
@@ -75,6 +79,8 @@ import static org.motechproject.tasks.validation.TaskValidator.TASK;
 /**
  * A {@link TaskService} that manages CRUD operations for a {@link Task}.
  * Expects channel registered,updated and deregistered events to be raised so that the associated tasks can be revalidated.
+ * Triggers, active tasks and custom parsers looked up when handling events are served from a {@link TriggerRoutingTable},
+ * kept up to date when tasks are saved or deleted and when channels or bundles change.
  */
 @Service("taskService")
 public class TaskServiceImpl implements TaskService {
@@ -85,7 +91,7 @@ public class TaskServiceImpl implements TaskService {
     private TaskDataProviderService providerService;
     private EventRelay eventRelay;
     private BundleContext bundleContext;
-
+    private final TriggerRoutingTable routingTable = new TriggerRoutingTable();
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -102,6 +108,24 @@ public class TaskServiceImpl implements TaskService {
         );
     }
 
+    @PostConstruct
+    public void init() {
+        bundleContext.addBundleListener(routingTable);
+        try {
+            bundleContext.addServiceListener(routingTable,
+                    format("(%s=%s)", Constants.OBJECTCLASS, TasksEventParser.class.getName()));
+        } catch (InvalidSyntaxException e) {
+            //Should never happen
+            LOGGER.error("Passed filter expression is incorrect.");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        bundleContext.removeServiceListener(routingTable);
+        bundleContext.removeBundleListener(routingTable);
+    }
+
     @Override
     public void save(final Task task) {
         LOGGER.info("Saving task: {} with ID: {}", task.getName(), task.getId());
@@ -177,37 +201,53 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public List<Task> findActiveTasksForTriggerSubject(final String subject) {
-        List<Task> list = null;
-
         if (isNotBlank(subject)) {
-            List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
-                @Override
-                public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
-                    String byTriggerSubject = "trigger.subject == param";
-                    String isTaskActive = "enabled == true";
-                    String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
-
-                    query.setFilter(filter);
-                    query.declareParameters("java.lang.String param");
-                    query.setOrdering("id asc");
-
-                    return (List) QueryExecutor.execute(query, subject, restriction);
-                }
-            });
-            if (enabledTasks != null) {
-                checkChannelAvailableInTasks(enabledTasks);
-                list = new ArrayList<>(enabledTasks);
-                CollectionUtils.filter(list, tasksWithRegisteredChannel());
+            List<Task> route = routingTable.getActiveTasks(subject);
+            if (route == null) {
+                long compiledAt = routingTable.getVersion();
+                route = retrieveActiveTasksForTriggerSubject(subject);
+                routingTable.putActiveTasks(subject, route, compiledAt);
+            }
+            return new ArrayList<>(route);
+        }
+
+        return new ArrayList<>();
+    }
+
+    private List<Task> retrieveActiveTasksForTriggerSubject(final String subject) {
+        List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
+            @Override
+            public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
+                String byTriggerSubject = "trigger.subject == param";
+                String isTaskActive = "enabled == true";
+                String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
+
+                query.setFilter(filter);
+                query.declareParameters("java.lang.String param");
+                query.setOrdering("id asc");
+
+                return (List) QueryExecutor.execute(query, subject, restriction);
             }
+        });
+
+        List<Task> list = new ArrayList<>();
+        if (enabledTasks != null) {
+            checkChannelAvailableInTasks(enabledTasks);
+            list.addAll(enabledTasks);
+            CollectionUtils.filter(list, tasksWithRegisteredChannel());
         }
 
-        return list == null ? new ArrayList<Task>() : list;
+        return list;
     }
 
     @Override
     public TriggerEvent findTrigger(String subject) throws TriggerNotFoundException {
+        TriggerEvent trigger = (subject == null) ? null : routingTable.getTrigger(subject);
+        if (trigger != null) {
+            return trigger;
+        }
+
         List<Channel> channels = channelService.getAllChannels();
-        TriggerEvent trigger = null;
 
         for (Channel c : channels) {
             for (TriggerEvent t : c.getTriggerTaskEvents()) {
@@ -228,6 +268,7 @@ public class TaskServiceImpl implements TaskService {
             ));
         }
 
+        routingTable.putTrigger(subject, trigger);
         return trigger;
     }
 
@@ -237,12 +278,18 @@ public class TaskServiceImpl implements TaskService {
             return null;
         }
 
+        TasksEventParser cached = routingTable.getParser(name);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             Collection<ServiceReference<TasksEventParser>> references = bundleContext.getServiceReferences(TasksEventParser.class, null);
 
             for (ServiceReference<TasksEventParser> ref : references) {
                 TasksEventParser parser = bundleContext.getService(ref);
                 if (parser.getName().equals(name)) {
+                    routingTable.putParser(name, parser);
                     return parser;
                 }
             }
@@ -273,6 +320,7 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        routingTable.remove(taskId);
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
@@ -280,6 +328,7 @@ public class TaskServiceImpl implements TaskService {
     public void validateTasksAfterChannelUpdate(MotechEvent event) {
         String moduleName = event.getParameters().get(CHANNEL_MODULE_NAME).toString();
         Channel channel = channelService.getChannel(moduleName);
+        routingTable.clear();
 
         LOGGER.debug("Handling Channel update: {} for module: {}", channel.getDisplayName(), moduleName);
 
@@ -297,6 +346,12 @@ public class TaskServiceImpl implements TaskService {
         }
     }
 
+    @MotechListener(subjects = CHANNEL_DEREGISTER_SUBJECT)
+    public void clearRoutesAfterChannelDeregistration(MotechEvent event) {
+        LOGGER.debug("Handling Channel deregistration for module: {}", event.getParameters().get(CHANNEL_MODULE_NAME));
+        routingTable.clear();
+    }
+
     @MotechListener(subjects = DATA_PROVIDER_UPDATE_SUBJECT)
     public void validateTasksAfterTaskDataProviderUpdate(MotechEvent event) {
         String providerName = event.getParameters().get(DATA_PROVIDER_NAME).toString();
@@ -665,6 +720,7 @@ public class TaskServiceImpl implements TaskService {
                     existing.setValidationErrors(task.getValidationErrors());
 
                     checkChannelAvailableInTask(existing);
+                    task.setHasRegisteredChannel(existing.hasRegisteredChannel());
 
                     tasksDataService.update(existing);
                 } else {
@@ -676,6 +732,7 @@ public class TaskServiceImpl implements TaskService {
             }
         });
 
+        routingTable.update(task);
         LOGGER.info("Saved task: {}", task.getName());
     }
 
@@ -0,0 +1,175 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.commons.api.TasksEventParser;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TriggerEvent;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.SynchronousBundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The in-memory routing table of the tasks engine. For every trigger subject it holds the trigger event and the active
+ * tasks of the subject, so that events handled by the tasks engine can be dispatched without querying the database or
+ * walking the channels. Custom event parsers are held by their names.
+ * <p/>
+ * Routes are compiled lazily, on the first lookup of a subject, and maintained incrementally when tasks are saved or
+ * deleted. Since the availability of channels, triggers and parsers depends on the bundles installed, the table is
+ * cleared whenever a bundle changes, or a channel is updated or deregistered.
+ */
+class TriggerRoutingTable implements SynchronousBundleListener, ServiceListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerRoutingTable.class);
+
+    private static final Comparator<Task> BY_ID = new Comparator<Task>() {
+        @Override
+        public int compare(Task first, Task second) {
+            return first.getId().compareTo(second.getId());
+        }
+    };
+
+    private final Map<String, TriggerEvent> triggers = new ConcurrentHashMap<>();
+    private final Map<String, List<Task>> activeTasks = new ConcurrentHashMap<>();
+    private final Map<String, TasksEventParser> parsers = new ConcurrentHashMap<>();
+
+    private long version;
+
+    /**
+     * Returns the trigger event with the given subject.
+     *
+     * @param subject  the subject of the trigger
+     * @return the trigger, null if it has not been looked up yet
+     */
+    TriggerEvent getTrigger(String subject) {
+        return triggers.get(subject);
+    }
+
+    void putTrigger(String subject, TriggerEvent trigger) {
+        triggers.put(subject, trigger);
+    }
+
+    /**
+     * Returns the active tasks for the given trigger subject, ordered by their IDs.
+     *
+     * @param subject  the subject of the trigger
+     * @return the unmodifiable list of tasks, null if the route has not been compiled yet
+     */
+    List<Task> getActiveTasks(String subject) {
+        return activeTasks.get(subject);
+    }
+
+    /**
+     * Stores the active tasks compiled for the given trigger subject. The tasks are stored only if the table has not
+     * changed since the given version was read, so that a route compiled from the database concurrently with an
+     * update of a task does not overwrite that update.
+     *
+     * @param subject  the subject of the trigger
+     * @param tasks  the active tasks, ordered by their IDs
+     * @param compiledAt  the version of the table read before the tasks were retrieved
+     */
+    synchronized void putActiveTasks(String subject, List<Task> tasks, long compiledAt) {
+        if (compiledAt == version) {
+            activeTasks.put(subject, Collections.unmodifiableList(new ArrayList<>(tasks)));
+        }
+    }
+
+    TasksEventParser getParser(String name) {
+        return parsers.get(name);
+    }
+
+    void putParser(String name, TasksEventParser parser) {
+        parsers.put(name, parser);
+    }
+
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Updates the routes after the given task was saved. The task is removed from all routes and, if it is active,
+     * added to the compiled route of its trigger subject.
+     *
+     * @param task  the saved task
+     */
+    synchronized void update(Task task) {
+        version++;
+
+        String subject = (task.getTrigger() == null) ? null : task.getTrigger().getSubject();
+        if (task.getId() == null) {
+            if (subject != null) {
+                activeTasks.remove(subject);
+            }
+            return;
+        }
+
+        remove(task.getId());
+
+        List<Task> route = (subject == null) ? null : activeTasks.get(subject);
+        if (route != null && task.isEnabled() && task.hasRegisteredChannel()) {
+            List<Task> tasks = new ArrayList<>(route);
+            tasks.add(task);
+            Collections.sort(tasks, BY_ID);
+            activeTasks.put(subject, Collections.unmodifiableList(tasks));
+        }
+    }
+
+    /**
+     * Removes the task with the given ID from all routes.
+     *
+     * @param taskId  the ID of the task
+     */
+    synchronized void remove(Long taskId) {
+        version++;
+
+        for (Map.Entry<String, List<Task>> route : activeTasks.entrySet()) {
+            List<Task> tasks = new ArrayList<>(route.getValue());
+            if (removeById(tasks, taskId)) {
+                activeTasks.put(route.getKey(), Collections.unmodifiableList(tasks));
+            }
+        }
+    }
+
+    /**
+     * Removes all routes and parsers, they will be compiled again on their next lookup.
+     */
+    synchronized void clear() {
+        version++;
+
+        triggers.clear();
+        activeTasks.clear();
+        parsers.clear();
+    }
+
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        int type = event.getType();
+        if (type != BundleEvent.STARTING && type != BundleEvent.STOPPING) {
+            LOGGER.debug("Bundle {} changed, clearing task routes", event.getBundle().getSymbolicName());
+            clear();
+        }
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+        parsers.clear();
+    }
+
+    private static boolean removeById(List<Task> tasks, Long taskId) {
+        for (int i = 0; i < tasks.size(); ++i) {
+            if (taskId.equals(tasks.get(i).getId())) {
+                tasks.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package org.motechproject.tasks.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ActionInvokerCacheTest {
+
+    private static final String SERVICE_INTERFACE = "org.motechproject.tasks.TestActionService";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference serviceReference;
+
+    private ActionInvokerCache.BoundService service;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(bundleContext.getServiceReference(SERVICE_INTERFACE)).thenReturn(serviceReference);
+        when(bundleContext.getService(serviceReference)).thenReturn(new TestActionService());
+
+        service = new ActionInvokerCache(bundleContext).getService(SERVICE_INTERFACE);
+    }
+
+    @Test
+    public void shouldInvokeMethod() throws Exception {
+        Object result = service.getInvoker("join", new Class[]{String.class, int.class}).invoke(new Object[]{"a", 3});
+
+        assertEquals("aaa", result);
+    }
+
+    @Test
+    public void shouldConvertArgumentsLikeReflection() throws Exception {
+        Object result = service.getInvoker("twice", new Class[]{long.class}).invoke(new Object[]{2});
+
+        assertEquals(4L, result);
+    }
+
+    @Test
+    public void shouldWrapExceptionThrownByMethod() throws Exception {
+        try {
+            service.getInvoker("fail", new Class[]{String.class}).invoke(new Object[]{"message"});
+            fail("Expected " + InvocationTargetException.class.getName());
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("message", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void shouldWrapErrorThrownByMethod() throws Exception {
+        try {
+            service.getInvoker("unlink", new Class[0]).invoke(new Object[0]);
+            fail("Expected " + InvocationTargetException.class.getName());
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof NoClassDefFoundError);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectArgumentOfWrongType() throws Exception {
+        service.getInvoker("join", new Class[]{String.class, int.class}).invoke(new Object[]{3, "a"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNullArgumentOfPrimitiveParameter() throws Exception {
+        service.getInvoker("join", new Class[]{String.class, int.class}).invoke(new Object[]{"a", null});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectWrongNumberOfArguments() throws Exception {
+        service.getInvoker("join", new Class[]{String.class, int.class}).invoke(new Object[]{"a"});
+    }
+
+    public static class TestActionService {
+
+        public String join(String value, int times) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < times; i++) {
+                builder.append(value);
+            }
+            return builder.toString();
+        }
+
+        public long twice(long value) {
+            return 2 * value;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        public void unlink() {
+            throw new NoClassDefFoundError("org/motechproject/tasks/RefreshedClass");
+        }
+    }
+}
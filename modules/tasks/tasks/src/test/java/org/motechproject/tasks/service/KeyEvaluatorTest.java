@@ -4,6 +4,10 @@ import org.joda.time.DateTime;
 import org.junit.Test;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.tasks.domain.Task;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 
@@ -42,4 +46,30 @@ public class KeyEvaluatorTest {
     public void shouldThrowExceptionWhenManipulationIsUnknown(){
         new KeyEvaluator(null).manipulate("undefined", "something");
     }
+
+    @Test
+    public void shouldEvaluateTemplateWithManipulations() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "john smith");
+        parameters.put("id", "12345");
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(new Task(), parameters, null));
+
+        String template = "Hi {{trigger.name?capitalize}}, your id is {{trigger.id?substring(3)}} (id: {{trigger.id}})";
+        String secondTemplate = "{{trigger.name?join(_)?format({{trigger.id}})}}%s";
+
+        assertEquals("Hi John Smith, your id is 45 (id: {{trigger.id}})", keyEvaluator.evaluateTemplateString(template));
+        assertEquals("Hi John Smith, your id is 45 (id: {{trigger.id}})", keyEvaluator.evaluateTemplateString(template));
+        assertEquals("john_smith%s", keyEvaluator.evaluateTemplateString(secondTemplate));
+        assertEquals("no keys", keyEvaluator.evaluateTemplateString("no keys"));
+        assertEquals(null, keyEvaluator.evaluateTemplateString(null));
+    }
+
+    @Test
+    public void shouldReplaceOtherOccurrencesOfKeysInTemplate() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "12345");
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(new Task(), parameters, null));
+
+        assertEquals("12345 (12345)", keyEvaluator.evaluateTemplateString("{{trigger.id}} ({{trigger.id}})"));
+    }
 }
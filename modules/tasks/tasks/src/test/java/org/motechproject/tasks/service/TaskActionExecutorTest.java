@@ -2,6 +2,7 @@ package org.motechproject.tasks.service;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.event.MotechEvent;
@@ -15,15 +16,20 @@ import org.motechproject.tasks.domain.TaskBuilder;
 import org.motechproject.tasks.ex.ActionNotFoundException;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 
 import java.util.HashMap;
 import java.util.TreeSet;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -175,9 +181,48 @@ public class TaskActionExecutorTest {
         verify(activityService).addWarning(task, "task.warning.serviceUnavailable", "serviceInterface");
     }
 
+    @Test
+    public void shouldLookUpServiceOnlyUntilItChanges() throws ActionNotFoundException, TaskHandlerException {
+        TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action")
+                .setDescription("").setServiceInterface("serviceInterface").setServiceMethod("serviceMethod")
+                .setActionParameters(new TreeSet<ActionParameter>()).createActionEvent();
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+
+        ServiceReference serviceReference = mock(ServiceReference.class);
+        when(serviceReference.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[]{"serviceInterface"});
+        when(bundleContext.getServiceReference("serviceInterface")).thenReturn(serviceReference);
+        TestService testService = new TestService();
+        when(bundleContext.getService(serviceReference)).thenReturn(testService);
+
+        Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay);
+        taskActionExecutor.setBundleContext(bundleContext);
+
+        for (int i = 0; i < 3; ++i) {
+            taskActionExecutor.execute(task, actionInformation, new TaskContext(task, new HashMap(), activityService));
+        }
+
+        assertEquals(3, testService.invocations);
+        verify(bundleContext).getServiceReference("serviceInterface");
+
+        ArgumentCaptor<ServiceListener> captor = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(bundleContext).addServiceListener(captor.capture());
+        captor.getValue().serviceChanged(new ServiceEvent(ServiceEvent.UNREGISTERING, serviceReference));
+
+        verify(bundleContext).ungetService(serviceReference);
+
+        taskActionExecutor.execute(task, actionInformation, new TaskContext(task, new HashMap(), activityService));
+
+        assertEquals(4, testService.invocations);
+        verify(bundleContext, times(2)).getServiceReference("serviceInterface");
+    }
+
     private class TestService {
 
         private boolean invoked;
+        private int invocations;
 
         private boolean serviceMethodInvoked() {
             return invoked;
@@ -185,6 +230,7 @@ public class TaskActionExecutorTest {
 
         public void serviceMethod() {
             invoked = true;
+            invocations++;
         }
     }
 }
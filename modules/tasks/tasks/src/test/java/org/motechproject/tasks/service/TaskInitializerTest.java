@@ -0,0 +1,163 @@
+package org.motechproject.tasks.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.commons.api.BatchDataProvider;
+import org.motechproject.commons.api.DataProvider;
+import org.motechproject.tasks.domain.DataSource;
+import org.motechproject.tasks.domain.Lookup;
+import org.motechproject.tasks.domain.Task;
+import org.motechproject.tasks.domain.TaskConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskInitializerTest {
+
+    private static final String PROVIDER = "provider";
+    private static final String OTHER_PROVIDER = "otherProvider";
+
+    @Mock
+    private BatchDataProvider batchProvider;
+
+    @Mock
+    private DataProvider provider;
+
+    @Mock
+    private TaskActivityService activityService;
+
+    private Map<String, DataProvider> providers;
+    private Map<String, Object> parameters;
+    private Task task;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(batchProvider.getName()).thenReturn(PROVIDER);
+        when(provider.getName()).thenReturn(OTHER_PROVIDER);
+
+        providers = new HashMap<>();
+        providers.put(PROVIDER, batchProvider);
+        providers.put(OTHER_PROVIDER, provider);
+
+        parameters = new HashMap<>();
+        parameters.put("first", "1");
+        parameters.put("second", "2");
+
+        task = new Task();
+        task.setName("task");
+        task.setTaskConfig(new TaskConfig());
+    }
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldBatchIndependentLookupsOfTheSameTypeAndLookup() throws Exception {
+        task.getTaskConfig().add(dataSource(PROVIDER, 1L, "{{trigger.first}}"), dataSource(PROVIDER, 2L, "{{trigger.second}}"));
+        when(batchProvider.lookupAll("Patient", "byId", asList(lookupFields("1"), lookupFields("2"))))
+                .thenReturn(asList(patient("A"), patient("B")));
+
+        TaskContext context = new TaskContext(task, parameters, activityService);
+        assertTrue(new TaskInitializer(context).evalConfigSteps(providers));
+
+        assertEquals("A", context.getDataSourceObjectValue("1", "name", "Patient"));
+        assertEquals("B", context.getDataSourceObjectValue("2", "name", "Patient"));
+        verify(batchProvider, never()).lookup(anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    public void shouldLookUpDataSourceAfterTheDataSourceItRefersTo() throws Exception {
+        task.getTaskConfig().add(dataSource(PROVIDER, 1L, "{{trigger.first}}"),
+                dataSource(PROVIDER, 2L, "{{ad.1.Patient#1.name}}"));
+        when(batchProvider.lookup("Patient", "byId", lookupFields("1"))).thenReturn(patient("A"));
+        when(batchProvider.lookup("Patient", "byId", lookupFields("A"))).thenReturn(patient("B"));
+
+        TaskContext context = new TaskContext(task, parameters, activityService);
+        assertTrue(new TaskInitializer(context).evalConfigSteps(providers));
+
+        assertEquals("B", context.getDataSourceObjectValue("2", "name", "Patient"));
+        verify(batchProvider, never()).lookupAll(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    public void shouldTakeRepeatedLookupsFromCache() throws Exception {
+        DataSourceLookupCache cache = new DataSourceLookupCache(TimeUnit.MINUTES.toMillis(1));
+        task.getTaskConfig().add(dataSource(OTHER_PROVIDER, 1L, "{{trigger.first}}"));
+        when(provider.lookup("Patient", "byId", lookupFields("1"))).thenReturn(patient("A"));
+
+        for (int i = 0; i < 2; ++i) {
+            TaskContext context = new TaskContext(task, parameters, activityService);
+            assertTrue(new TaskInitializer(context, cache, null).evalConfigSteps(providers));
+            assertEquals("A", context.getDataSourceObjectValue("1", "name", "Patient"));
+        }
+
+        verify(provider, times(1)).lookup("Patient", "byId", lookupFields("1"));
+    }
+
+    @Test
+    public void shouldExecuteIndependentLookupsConcurrently() throws Exception {
+        executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch latch = new CountDownLatch(2);
+        Answer<Object> awaitOtherLookup = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                latch.countDown();
+                // both lookups have to be in progress at the same time for the latch to open
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+                return patient(((Map) invocation.getArguments()[2]).get("id").toString());
+            }
+        };
+
+        task.getTaskConfig().add(dataSource(OTHER_PROVIDER, 1L, "{{trigger.first}}"),
+                dataSource(OTHER_PROVIDER, 2L, "{{trigger.second}}"));
+        when(provider.lookup(anyString(), anyString(), anyMap())).thenAnswer(awaitOtherLookup);
+
+        TaskContext context = new TaskContext(task, parameters, activityService);
+        assertTrue(new TaskInitializer(context, null, executor).evalConfigSteps(providers));
+
+        assertEquals("1", context.getDataSourceObjectValue("1", "name", "Patient"));
+        assertEquals("2", context.getDataSourceObjectValue("2", "name", "Patient"));
+    }
+
+    private DataSource dataSource(String providerName, Long objectId, String value) {
+        List<Lookup> lookup = Collections.singletonList(new Lookup("id", value));
+        return new DataSource(providerName, 1L, objectId, "Patient", "byId", lookup, true);
+    }
+
+    private Map<String, String> lookupFields(String id) {
+        return Collections.singletonMap("id", id);
+    }
+
+    private Map<String, Object> patient(String name) {
+        return Collections.<String, Object>singletonMap("name", name);
+    }
+}
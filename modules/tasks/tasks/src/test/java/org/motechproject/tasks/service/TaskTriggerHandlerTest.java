@@ -507,7 +507,7 @@ public class TaskTriggerHandlerTest {
 
         handler.handle(createEvent());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -582,6 +582,64 @@ public class TaskTriggerHandlerTest {
         assertEquals("task.error.templateNull", captor.getValue().getMessage());
     }
 
+    @Test
+    public void shouldKeepCountingFailuresAfterTaskIsReloaded() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+        task.getActions().get(0).getValues().put("message", null);
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+
+        assertEquals(2, task.getFailuresInRow());
+        verify(taskService).save(task);
+
+        // only the first failure was persisted
+        Task reloaded = reload(task, 1);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(asList(reloaded));
+
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+
+        assertTrue(reloaded.isEnabled());
+        verify(taskService, never()).save(reloaded);
+
+        handler.handle(createEvent());
+
+        assertEquals(5, reloaded.getFailuresInRow());
+        assertFalse(reloaded.isEnabled());
+        verify(taskService).save(reloaded);
+        verify(taskActivityService).addWarning(reloaded);
+    }
+
+    @Test
+    public void shouldStartCountingFailuresOverAfterTaskIsReEnabled() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+        task.getActions().get(0).getValues().put("message", null);
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenReturn(actionEvent);
+
+        handler.handle(createEvent());
+        handler.handle(createEvent());
+
+        // the failures were reset when the task was re-enabled
+        Task reloaded = reload(task, 0);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(asList(reloaded));
+
+        handler.handle(createEvent());
+
+        assertEquals(1, reloaded.getFailuresInRow());
+        assertTrue(reloaded.isEnabled());
+        verify(taskService).save(reloaded);
+    }
+
     @Test
     public void shouldDisableTaskWhenActionDoesNotFindDataSource_WithFailIfDataNotFoundSelected() throws Exception {
         Map<String , DataProvider> providers = new HashMap<>();
@@ -1003,7 +1061,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1026,7 +1084,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1102,7 +1160,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1301,7 +1359,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1332,7 +1390,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1365,7 +1423,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1404,6 +1462,27 @@ public class TaskTriggerHandlerTest {
         assertEquals(createHandlerFailureSubject(task.getName(), TRIGGER), captorEvent.getValue().getSubject());
     }
 
+    @Test
+    public void shouldNotSaveTaskWhichKeepsFailing() throws Exception {
+        setTriggerEvent();
+        setActionEvent();
+
+        task.setFailuresInRow(1);
+
+        when(taskService.findTrigger(TRIGGER_SUBJECT)).thenReturn(triggerEvent);
+        when(taskService.findActiveTasksForTrigger(triggerEvent)).thenReturn(tasks);
+        when(taskService.getActionEventFor(task.getActions().get(0))).thenThrow(new RuntimeException());
+
+        handler.setBundleContext(bundleContext);
+        handler.handle(createEvent());
+
+        assertEquals(2, task.getFailuresInRow());
+        assertTrue(task.isEnabled());
+
+        verify(taskService, never()).save(task);
+        verify(taskActivityService).addError(eq(task), any(TaskHandlerException.class));
+    }
+
     @Test
     public void shouldExecuteTwoActions() throws Exception {
         setTriggerEvent();
@@ -1420,7 +1499,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(taskService).findTrigger(TRIGGER_SUBJECT);
         verify(taskService).findActiveTasksForTrigger(triggerEvent);
         verify(taskService).getActionEventFor(task.getActions().get(0));
@@ -1485,7 +1564,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
 
         MotechEvent event = captor.getAllValues().get(0);
@@ -1508,7 +1587,7 @@ public class TaskTriggerHandlerTest {
 
         assertEquals(0, task.getFailuresInRow());
 
-        verify(taskService).save(task);
+        verify(taskService, never()).save(task);
         verify(eventRelay, times(2)).sendEventMessage(captor.capture());
 
         MotechEvent event = captor.getAllValues().get(1);
@@ -1543,6 +1622,14 @@ public class TaskTriggerHandlerTest {
         tasks.add(task);
     }
 
+    private Task reload(Task cached, int failuresInRow) {
+        Task reloaded = new Task(cached.getName(), cached.getTrigger(), cached.getActions());
+        reloaded.setId(cached.getId());
+        reloaded.setHasRegisteredChannel(true);
+        reloaded.setFailuresInRow(failuresInRow);
+        return reloaded;
+    }
+
     private void setSecondAction() {
         Map<String, String> actionValues = new HashMap<>();
         actionValues.put("phone", "123456");
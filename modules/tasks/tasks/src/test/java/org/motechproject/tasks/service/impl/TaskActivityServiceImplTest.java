@@ -1,17 +1,24 @@
 package org.motechproject.tasks.service.impl;
 
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.commons.api.Range;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
+import org.motechproject.server.config.SettingsFacade;
 import org.motechproject.tasks.domain.Task;
 import org.motechproject.tasks.domain.TaskActivity;
 import org.motechproject.tasks.domain.TaskActivityType;
 import org.motechproject.tasks.ex.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,6 +32,9 @@ import static org.apache.commons.lang.exception.ExceptionUtils.getStackTrace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -45,6 +55,9 @@ public class TaskActivityServiceImplTest {
     @Mock
     TaskActivitiesDataService taskActivitiesDataService;
 
+    @Mock
+    SettingsFacade settings;
+
     TaskActivityService activityService;
 
     Task task;
@@ -161,6 +174,164 @@ public class TaskActivityServiceImplTest {
         assertEquals(activities, actual);
     }
 
+    @Test
+    public void shouldWriteActivitiesBehindOnceStarted() {
+        TaskActivityServiceImpl service = startedService("10");
+        try {
+            service.addSuccess(task);
+            service.addWarning(task);
+
+            verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+            service.getLatestActivities();
+
+            verify(taskActivitiesDataService).doInTransaction(any(TransactionCallback.class));
+            verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    public void shouldStoreActivityImmediatelyWhenBufferIsFull() {
+        TaskActivityServiceImpl service = startedService("1");
+        try {
+            service.addSuccess(task);
+            service.addWarning(task);
+
+            ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+            verify(taskActivitiesDataService).create(captor.capture());
+            assertEquals("task.warning.taskDisabled", captor.getValue().getMessage());
+        } finally {
+            service.stop();
+        }
+
+        verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldStoreActivitiesOneByOneIfBatchFails() {
+        when(taskActivitiesDataService.create(any(TaskActivity.class)))
+                .thenThrow(new IllegalStateException("batch failed"))
+                .thenThrow(new IllegalStateException("invalid activity"))
+                .thenReturn(null);
+
+        TaskActivityServiceImpl service = startedService("10");
+        try {
+            service.addSuccess(task);
+            service.addWarning(task);
+
+            service.flush();
+
+            ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+            verify(taskActivitiesDataService, times(3)).create(captor.capture());
+
+            // the failed batch is stored again one by one, the activity which can not be stored is skipped
+            List<TaskActivity> stored = captor.getAllValues();
+            assertEquals("task.success.ok", stored.get(0).getMessage());
+            assertEquals("task.success.ok", stored.get(1).getMessage());
+            assertEquals("task.warning.taskDisabled", stored.get(2).getMessage());
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    public void shouldStoreActivitiesRecordedWhileStopping() {
+        final TaskActivityServiceImpl service = startedService("10");
+        service.addSuccess(task);
+
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenAnswer(new Answer<Object>() {
+            private boolean stopping = true;
+
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (stopping) {
+                    // another thread records an activity while the buffer is being flushed
+                    stopping = false;
+                    service.addWarning(task);
+                }
+                return null;
+            }
+        });
+
+        service.stop();
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService, times(2)).create(captor.capture());
+        assertEquals("task.success.ok", captor.getAllValues().get(0).getMessage());
+        assertEquals("task.warning.taskDisabled", captor.getAllValues().get(1).getMessage());
+    }
+
+    @Test
+    public void shouldRollUpOldSuccessActivities() {
+        DateTime day = DateUtil.now().minusDays(3).withTimeAtStartOfDay();
+        TaskActivity existing = new TaskActivity("task.success.rollup", "3", TASK_ID, SUCCESS);
+
+        when(settings.getProperty("task.activity.rollup.days")).thenReturn("1");
+        when(taskActivitiesDataService.byMessageAndDate(eq("task.success.ok"), any(Range.class), any(QueryParams.class)))
+                .thenReturn(asList(createSuccess(day.plusHours(1)), createSuccess(day.plusHours(2)),
+                        createSuccess(day.minusDays(1))))
+                .thenReturn(new ArrayList<TaskActivity>());
+        when(taskActivitiesDataService.byTaskMessageAndDate(anyLong(), anyString(), any(Range.class)))
+                .thenReturn(new ArrayList<TaskActivity>());
+        when(taskActivitiesDataService.byTaskMessageAndDate(TASK_ID, "task.success.rollup", new Range<>(day, day)))
+                .thenReturn(asList(existing));
+
+        TaskActivityServiceImpl service = serviceWithSettings();
+        service.maintain();
+
+        assertEquals(asList("5"), existing.getFields());
+        verify(taskActivitiesDataService).update(existing);
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService).create(captor.capture());
+        assertEquals("task.success.rollup", captor.getValue().getMessage());
+        assertEquals(asList("1"), captor.getValue().getFields());
+        assertEquals(day.minusDays(1), captor.getValue().getDate());
+
+        verify(taskActivitiesDataService, times(3)).delete(any(TaskActivity.class));
+        verify(taskActivitiesDataService, never()).byDate(any(Range.class), any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldDeleteActivitiesOlderThanRetentionPeriod() {
+        when(settings.getProperty("task.activity.retention.days")).thenReturn("30");
+        when(taskActivitiesDataService.byDate(any(Range.class), any(QueryParams.class)))
+                .thenReturn(activities)
+                .thenReturn(new ArrayList<TaskActivity>());
+
+        serviceWithSettings().maintain();
+
+        verify(taskActivitiesDataService, times(activities.size())).delete(any(TaskActivity.class));
+        verify(taskActivitiesDataService, never()).byMessageAndDate(anyString(), any(Range.class),
+                any(QueryParams.class));
+    }
+
+    private TaskActivityServiceImpl serviceWithSettings() {
+        when(taskActivitiesDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+
+        TaskActivityServiceImpl service = new TaskActivityServiceImpl(taskActivitiesDataService);
+        service.setSettings(settings);
+
+        return service;
+    }
+
+    private TaskActivityServiceImpl startedService(String bufferSize) {
+        when(settings.getProperty("task.activity.flush.interval")).thenReturn("3600000");
+        when(settings.getProperty("task.activity.buffer.size")).thenReturn(bufferSize);
+
+        TaskActivityServiceImpl service = serviceWithSettings();
+        service.start();
+
+        return service;
+    }
+
     private void assertActivity(String messageKey, List<String> field, Long taskId, TaskActivityType activityType,
                                 String stackTraceElement, TaskActivity activity) {
         assertNotNull(activity);
@@ -198,6 +369,12 @@ public class TaskActivityServiceImplTest {
         return new TaskActivity(SUCCESS.getValue(), TASK_ID, SUCCESS);
     }
 
+    private TaskActivity createSuccess(DateTime date) {
+        TaskActivity success = createSuccess();
+        success.setDate(date);
+        return success;
+    }
+
     private TaskActivity createWarning() {
         return new TaskActivity(WARNING.getValue(), TASK_ID, WARNING);
     }
@@ -80,6 +80,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.domain.ParameterType.UNICODE;
 import static org.motechproject.tasks.events.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.events.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.events.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 
@@ -342,6 +343,49 @@ public class TaskServiceImplTest {
         assertEquals(asList(t), tasks);
     }
 
+    @Test
+    public void shouldServeActiveTasksFromRoutingTable() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(1L);
+
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject(trigger.getSubject());
+
+        when(tasksDataService.executeQuery(Matchers.<QueryExecution<Object>>any())).thenReturn(asList(t));
+        when(tasksDataService.findById(1L)).thenReturn(t);
+
+        assertEquals(asList(t), taskService.findActiveTasksForTrigger(triggerEvent));
+        assertEquals(asList(t), taskService.findActiveTasksForTrigger(triggerEvent));
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+
+        taskService.deleteTask(1L);
+
+        assertTrue(taskService.findActiveTasksForTrigger(triggerEvent).isEmpty());
+        verify(tasksDataService, times(1)).executeQuery(Matchers.<QueryExecution<Object>>any());
+    }
+
+    @Test
+    public void shouldLookUpTriggerAgainAfterChannelDeregistration() throws TriggerNotFoundException {
+        TriggerEvent triggerEvent = new TriggerEvent();
+        triggerEvent.setSubject("RECEIVE");
+
+        Channel c = new Channel();
+        c.setTriggerTaskEvents(asList(triggerEvent));
+
+        when(channelService.getAllChannels()).thenReturn(asList(c));
+
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        verify(channelService, times(1)).getAllChannels();
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(CHANNEL_MODULE_NAME, "test-trigger");
+        taskService.clearRoutesAfterChannelDeregistration(new MotechEvent(CHANNEL_DEREGISTER_SUBJECT, params));
+
+        assertEquals(triggerEvent, taskService.findTrigger("RECEIVE"));
+        verify(channelService, times(2)).getAllChannels();
+    }
+
     @Test(expected = TriggerNotFoundException.class)
     public void shouldThrowTriggerNotFoundExceptionWhenChannelListIsEmpty() throws TriggerNotFoundException {
         when(channelService.getAllChannels()).thenReturn(new ArrayList<Channel>());
@@ -8,12 +8,15 @@ import org.springframework.core.io.Resource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Base class for every data provider.
+ * Base class for every data provider. By default, batches of lookups are executed one by one, providers able to do
+ * better should override {@link #lookupAll(String, String, List)}.
  */
-public abstract class AbstractDataProvider implements DataProvider {
+public abstract class AbstractDataProvider implements BatchDataProvider {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -38,6 +41,17 @@ public abstract class AbstractDataProvider implements DataProvider {
         return getBody();
     }
 
+    @Override
+    public List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupFields) {
+        List<Object> result = new ArrayList<>(lookupFields.size());
+
+        for (Map<String, String> fields : lookupFields) {
+            result.add(lookup(type, lookupName, fields));
+        }
+
+        return result;
+    }
+
     @Override
     public boolean supports(String type) {
         boolean support;
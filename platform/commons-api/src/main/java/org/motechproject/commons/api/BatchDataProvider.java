@@ -0,0 +1,24 @@
+package org.motechproject.commons.api;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for data providers which are able to execute many lookups at once. Tasks use it to resolve data sources
+ * of the same type and lookup in a single call, instead of calling {@link DataProvider#lookup(String, String, Map)}
+ * for each of them.
+ */
+public interface BatchDataProvider extends DataProvider {
+
+    /**
+     * Returns objects matching the given conditions, one for each map of lookup fields.
+     *
+     * @param type  the type of searched objects
+     * @param lookupName  the name of used lookup
+     * @param lookupFields  the list of maps of fields names and expected values
+     * @return the list of objects, the object at given index matches the conditions at the same index, or is null if
+     * there is no such object
+     */
+    List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupFields);
+
+}
@@ -9,6 +9,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -38,7 +39,7 @@ public class AbstractDataProviderLookupTest {
 
         @Override
         public Object lookup(String clazz, String lookupName, Map<String, String> lookupFields) {
-            return null;
+            return lookupFields.get("id");
         }
     }
 
@@ -73,6 +74,17 @@ public class AbstractDataProviderLookupTest {
         testDataProvider.setBody(resource);
     }
 
+    @Test
+    public void shouldExecuteBatchOfLookupsOneByOne() {
+        List<Map<String, String>> lookupFields = Arrays.asList(
+                Collections.singletonMap("id", "1"), Collections.<String, String>emptyMap(),
+                Collections.singletonMap("id", "3"));
+
+        List<Object> result = testDataProvider.lookupAll("Range", "byId", lookupFields);
+
+        assertEquals(Arrays.<Object>asList("1", null, "3"), result);
+    }
+
     @Test
     public void shouldSetBody() throws IOException {
         String body = "{name='test', objects=[]}";
@@ -46,6 +46,7 @@ public final class ConfigurationConstants {
 
     public static final String EVENT_RELAY_CLASS_NAME = "org.motechproject.event.listener.EventRelay";
     public static final String MOTECH_EVENT_CLASS_NAME = "org.motechproject.event.MotechEvent";
+    public static final String COALESCING_MODE_CLASS_NAME = "org.motechproject.event.listener.CoalescingMode";
 
     public static final String EMAIL_REQUIRED = "security.required.email";
     public static final String SESSION_TIMEOUT = "security.session.timeout";
@@ -0,0 +1,100 @@
+package org.motechproject.event;
+
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Propagates trace identifiers between events. Every event published gets a trace ID, stored in its
+ * {@link MotechEvent#PARAM_TRACE_ID} parameter. While a listener handles an event, its trace ID is bound to
+ * the handling thread and passed on to all events published by the listener, so the whole chain of events caused by,
+ * for example, a single scheduler trigger shares one trace ID. The bound trace ID is also put in the logging
+ * context under {@link #MDC_KEY}, so it can be included in the log entries of the modules handling the events.
+ */
+public final class EventTrace {
+
+    /**
+     * The key of the trace ID in the logging context.
+     */
+    public static final String MDC_KEY = "motechTraceId";
+
+    private static final ThreadLocal<String> CURRENT_TRACE_ID = new ThreadLocal<>();
+
+    private EventTrace() {
+    }
+
+    /**
+     * Returns the trace ID bound to the current thread.
+     *
+     * @return the trace ID of the event being handled by this thread, or null if it is not handling any
+     */
+    public static String getCurrentTraceId() {
+        return CURRENT_TRACE_ID.get();
+    }
+
+    /**
+     * Returns the trace ID of the event.
+     *
+     * @param event the event
+     * @return the trace ID of the event, or null if it wasn't assigned one yet
+     */
+    public static String getTraceId(MotechEvent event) {
+        Object traceId = event.getParameters().get(MotechEvent.PARAM_TRACE_ID);
+        return (traceId == null) ? null : traceId.toString();
+    }
+
+    /**
+     * Returns a copy of the event carrying a trace ID. The trace ID of the event is kept if it already has one,
+     * otherwise the trace ID bound to the current thread is used if there is one, or a new trace is started.
+     * The event itself is never modified, since its parameters belong to the publisher and may be immutable.
+     *
+     * @param event the event being published
+     * @return the copy of the event, with its own modifiable parameters
+     */
+    public static MotechEvent withTraceId(MotechEvent event) {
+        Map<String, Object> parameters = new HashMap<>(event.getParameters());
+
+        if (!parameters.containsKey(MotechEvent.PARAM_TRACE_ID)) {
+            String traceId = CURRENT_TRACE_ID.get();
+            parameters.put(MotechEvent.PARAM_TRACE_ID, (traceId == null) ? UUID.randomUUID().toString() : traceId);
+        }
+
+        MotechEvent copy = new MotechEvent(event.getSubject(), parameters);
+        copy.setId(event.getId());
+        return copy;
+    }
+
+    /**
+     * Binds the trace ID of the event to the current thread. Must be followed by {@link #end(String)} once
+     * the event is handled.
+     *
+     * @param event the event about to be handled
+     * @return the trace ID bound to the thread before, to be restored afterwards
+     */
+    public static String begin(MotechEvent event) {
+        String previous = CURRENT_TRACE_ID.get();
+        bind(getTraceId(event));
+        return previous;
+    }
+
+    /**
+     * Restores the trace ID bound to the current thread before the event was handled.
+     *
+     * @param previous the value returned by {@link #begin(MotechEvent)}
+     */
+    public static void end(String previous) {
+        bind(previous);
+    }
+
+    private static void bind(String traceId) {
+        if (traceId == null) {
+            CURRENT_TRACE_ID.remove();
+            MDC.remove(MDC_KEY);
+        } else {
+            CURRENT_TRACE_ID.set(traceId);
+            MDC.put(MDC_KEY, traceId);
+        }
+    }
+}
@@ -18,6 +18,8 @@ public class MotechEvent implements Serializable {
     public static final String PARAM_REDELIVERY_COUNT = "motechEventRedeliveryCount";
     public static final String PARAM_INVALID_MOTECH_EVENT = "invalidMotechEvent";
     public static final String PARAM_DISCARDED_MOTECH_EVENT = "discardedMotechEvent";
+    public static final String PARAM_TRACE_ID = "motechTraceId";
+    public static final String PARAM_PUBLISH_TIME = "motechPublishTime";
 
     private static final long serialVersionUID = -6710829948064847678L;
 
@@ -0,0 +1,19 @@
+package org.motechproject.event.listener;
+
+/**
+ * Decides how events with the same coalescing key, published within the coalescing window, are combined into
+ * the single event that is eventually sent. See {@link EventRelay#sendCoalescedEventMessage(org.motechproject.event.MotechEvent, String, CoalescingMode)}.
+ */
+public enum CoalescingMode {
+
+    /**
+     * Only the most recently published event is sent, the earlier ones are dropped.
+     */
+    LAST_WRITE_WINS,
+
+    /**
+     * The parameters of all events are merged, with the parameters of later events overriding the earlier ones.
+     * The subject of the most recently published event is used.
+     */
+    MERGE
+}
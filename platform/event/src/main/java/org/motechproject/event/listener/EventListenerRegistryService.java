@@ -29,7 +29,8 @@ public interface EventListenerRegistryService {
 
     /**
      * Returns all the event listeners registered for the event with the given subject.
-     * If there are no listeners, an empty list is returned.
+     * If there are no listeners, an empty set is returned. The returned set is an unmodifiable
+     * snapshot, it will not reflect listeners registered or removed afterwards.
      *
      * @param subject the subject of the event
      * @return the matching event listeners
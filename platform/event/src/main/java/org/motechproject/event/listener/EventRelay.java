@@ -2,6 +2,8 @@ package org.motechproject.event.listener;
 
 import org.motechproject.event.MotechEvent;
 
+import java.util.Collection;
+
 /**
  * The <code>EventRelay</code> interface provides methods that allow sending {@link org.motechproject.event.MotechEvent}
  * via ActiveMQ, either to the queue (ActiveMQ selects the subscriber that will handle the event) or to the topic (event
@@ -35,4 +37,50 @@ public interface EventRelay {
      * @param motechEvent the event to be broadcast
      */
     void broadcastEventMessage(MotechEvent motechEvent);
+
+    /**
+     * Publishes the event messages in a queue, the same way as {@link #sendEventMessage(MotechEvent)} does for a single event.
+     * Listeners are resolved only once for every distinct subject in the batch and all resulting messages are sent to ActiveMQ
+     * in a single transaction, which makes this method considerably cheaper than sending the events one by one.
+     * Either all messages going to ActiveMQ are sent, or none of them. If local dispatch is enabled, events accepted
+     * by the local queues of their listeners skip ActiveMQ and are handed over before the batch is sent,
+     * so they are handled even if sending the rest of the batch fails.
+     *
+     * @param motechEvents the events to be sent
+     */
+    void sendEventMessages(Collection<MotechEvent> motechEvents);
+
+    /**
+     * Publishes the event messages in a topic, the same way as {@link #broadcastEventMessage(MotechEvent)} does for a single event.
+     * Listeners are resolved only once for every distinct subject in the batch and all resulting messages are sent to ActiveMQ
+     * in a single transaction. Either all messages of the batch are broadcast, or none of them.
+     *
+     * @param motechEvents the events to be broadcast
+     */
+    void broadcastEventMessages(Collection<MotechEvent> motechEvents);
+
+    /**
+     * Publishes the event message in a queue, coalescing it with other events published with the same key.
+     * The event is held back for a short window, configured with the <code>motech.message.coalescing.window</code> property,
+     * and events with the same key published within that window are combined according to the given mode.
+     * Only the resulting event is then sent, the same way as {@link #sendEventMessage(MotechEvent)} does.
+     * This is meant for bursts of events superseding each other, e.g. notifications about changes of the same entity,
+     * where listeners are only interested in the latest state. Coalescing is local to the Motech instance.
+     *
+     * @param motechEvent the event to be sent
+     * @param coalescingKey the key identifying events which can be coalesced with each other
+     * @param mode the way events with the same key are combined
+     */
+    void sendCoalescedEventMessage(MotechEvent motechEvent, String coalescingKey, CoalescingMode mode);
+
+    /**
+     * Publishes the event message in a topic, coalescing it with other events broadcast with the same key.
+     * Events are combined the same way as in {@link #sendCoalescedEventMessage(MotechEvent, String, CoalescingMode)},
+     * the resulting event is then broadcast the same way as {@link #broadcastEventMessage(MotechEvent)} does.
+     *
+     * @param motechEvent the event to be broadcast
+     * @param coalescingKey the key identifying events which can be coalesced with each other
+     * @param mode the way events with the same key are combined
+     */
+    void broadcastCoalescedEventMessage(MotechEvent motechEvent, String coalescingKey, CoalescingMode mode);
 }
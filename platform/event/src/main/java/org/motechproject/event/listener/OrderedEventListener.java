@@ -0,0 +1,10 @@
+package org.motechproject.event.listener;
+
+/**
+ * Marks event listeners that must receive broadcast events one at a time, in the order in which they were
+ * received by this node. Other listeners may handle broadcast events concurrently. Listeners created using
+ * annotations request ordered delivery through
+ * {@link org.motechproject.event.listener.annotations.MotechListener#ordered()} instead.
+ */
+public interface OrderedEventListener extends EventListener {
+}
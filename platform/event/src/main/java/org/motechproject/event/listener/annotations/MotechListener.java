@@ -36,4 +36,13 @@ public @interface MotechListener {
      * @return the value of a {@link org.motechproject.event.listener.annotations.MotechListenerType}
      */
     MotechListenerType type() default MotechListenerType.MOTECH_EVENT;
+
+    /**
+     * Sets whether broadcast events should be handed to the listener one at a time, in the order they were received.
+     * By default broadcast events are delivered concurrently, so a listener can receive them in any order.
+     *
+     * @return true if the listener requires ordered delivery of broadcast events, false otherwise
+     * @see org.motechproject.event.listener.OrderedEventListener
+     */
+    boolean ordered() default false;
 }
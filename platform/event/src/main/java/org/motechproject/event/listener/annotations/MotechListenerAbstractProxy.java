@@ -2,6 +2,9 @@ package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
 
@@ -16,6 +19,8 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
     private final String name;
     private final Object bean;
     private final Method method;
+    private final boolean ordered;
+    private final ClassLoader beanClassLoader;
 
     /**
      *
@@ -27,6 +32,23 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
         this.name = name;
         this.bean = bean;
         this.method = method;
+
+        this.ordered = isOrdered(bean, method);
+        this.beanClassLoader = (bean == null) ? null : bean.getClass().getClassLoader();
+    }
+
+    private static boolean isOrdered(Object bean, Method method) {
+        if (method == null) {
+            return false;
+        }
+
+        // the method of an AOP proxy is not annotated, the annotation is read from the method of the proxied class
+        Method originalMethod = (bean == null) ? null :
+                ReflectionUtils.findMethod(AopUtils.getTargetClass(bean), method.getName(), method.getParameterTypes());
+        MotechListener annotation = AnnotationUtils.findAnnotation((originalMethod == null) ? method : originalMethod,
+                MotechListener.class);
+
+        return annotation != null && annotation.ordered();
     }
 
     /**
@@ -63,4 +85,22 @@ public abstract class MotechListenerAbstractProxy implements EventListener {
     public Method getMethod() {
         return method;
     }
+
+    /**
+     * Returns the class loader of the bean, used as the context class loader while handling events.
+     *
+     * @return the class loader of the bean class
+     */
+    public ClassLoader getBeanClassLoader() {
+        return beanClassLoader;
+    }
+
+    /**
+     * Checks whether the handler requires ordered delivery of broadcast events.
+     *
+     * @return true if ordered delivery was requested using {@link MotechListener#ordered()}, false otherwise
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
 }
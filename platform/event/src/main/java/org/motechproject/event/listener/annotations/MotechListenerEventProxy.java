@@ -1,7 +1,6 @@
 package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
-import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
 
@@ -13,16 +12,19 @@ import java.lang.reflect.Method;
  */
 public class MotechListenerEventProxy extends MotechListenerAbstractProxy {
 
+    private final MotechListenerInvoker invoker;
+
     /**
       * @see org.motechproject.event.listener.annotations.MotechListenerAbstractProxy#MotechListenerAbstractProxy(String, Object, java.lang.reflect.Method)
       */
     public MotechListenerEventProxy(String name, Object bean, Method method) {
         super(name, bean, method);
+        this.invoker = (method == null) ? null : new MotechListenerInvoker(method);
     }
 
     @Override
     public void callHandler(MotechEvent event) {
-        ReflectionUtils.invokeMethod(getMethod(), getBean(), event);
+        invoker.invoke(getBean(), event);
     }
 
 }
@@ -0,0 +1,60 @@
+package org.motechproject.event.listener.annotations;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes the handler method of a listener bean through a method handle, resolved once when the listener
+ * is registered. The handle is adapted to take the bean and an array of arguments, so invoking it does not
+ * go through reflection and its access checks for every event.
+ */
+final class MotechListenerInvoker {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+
+    private final MethodHandle handle;
+
+    /**
+     * @param method the handler method
+     */
+    MotechListenerInvoker(Method method) {
+        ReflectionUtils.makeAccessible(method);
+
+        MethodHandle methodHandle;
+        try {
+            methodHandle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access the listener method " + method.toGenericString(), e);
+        }
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            // static handlers ignore the bean, same as with reflection
+            methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+        }
+
+        int parameterCount = method.getParameterTypes().length;
+        this.handle = methodHandle.asType(methodHandle.type().generic()).asSpreader(Object[].class, parameterCount)
+                .asType(INVOKER_TYPE);
+    }
+
+    /**
+     * Invokes the handler method. Runtime exceptions and errors thrown by the handler are rethrown as they are,
+     * checked exceptions are wrapped in an {@link java.lang.reflect.UndeclaredThrowableException}, the same way
+     * as {@link ReflectionUtils#invokeMethod(Method, Object, Object...)} does.
+     *
+     * @param bean the bean where handler exists
+     * @param args the arguments of the handler
+     */
+    void invoke(Object bean, Object... args) {
+        try {
+            handle.invokeExact(bean, args);
+        } catch (Throwable e) {
+            ReflectionUtils.rethrowRuntimeException(e);
+        }
+    }
+}
@@ -2,50 +2,69 @@ package org.motechproject.event.listener.annotations;
 
 import org.motechproject.event.MotechEvent;
 import org.springframework.util.Assert;
-import org.springframework.util.ReflectionUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the type of <code>MotechListener</code> proxy where handler is a method with
  * parameters defined by the {@link org.motechproject.event.listener.annotations.MotechParam}
- * annotation.
+ * annotation. The names and types of the parameters are read once, when the proxy is created.
  *
  * @author yyonkov
  */
 public class MotechListenerNamedParametersProxy extends MotechListenerAbstractProxy {
 
+    private final MotechListenerInvoker invoker;
+    private final Class<?>[] parameterTypes;
+    private final String[] parameterNames;
+
     /**
       * @see org.motechproject.event.listener.annotations.MotechListenerAbstractProxy#MotechListenerAbstractProxy(String, Object, java.lang.reflect.Method)
       */
     public MotechListenerNamedParametersProxy(String name, Object bean, Method method) {
         super(name, bean, method);
+
+        if (method == null) {
+            this.invoker = null;
+            this.parameterTypes = new Class<?>[0];
+            this.parameterNames = new String[0];
+        } else {
+            this.invoker = new MotechListenerInvoker(method);
+            this.parameterTypes = method.getParameterTypes();
+            this.parameterNames = getParameterNames(method.getParameterAnnotations());
+        }
     }
 
     @Override
     public void callHandler(MotechEvent event) {
-        ReflectionUtils.invokeMethod(getMethod(), getBean(), getParameters(event).toArray());
+        invoker.invoke(getBean(), getParameters(event));
     }
 
-    private List<Object> getParameters(MotechEvent event) {
-        List<Object> args = new ArrayList<Object>();
-        Class<?>[] paramTypes = getMethod().getParameterTypes();
-        Annotation[][] paramAnnotations = getMethod().getParameterAnnotations();
-        Assert.isTrue(paramTypes.length == paramAnnotations.length);
-        for (int i = 0; i < paramTypes.length; i++) {
-            Class<?> t = paramTypes[i];
-            Assert.notEmpty(paramAnnotations[i], "MotechParam(name) annotation is required for each parameter.");
-            //TODO now assuming only MotechParam annotation is present...
-            Assert.isAssignable(MotechParam.class, paramAnnotations[i][0].getClass());
-            MotechParam annotation = (MotechParam) paramAnnotations[i][0];
-            Object arg = event.getParameters().get(annotation.value());
-            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null parameter passed.", i, annotation.value()));
+    private Object[] getParameters(MotechEvent event) {
+        Map<String, Object> eventParameters = event.getParameters();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> t = parameterTypes[i];
+            Assert.notNull(parameterNames[i], "MotechParam(name) annotation is required for each parameter.");
+            Object arg = eventParameters.get(parameterNames[i]);
+            Assert.notNull(arg, String.format("parameter #%d with name:\"%s\" not found or null parameter passed.", i, parameterNames[i]));
             Assert.isAssignable(t, arg.getClass(), String.format("Parameter #%d expected subtypes of %s passed %s.", i, t.getName(), arg.getClass().getName()));
-            args.add(arg);
+            args[i] = arg;
         }
         return args;
     }
+
+    private static String[] getParameterNames(Annotation[][] paramAnnotations) {
+        String[] names = new String[paramAnnotations.length];
+        for (int i = 0; i < paramAnnotations.length; i++) {
+            for (Annotation annotation : paramAnnotations[i]) {
+                if (annotation instanceof MotechParam) {
+                    names[i] = ((MotechParam) annotation).value();
+                }
+            }
+        }
+        return names;
+    }
 }
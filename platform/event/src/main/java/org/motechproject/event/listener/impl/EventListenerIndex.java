@@ -0,0 +1,258 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.listener.EventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of the registered event listeners. Listeners are stored in a trie, in which every node
+ * indexes its children by the path element of the subject. Registering or removing listeners never modifies
+ * an existing index - a new index sharing all untouched nodes is returned instead. This allows readers to
+ * use an index without any locking. Listener sets resolved for a subject are cached for the lifetime of
+ * the index, so that subsequent lookups for the same subject do not allocate.
+ */
+public final class EventListenerIndex {
+
+    private static final String SPLIT_REGEX = "\\.";
+    private static final String WILDCARD = "*";
+    private static final int MAX_CACHED_SUBJECTS = 10000;
+
+    private final Node root;
+    private final ConcurrentMap<String, Set<EventListener>> resolvedListeners = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty index.
+     */
+    public EventListenerIndex() {
+        this(Node.EMPTY);
+    }
+
+    private EventListenerIndex(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns an index containing all listeners of this index and the given listener registered for the subject.
+     * If the listener is already registered for the subject, this index is returned.
+     *
+     * @param listener the listener to be registered
+     * @param subject the subject the listener subscribes to, wildcards are allowed as the last path element
+     * @return the index with the listener registered
+     * @throws IllegalArgumentException if the subject is null or not a valid subscription subject
+     */
+    public EventListenerIndex withListener(EventListener listener, String subject) {
+        String[] path = splitSubject(subject);
+
+        boolean wildcard = WILDCARD.equals(path[path.length - 1]);
+        int depth = wildcard ? path.length - 1 : path.length;
+
+        // "*" means that the listener is interested in every event
+        Node newRoot = (depth == 0) ? root.withListener(listener) : root.insert(path, 0, depth, listener, wildcard);
+
+        return (newRoot == root) ? this : new EventListenerIndex(newRoot);
+    }
+
+    /**
+     * Returns an index without any listeners with the given identifier. If there are no such
+     * listeners, this index is returned.
+     *
+     * @param identifier the identifier of the listeners to be removed
+     * @return the index without the listeners
+     */
+    public EventListenerIndex withoutListeners(String identifier) {
+        Node newRoot = root.remove(identifier);
+        return (newRoot == root) ? this : new EventListenerIndex(newRoot);
+    }
+
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#getListeners(String)
+     */
+    public Set<EventListener> getListeners(String subject) {
+        Set<EventListener> listeners = resolvedListeners.get(subject);
+
+        if (listeners == null) {
+            listeners = resolve(subject);
+            // subjects can be generated dynamically, don't let the cache grow without limits
+            if (resolvedListeners.size() < MAX_CACHED_SUBJECTS) {
+                resolvedListeners.putIfAbsent(subject, listeners);
+            }
+        }
+
+        return listeners;
+    }
+
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#hasListener(String)
+     */
+    public boolean hasListener(String subject) {
+        return !getListeners(subject).isEmpty();
+    }
+
+    /**
+     * @see org.motechproject.event.listener.EventListenerRegistryService#getListenerCount(String)
+     */
+    public int getListenerCount(String subject) {
+        return getListeners(subject).size();
+    }
+
+    /**
+     * Checks whether this index contains any listeners.
+     *
+     * @return true if no listeners are registered in this index, false otherwise
+     */
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    private Set<EventListener> resolve(String subject) {
+        Set<EventListener> listeners = new HashSet<>(root.listeners);
+
+        Node node = root;
+        int start = 0;
+        while (node != null) {
+            int end = subject.indexOf('.', start);
+            String pathElement = (end == -1) ? subject.substring(start) : subject.substring(start, end);
+
+            node = node.children.get(pathElement);
+            if (node != null) {
+                listeners.addAll(node.wildcardListeners);
+                if (end == -1) {
+                    listeners.addAll(node.listeners);
+                    node = null;
+                } else {
+                    start = end + 1;
+                }
+            }
+        }
+
+        return listeners.isEmpty() ? Collections.<EventListener>emptySet() : Collections.unmodifiableSet(listeners);
+    }
+
+    private static String[] splitSubject(String subject) {
+        if (subject == null) {
+            throw new IllegalArgumentException("Cannot add listener for null subject");
+        }
+
+        int asteriskLocation = subject.indexOf('*');
+        if (asteriskLocation != -1 && (asteriskLocation + 1) != subject.length()) {
+            throw new IllegalArgumentException("Wildcard must be last element of subject: " + subject);
+        }
+
+        if (subject.contains("..")) {
+            throw new IllegalArgumentException("Subject can not contain an empty path segment: " + subject);
+        }
+
+        String[] path = subject.split(SPLIT_REGEX);
+
+        if (path[path.length - 1].contains(WILDCARD) && path[path.length - 1].length() > 1) {
+            throw new IllegalArgumentException("Wildcard can not be mixed with characters");
+        }
+
+        return path;
+    }
+
+    /**
+     * A single, immutable node of the trie. The root node keeps listeners interested in all events.
+     */
+    private static final class Node {
+
+        private static final Node EMPTY = new Node(Collections.<String, Node>emptyMap(),
+                Collections.<EventListener>emptySet(), Collections.<EventListener>emptySet());
+
+        private final Map<String, Node> children;
+        private final Set<EventListener> listeners;
+        private final Set<EventListener> wildcardListeners;
+
+        private Node(Map<String, Node> children, Set<EventListener> listeners, Set<EventListener> wildcardListeners) {
+            this.children = children;
+            this.listeners = listeners;
+            this.wildcardListeners = wildcardListeners;
+        }
+
+        private Node insert(String[] path, int level, int depth, EventListener listener, boolean wildcard) {
+            if (level == depth) {
+                return wildcard ? withWildcardListener(listener) : withListener(listener);
+            }
+
+            Node child = children.get(path[level]);
+            Node newChild = (child == null ? EMPTY : child).insert(path, level + 1, depth, listener, wildcard);
+
+            return (newChild == child) ? this : withChild(path[level], newChild);
+        }
+
+        private Node withListener(EventListener listener) {
+            return listeners.contains(listener)
+                    ? this
+                    : new Node(children, plus(listeners, listener), wildcardListeners);
+        }
+
+        private Node withWildcardListener(EventListener listener) {
+            return wildcardListeners.contains(listener)
+                    ? this
+                    : new Node(children, listeners, plus(wildcardListeners, listener));
+        }
+
+        private Node withChild(String pathElement, Node child) {
+            Map<String, Node> newChildren = new HashMap<>(children);
+            newChildren.put(pathElement, child);
+            return new Node(Collections.unmodifiableMap(newChildren), listeners, wildcardListeners);
+        }
+
+        private Node remove(String identifier) {
+            boolean changed = false;
+
+            Map<String, Node> newChildren = new HashMap<>();
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                Node child = entry.getValue();
+                Node newChild = child.remove(identifier);
+
+                if (newChild != child) {
+                    changed = true;
+                }
+                if (!newChild.isEmpty()) {
+                    newChildren.put(entry.getKey(), newChild);
+                }
+            }
+
+            Set<EventListener> newListeners = minus(listeners, identifier);
+            Set<EventListener> newWildcardListeners = minus(wildcardListeners, identifier);
+
+            if (!changed && newListeners == listeners && newWildcardListeners == wildcardListeners) {
+                return this;
+            }
+
+            return new Node(newChildren.isEmpty() ? Collections.<String, Node>emptyMap() : Collections.unmodifiableMap(newChildren),
+                    newListeners, newWildcardListeners);
+        }
+
+        private boolean isEmpty() {
+            return children.isEmpty() && listeners.isEmpty() && wildcardListeners.isEmpty();
+        }
+
+        private static Set<EventListener> plus(Set<EventListener> listeners, EventListener listener) {
+            Set<EventListener> result = new HashSet<>(listeners);
+            result.add(listener);
+            return Collections.unmodifiableSet(result);
+        }
+
+        private static Set<EventListener> minus(Set<EventListener> listeners, String identifier) {
+            Set<EventListener> result = new HashSet<>();
+            for (EventListener listener : listeners) {
+                if (!listener.getIdentifier().equals(identifier)) {
+                    result.add(listener);
+                }
+            }
+
+            if (result.size() == listeners.size()) {
+                return listeners;
+            }
+            return result.isEmpty() ? Collections.<EventListener>emptySet() : Collections.unmodifiableSet(result);
+        }
+    }
+}
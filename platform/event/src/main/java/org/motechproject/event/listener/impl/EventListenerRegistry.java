@@ -4,22 +4,24 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
- import org.springframework.stereotype.Service;
+import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Set;
 
 /**
  * Implementation of the {@link EventListenerRegistryService} interface.
- * Acts as a registry for all scheduled event listeners.
+ * Acts as a registry for all scheduled event listeners. Listeners are kept in an immutable
+ * {@link EventListenerIndex}, which gets replaced on every registration change, so
+ * lookups performed while delivering events never block.
  */
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerRegistry.class);
 
-    private EventListenerTree listenerTree = new EventListenerTree();
+    private volatile EventListenerIndex listenerIndex = new EventListenerIndex();
 
-    public void registerListener(EventListener listener, List<String> subjects) {
+    public synchronized void registerListener(EventListener listener, List<String> subjects) {
 
         if (listener == null) {
             throw new IllegalArgumentException("Invalid attempt to register a null EventListener");
@@ -29,13 +31,36 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             throw new IllegalArgumentException("Invalid attempt to register for null subjects");
         }
 
-        // Add the listener to the list of those interested in each event type
+        // Add the listener to the list of those interested in each event type, publish the index once
+        EventListenerIndex index = listenerIndex;
         for (String subject : subjects) {
-            registerListener(listener, subject);
+            index = addListener(index, listener, subject);
         }
+        listenerIndex = index;
     }
 
-    public void registerListener(EventListener listener, String subject) {
+    public synchronized void registerListener(EventListener listener, String subject) {
+        listenerIndex = addListener(listenerIndex, listener, subject);
+    }
+
+    public Set<EventListener> getListeners(String subject) {
+        return listenerIndex.getListeners(subject);
+    }
+
+    public boolean hasListener(String subject) {
+        return listenerIndex.hasListener(subject);
+    }
+
+    public int getListenerCount(String subject) {
+        return listenerIndex.getListenerCount(subject);
+    }
+
+    public synchronized void clearListenersForBean(String beanName) {
+        LOGGER.debug("Clearing listeners for bean: {}", beanName);
+        listenerIndex = listenerIndex.withoutListeners(beanName);
+    }
+
+    private EventListenerIndex addListener(EventListenerIndex index, EventListener listener, String subject) {
         if (listener == null) {
             throw new IllegalArgumentException("Invalid attempt to register a null EventListener");
         }
@@ -48,23 +73,12 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             LOGGER.debug("registering handler for {} to {}", subject, this.toString());
         }
 
-        listenerTree.addListener(listener, subject);
-    }
-
-    public Set<EventListener> getListeners(String subject) {
-        return listenerTree.getListeners(subject);
-    }
-
-    public boolean hasListener(String subject) {
-        return listenerTree.hasListener(subject);
-    }
-
-    public int getListenerCount(String subject) {
-        return listenerTree.getListenerCount(subject);
-    }
+        EventListenerIndex newIndex = index.withListener(listener, subject);
+        if (newIndex == index) {
+            LOGGER.info(String.format("Ignoring second request to register listener %s for subject %s",
+                    listener.getIdentifier(), subject));
+        }
 
-    public void clearListenersForBean(String beanName) {
-        LOGGER.debug("Clearing listeners for bean: {}", beanName);
-        listenerTree.removeAllListeners(beanName);
+        return newIndex;
     }
 }
@@ -1,10 +1,19 @@
 package org.motechproject.event.listener.impl;
 
+import org.motechproject.event.EventTrace;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.CoalescingMode;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
+import org.motechproject.event.messaging.EventCoalescer;
+import org.motechproject.event.messaging.EventLane;
+import org.motechproject.event.messaging.EventLaneRouter;
+import org.motechproject.event.messaging.LocalEventDispatcher;
 import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchSender;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.messaging.TopicEventDispatcher;
+import org.motechproject.event.metrics.EventMetricsRecorder;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.osgi.service.event.Event;
@@ -15,9 +24,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Handles incoming scheduled events and relays those events to the appropriate event listeners.
@@ -33,45 +47,143 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
     private EventListenerRegistry eventListenerRegistry;
     private OutboundEventGateway outboundEventGateway;
+    private OutboundEventBatchSender outboundEventBatchSender;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
+    private LocalEventDispatcher localEventDispatcher;
+    private TopicEventDispatcher topicEventDispatcher;
+    private EventLaneRouter eventLaneRouter;
+    private EventMetricsRecorder eventMetrics;
+    private EventCoalescer eventCoalescer;
+
+    private final EventCoalescer.Publisher queuePublisher = new EventCoalescer.Publisher() {
+        @Override
+        public String getName() {
+            return "queue";
+        }
+
+        @Override
+        public void publish(MotechEvent event) {
+            sendEventMessage(event);
+        }
+    };
+
+    private final EventCoalescer.Publisher topicPublisher = new EventCoalescer.Publisher() {
+        @Override
+        public String getName() {
+            return "topic";
+        }
+
+        @Override
+        public void publish(MotechEvent event) {
+            broadcastEventMessage(event);
+        }
+    };
 
     @Autowired
-    public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin) {
+    public ServerEventRelay(OutboundEventGateway outboundEventGateway, OutboundEventBatchSender outboundEventBatchSender, // NO CHECKSTYLE More than 7 parameters
+                            EventLaneRouter eventLaneRouter, EventListenerRegistry eventListenerRegistry,
+                            MotechEventConfig motechEventConfig, EventAdmin osgiEventAdmin,
+                            LocalEventDispatcher localEventDispatcher, TopicEventDispatcher topicEventDispatcher,
+                            EventMetricsRecorder eventMetrics, EventCoalescer eventCoalescer) {
         this.outboundEventGateway = outboundEventGateway;
+        this.outboundEventBatchSender = outboundEventBatchSender;
+        this.eventLaneRouter = eventLaneRouter;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
+        this.localEventDispatcher = localEventDispatcher;
+        this.topicEventDispatcher = topicEventDispatcher;
+        this.eventMetrics = eventMetrics;
+        this.eventCoalescer = eventCoalescer;
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
     @Override
     public void sendEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
-        Set<EventListener> listeners = getEventListeners(event);
+        MotechEvent published = recordPublished(event);
+        Set<EventListener> listeners = getEventListeners(published);
 
         if (!listeners.isEmpty()) {
             // We need to split the message for each listener to ensure the work units
             // are completed individually. Therefore, if a message fails it will be
             // re-distributed to another server without being lost
-            splitEvent(event, listeners);
+            splitEvent(published, listeners);
         }
     }
 
     @Override
     public void broadcastEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
-        Set<EventListener> listeners = getEventListeners(event);
+        MotechEvent published = recordPublished(event);
+        Set<EventListener> listeners = getEventListeners(published);
 
         // broadcast the event if there are listeners for it, or if it should get proxied as an OSGi event,
         // since we don't keep track of OSGi listeners
-        if (!listeners.isEmpty() || proxyInOsgi(event)) {
-            event.getParameters().put(BROADCAST_MESSAGE, Boolean.TRUE);
-            outboundEventGateway.broadcastEventMessage(event);
+        if (!listeners.isEmpty() || proxyInOsgi(published)) {
+            published.getParameters().put(BROADCAST_MESSAGE, Boolean.TRUE);
+            outboundEventGateway.broadcastEventMessage(published);
+        }
+    }
+
+    @Override
+    public void sendEventMessages(Collection<MotechEvent> events) {
+        verifyEventsNotNull(events);
+
+        Map<String, Set<EventListener>> listenersBySubject = new HashMap<>();
+        List<MotechEvent> messages = new ArrayList<>();
+
+        for (MotechEvent event : events) {
+            MotechEvent published = recordPublished(event);
+            for (EventListener listener : getEventListeners(published, listenersBySubject)) {
+                MotechEvent enrichedEventMessage = createDestinedEvent(published, listener);
+                if (!dispatchLocally(listener, enrichedEventMessage)) {
+                    messages.add(enrichedEventMessage);
+                }
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            outboundEventBatchSender.sendEventMessages(messages);
+        }
+    }
+
+    @Override
+    public void broadcastEventMessages(Collection<MotechEvent> events) {
+        verifyEventsNotNull(events);
+
+        Map<String, Set<EventListener>> listenersBySubject = new HashMap<>();
+        List<MotechEvent> messages = new ArrayList<>();
+
+        for (MotechEvent event : events) {
+            MotechEvent published = recordPublished(event);
+            if (!getEventListeners(published, listenersBySubject).isEmpty() || proxyInOsgi(published)) {
+                published.getParameters().put(BROADCAST_MESSAGE, Boolean.TRUE);
+                messages.add(published);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            outboundEventBatchSender.broadcastEventMessages(messages);
         }
     }
 
+    @Override
+    public void sendCoalescedEventMessage(MotechEvent event, String coalescingKey, CoalescingMode mode) {
+        verifyEventNotNull(event);
+        verifyCoalescingKeyNotNull(coalescingKey);
+        // the trace is the one of the publishing thread, not the one flushing the coalesced events
+        eventCoalescer.submit(coalescingKey, EventTrace.withTraceId(event), mode, queuePublisher);
+    }
+
+    @Override
+    public void broadcastCoalescedEventMessage(MotechEvent event, String coalescingKey, CoalescingMode mode) {
+        verifyEventNotNull(event);
+        verifyCoalescingKeyNotNull(coalescingKey);
+        eventCoalescer.submit(coalescingKey, EventTrace.withTraceId(event), mode, topicPublisher);
+    }
+
     /**
      * Relays the event that were published in the message queue to all listeners of that event.
      *
@@ -79,6 +191,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      */
     public void relayQueueEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordDelivered(event);
         String messageDestination = (String) event.getParameters().get(MESSAGE_DESTINATION);
         if (null != messageDestination) {
             EventListener listener = getEventListener(event, messageDestination);
@@ -95,14 +208,19 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
     /**
      * Relays the event that were published in the message topic to all listeners of that event.
+     * Listeners receive their own copies of the event and handle them asynchronously, see {@link TopicEventDispatcher}.
      *
      * @param event the event being relayed
      */
     public void relayTopicEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.recordDelivered(event);
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
-            handleTopicEvent(listener, event);
+            // listeners handle the event concurrently, so they must not share its parameters
+            MotechEvent copy = new MotechEvent(event.getSubject(), new HashMap<>(event.getParameters()));
+            copy.setId(event.getId());
+            topicEventDispatcher.dispatch(listener, copy);
         }
 
         // broadcast events can be also be additionally sent as OSGi events upon being received
@@ -123,6 +241,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         Map<String, Object> parameters = (Map<String, Object>) osgiEvent.getProperty(OsgiEventProxy.PARAMETERS_PARAM);
         Boolean broadcast = (Boolean) osgiEvent.getProperty(OsgiEventProxy.BROADCAST_PARAM);
         Boolean proxyOnReceivingEnd = (Boolean) osgiEvent.getProperty(OsgiEventProxy.PROXY_ON_RECEIVING_END_PARAM);
+        String coalescingKey = (String) osgiEvent.getProperty(OsgiEventProxy.COALESCING_KEY_PARAM);
 
         LOGGER.debug("Relying OSGi event - subject: {}, broadcast: {}, proxyWhenReceiving: {}",
                 subject, broadcast, proxyOnReceivingEnd);
@@ -138,8 +257,14 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         }
 
         MotechEvent motechEvent = new MotechEvent(subject, parameters);
-
-        if (broadcast != null && broadcast) {
+        boolean broadcastEvent = broadcast != null && broadcast;
+
+        if (coalescingKey != null) {
+            // proxied events are only ever superseded by later events for the same key
+            EventCoalescer.Publisher publisher = broadcastEvent ? topicPublisher : queuePublisher;
+            eventCoalescer.submit(coalescingKey, EventTrace.withTraceId(motechEvent), CoalescingMode.LAST_WRITE_WINS,
+                    publisher);
+        } else if (broadcastEvent) {
             broadcastEventMessage(motechEvent);
         } else {
             sendEventMessage(motechEvent);
@@ -147,13 +272,21 @@ public class ServerEventRelay implements EventRelay, EventHandler {
     }
 
     private void handleQueueEvent(EventListener listener, MotechEvent event) {
-        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread currentThread = Thread.currentThread();
+        ClassLoader oldClassLoader = currentThread.getContextClassLoader();
+        ClassLoader listenerClassLoader = MotechProxyUtils.getTargetClassLoader(listener);
+        EventLane lane = eventLaneRouter.getLane(event.getSubject());
+        String previousTraceId = EventTrace.begin(event);
+        boolean failed = false;
+        long start = System.currentTimeMillis();
         try {
-            Object target = MotechProxyUtils.getTargetIfProxied(listener);
-            Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
+            if (listenerClassLoader != oldClassLoader) {
+                currentThread.setContextClassLoader(listenerClassLoader);
+            }
             listener.handle(event);
 
         } catch (RuntimeException e) {
+            failed = true;
             LOGGER.error("Handling error for event with subject {}", event.getSubject(), e);
 
             event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, Boolean.TRUE);
@@ -162,42 +295,23 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                 event.getParameters().put(MotechEvent.PARAM_DISCARDED_MOTECH_EVENT, Boolean.TRUE);
                 LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
+                eventMetrics.recordDiscarded(event);
                 throw e;
             }
 
             event.incrementMessageRedeliveryCount();
-            outboundEventGateway.sendEventMessage(event);
+            eventMetrics.recordRetried(event);
+            sendToQueue(event);
         } finally {
-            Thread.currentThread().setContextClassLoader(oldClassLoader);
+            long handlingTime = System.currentTimeMillis() - start;
+            // used for adjusting the number of consumers of the lane
+            lane.recordHandled(handlingTime);
+            eventMetrics.recordHandled(event, listener.getIdentifier(), handlingTime, failed);
+            EventTrace.end(previousTraceId);
+            currentThread.setContextClassLoader(oldClassLoader);
         }
     }
 
-    private void handleTopicEvent(EventListener listener, MotechEvent event) {
-        int retryCount = 0;
-        int maxRetryCount = motechEventConfig.getMessageMaxRedeliveryCount();
-        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
-
-        do {
-            try {
-                Object target = MotechProxyUtils.getTargetIfProxied(listener);
-                Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-                listener.handle(event);
-                break;
-            } catch (RuntimeException e) {
-                if (retryCount < maxRetryCount) {
-                    LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
-                            event.toString(), listener.getIdentifier()), e);
-                } else {
-                    LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
-                            event.toString(), listener.getIdentifier()), e);
-                    break;
-                }
-            } finally {
-                Thread.currentThread().setContextClassLoader(contextClassLoader);
-            }
-        } while (retryCount++ < maxRetryCount);
-    }
-
     /**
      * Split a given message into multiple messages with specific message destination
      * parameters. Message destinations will route the message to the specific message
@@ -207,18 +321,59 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      * @param listeners A list of listeners for this given message that will be used as message destinations
      */
     private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
-        MotechEvent enrichedEventMessage;
-        Map<String, Object> parameters;
-
         for (EventListener listener : listeners) {
-            parameters = new HashMap<>();
-            parameters.putAll(event.getParameters());
-            parameters.put(MESSAGE_DESTINATION, listener.getIdentifier());
-            enrichedEventMessage = new MotechEvent(event.getSubject(), parameters);
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            MotechEvent enrichedEventMessage = createDestinedEvent(event, listener);
+
+            if (!dispatchLocally(listener, enrichedEventMessage)) {
+                sendToQueue(enrichedEventMessage);
+            }
         }
     }
 
+    private void sendToQueue(MotechEvent event) {
+        if (eventLaneRouter.getLane(event.getSubject()).isDefault()) {
+            outboundEventGateway.sendEventMessage(event);
+        } else {
+            // the gateway only sends to the main event queue
+            outboundEventBatchSender.sendEventMessages(Collections.singletonList(event));
+        }
+    }
+
+    private MotechEvent createDestinedEvent(MotechEvent event, EventListener listener) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.putAll(event.getParameters());
+        parameters.put(MESSAGE_DESTINATION, listener.getIdentifier());
+        // updated by the transformer if the event goes through the broker
+        parameters.put(MotechEvent.PARAM_PUBLISH_TIME, System.currentTimeMillis());
+        return new MotechEvent(event.getSubject(), parameters);
+    }
+
+    /**
+     * Hands the event to the local dispatcher, skipping the broker. The event is then relayed the same way
+     * as if it was received from the queue, so failed deliveries are redelivered through the broker.
+     *
+     * @param listener the listener the event is destined for
+     * @param event    the event with the message destination set
+     * @return true if the event was accepted by the local dispatcher, false if it has to be sent through the broker
+     */
+    private boolean dispatchLocally(EventListener listener, final MotechEvent event) {
+        if (localEventDispatcher == null || !localEventDispatcher.isEnabled()) {
+            return false;
+        }
+
+        // done by the transformer for events going through the broker
+        if (event.getId() == null) {
+            event.setId(UUID.randomUUID());
+        }
+
+        return localEventDispatcher.dispatch(listener.getIdentifier(), new Runnable() {
+            @Override
+            public void run() {
+                relayQueueEvent(event);
+            }
+        });
+    }
+
     private EventListener getEventListener(MotechEvent event, String identifier) {
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
@@ -241,6 +396,15 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         return listeners;
     }
 
+    private Set<EventListener> getEventListeners(MotechEvent event, Map<String, Set<EventListener>> listenersBySubject) {
+        Set<EventListener> listeners = listenersBySubject.get(event.getSubject());
+        if (listeners == null) {
+            listeners = getEventListeners(event);
+            listenersBySubject.put(event.getSubject(), listeners);
+        }
+        return listeners;
+    }
+
     private boolean proxyInOsgi(MotechEvent event) {
         Object proxyInOsgi = event.getParameters().get(PROXY_IN_OSGI);
         return proxyInOsgi instanceof Boolean && (boolean) proxyInOsgi;
@@ -257,9 +421,33 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         return copy;
     }
 
+    private MotechEvent recordPublished(MotechEvent event) {
+        // assigned before the event is split, so that all copies share the trace ID, the parameters of the
+        // published event belong to the publisher, so the trace ID is put on a copy
+        MotechEvent published = EventTrace.withTraceId(event);
+        eventMetrics.recordPublished(published);
+        return published;
+    }
+
     private void verifyEventNotNull(MotechEvent event) {
         if (event == null) {
             throw new IllegalArgumentException("Invalid request to relay null event");
         }
     }
+
+    private void verifyCoalescingKeyNotNull(String coalescingKey) {
+        if (coalescingKey == null) {
+            throw new IllegalArgumentException("Invalid request to coalesce events with null key");
+        }
+    }
+
+    private void verifyEventsNotNull(Collection<MotechEvent> events) {
+        if (events == null) {
+            throw new IllegalArgumentException("Invalid request to relay null events");
+        }
+        // validate the whole batch up front, so that nothing gets sent if it is invalid
+        for (MotechEvent event : events) {
+            verifyEventNotNull(event);
+        }
+    }
 }
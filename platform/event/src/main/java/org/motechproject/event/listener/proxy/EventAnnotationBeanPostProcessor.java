@@ -20,6 +20,8 @@ import java.util.Map;
 
 /**
  * Provides the <code>BeanPostProcessor</code> implementation for processing event annotations.
+ * The handler methods are resolved into listener proxies when the beans are registered, the proxies
+ * prepare their method handles and parameter mappings up front, so handling an event is a direct call.
  *
  * @author yyonkov
  */
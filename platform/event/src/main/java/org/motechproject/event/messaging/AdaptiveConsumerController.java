@@ -0,0 +1,166 @@
+package org.motechproject.event.messaging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically adjusts the number of consumers of the event queues. For every {@link EventLane}, the number of
+ * consumers needed is estimated from the handling time of its events, the rate at which they are handled and the
+ * number of messages waiting in its queue, read from the broker through a {@link QueueStatisticsProvider}.
+ * The number of consumers is kept between the initial and maximum number configured for the lane, and changes
+ * at most twofold in a single period. If no statistics provider is available, consumers are added only
+ * when the existing ones are almost fully utilized.
+ */
+public class AdaptiveConsumerController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConsumerController.class);
+
+    private static final double MILLIS_PER_SEC = 1000.0;
+    private static final double HIGH_UTILIZATION = 0.9;
+    private static final double LOW_UTILIZATION = 0.3;
+
+    private final MotechEventConfig motechEventConfig;
+    private final List<QueueStatisticsProvider> statisticsProviders;
+    private final Map<EventLane, DefaultMessageListenerContainer> containers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param motechEventConfig the event configuration
+     * @param statisticsProviders the providers of broker statistics, the first one available is used
+     */
+    public AdaptiveConsumerController(MotechEventConfig motechEventConfig, List<QueueStatisticsProvider> statisticsProviders) {
+        this.motechEventConfig = motechEventConfig;
+        this.statisticsProviders = statisticsProviders;
+    }
+
+    /**
+     * Starts adjusting the consumers periodically, if enabled in the {@link MotechEventConfig}.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!motechEventConfig.isAdaptiveConsumersEnabled() || scheduler != null) {
+            return;
+        }
+
+        long interval = motechEventConfig.getAdaptiveConsumersInterval();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("motech-event-consumer-controller-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                adjustConsumers();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops adjusting the consumers.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Puts the consumers of the lane under control of this controller.
+     *
+     * @param lane the lane consumed by the container
+     * @param container the container of the lane consumers
+     */
+    public void register(EventLane lane, DefaultMessageListenerContainer container) {
+        containers.put(lane, container);
+    }
+
+    /**
+     * Stops controlling the consumers of the lane.
+     *
+     * @param lane the lane to be removed
+     */
+    public void unregister(EventLane lane) {
+        containers.remove(lane);
+    }
+
+    /**
+     * Adjusts the number of consumers of all registered lanes, based on the statistics gathered since
+     * the previous adjustment.
+     */
+    public void adjustConsumers() {
+        for (Map.Entry<EventLane, DefaultMessageListenerContainer> entry : new ArrayList<>(containers.entrySet())) {
+            try {
+                adjustConsumers(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to adjust consumers of the lane {}", entry.getKey().getName(), e);
+            }
+        }
+    }
+
+    private void adjustConsumers(EventLane lane, DefaultMessageListenerContainer container) {
+        EventLane.HandlingStatistics statistics = lane.takeHandlingStatistics();
+        long queueSize = getQueueSize(lane);
+        int current = container.getConcurrentConsumers();
+
+        int target = estimateConsumers(current, queueSize, statistics);
+        target = Math.max(lane.getConcurrentConsumers(), Math.min(lane.getMaxConcurrentConsumers(), target));
+
+        if (target != current) {
+            LOGGER.info("Changing the number of consumers of the lane {} from {} to {}, queue size: {}, events handled: {}, " +
+                    "average handling time: {} ms", lane.getName(), current, target, queueSize,
+                    statistics.getHandledCount(), statistics.getAverageHandlingTime());
+            container.setConcurrentConsumers(target);
+        }
+    }
+
+    private int estimateConsumers(int current, long queueSize, EventLane.HandlingStatistics statistics) {
+        if (statistics.getHandledCount() == 0) {
+            // the consumers are either idle, or still busy with events which take longer than a whole period,
+            // without the size of the queue there is nothing to tell them apart, so the lane is treated as idle
+            return (queueSize > 0) ? current + 1 : current - 1;
+        }
+
+        double handlingTime = statistics.getAverageHandlingTime() / MILLIS_PER_SEC;
+        double handledPerSecond = (double) statistics.getHandledCount() / motechEventConfig.getAdaptiveConsumersInterval();
+
+        if (queueSize < 0) {
+            // backlog unknown, keep the consumers reasonably utilized
+            double utilization = handlingTime * handledPerSecond / current;
+            if (utilization > HIGH_UTILIZATION) {
+                return current + 1;
+            }
+            return (utilization < LOW_UTILIZATION) ? current - 1 : current;
+        }
+
+        // by Little's law, the number of busy consumers equals the rate of events multiplied by their handling time,
+        // the backlog is to be cleared within the drain time on top of handling the current traffic
+        double backlogPerSecond = (double) queueSize / motechEventConfig.getConsumersDrainTime();
+        int needed = (int) Math.ceil(handlingTime * (handledPerSecond + backlogPerSecond));
+
+        return Math.max((current + 1) / 2, Math.min(current * 2, needed));
+    }
+
+    private long getQueueSize(EventLane lane) {
+        for (QueueStatisticsProvider provider : statisticsProviders) {
+            try {
+                return provider.getQueueSize(lane.getDestination().getQueueName());
+            } catch (RuntimeException e) {
+                LOGGER.debug("Unable to read the size of the queue {}", lane.getDestination().getQueueName(), e);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,384 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.util.ClassLoadingAwareObjectInputStream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact, schema-less binary <code>MotechEventCodec</code>. Every parameter value is written as a one byte
+ * type tag followed by its value. Strings, boxed primitives, <code>BigDecimal</code>, <code>BigInteger</code>,
+ * <code>UUID</code>, <code>Date</code>, ISO <code>DateTime</code>, lists and maps of those types are encoded
+ * directly, lists are decoded as <code>ArrayList</code>s and maps as <code>LinkedHashMap</code>s. Values of any
+ * other type are written using Java serialization, so they have to be <code>Serializable</code>.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte STRING = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte BIG_DECIMAL = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte UUID_VALUE = 13;
+    private static final byte DATE = 14;
+    private static final byte DATE_TIME = 15;
+    private static final byte LIST = 16;
+    private static final byte MAP = 17;
+    private static final byte SERIALIZED = 18;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int VARINT_SHIFT = 7;
+    private static final int VARINT_MASK = 0x7F;
+    private static final int VARINT_CONTINUATION = 0x80;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final Map<Class<?>, Byte> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put(String.class, STRING);
+        TYPES.put(Integer.class, INTEGER);
+        TYPES.put(Long.class, LONG);
+        TYPES.put(Double.class, DOUBLE);
+        TYPES.put(Float.class, FLOAT);
+        TYPES.put(Short.class, SHORT);
+        TYPES.put(Byte.class, BYTE);
+        TYPES.put(Character.class, CHARACTER);
+        TYPES.put(BigDecimal.class, BIG_DECIMAL);
+        TYPES.put(BigInteger.class, BIG_INTEGER);
+        TYPES.put(UUID.class, UUID_VALUE);
+        TYPES.put(Date.class, DATE);
+    }
+
+    @Override
+    public byte[] encode(MotechEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+
+            UUID id = event.getId();
+            out.writeBoolean(id != null);
+            if (id != null) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+
+            writeString(out, event.getSubject());
+
+            Map<String, Object> parameters = event.getParameters();
+            writeLength(out, parameters.size());
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new MotechException("Unable to encode " + event, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new MotechException("Unsupported Motech event format version: " + version);
+            }
+
+            UUID id = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            String subject = readString(in);
+
+            int size = readLength(in);
+            Map<String, Object> parameters = new HashMap<>(mapCapacity(size));
+            for (int i = 0; i < size; i++) {
+                String key = readString(in);
+                parameters.put(key, readValue(in));
+            }
+
+            MotechEvent event = new MotechEvent(subject, parameters);
+            event.setId(id);
+            return event;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MotechException("Unable to decode Motech event", e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        byte type = typeOf(value);
+        out.writeByte(type);
+
+        if (type > FALSE && type <= CHARACTER) {
+            writePrimitive(out, type, value);
+        } else if (type > CHARACTER) {
+            writeObject(out, type, value);
+        }
+    }
+
+    private byte typeOf(Object value) {
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        }
+
+        Byte type = TYPES.get(value.getClass());
+        if (type != null) {
+            return type;
+        } else if (isIsoDateTime(value)) {
+            return DATE_TIME;
+        } else if (value instanceof List) {
+            return LIST;
+        } else if (value instanceof Map) {
+            return MAP;
+        } else if (value instanceof Serializable) {
+            return SERIALIZED;
+        }
+
+        throw new MotechException("Unable to encode value of type " + value.getClass().getName() +
+                ", it is not serializable");
+    }
+
+    private void writePrimitive(DataOutputStream out, byte type, Object value) throws IOException {
+        switch (type) {
+            case STRING:
+                writeString(out, (String) value);
+                break;
+            case INTEGER:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case SHORT:
+                out.writeShort((Short) value);
+                break;
+            case BYTE:
+                out.writeByte((Byte) value);
+                break;
+            case CHARACTER:
+                out.writeChar((Character) value);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a primitive type: " + type);
+        }
+    }
+
+    private void writeObject(DataOutputStream out, byte type, Object value) throws IOException {
+        switch (type) {
+            case BIG_DECIMAL:
+            case BIG_INTEGER:
+                writeString(out, value.toString());
+                break;
+            case UUID_VALUE:
+                out.writeLong(((UUID) value).getMostSignificantBits());
+                out.writeLong(((UUID) value).getLeastSignificantBits());
+                break;
+            case DATE:
+                out.writeLong(((Date) value).getTime());
+                break;
+            case DATE_TIME:
+                out.writeLong(((DateTime) value).getMillis());
+                writeString(out, ((DateTime) value).getZone().getID());
+                break;
+            case LIST:
+                writeList(out, (List<?>) value);
+                break;
+            case MAP:
+                writeMap(out, (Map<?, ?>) value);
+                break;
+            default:
+                writeSerialized(out, value);
+        }
+    }
+
+    private void writeList(DataOutputStream out, List<?> list) throws IOException {
+        writeLength(out, list.size());
+        for (Object element : list) {
+            writeValue(out, element);
+        }
+    }
+
+    private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        writeLength(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte type = in.readByte();
+
+        if (type == NULL) {
+            return null;
+        } else if (type == TRUE || type == FALSE) {
+            return type == TRUE;
+        } else if (type <= CHARACTER) {
+            return readPrimitive(in, type);
+        } else {
+            return readObject(in, type);
+        }
+    }
+
+    private Object readPrimitive(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case CHARACTER:
+                return in.readChar();
+            default:
+                throw new MotechException("Unknown value type in encoded Motech event: " + type);
+        }
+    }
+
+    private Object readObject(DataInputStream in, byte type) throws IOException, ClassNotFoundException {
+        switch (type) {
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case UUID_VALUE:
+                return new UUID(in.readLong(), in.readLong());
+            case DATE:
+                return new Date(in.readLong());
+            case DATE_TIME:
+                long millis = in.readLong();
+                return new DateTime(millis, DateTimeZone.forID(readString(in)));
+            case LIST:
+                return readList(in);
+            case MAP:
+                return readMap(in);
+            case SERIALIZED:
+                return readSerialized(in);
+            default:
+                throw new MotechException("Unknown value type in encoded Motech event: " + type);
+        }
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = readLength(in);
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(in));
+        }
+        return list;
+    }
+
+    private Map<Object, Object> readMap(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = readLength(in);
+        Map<Object, Object> map = new LinkedHashMap<>(mapCapacity(size));
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private boolean isIsoDateTime(Object value) {
+        return value.getClass() == DateTime.class && ((DateTime) value).getChronology() instanceof ISOChronology;
+    }
+
+    private void writeSerialized(DataOutputStream out, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(value);
+        }
+        writeLength(out, bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private Object readSerialized(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        // resolves classes using the context class loader, same as ActiveMQ does for object messages
+        try (ObjectInputStream objectIn = new ClassLoadingAwareObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectIn.readObject();
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLength(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeLength(DataOutputStream out, int length) throws IOException {
+        int value = length;
+        while ((value & ~VARINT_MASK) != 0) {
+            out.writeByte((value & VARINT_MASK) | VARINT_CONTINUATION);
+            value >>>= VARINT_SHIFT;
+        }
+        out.writeByte(value);
+    }
+
+    private int readLength(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & VARINT_MASK) << shift;
+            shift += VARINT_SHIFT;
+        } while ((b & VARINT_CONTINUATION) != 0);
+        return value;
+    }
+
+    private static int mapCapacity(int size) {
+        // avoids rehashing with the default load factor
+        return (int) (size / LOAD_FACTOR) + 1;
+    }
+}
@@ -0,0 +1,149 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.store.kahadb.KahaDBPersistenceAdapter;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.commons.api.MotechException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * Runs an ActiveMQ broker inside the JVM of this Motech instance, meant for single-node installations that do not
+ * want to operate an external broker. Enabled by setting <code>jms.broker.embedded</code> to true in the ActiveMQ
+ * configuration, in which case the connection factory connects to the embedded broker through the VM transport,
+ * skipping the network and marshalling of messages, and the value of <code>jms.broker.url</code> is not used.
+ * <p>
+ * Messages are persisted in an append-only KahaDB journal, in the directory set by
+ * <code>jms.broker.embedded.data.dir</code>, so they survive restarts. Writes of concurrent producers are batched
+ * into a single write and disk sync of the journal, the size of the batch is limited by
+ * <code>jms.broker.embedded.journal.write.batch.size</code>. The scheduler of the broker is enabled, so redelivery
+ * delays set by the {@link MotechEventHeaderMapper} work the same way as with an external broker.
+ */
+public class EmbeddedBroker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedBroker.class);
+
+    public static final String EMBEDDED_PROPERTY = "jms.broker.embedded";
+    public static final String NAME_PROPERTY = "jms.broker.embedded.name";
+    public static final String DATA_DIR_PROPERTY = "jms.broker.embedded.data.dir";
+    public static final String WRITE_BATCH_SIZE_PROPERTY = "jms.broker.embedded.journal.write.batch.size";
+    public static final String DISK_SYNCS_PROPERTY = "jms.broker.embedded.journal.disk.syncs";
+
+    private static final String BROKER_URL_PROPERTY = "jms.broker.url";
+    private static final String DEFAULT_NAME = "motech-embedded";
+    private static final String DEFAULT_WRITE_BATCH_SIZE = "4194304";
+
+    private final boolean enabled;
+    private final String brokerName;
+    private final File dataDirectory;
+    private final int journalWriteBatchSize;
+    private final boolean journalDiskSyncs;
+    private final String externalBrokerUrl;
+
+    private BrokerService brokerService;
+
+    /**
+     * @param properties the ActiveMQ configuration
+     */
+    public EmbeddedBroker(Properties properties) {
+        this.enabled = Boolean.parseBoolean(getProperty(properties, EMBEDDED_PROPERTY, "false"));
+        this.brokerName = getProperty(properties, NAME_PROPERTY, DEFAULT_NAME);
+        this.dataDirectory = new File(getProperty(properties, DATA_DIR_PROPERTY,
+                new File(System.getProperty("user.home"), ".motech/activemq-data").getAbsolutePath()));
+        this.journalWriteBatchSize = Integer.parseInt(getProperty(properties, WRITE_BATCH_SIZE_PROPERTY,
+                DEFAULT_WRITE_BATCH_SIZE));
+        this.journalDiskSyncs = Boolean.parseBoolean(getProperty(properties, DISK_SYNCS_PROPERTY, "true"));
+        this.externalBrokerUrl = properties.getProperty(BROKER_URL_PROPERTY);
+    }
+
+    /**
+     * Starts the embedded broker, if enabled. Messages persisted before the last shutdown are recovered
+     * from the journal before this method returns.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || brokerService != null) {
+            return;
+        }
+
+        try {
+            KahaDBPersistenceAdapter persistenceAdapter = new KahaDBPersistenceAdapter();
+            persistenceAdapter.setDirectory(new File(dataDirectory, "kahadb"));
+            persistenceAdapter.setJournalMaxWriteBatchSize(journalWriteBatchSize);
+            persistenceAdapter.setEnableJournalDiskSyncs(journalDiskSyncs);
+
+            BrokerService broker = new BrokerService();
+            broker.setBrokerName(brokerName);
+            broker.setDataDirectoryFile(dataDirectory);
+            broker.setPersistent(true);
+            broker.setPersistenceAdapter(persistenceAdapter);
+            // required for the AMQ_SCHEDULED_DELAY header used for delaying redeliveries
+            broker.setSchedulerSupport(true);
+            broker.setSchedulerDirectoryFile(new File(dataDirectory, "scheduler"));
+            // the queue MBeans are registered in the platform MBean server, no remote connector is needed
+            broker.getManagementContext().setCreateConnector(false);
+            broker.setUseShutdownHook(false);
+
+            broker.start();
+            broker.waitUntilStarted();
+
+            brokerService = broker;
+            LOGGER.info("Started the embedded broker {}, data directory: {}", brokerName, dataDirectory);
+        } catch (Exception e) {
+            throw new MotechException("Unable to start the embedded broker " + brokerName, e);
+        }
+    }
+
+    /**
+     * Stops the embedded broker, if it is running.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (brokerService == null) {
+            return;
+        }
+
+        try {
+            brokerService.stop();
+            brokerService.waitUntilStopped();
+            LOGGER.info("Stopped the embedded broker {}", brokerName);
+        } catch (Exception e) {
+            LOGGER.error("Unable to stop the embedded broker {}", brokerName, e);
+        } finally {
+            brokerService = null;
+        }
+    }
+
+    /**
+     * Returns the URL the connection factory should connect to. This is the URL of the embedded broker if it is
+     * enabled, or the URL of the external broker from the ActiveMQ configuration otherwise.
+     *
+     * @return the broker URL
+     */
+    public String getBrokerUrl() {
+        // create=false, so that connections made after the broker was stopped fail instead of starting a new one
+        return enabled ? "vm://" + brokerName + "?create=false" : externalBrokerUrl;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized boolean isStarted() {
+        return brokerService != null && brokerService.isStarted();
+    }
+
+    public File getDataDirectory() {
+        return dataDirectory;
+    }
+
+    private static String getProperty(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return StringUtils.isBlank(value) ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,199 @@
+package org.motechproject.event.messaging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.CoalescingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back events published with a coalescing key for the coalescing window configured in the
+ * {@link MotechEventConfig}. Events with the same key submitted within the window are combined according
+ * to their {@link CoalescingMode}, and only the resulting event is handed to the publisher when the window closes.
+ * The window starts with the first event submitted for a key, so a steady stream of events is still published
+ * once per window. Events are published immediately if the window is not positive, or if too many keys are pending.
+ */
+@Component
+public class EventCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCoalescer.class);
+
+    private final MotechEventConfig motechEventConfig;
+    private final Map<String, PendingEvent> pendingEvents = new HashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private boolean shutdown;
+
+    /**
+     * @param motechEventConfig the event configuration
+     */
+    @Autowired
+    public EventCoalescer(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Submits the event for coalesced publishing. Keys are local to the publisher, so that events published
+     * through different publishers, e.g. sent to the queue and broadcast, are never combined.
+     *
+     * @param key the coalescing key of the event
+     * @param event the event to publish
+     * @param mode the way of combining the event with the one already pending for the key
+     * @param publisher the publisher of the resulting event
+     */
+    public void submit(String key, MotechEvent event, CoalescingMode mode, Publisher publisher) {
+        long window = motechEventConfig.getCoalescingWindow();
+        String pendingKey = publisher.getName() + ':' + key;
+        boolean publishNow = false;
+
+        synchronized (this) {
+            PendingEvent pending = pendingEvents.get(pendingKey);
+            if (pending != null) {
+                pending.combine(event, mode);
+                return;
+            }
+
+            if (window <= 0 || shutdown || pendingEvents.size() >= motechEventConfig.getCoalescingMaxPending()) {
+                publishNow = true;
+            } else {
+                pendingEvents.put(pendingKey, new PendingEvent(event, publisher));
+                scheduleFlush(pendingKey, window);
+            }
+        }
+
+        if (publishNow) {
+            publisher.publish(event);
+        }
+    }
+
+    /**
+     * Publishes all pending events right away.
+     */
+    public void flush() {
+        List<PendingEvent> events;
+        synchronized (this) {
+            events = new ArrayList<>(pendingEvents.values());
+            pendingEvents.clear();
+        }
+
+        for (PendingEvent pending : events) {
+            pending.publish();
+        }
+    }
+
+    /**
+     * Stops holding back events and publishes the ones still pending.
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * @return the number of coalescing keys with events currently held back
+     */
+    public synchronized int getPendingCount() {
+        return pendingEvents.size();
+    }
+
+    private void scheduleFlush(final String pendingKey, long window) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("motech-event-coalescer-%d").setDaemon(true).build());
+        }
+
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(pendingKey);
+                }
+            }, window, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Unable to schedule publishing of the coalesced events with key {}", pendingKey, e);
+        }
+    }
+
+    private void flush(String pendingKey) {
+        PendingEvent pending;
+        synchronized (this) {
+            pending = pendingEvents.remove(pendingKey);
+        }
+
+        if (pending != null) {
+            pending.publish();
+        }
+    }
+
+    /**
+     * Publishes the coalesced events.
+     */
+    public interface Publisher {
+
+        /**
+         * @return the name of the publisher, distinguishing the keys of its events from the keys of other publishers
+         */
+        String getName();
+
+        /**
+         * Publishes the event resulting from coalescing.
+         *
+         * @param event the event to publish
+         */
+        void publish(MotechEvent event);
+    }
+
+    private static class PendingEvent {
+
+        private final Publisher publisher;
+        private MotechEvent event;
+        private int coalescedCount;
+
+        PendingEvent(MotechEvent event, Publisher publisher) {
+            this.event = event;
+            this.publisher = publisher;
+        }
+
+        void combine(MotechEvent newEvent, CoalescingMode mode) {
+            if (mode == CoalescingMode.MERGE) {
+                Map<String, Object> parameters = new HashMap<>(event.getParameters());
+                parameters.putAll(newEvent.getParameters());
+                event = new MotechEvent(newEvent.getSubject(), parameters);
+            } else {
+                event = newEvent;
+            }
+            coalescedCount++;
+        }
+
+        void publish() {
+            if (coalescedCount > 0) {
+                LOGGER.debug("Publishing event {}, coalesced with {} earlier events", event.getSubject(), coalescedCount);
+            }
+
+            try {
+                publisher.publish(event);
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to publish the coalesced event {}", event.getSubject(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A priority lane of the event queue. Events with subjects matching the patterns of a lane are sent to its own
+ * queue, which is consumed by its own pool of consumers, so that bulk traffic in one lane does not hold up events
+ * in the others. Events not matching any lane go through the default lane, which uses the main event queue.
+ * Besides its definition, the lane keeps the handling times of its events, used for adjusting the number of consumers.
+ */
+public class EventLane {
+
+    /**
+     * The name of the lane using the main event queue.
+     */
+    public static final String DEFAULT_LANE = "default";
+
+    private static final String WILDCARD = "*";
+
+    private final String name;
+    private final List<String> subjectPatterns;
+    private final ActiveMQQueue destination;
+    private final int concurrentConsumers;
+    private final int maxConcurrentConsumers;
+
+    private final AtomicLong handledCount = new AtomicLong();
+    private final AtomicLong handlingTime = new AtomicLong();
+
+    /**
+     * @param name the name of the lane
+     * @param subjectPatterns the patterns of subjects sent through this lane, wildcards are allowed as the last path element
+     * @param destination the queue of this lane
+     * @param concurrentConsumers the initial number of consumers of the queue
+     * @param maxConcurrentConsumers the maximum number of consumers of the queue
+     */
+    public EventLane(String name, List<String> subjectPatterns, ActiveMQQueue destination, int concurrentConsumers,
+                     int maxConcurrentConsumers) {
+        this.name = name;
+        this.subjectPatterns = Collections.unmodifiableList(subjectPatterns);
+        this.destination = destination;
+        this.concurrentConsumers = concurrentConsumers;
+        this.maxConcurrentConsumers = maxConcurrentConsumers;
+    }
+
+    /**
+     * Checks whether events with the given subject should be sent through this lane. Patterns follow the same
+     * rules as listener subscriptions, "org.motechproject.sms.*" matches all subjects starting with
+     * "org.motechproject.sms.", while "*" matches every subject.
+     *
+     * @param subject the subject of the event
+     * @return true if any pattern of this lane matches the subject, false otherwise
+     */
+    public boolean matches(String subject) {
+        for (String pattern : subjectPatterns) {
+            if (WILDCARD.equals(pattern) || pattern.equals(subject) ||
+                    (pattern.endsWith(WILDCARD) && subject.startsWith(pattern.substring(0, pattern.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the time in which an event of this lane was handled by a listener.
+     *
+     * @param millis the handling time in milliseconds
+     */
+    public void recordHandled(long millis) {
+        handlingTime.addAndGet(millis);
+        handledCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the statistics recorded since the last call of this method and starts recording anew.
+     *
+     * @return the handling statistics of the last period
+     */
+    public HandlingStatistics takeHandlingStatistics() {
+        long count = handledCount.getAndSet(0);
+        long time = handlingTime.getAndSet(0);
+        return new HandlingStatistics(count, time);
+    }
+
+    public boolean isDefault() {
+        return DEFAULT_LANE.equals(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSubjectPatterns() {
+        return subjectPatterns;
+    }
+
+    public ActiveMQQueue getDestination() {
+        return destination;
+    }
+
+    public int getConcurrentConsumers() {
+        return concurrentConsumers;
+    }
+
+    public int getMaxConcurrentConsumers() {
+        return maxConcurrentConsumers;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventLane{name='%s', subjectPatterns=%s, consumers=%d-%d}", name, subjectPatterns,
+                concurrentConsumers, maxConcurrentConsumers);
+    }
+
+    /**
+     * The number of events handled in a period and their total handling time.
+     */
+    public static class HandlingStatistics {
+
+        private final long handledCount;
+        private final long handlingTime;
+
+        HandlingStatistics(long handledCount, long handlingTime) {
+            this.handledCount = handledCount;
+            this.handlingTime = handlingTime;
+        }
+
+        public long getHandledCount() {
+            return handledCount;
+        }
+
+        public long getHandlingTime() {
+            return handlingTime;
+        }
+
+        /**
+         * @return the average handling time of an event in milliseconds, 0 if no events were handled
+         */
+        public double getAverageHandlingTime() {
+            return (handledCount == 0) ? 0 : (double) handlingTime / handledCount;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.motechproject.event.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.ConnectionFactory;
+import javax.jms.MessageListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Manages the consumers of the {@link EventLane}s. Every priority lane gets its own listener container, consuming
+ * the lane queue with the number of consumers configured for the lane. The containers of all lanes, including
+ * the one consuming the main event queue, are handed to the {@link AdaptiveConsumerController}.
+ */
+public class EventLaneConsumers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneConsumers.class);
+
+    private final EventLaneRouter eventLaneRouter;
+    private final ConnectionFactory connectionFactory;
+    private final MessageListener messageListener;
+    private final AdaptiveConsumerController consumerController;
+    private final DefaultMessageListenerContainer eventQueueContainer;
+    private final Map<EventLane, DefaultMessageListenerContainer> containers = new LinkedHashMap<>();
+
+    /**
+     * @param eventLaneRouter the router holding the lane definitions
+     * @param connectionFactory the factory of broker connections
+     * @param messageListener the listener relaying the consumed events
+     * @param consumerController the controller adjusting the number of consumers
+     * @param eventQueueContainer the container consuming the main event queue
+     */
+    public EventLaneConsumers(EventLaneRouter eventLaneRouter, ConnectionFactory connectionFactory,
+                              MessageListener messageListener, AdaptiveConsumerController consumerController,
+                              DefaultMessageListenerContainer eventQueueContainer) {
+        this.eventLaneRouter = eventLaneRouter;
+        this.connectionFactory = connectionFactory;
+        this.messageListener = messageListener;
+        this.consumerController = consumerController;
+        this.eventQueueContainer = eventQueueContainer;
+    }
+
+    /**
+     * Starts consuming the queues of the priority lanes.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        consumerController.register(eventLaneRouter.getDefaultLane(), eventQueueContainer);
+
+        for (EventLane lane : eventLaneRouter.getLanes()) {
+            DefaultMessageListenerContainer container = createContainer(lane);
+            container.afterPropertiesSet();
+            container.start();
+
+            containers.put(lane, container);
+            consumerController.register(lane, container);
+            LOGGER.info("Started consuming events of the lane {}", lane);
+        }
+    }
+
+    /**
+     * Stops consuming the queues of the priority lanes.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        consumerController.unregister(eventLaneRouter.getDefaultLane());
+
+        for (Map.Entry<EventLane, DefaultMessageListenerContainer> entry : containers.entrySet()) {
+            consumerController.unregister(entry.getKey());
+            entry.getValue().shutdown();
+        }
+        containers.clear();
+    }
+
+    private DefaultMessageListenerContainer createContainer(EventLane lane) {
+        DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+        container.setBeanName("eventLane-" + lane.getName());
+        container.setConnectionFactory(connectionFactory);
+        container.setDestination(lane.getDestination());
+        container.setSessionTransacted(true);
+        container.setConcurrentConsumers(lane.getConcurrentConsumers());
+        container.setMaxConcurrentConsumers(lane.getMaxConcurrentConsumers());
+        container.setMessageListener(messageListener);
+        return container;
+    }
+}
@@ -0,0 +1,153 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides through which {@link EventLane} queue events are sent. Lanes are defined in the ActiveMQ configuration:
+ * <code>motech.message.lanes</code> holds the comma separated names of the lanes, while
+ * <code>motech.message.lane.&lt;name&gt;.subjects</code> holds the comma separated subject patterns of a lane.
+ * The number of consumers of a lane can be set using <code>motech.message.lane.&lt;name&gt;.concurrent.consumers</code>
+ * and <code>motech.message.lane.&lt;name&gt;.max.concurrent.consumers</code>. Lanes are checked in the order
+ * in which they were listed, the first one matching the subject of an event is used.
+ */
+public class EventLaneRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneRouter.class);
+
+    public static final String LANES_PROPERTY = "motech.message.lanes";
+
+    private static final String LANE_PROPERTY_PREFIX = "motech.message.lane.";
+    private static final String SUBJECTS_SUFFIX = ".subjects";
+    private static final String CONSUMERS_SUFFIX = ".concurrent.consumers";
+    private static final String MAX_CONSUMERS_SUFFIX = ".max.concurrent.consumers";
+    private static final String SEPARATOR = ",";
+
+    private static final int DEFAULT_CONSUMERS = 1;
+    private static final int DEFAULT_MAX_CONSUMERS = 5;
+    private static final int MAX_CACHED_SUBJECTS = 10000;
+
+    private final EventLane defaultLane;
+    private final List<EventLane> lanes;
+    private final ConcurrentMap<String, EventLane> lanesBySubject = new ConcurrentHashMap<>();
+
+    /**
+     * @param properties the ActiveMQ configuration containing the lane definitions
+     * @param eventQueue the main event queue, names of the lane queues are derived from its name
+     * @param concurrentConsumers the initial number of consumers of the main event queue
+     * @param maxConcurrentConsumers the maximum number of consumers of the main event queue
+     */
+    public EventLaneRouter(Properties properties, ActiveMQQueue eventQueue, int concurrentConsumers,
+                           int maxConcurrentConsumers) {
+        this.defaultLane = new EventLane(EventLane.DEFAULT_LANE, Collections.singletonList("*"), eventQueue,
+                concurrentConsumers, maxConcurrentConsumers);
+        this.lanes = Collections.unmodifiableList(parseLanes(properties, eventQueue.getQueueName()));
+    }
+
+    /**
+     * Returns the lane through which events with the given subject are sent.
+     *
+     * @param subject the subject of the event
+     * @return the first lane matching the subject, or the default lane if none does
+     */
+    public EventLane getLane(String subject) {
+        if (lanes.isEmpty()) {
+            return defaultLane;
+        }
+
+        EventLane lane = lanesBySubject.get(subject);
+        if (lane == null) {
+            lane = resolve(subject);
+            // subjects can be generated dynamically, don't let the cache grow without limits
+            if (lanesBySubject.size() < MAX_CACHED_SUBJECTS) {
+                lanesBySubject.putIfAbsent(subject, lane);
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * Returns the lane using the main event queue.
+     *
+     * @return the default lane
+     */
+    public EventLane getDefaultLane() {
+        return defaultLane;
+    }
+
+    /**
+     * Returns the configured priority lanes, the default lane is not included.
+     *
+     * @return the priority lanes, in the order they are matched
+     */
+    public List<EventLane> getLanes() {
+        return lanes;
+    }
+
+    private EventLane resolve(String subject) {
+        for (EventLane lane : lanes) {
+            if (lane.matches(subject)) {
+                return lane;
+            }
+        }
+        return defaultLane;
+    }
+
+    private static List<EventLane> parseLanes(Properties properties, String queueName) {
+        List<EventLane> result = new ArrayList<>();
+
+        for (String name : split(properties.getProperty(LANES_PROPERTY))) {
+            List<String> subjects = split(properties.getProperty(LANE_PROPERTY_PREFIX + name + SUBJECTS_SUFFIX));
+
+            if (EventLane.DEFAULT_LANE.equals(name)) {
+                LOGGER.warn("The name {} is reserved for the main event queue, ignoring the lane", name);
+            } else if (subjects.isEmpty()) {
+                LOGGER.warn("No subjects defined for the lane {}, ignoring it", name);
+            } else {
+                int consumers = parseInt(properties, LANE_PROPERTY_PREFIX + name + CONSUMERS_SUFFIX, DEFAULT_CONSUMERS);
+                int maxConsumers = parseInt(properties, LANE_PROPERTY_PREFIX + name + MAX_CONSUMERS_SUFFIX,
+                        Math.max(consumers, DEFAULT_MAX_CONSUMERS));
+
+                EventLane lane = new EventLane(name, subjects, new ActiveMQQueue(queueName + "-" + name),
+                        consumers, Math.max(consumers, maxConsumers));
+                LOGGER.info("Events matching {} will be sent through the lane {}", subjects, lane);
+                result.add(lane);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<String> split(String value) {
+        List<String> result = new ArrayList<>();
+        for (String element : StringUtils.split(StringUtils.defaultString(value), SEPARATOR)) {
+            if (StringUtils.isNotBlank(element)) {
+                result.add(element.trim());
+            }
+        }
+        return result;
+    }
+
+    private static int parseInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid value {} of {}, using {} instead", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.motechproject.event.messaging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches queue events to listeners living on this node, without sending them through the broker.
+ * Every listener has its own bounded work queue, the queues are processed by a fixed pool of threads
+ * shared by all listeners. Deliveries for a single listener are executed in the order they were queued.
+ * Local dispatch is used only if enabled in the {@link MotechEventConfig}.
+ */
+@Component
+public class LocalEventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventDispatcher.class);
+
+    /**
+     * Number of deliveries executed for a listener before its thread is handed over to other listeners.
+     */
+    private static final int DELIVERIES_PER_RUN = 100;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final MotechEventConfig motechEventConfig;
+    private final ConcurrentMap<String, ListenerQueue> listenerQueues = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private volatile boolean shutdown;
+
+    /**
+     * @param motechEventConfig the event configuration
+     */
+    @Autowired
+    public LocalEventDispatcher(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Checks whether deliveries will be accepted by this dispatcher.
+     *
+     * @return true if local dispatch is enabled and the dispatcher was not shut down, false otherwise
+     */
+    public boolean isEnabled() {
+        return !shutdown && motechEventConfig.isLocalDispatchEnabled();
+    }
+
+    /**
+     * Queues the delivery for the listener with the given identifier. If local dispatch is disabled
+     * or the queue of the listener is full, the delivery is not accepted and the caller should send
+     * the event through the broker instead.
+     *
+     * @param listenerIdentifier the identifier of the listener receiving the event
+     * @param delivery the delivery to execute
+     * @return true if the delivery was queued, false otherwise
+     */
+    public boolean dispatch(String listenerIdentifier, Runnable delivery) {
+        if (!isEnabled()) {
+            return false;
+        }
+
+        ListenerQueue queue = listenerQueues.get(listenerIdentifier);
+        if (queue == null) {
+            ListenerQueue newQueue = new ListenerQueue(listenerIdentifier);
+            queue = listenerQueues.putIfAbsent(listenerIdentifier, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+
+        return queue.offer(delivery);
+    }
+
+    /**
+     * Stops accepting deliveries and waits for the already queued ones to finish.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+
+        ExecutorService executorToStop;
+        synchronized (this) {
+            executorToStop = executor;
+        }
+
+        if (executorToStop != null) {
+            executorToStop.shutdown();
+            try {
+                if (!executorToStop.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Locally dispatched events were still being handled after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(motechEventConfig.getLocalDispatchThreadCount(),
+                    new ThreadFactoryBuilder().setNameFormat("motech-local-event-dispatcher-%d").setDaemon(true).build());
+        }
+        return executor;
+    }
+
+    /**
+     * Work queue of a single listener. At most one thread processes the queue at a time.
+     */
+    private class ListenerQueue implements Runnable {
+
+        private final String listenerIdentifier;
+        private final Queue<Runnable> deliveries = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        ListenerQueue(String listenerIdentifier) {
+            this.listenerIdentifier = listenerIdentifier;
+        }
+
+        boolean offer(Runnable delivery) {
+            if (size.incrementAndGet() > motechEventConfig.getLocalDispatchQueueCapacity()) {
+                size.decrementAndGet();
+                LOGGER.debug("Local queue of listener {} is full", listenerIdentifier);
+                return false;
+            }
+
+            deliveries.offer(delivery);
+
+            if (!schedule() && deliveries.remove(delivery)) {
+                size.decrementAndGet();
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void run() {
+            int executed = 0;
+            Runnable delivery = deliveries.poll();
+
+            while (delivery != null) {
+                size.decrementAndGet();
+                try {
+                    delivery.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to deliver event to listener {}", listenerIdentifier, e);
+                }
+
+                // once shutting down, the queue can't be rescheduled, so it has to be drained in one go
+                delivery = (++executed < DELIVERIES_PER_RUN || shutdown) ? deliveries.poll() : null;
+            }
+
+            scheduled.set(false);
+
+            // deliveries could have been queued after the last poll, while this queue was still marked as scheduled
+            if (!deliveries.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private boolean schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    getExecutor().execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    LOGGER.warn("Local event dispatcher is shut down, unable to deliver events to listener {}", listenerIdentifier);
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
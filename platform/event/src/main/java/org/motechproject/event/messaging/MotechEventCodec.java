@@ -0,0 +1,28 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Converts {@link MotechEvent}s to and from the binary form in which they are sent through the broker.
+ * Implementations must be thread safe.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Encodes the event, including its id, subject and parameters.
+     *
+     * @param event the event to be encoded
+     * @return the binary representation of the event
+     * @throws org.motechproject.commons.api.MotechException if the event cannot be encoded
+     */
+    byte[] encode(MotechEvent event);
+
+    /**
+     * Decodes the event encoded by {@link #encode(MotechEvent)}.
+     *
+     * @param data the binary representation of the event
+     * @return the decoded event
+     * @throws org.motechproject.commons.api.MotechException if the data cannot be decoded
+     */
+    MotechEvent decode(byte[] data);
+}
@@ -15,6 +15,39 @@ public class MotechEventConfig {
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.message.local.dispatch:false}")
+    private boolean localDispatchEnabled;
+
+    @Value("${motech.message.local.dispatch.threads:4}")
+    private int localDispatchThreadCount;
+
+    @Value("${motech.message.local.dispatch.queue.capacity:1000}")
+    private int localDispatchQueueCapacity;
+
+    @Value("${motech.message.topic.dispatch.threads:4}")
+    private int topicDispatchThreadCount;
+
+    @Value("${motech.message.topic.dispatch.queue.capacity:1000}")
+    private int topicDispatchQueueCapacity;
+
+    @Value("${motech.message.topic.listener.timeout:60}")
+    private long topicListenerTimeout;
+
+    @Value("${motech.message.consumers.adaptive:false}")
+    private boolean adaptiveConsumersEnabled;
+
+    @Value("${motech.message.consumers.adaptive.interval:10}")
+    private long adaptiveConsumersInterval;
+
+    @Value("${motech.message.consumers.drain.time:30}")
+    private long consumersDrainTime;
+
+    @Value("${motech.message.coalescing.window:200}")
+    private long coalescingWindow;
+
+    @Value("${motech.message.coalescing.max.pending:10000}")
+    private int coalescingMaxPending;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +69,113 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns whether events sent to the queue should be handed to listeners of this node directly,
+     * without going through the broker. Redeliveries of failed events and events that can't be queued
+     * locally are still sent to the broker. This should only be enabled for single-node deployments,
+     * since events dispatched locally are never handled by other nodes of the cluster.
+     *
+     * @return true if local dispatch is enabled, false otherwise
+     */
+    public boolean isLocalDispatchEnabled() {
+        return localDispatchEnabled;
+    }
+
+    /**
+     * Returns the number of threads handling events dispatched locally.
+     *
+     * @return the number of local dispatch threads
+     */
+    public int getLocalDispatchThreadCount() {
+        return localDispatchThreadCount;
+    }
+
+    /**
+     * Returns the maximum number of events waiting in the local queue of a single listener. Events
+     * exceeding this capacity are sent through the broker.
+     *
+     * @return the capacity of a listener queue
+     */
+    public int getLocalDispatchQueueCapacity() {
+        return localDispatchQueueCapacity;
+    }
+
+    /**
+     * Returns the number of threads delivering topic events to the listeners of this node.
+     *
+     * @return the number of topic dispatch threads
+     */
+    public int getTopicDispatchThreadCount() {
+        return topicDispatchThreadCount;
+    }
+
+    /**
+     * Returns the maximum number of topic deliveries waiting for a free dispatch thread. Once it is
+     * exceeded, deliveries are executed by the thread consuming the topic, which slows the consumption down.
+     *
+     * @return the capacity of the topic dispatch queue
+     */
+    public int getTopicDispatchQueueCapacity() {
+        return topicDispatchQueueCapacity;
+    }
+
+    /**
+     * Returns time (in seconds) a listener has for handling a topic event. Once it passes, the thread
+     * handling the event is interrupted and the delivery is abandoned without retrying.
+     *
+     * @return the topic listener timeout
+     */
+    public long getTopicListenerTimeout() {
+        return topicListenerTimeout;
+    }
+
+    /**
+     * Returns whether the number of queue consumers should be adjusted to the load, see
+     * {@link AdaptiveConsumerController}.
+     *
+     * @return true if adaptive consumers are enabled, false otherwise
+     */
+    public boolean isAdaptiveConsumersEnabled() {
+        return adaptiveConsumersEnabled;
+    }
+
+    /**
+     * Returns time (in seconds) between successive adjustments of the number of queue consumers.
+     *
+     * @return the adjustment interval
+     */
+    public long getAdaptiveConsumersInterval() {
+        return adaptiveConsumersInterval;
+    }
+
+    /**
+     * Returns time (in seconds) in which the consumers should clear the messages waiting in a queue.
+     * The shorter it is, the more consumers are started when messages pile up.
+     *
+     * @return the drain time
+     */
+    public long getConsumersDrainTime() {
+        return consumersDrainTime;
+    }
+
+    /**
+     * Returns time (in milliseconds) for which coalesced events are held back, waiting for further events
+     * with the same coalescing key. If it is not positive, coalesced events are published immediately.
+     *
+     * @return the coalescing window
+     */
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    /**
+     * Returns the maximum number of coalescing keys with events held back at the same time. Events with new keys
+     * are published immediately when the limit is reached.
+     *
+     * @return the maximum number of pending coalesced events
+     */
+    public int getCoalescingMaxPending() {
+        return coalescingMaxPending;
+    }
 }
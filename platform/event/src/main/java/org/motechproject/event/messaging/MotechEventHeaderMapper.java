@@ -1,7 +1,6 @@
 package org.motechproject.event.messaging;
 
 import org.apache.activemq.ScheduledMessage;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.log4j.Logger;
 import org.motechproject.event.MotechEvent;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,9 +9,12 @@ import org.springframework.integration.jms.DefaultJmsHeaderMapper;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.ObjectMessage;
 
 /**
  * Sets the <code>AMQ_SCHEDULED_DELAY</code> header of the JMS message being sent based on the <code>MotechEventConfig</code>.
+ * The redelivery data is read from the message properties set by the {@link MotechEventMessageConverter}, so the
+ * body of the message is never decoded.
  * For the delay to work, set attribute schedulerSupport="true" in the broker element of the activemq.xml
  * Ref: http://activemq.apache.org/delay-and-schedule-message-delivery.html
  */
@@ -32,18 +34,29 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
         try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
-            Boolean isFailedMessage = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
-
-            if (isFailedMessage != null && isFailedMessage) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
-                Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
-                        ((Math.pow(2, redeliveryCount - 1)));
-                LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
-                message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
+            if (message.propertyExists(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)) {
+                if (message.getBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)) {
+                    setDelay(message, message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY),
+                            message.getStringProperty(MotechEventMessageConverter.SUBJECT_PROPERTY));
+                }
+            } else if (message instanceof ObjectMessage) {
+                // message created by a converter other than MotechEventMessageConverter
+                MotechEvent motechEvent = (MotechEvent) ((ObjectMessage) message).getObject();
+                Boolean isFailedMessage = (Boolean) motechEvent.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT);
+
+                if (isFailedMessage != null && isFailedMessage) {
+                    setDelay(message, motechEvent.getMessageRedeliveryCount(), motechEvent.getSubject());
+                }
             }
         } catch (JMSException e) {
             LOGGER.error("Failed to set header", e);
         }
     }
+
+    private void setDelay(Message message, long redeliveryCount, String subject) throws JMSException {
+        Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
+                ((Math.pow(2, redeliveryCount - 1)));
+        LOGGER.debug("Redelivering event with subject " + subject + " after " + delay + " millis.");
+        message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
+    }
 }
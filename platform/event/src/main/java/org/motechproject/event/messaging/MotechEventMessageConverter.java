@@ -0,0 +1,63 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Converts <code>MotechEvent</code>s to <code>BytesMessage</code>s encoded with the given {@link MotechEventCodec}
+ * and back. The subject and the redelivery data of the event are also set as message properties, so that they
+ * can be read without decoding the body. Messages that don't carry a <code>BytesMessage</code>, such as object
+ * messages sent by earlier versions, are converted using the <code>SimpleMessageConverter</code>.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    public static final String SUBJECT_PROPERTY = "motechEventSubject";
+    public static final String INVALID_EVENT_PROPERTY = "motechEventInvalid";
+    public static final String REDELIVERY_COUNT_PROPERTY = "motechEventRedeliveryCount";
+
+    private final MotechEventCodec codec;
+    private final MessageConverter fallbackConverter = new SimpleMessageConverter();
+
+    /**
+     * @param codec the codec used for encoding event bodies
+     */
+    public MotechEventMessageConverter(MotechEventCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (!(object instanceof MotechEvent)) {
+            return fallbackConverter.toMessage(object, session);
+        }
+
+        MotechEvent event = (MotechEvent) object;
+
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(codec.encode(event));
+
+        message.setStringProperty(SUBJECT_PROPERTY, event.getSubject());
+        message.setBooleanProperty(INVALID_EVENT_PROPERTY,
+                Boolean.TRUE.equals(event.getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT)));
+        message.setIntProperty(REDELIVERY_COUNT_PROPERTY, event.getMessageRedeliveryCount());
+
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] data = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(data);
+            return codec.decode(data);
+        }
+        return fallbackConverter.fromMessage(message);
+    }
+}
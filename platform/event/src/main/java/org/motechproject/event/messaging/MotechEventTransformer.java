@@ -1,26 +1,33 @@
 package org.motechproject.event.messaging;
 
+import org.motechproject.event.EventTrace;
 import org.motechproject.event.MotechEvent;
 
 import java.util.UUID;
 
 /**
- * Transforms <code>MotechEvent</code> by settings its UUID.
+ * Transforms <code>MotechEvent</code> by settings its UUID, trace ID and publish time.
  */
 public class MotechEventTransformer {
 
     /**
      * Updates the motechEvent's {@code UUID} with a random value
-     * if it is null, otherwise it does not change it.
+     * if it is null, otherwise it does not change it. Returns a copy
+     * of the event with a trace ID, see {@link EventTrace}, and with
+     * the publish time set to the current time, so that the time it
+     * spends in the broker can be measured. The parameters of the given
+     * event are left unchanged.
      *
      * @param motechEvent the motechEvent to be updated
-     * @return the motechEvent after being updated
+     * @return the copy of the motechEvent to be sent
      * @see java.util.UUID#randomUUID()
      */
     public MotechEvent transform(MotechEvent motechEvent) {
         if (motechEvent.getId() == null) {
             motechEvent.setId(UUID.randomUUID());
         }
-        return motechEvent;
+        MotechEvent transformed = EventTrace.withTraceId(motechEvent);
+        transformed.getParameters().put(MotechEvent.PARAM_PUBLISH_TIME, System.currentTimeMillis());
+        return transformed;
     }
 }
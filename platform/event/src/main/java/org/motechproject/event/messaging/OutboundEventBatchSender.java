@@ -0,0 +1,133 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.jms.JmsHeaderMapper;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends batches of <code>MotechEvent</code>s to the broker. All events of a batch are sent using a single
+ * transacted JMS session and committed once, so either all of them or none of them are delivered. Events are
+ * transformed, converted and mapped the same way as the ones sent through the {@link OutboundEventGateway}.
+ * Queue events are sent to the queues of their {@link EventLane}s.
+ */
+public class OutboundEventBatchSender {
+
+    private final ConnectionFactory connectionFactory;
+    private final EventLaneRouter eventLaneRouter;
+    private final Destination eventTopic;
+    private final MessageConverter messageConverter;
+    private final JmsHeaderMapper headerMapper;
+    private final MotechEventTransformer eventTransformer;
+    private final JmsTemplate jmsTemplate;
+
+    /**
+     * @param connectionFactory the factory of broker connections
+     * @param eventLaneRouter the router choosing the queue to which an event is sent
+     * @param eventTopic the topic to which events are broadcast
+     * @param messageConverter the converter creating JMS messages from events
+     * @param headerMapper the mapper setting headers of the JMS messages
+     * @param eventTransformer the transformer applied to events before they are sent
+     */
+    public OutboundEventBatchSender(ConnectionFactory connectionFactory, EventLaneRouter eventLaneRouter,
+                                    Destination eventTopic, MessageConverter messageConverter, JmsHeaderMapper headerMapper,
+                                    MotechEventTransformer eventTransformer) {
+        this.connectionFactory = connectionFactory;
+        this.eventLaneRouter = eventLaneRouter;
+        this.eventTopic = eventTopic;
+        this.messageConverter = messageConverter;
+        this.headerMapper = headerMapper;
+        this.eventTransformer = eventTransformer;
+
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
+    }
+
+    /**
+     * Sends the events to the message queues in a single transaction.
+     *
+     * @param events the events to be sent
+     * @see OutboundEventGateway#sendEventMessage(MotechEvent)
+     */
+    public void sendEventMessages(Collection<MotechEvent> events) {
+        send(events, false);
+    }
+
+    /**
+     * Broadcasts the events to the message topic in a single transaction.
+     *
+     * @param events the events to be broadcast
+     * @see OutboundEventGateway#broadcastEventMessage(MotechEvent)
+     */
+    public void broadcastEventMessages(Collection<MotechEvent> events) {
+        send(events, true);
+    }
+
+    private void send(final Collection<MotechEvent> events, final boolean broadcast) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        jmsTemplate.execute(new SessionCallback<Object>() {
+            @Override
+            public Object doInJms(Session session) throws JMSException {
+                // if the session takes part in an outer transaction, it is committed along with it
+                boolean locallyTransacted = session.getTransacted() &&
+                        !ConnectionFactoryUtils.isSessionTransactional(session, connectionFactory);
+
+                Map<Destination, MessageProducer> producers = new HashMap<>();
+                try {
+                    MessageHeaders headers = new MessageHeaders(Collections.<String, Object>emptyMap());
+                    for (MotechEvent event : events) {
+                        Message message = messageConverter.toMessage(eventTransformer.transform(event), session);
+                        headerMapper.fromHeaders(headers, message);
+                        getProducer(session, producers, getDestination(event, broadcast)).send(message);
+                    }
+
+                    if (locallyTransacted) {
+                        JmsUtils.commitIfNecessary(session);
+                    }
+                } catch (JMSException | RuntimeException e) {
+                    if (locallyTransacted) {
+                        JmsUtils.rollbackIfNecessary(session);
+                    }
+                    throw e;
+                } finally {
+                    for (MessageProducer producer : producers.values()) {
+                        JmsUtils.closeMessageProducer(producer);
+                    }
+                }
+                return null;
+            }
+        }, false);
+    }
+
+    private Destination getDestination(MotechEvent event, boolean broadcast) {
+        return broadcast ? eventTopic : eventLaneRouter.getLane(event.getSubject()).getDestination();
+    }
+
+    private MessageProducer getProducer(Session session, Map<Destination, MessageProducer> producers,
+                                        Destination destination) throws JMSException {
+        MessageProducer producer = producers.get(destination);
+        if (producer == null) {
+            producer = session.createProducer(destination);
+            producers.put(destination, producer);
+        }
+        return producer;
+    }
+}
@@ -0,0 +1,16 @@
+package org.motechproject.event.messaging;
+
+/**
+ * Provides statistics of the broker queues. The event module does not read them on its own, an implementation
+ * is expected to be published as an OSGi service by a module having access to the broker MBeans.
+ */
+public interface QueueStatisticsProvider {
+
+    /**
+     * Returns the number of messages waiting in the given queue.
+     *
+     * @param queueName the physical name of the queue
+     * @return the number of pending messages, or -1 if the queue is not known to the broker
+     */
+    long getQueueSize(String queueName);
+}
@@ -0,0 +1,38 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.util.ClassLoadingAwareObjectInputStream;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * The <code>MotechEventCodec</code> using standard Java serialization, the format in which events
+ * were sent as <code>ObjectMessage</code>s.
+ */
+public class SerializableMotechEventCodec implements MotechEventCodec {
+
+    @Override
+    public byte[] encode(MotechEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        } catch (IOException e) {
+            throw new MotechException("Unable to serialize " + event, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] data) {
+        try (ObjectInputStream in = new ClassLoadingAwareObjectInputStream(new ByteArrayInputStream(data))) {
+            return (MotechEvent) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MotechException("Unable to deserialize Motech event", e);
+        }
+    }
+}
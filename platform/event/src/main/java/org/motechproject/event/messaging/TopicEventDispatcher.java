@@ -0,0 +1,405 @@
+package org.motechproject.event.messaging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.motechproject.event.EventTrace;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.OrderedEventListener;
+import org.motechproject.event.listener.annotations.MotechListenerAbstractProxy;
+import org.motechproject.event.metrics.EventMetricsRecorder;
+import org.motechproject.event.utils.MotechProxyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers topic events to the listeners of this node. Every listener receives the event on a thread from a bounded
+ * pool, so a slow listener does not hold up the others. A listener that does not handle the event within the
+ * configured timeout is interrupted and the delivery is abandoned. Failed deliveries are retried asynchronously,
+ * with the delay growing exponentially, until the maximum redelivery count is reached. Listeners are handed events
+ * concurrently, unless they implement {@link OrderedEventListener} or were created from a
+ * {@link org.motechproject.event.listener.annotations.MotechListener} with ordered delivery requested, in which case
+ * they receive events one at a time, in the order they were dispatched. An ordered listener which timed out receives
+ * its next event only after it actually returns.
+ */
+@Component
+public class TopicEventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopicEventDispatcher.class);
+
+    private static final long MILLIS_PER_SEC = 1000L;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final MotechEventConfig motechEventConfig;
+    private final EventMetricsRecorder eventMetrics;
+    private final ConcurrentMap<String, TopicListenerMetrics> listenerMetrics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OrderedLane> orderedLanes = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+    private ScheduledThreadPoolExecutor scheduler;
+    private volatile boolean shutdown;
+
+    /**
+     * @param motechEventConfig the event configuration
+     * @param eventMetrics the recorder of the event pipeline metrics
+     */
+    @Autowired
+    public TopicEventDispatcher(MotechEventConfig motechEventConfig, EventMetricsRecorder eventMetrics) {
+        this.motechEventConfig = motechEventConfig;
+        this.eventMetrics = eventMetrics;
+    }
+
+    /**
+     * Delivers the event to the listener. The method returns as soon as the delivery is handed to a dispatch thread.
+     * If all dispatch threads are busy and the dispatch queue is full, the event is handled by the calling thread.
+     *
+     * @param listener the listener receiving the event
+     * @param event the event to be delivered, it should not be shared with other listeners
+     */
+    public void dispatch(EventListener listener, MotechEvent event) {
+        String identifier = listener.getIdentifier();
+
+        if (isOrdered(listener)) {
+            OrderedLane lane = orderedLanes.get(identifier);
+            if (lane == null) {
+                OrderedLane newLane = new OrderedLane();
+                lane = orderedLanes.putIfAbsent(identifier, newLane);
+                if (lane == null) {
+                    lane = newLane;
+                }
+            }
+            lane.offer(new Delivery(listener, event, getMetrics(identifier), lane));
+        } else {
+            new Delivery(listener, event, getMetrics(identifier), null).attempt(true);
+        }
+    }
+
+    /**
+     * Returns the delivery statistics of all listeners which received topic events, keyed by listener identifiers.
+     *
+     * @return the statistics of the listeners
+     */
+    public Map<String, TopicListenerMetrics> getListenerMetrics() {
+        return Collections.unmodifiableMap(listenerMetrics);
+    }
+
+    /**
+     * Stops accepting deliveries and waits for the running ones to finish. Pending retries are discarded.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+
+        ThreadPoolExecutor executorToStop;
+        ScheduledThreadPoolExecutor schedulerToStop;
+        synchronized (this) {
+            executorToStop = executor;
+            schedulerToStop = scheduler;
+        }
+
+        if (schedulerToStop != null) {
+            int discarded = schedulerToStop.shutdownNow().size();
+            LOGGER.debug("Cancelled {} scheduled topic event retries and deadlines", discarded);
+        }
+
+        if (executorToStop != null) {
+            executorToStop.shutdown();
+            try {
+                if (!executorToStop.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Topic events were still being handled after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private TopicListenerMetrics getMetrics(String identifier) {
+        TopicListenerMetrics metrics = listenerMetrics.get(identifier);
+        if (metrics == null) {
+            TopicListenerMetrics newMetrics = new TopicListenerMetrics();
+            metrics = listenerMetrics.putIfAbsent(identifier, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    private boolean isOrdered(EventListener listener) {
+        return listener instanceof OrderedEventListener ||
+                (listener instanceof MotechListenerAbstractProxy && ((MotechListenerAbstractProxy) listener).isOrdered());
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (shutdown) {
+            throw new RejectedExecutionException("Topic event dispatcher is shut down");
+        }
+        if (executor == null) {
+            int threads = motechEventConfig.getTopicDispatchThreadCount();
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat("motech-topic-event-dispatcher-%d").setDaemon(true).build());
+        }
+        return executor;
+    }
+
+    private synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (shutdown) {
+            throw new RejectedExecutionException("Topic event dispatcher is shut down");
+        }
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactoryBuilder().setNameFormat("motech-topic-event-scheduler-%d").setDaemon(true).build());
+            // deadlines are cancelled for almost every delivery, don't keep them in the queue
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    private static void invoke(EventListener listener, MotechEvent event) {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+        ClassLoader listenerClassLoader = MotechProxyUtils.getTargetClassLoader(listener);
+        String previousTraceId = EventTrace.begin(event);
+        try {
+            if (listenerClassLoader != contextClassLoader) {
+                currentThread.setContextClassLoader(listenerClassLoader);
+            }
+            listener.handle(event);
+        } finally {
+            EventTrace.end(previousTraceId);
+            currentThread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Delivery of a single event to a single listener, possibly consisting of several attempts.
+     */
+    private class Delivery {
+
+        private final EventListener listener;
+        private final MotechEvent event;
+        private final TopicListenerMetrics metrics;
+        private final OrderedLane lane;
+        private int retryCount;
+
+        Delivery(EventListener listener, MotechEvent event, TopicListenerMetrics metrics, OrderedLane lane) {
+            this.listener = listener;
+            this.event = event;
+            this.metrics = metrics;
+            this.lane = lane;
+        }
+
+        void attempt(boolean allowCallerRuns) {
+            Attempt attempt = new Attempt(this);
+            try {
+                ThreadPoolExecutor pool = getExecutor();
+                // the queue is not bounded for retries and ordered deliveries, since they can't run on the caller's thread
+                if (allowCallerRuns && pool.getQueue().size() >= motechEventConfig.getTopicDispatchQueueCapacity()) {
+                    attempt.run();
+                } else {
+                    pool.execute(attempt);
+                }
+            } catch (RejectedExecutionException e) {
+                discard("the dispatcher is shut down", e);
+            }
+        }
+
+        void succeeded(long millis) {
+            metrics.recordHandled(millis);
+            eventMetrics.recordHandled(event, listener.getIdentifier(), millis, false);
+            complete();
+        }
+
+        void failed(long millis, RuntimeException e) {
+            metrics.recordFailed(millis);
+            eventMetrics.recordHandled(event, listener.getIdentifier(), millis, true);
+
+            if (retryCount >= motechEventConfig.getMessageMaxRedeliveryCount()) {
+                discard("max retry count reached", e);
+                return;
+            }
+
+            retryCount++;
+            long delay = (long) (motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC * Math.pow(2, retryCount - 1));
+            LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s, retrying in %d millis.",
+                    event.toString(), listener.getIdentifier(), delay), e);
+
+            try {
+                getScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt(false);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                metrics.recordRetried();
+                eventMetrics.recordRetried(event);
+            } catch (RejectedExecutionException ex) {
+                discard("the dispatcher is shut down", e);
+            }
+        }
+
+        void timedOut(long timeout) {
+            metrics.recordTimedOut();
+            eventMetrics.recordHandled(event, listener.getIdentifier(), timeout * MILLIS_PER_SEC, true);
+            LOGGER.error("Listener {} did not handle topic event {} within {} seconds, abandoning the delivery",
+                    listener.getIdentifier(), event, timeout);
+            // the lane is not released here, the listener is still running until the attempt returns
+        }
+
+        void returnedAfterTimeout() {
+            if (lane != null) {
+                LOGGER.warn("Listener {} returned from handling timed out topic event {}, delivering its next events",
+                        listener.getIdentifier(), event);
+            }
+            complete();
+        }
+
+        private void discard(String reason, Exception e) {
+            metrics.recordDiscarded();
+            eventMetrics.recordDiscarded(event);
+            LOGGER.error(String.format("Discarding topic event %s for listener %s, %s.",
+                    event.toString(), listener.getIdentifier(), reason), e);
+            complete();
+        }
+
+        private void complete() {
+            if (lane != null) {
+                lane.next();
+            }
+        }
+    }
+
+    /**
+     * A single attempt of handling an event. It finishes either when the listener returns, or when its deadline passes,
+     * whichever happens first.
+     */
+    private class Attempt implements Runnable {
+
+        private final Delivery delivery;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private Thread runner;
+
+        Attempt(Delivery delivery) {
+            this.delivery = delivery;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+
+            ScheduledFuture<?> deadline = scheduleDeadline();
+            long start = System.currentTimeMillis();
+            RuntimeException failure = null;
+
+            try {
+                invoke(delivery.listener, delivery.event);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+            }
+
+            if (!finished.compareAndSet(false, true)) {
+                // the deadline has passed and might have interrupted this thread, don't let it leak to other tasks
+                Thread.interrupted();
+                delivery.returnedAfterTimeout();
+            } else if (failure == null) {
+                delivery.succeeded(System.currentTimeMillis() - start);
+            } else {
+                delivery.failed(System.currentTimeMillis() - start, failure);
+            }
+        }
+
+        private ScheduledFuture<?> scheduleDeadline() {
+            final long timeout = motechEventConfig.getTopicListenerTimeout();
+            if (timeout <= 0) {
+                return null;
+            }
+
+            try {
+                return getScheduler().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        expire(timeout);
+                    }
+                }, timeout, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        }
+
+        private void expire(long timeout) {
+            if (finished.compareAndSet(false, true)) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+                delivery.timedOut(timeout);
+            }
+        }
+    }
+
+    /**
+     * Deliveries for a listener requiring ordered delivery. Only one delivery of the lane is in progress at a time,
+     * the next one starts after the previous one succeeds or is discarded. A delivery which timed out holds the lane
+     * until its listener returns, so that two events are never handled by the listener at the same time.
+     */
+    private class OrderedLane {
+
+        private final Queue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        void offer(Delivery delivery) {
+            deliveries.offer(delivery);
+            startNext();
+        }
+
+        void next() {
+            busy.set(false);
+            startNext();
+        }
+
+        private void startNext() {
+            // a delivery could have been queued by another thread right after the lane was found idle, so check again
+            while (!deliveries.isEmpty() && busy.compareAndSet(false, true)) {
+                Delivery delivery = deliveries.poll();
+                if (delivery != null) {
+                    if (shutdown) {
+                        LOGGER.warn("Topic event dispatcher is shut down, discarding {} events for listener {}",
+                                deliveries.size() + 1, delivery.listener.getIdentifier());
+                        deliveries.clear();
+                    } else {
+                        delivery.attempt(false);
+                        return;
+                    }
+                }
+                busy.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.motechproject.event.messaging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery statistics of topic events for a single listener. Counters are updated by the
+ * {@link TopicEventDispatcher} and can be read at any time.
+ */
+public class TopicListenerMetrics {
+
+    private final AtomicLong handledCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong handlingTime = new AtomicLong();
+
+    /**
+     * Returns the number of events handled by the listener without an exception.
+     *
+     * @return the number of handled events
+     */
+    public long getHandledCount() {
+        return handledCount.get();
+    }
+
+    /**
+     * Returns the number of delivery attempts that ended with an exception thrown by the listener.
+     *
+     * @return the number of failed attempts
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the number of retries scheduled after failed delivery attempts.
+     *
+     * @return the number of retries
+     */
+    public long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    /**
+     * Returns the number of deliveries abandoned because the listener did not handle the event in time.
+     *
+     * @return the number of timed out deliveries
+     */
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * Returns the number of events that were never handled, because the maximum number of retries
+     * was reached or the dispatcher was shut down.
+     *
+     * @return the number of discarded events
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * Returns the average time (in milliseconds) of a single delivery attempt, failed attempts included.
+     *
+     * @return the average handling time, 0 if no attempt has finished yet
+     */
+    public double getAverageHandlingTime() {
+        long attempts = handledCount.get() + failedCount.get();
+        return (attempts == 0) ? 0 : (double) handlingTime.get() / attempts;
+    }
+
+    void recordHandled(long millis) {
+        handlingTime.addAndGet(millis);
+        handledCount.incrementAndGet();
+    }
+
+    void recordFailed(long millis) {
+        handlingTime.addAndGet(millis);
+        failedCount.incrementAndGet();
+    }
+
+    void recordRetried() {
+        retriedCount.incrementAndGet();
+    }
+
+    void recordTimedOut() {
+        timedOutCount.incrementAndGet();
+    }
+
+    void recordDiscarded() {
+        discardedCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,229 @@
+package org.motechproject.event.metrics;
+
+import org.motechproject.event.MotechEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the metrics of the event pipeline: events published, their waiting time between being sent to the broker
+ * and being delivered, and the handling times of listeners, together with failures, retries and discards.
+ * Metrics are kept for each subject and each listener. Since subjects can be generated dynamically, the number
+ * of subjects tracked separately is limited, the rest of them is counted under {@link #OTHER_SUBJECTS}.
+ */
+@Component
+public class EventMetricsRecorder implements EventMetricsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventMetricsRecorder.class);
+
+    /**
+     * The name under which metrics of subjects exceeding the limit are kept.
+     */
+    public static final String OTHER_SUBJECTS = "<other>";
+
+    private static final int MAX_TRACKED_SUBJECTS = 1000;
+
+    private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListenerCounters> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    @PostConstruct
+    public void registerMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            StandardMBean mBean = new StandardMBean(this, EventMetricsService.class, true);
+            try {
+                mBeanServer.registerMBean(mBean, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                // left over by a previous instance of the module
+                mBeanServer.unregisterMBean(objectName);
+                mBeanServer.registerMBean(mBean, objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    @PreDestroy
+    public void unregisterMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Records publishing of the event.
+     *
+     * @param event the event being published
+     */
+    public void recordPublished(MotechEvent event) {
+        getSubjectCounters(event.getSubject()).published.incrementAndGet();
+    }
+
+    /**
+     * Records delivery of the event to this node. The time the event waited for the delivery is calculated
+     * from its {@link MotechEvent#PARAM_PUBLISH_TIME} parameter, events without it are ignored.
+     *
+     * @param event the event delivered
+     */
+    public void recordDelivered(MotechEvent event) {
+        Object publishTime = event.getParameters().get(MotechEvent.PARAM_PUBLISH_TIME);
+        if (publishTime instanceof Long) {
+            getSubjectCounters(event.getSubject()).queueWaitTime.record(System.currentTimeMillis() - (Long) publishTime);
+        }
+    }
+
+    /**
+     * Records handling of the event by a listener.
+     *
+     * @param event the event handled
+     * @param listener the identifier of the listener
+     * @param millis the handling time in milliseconds
+     * @param failed true if the listener failed to handle the event
+     */
+    public void recordHandled(MotechEvent event, String listener, long millis, boolean failed) {
+        SubjectCounters subjectCounters = getSubjectCounters(event.getSubject());
+        subjectCounters.handlingTime.record(millis);
+
+        ListenerCounters listenerCounters = getListenerCounters(listener);
+        listenerCounters.handlingTime.record(millis);
+        listenerCounters.handled.incrementAndGet();
+
+        if (failed) {
+            subjectCounters.failed.incrementAndGet();
+            listenerCounters.failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a retry of the event, after its handling failed.
+     *
+     * @param event the event to be redelivered
+     */
+    public void recordRetried(MotechEvent event) {
+        getSubjectCounters(event.getSubject()).retried.incrementAndGet();
+    }
+
+    /**
+     * Records discarding of the event, after all its redeliveries failed.
+     *
+     * @param event the discarded event
+     */
+    public void recordDiscarded(MotechEvent event) {
+        getSubjectCounters(event.getSubject()).discarded.incrementAndGet();
+    }
+
+    @Override
+    public List<SubjectMetrics> getSubjectMetrics() {
+        List<SubjectMetrics> result = new ArrayList<>(subjects.size());
+        for (Map.Entry<String, SubjectCounters> entry : subjects.entrySet()) {
+            result.add(entry.getValue().toMetrics(entry.getKey()));
+        }
+        return result;
+    }
+
+    @Override
+    public List<ListenerMetrics> getListenerMetrics() {
+        List<ListenerMetrics> result = new ArrayList<>(listeners.size());
+        for (Map.Entry<String, ListenerCounters> entry : listeners.entrySet()) {
+            result.add(entry.getValue().toMetrics(entry.getKey()));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        subjects.clear();
+        listeners.clear();
+    }
+
+    private SubjectCounters getSubjectCounters(String subject) {
+        SubjectCounters counters = subjects.get(subject);
+        if (counters == null) {
+            String key = (subjects.size() < MAX_TRACKED_SUBJECTS) ? subject : OTHER_SUBJECTS;
+            SubjectCounters newCounters = new SubjectCounters();
+            counters = subjects.putIfAbsent(key, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+        return counters;
+    }
+
+    private ListenerCounters getListenerCounters(String listener) {
+        ListenerCounters counters = listeners.get(listener);
+        if (counters == null) {
+            ListenerCounters newCounters = new ListenerCounters();
+            counters = listeners.putIfAbsent(listener, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+        return counters;
+    }
+
+    private static class SubjectCounters {
+
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+        private final AtomicLong discarded = new AtomicLong();
+        private final LatencyHistogram queueWaitTime = new LatencyHistogram();
+        private final LatencyHistogram handlingTime = new LatencyHistogram();
+
+        SubjectMetrics toMetrics(String subject) {
+            SubjectMetrics metrics = new SubjectMetrics();
+            metrics.setSubject(subject);
+            metrics.setPublishedCount(published.get());
+            metrics.setFailedCount(failed.get());
+            metrics.setRetriedCount(retried.get());
+            metrics.setDiscardedCount(discarded.get());
+            metrics.setQueueWaitTime(queueWaitTime.getStatistics());
+            metrics.setHandlingTime(handlingTime.getStatistics());
+            return metrics;
+        }
+    }
+
+    private static class ListenerCounters {
+
+        private final AtomicLong handled = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LatencyHistogram handlingTime = new LatencyHistogram();
+
+        ListenerMetrics toMetrics(String listener) {
+            ListenerMetrics metrics = new ListenerMetrics();
+            metrics.setListener(listener);
+            metrics.setHandledCount(handled.get());
+            metrics.setFailedCount(failed.get());
+            metrics.setHandlingTime(handlingTime.getStatistics());
+            return metrics;
+        }
+    }
+}
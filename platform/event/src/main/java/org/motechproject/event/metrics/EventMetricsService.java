@@ -0,0 +1,36 @@
+package org.motechproject.event.metrics;
+
+import javax.management.MXBean;
+import java.util.List;
+
+/**
+ * Provides the metrics of the event pipeline, gathered since the module was started or the metrics were reset.
+ * It is published as an OSGi service and registered in the platform MBean server under {@link #OBJECT_NAME}.
+ */
+@MXBean
+public interface EventMetricsService {
+
+    /**
+     * The name under which the metrics are registered in the MBean server.
+     */
+    String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    /**
+     * Returns the metrics of all subjects of events published or handled.
+     *
+     * @return the metrics of the subjects
+     */
+    List<SubjectMetrics> getSubjectMetrics();
+
+    /**
+     * Returns the metrics of all listeners which handled events.
+     *
+     * @return the metrics of the listeners
+     */
+    List<ListenerMetrics> getListenerMetrics();
+
+    /**
+     * Discards all metrics gathered so far.
+     */
+    void reset();
+}
@@ -0,0 +1,95 @@
+package org.motechproject.event.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies, with fixed buckets growing roughly exponentially from 1 millisecond
+ * to 1 minute. Recording a value does not allocate and takes no locks, percentiles are estimated from the buckets
+ * when the statistics are read.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The upper bounds of the buckets in milliseconds, the last bucket holds all values exceeding the last bound.
+     */
+    static final long[] BUCKET_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private static final double P50 = 0.5;
+    private static final double P95 = 0.95;
+    private static final double P99 = 0.99;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * Records a single latency.
+     *
+     * @param millis the latency in milliseconds, negative values are counted as 0
+     */
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+
+        buckets.incrementAndGet(bucketOf(value));
+        totalTime.addAndGet(value);
+
+        long max = maxTime.get();
+        while (value > max && !maxTime.compareAndSet(max, value)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * Returns the statistics of the recorded latencies. The statistics are not an atomic snapshot, values recorded
+     * concurrently might be only partially reflected.
+     *
+     * @return the latency statistics
+     */
+    public LatencyStatistics getStatistics() {
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        LatencyStatistics statistics = new LatencyStatistics();
+        statistics.setCount(count);
+        statistics.setTotalTime(totalTime.get());
+        statistics.setMaxTime(maxTime.get());
+        statistics.setAverageTime((count == 0) ? 0 : (double) totalTime.get() / count);
+        statistics.setP50(percentile(counts, count, P50));
+        statistics.setP95(percentile(counts, count, P95));
+        statistics.setP99(percentile(counts, count, P99));
+        statistics.setBucketBounds(BUCKET_BOUNDS.clone());
+        statistics.setBucketCounts(counts);
+        return statistics;
+    }
+
+    private long percentile(long[] counts, long count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * count);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return BUCKET_BOUNDS[i];
+            }
+        }
+        // falls into the overflow bucket
+        return maxTime.get();
+    }
+
+    private static int bucketOf(long value) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (value <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+}
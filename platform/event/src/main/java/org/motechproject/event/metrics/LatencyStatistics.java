@@ -0,0 +1,96 @@
+package org.motechproject.event.metrics;
+
+/**
+ * The statistics of latencies recorded by a {@link LatencyHistogram}. All times are in milliseconds,
+ * the percentiles are the upper bounds of the buckets they fall into.
+ */
+public class LatencyStatistics {
+
+    private long count;
+    private long totalTime;
+    private long maxTime;
+    private double averageTime;
+    private long p50;
+    private long p95;
+    private long p99;
+    private long[] bucketBounds;
+    private long[] bucketCounts;
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    public double getAverageTime() {
+        return averageTime;
+    }
+
+    public void setAverageTime(double averageTime) {
+        this.averageTime = averageTime;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public void setP50(long p50) {
+        this.p50 = p50;
+    }
+
+    public long getP95() {
+        return p95;
+    }
+
+    public void setP95(long p95) {
+        this.p95 = p95;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public void setP99(long p99) {
+        this.p99 = p99;
+    }
+
+    /**
+     * @return the upper bounds of the histogram buckets, the last bucket has no upper bound
+     */
+    public long[] getBucketBounds() {
+        return bucketBounds;
+    }
+
+    public void setBucketBounds(long[] bucketBounds) {
+        this.bucketBounds = bucketBounds;
+    }
+
+    /**
+     * @return the number of latencies in each bucket, it has one more element than the bucket bounds
+     */
+    public long[] getBucketCounts() {
+        return bucketCounts;
+    }
+
+    public void setBucketCounts(long[] bucketCounts) {
+        this.bucketCounts = bucketCounts;
+    }
+}
@@ -0,0 +1,48 @@
+package org.motechproject.event.metrics;
+
+/**
+ * The metrics of a single listener: how many events it handled, how many of them failed and how long it took
+ * to handle them.
+ */
+public class ListenerMetrics {
+
+    private String listener;
+    private long handledCount;
+    private long failedCount;
+    private LatencyStatistics handlingTime;
+
+    /**
+     * @return the identifier of the listener
+     */
+    public String getListener() {
+        return listener;
+    }
+
+    public void setListener(String listener) {
+        this.listener = listener;
+    }
+
+    public long getHandledCount() {
+        return handledCount;
+    }
+
+    public void setHandledCount(long handledCount) {
+        this.handledCount = handledCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public LatencyStatistics getHandlingTime() {
+        return handlingTime;
+    }
+
+    public void setHandlingTime(LatencyStatistics handlingTime) {
+        this.handlingTime = handlingTime;
+    }
+}
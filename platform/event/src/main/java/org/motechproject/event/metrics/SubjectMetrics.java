@@ -0,0 +1,78 @@
+package org.motechproject.event.metrics;
+
+/**
+ * The metrics of events with a single subject: how many were published, how long they waited for delivery
+ * and how long their listeners took to handle them.
+ */
+public class SubjectMetrics {
+
+    private String subject;
+    private long publishedCount;
+    private long failedCount;
+    private long retriedCount;
+    private long discardedCount;
+    private LatencyStatistics queueWaitTime;
+    private LatencyStatistics handlingTime;
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public void setPublishedCount(long publishedCount) {
+        this.publishedCount = publishedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public long getRetriedCount() {
+        return retriedCount;
+    }
+
+    public void setRetriedCount(long retriedCount) {
+        this.retriedCount = retriedCount;
+    }
+
+    public long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    public void setDiscardedCount(long discardedCount) {
+        this.discardedCount = discardedCount;
+    }
+
+    /**
+     * @return the time between sending the events to the broker and their delivery
+     */
+    public LatencyStatistics getQueueWaitTime() {
+        return queueWaitTime;
+    }
+
+    public void setQueueWaitTime(LatencyStatistics queueWaitTime) {
+        this.queueWaitTime = queueWaitTime;
+    }
+
+    /**
+     * @return the time listeners spent handling the events
+     */
+    public LatencyStatistics getHandlingTime() {
+        return handlingTime;
+    }
+
+    public void setHandlingTime(LatencyStatistics handlingTime) {
+        this.handlingTime = handlingTime;
+    }
+}
@@ -38,4 +38,19 @@ public final class MotechProxyUtils {
         }
         return proxy;
     }
+
+    /**
+     * Returns the class loader of the bean from the <code>MotechListenerAbstractProxy</code>
+     * if the proxy {@link #isMotechListenerProxy(Object)}, otherwise returns the class loader
+     * of the object. The class loader of a proxied bean is resolved once, when the proxy is created.
+     *
+     * @param proxy the object to be checked
+     * @return the class loader of the target
+     */
+    public static ClassLoader getTargetClassLoader(Object proxy) {
+        if (isMotechListenerProxy(proxy)) {
+            return ((MotechListenerAbstractProxy) proxy).getBeanClassLoader();
+        }
+        return proxy.getClass().getClassLoader();
+    }
 }
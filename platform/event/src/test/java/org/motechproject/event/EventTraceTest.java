@@ -0,0 +1,68 @@
+package org.motechproject.event;
+
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EventTraceTest {
+
+    @Test
+    public void shouldStartNewTraceOutsideOfHandling() {
+        MotechEvent event = new MotechEvent("subject");
+
+        MotechEvent traced = EventTrace.withTraceId(event);
+
+        assertNotNull(EventTrace.getTraceId(traced));
+        assertNull(EventTrace.getTraceId(event));
+    }
+
+    @Test
+    public void shouldNotChangeExistingTraceId() {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put(MotechEvent.PARAM_TRACE_ID, "trace");
+
+        assertEquals("trace", EventTrace.getTraceId(EventTrace.withTraceId(event)));
+    }
+
+    @Test
+    public void shouldCopyImmutableParameters() {
+        UUID id = UUID.randomUUID();
+        MotechEvent event = new MotechEvent("subject", Collections.singletonMap("key", (Object) "value"));
+        event.setId(id);
+
+        MotechEvent traced = EventTrace.withTraceId(event);
+
+        assertEquals(id, traced.getId());
+        assertEquals("subject", traced.getSubject());
+        assertEquals("value", traced.getParameters().get("key"));
+        assertNotNull(EventTrace.getTraceId(traced));
+        assertEquals(1, event.getParameters().size());
+    }
+
+    @Test
+    public void shouldPropagateTraceIdOfHandledEvent() {
+        MotechEvent handled = new MotechEvent("subject");
+        handled.getParameters().put(MotechEvent.PARAM_TRACE_ID, "trace");
+        MotechEvent published = new MotechEvent("other");
+        MotechEvent traced;
+
+        String previous = EventTrace.begin(handled);
+        try {
+            assertEquals("trace", EventTrace.getCurrentTraceId());
+            assertEquals("trace", MDC.get(EventTrace.MDC_KEY));
+            traced = EventTrace.withTraceId(published);
+        } finally {
+            EventTrace.end(previous);
+        }
+
+        assertEquals("trace", EventTrace.getTraceId(traced));
+        assertNull(EventTrace.getCurrentTraceId());
+        assertNull(MDC.get(EventTrace.MDC_KEY));
+    }
+}
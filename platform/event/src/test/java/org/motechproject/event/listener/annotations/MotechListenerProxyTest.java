@@ -0,0 +1,150 @@
+package org.motechproject.event.listener.annotations;
+
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MotechListenerProxyTest {
+
+    @Test
+    public void shouldInvokeEventHandler() {
+        TestListener listener = new TestListener();
+        MotechEvent event = new MotechEvent("subject");
+
+        new MotechListenerEventProxy("test", listener, findMethod("handle", MotechEvent.class)).handle(event);
+
+        assertEquals(1, listener.events.size());
+        assertSame(event, listener.events.get(0));
+    }
+
+    @Test
+    public void shouldInvokeHandlerWithNamedParameters() {
+        TestListener listener = new TestListener();
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "abc");
+        parameters.put("count", 3);
+
+        new MotechListenerNamedParametersProxy("test", listener, findMethod("handleParams", String.class, Integer.class))
+                .handle(new MotechEvent("subject", parameters));
+
+        assertEquals("abc", listener.id);
+        assertEquals(Integer.valueOf(3), listener.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailIfNamedParameterIsMissing() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "abc");
+
+        new MotechListenerNamedParametersProxy("test", new TestListener(), findMethod("handleParams", String.class, Integer.class))
+                .handle(new MotechEvent("subject", parameters));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailIfNamedParameterHasWrongType() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "abc");
+        parameters.put("count", "3");
+
+        new MotechListenerNamedParametersProxy("test", new TestListener(), findMethod("handleParams", String.class, Integer.class))
+                .handle(new MotechEvent("subject", parameters));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowRuntimeExceptionsOfHandler() {
+        new MotechListenerEventProxy("test", new TestListener(), findMethod("fail", MotechEvent.class))
+                .handle(new MotechEvent("subject"));
+    }
+
+    @Test(expected = UndeclaredThrowableException.class)
+    public void shouldWrapCheckedExceptionsOfHandler() {
+        new MotechListenerEventProxy("test", new TestListener(), findMethod("failChecked", MotechEvent.class))
+                .handle(new MotechEvent("subject"));
+    }
+
+    @Test
+    public void shouldReadOrderingOfProxiedListenerFromOriginalClass() throws NoSuchMethodException {
+        ProxyFactory proxyFactory = new ProxyFactory(new OrderedTestListener());
+        proxyFactory.addInterface(OrderedHandler.class);
+        Object proxiedListener = proxyFactory.getProxy();
+
+        Method proxyMethod = proxiedListener.getClass().getMethod("handleOrdered", MotechEvent.class);
+        Method unorderedProxyMethod = proxiedListener.getClass().getMethod("handleUnordered", MotechEvent.class);
+
+        assertNull(proxyMethod.getAnnotation(MotechListener.class));
+        assertTrue(new MotechListenerEventProxy("test", proxiedListener, proxyMethod).isOrdered());
+        assertFalse(new MotechListenerEventProxy("test", proxiedListener, unorderedProxyMethod).isOrdered());
+    }
+
+    @Test
+    public void shouldReadOrderingOfListener() {
+        OrderedTestListener listener = new OrderedTestListener();
+
+        assertTrue(new MotechListenerEventProxy("test", listener,
+                ReflectionUtils.findMethod(OrderedTestListener.class, "handleOrdered", MotechEvent.class)).isOrdered());
+        assertFalse(new MotechListenerEventProxy("test", listener, findMethod("handle", MotechEvent.class)).isOrdered());
+    }
+
+    private Method findMethod(String name, Class<?>... parameterTypes) {
+        return ReflectionUtils.findMethod(TestListener.class, name, parameterTypes);
+    }
+
+    public static class TestListener {
+
+        private List<MotechEvent> events = new ArrayList<>();
+        private String id;
+        private Integer count;
+
+        public void handle(MotechEvent event) {
+            events.add(event);
+        }
+
+        public void handleParams(@MotechParam("id") String id, @MotechParam("count") Integer count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        public void fail(MotechEvent event) {
+            throw new IllegalStateException("failed");
+        }
+
+        public void failChecked(MotechEvent event) throws IOException {
+            throw new IOException("failed");
+        }
+    }
+
+    public interface OrderedHandler {
+
+        void handleOrdered(MotechEvent event);
+
+        void handleUnordered(MotechEvent event);
+    }
+
+    public static class OrderedTestListener implements OrderedHandler {
+
+        @Override
+        @MotechListener(subjects = "ordered", ordered = true)
+        public void handleOrdered(MotechEvent event) {
+        }
+
+        @Override
+        @MotechListener(subjects = "unordered")
+        public void handleUnordered(MotechEvent event) {
+        }
+    }
+}
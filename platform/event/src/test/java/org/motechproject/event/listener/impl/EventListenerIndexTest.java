@@ -0,0 +1,240 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.SampleEventListener;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventListenerIndexTest {
+
+    private static final String SUBJECT_0 = "org.motechproject.server";
+    private static final String SUBJECT_1 = "org.motechproject.server.some-event";
+    private static final String SUBJECT_2 = "org.motechproject.server.some-other-event";
+    private static final String WILDCARD_SUBJECT = "org.motechproject.server.*";
+
+    private EventListenerIndex index;
+    private EventListener listener = new SampleEventListener();
+
+    @Before
+    public void setUp() {
+        index = new EventListenerIndex();
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        assertTrue(index.isEmpty());
+        assertTrue(index.getListeners(SUBJECT_1).isEmpty());
+    }
+
+    @Test
+    public void testAddListener_SingleListener() {
+        index = index.withListener(listener, SUBJECT_1);
+
+        assertTrue(index.hasListener(SUBJECT_1));
+        assertFalse(index.hasListener(SUBJECT_2));
+    }
+
+    @Test
+    public void testAddListener_DoubleListener() {
+        index = index.withListener(listener, SUBJECT_1);
+        EventListenerIndex sameIndex = index.withListener(listener, SUBJECT_1);
+
+        assertSame(index, sameIndex);
+        assertTrue(index.hasListener(SUBJECT_1));
+        Set<EventListener> listeners = index.getListeners(SUBJECT_1);
+
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+    }
+
+    @Test
+    public void testAddListener_WildcardListener() {
+        index = index.withListener(listener, WILDCARD_SUBJECT);
+        assertTrue(index.hasListener(SUBJECT_1));
+        assertTrue(index.hasListener(SUBJECT_2));
+        assertTrue(index.hasListener(SUBJECT_1 + ".nested"));
+
+        Set<EventListener> listeners = index.getListeners(SUBJECT_1);
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+    }
+
+    @Test
+    public void testAddListener_WildcardListener2() {
+        index = index.withListener(listener, WILDCARD_SUBJECT);
+        assertEquals(1, index.getListeners(SUBJECT_0).size());
+
+        Set<EventListener> listeners = index.getListeners(SUBJECT_0);
+        assertNotNull(listeners);
+        assertTrue(listeners.size() == 1);
+        assertEquals(listeners.iterator().next(), listener);
+        assertFalse(index.hasListener("org.motechproject"));
+    }
+
+    @Test
+    public void testAddListener_UniversalListener() {
+        EventListener listener1 = new SampleEventListener();
+        EventListener listener2 = new SampleEventListener();
+        index = index.withListener(listener1, "*");
+        index = index.withListener(listener2, "org.test");
+
+        Set<EventListener> listeners = index.getListeners("*");
+        assertTrue(listeners.size() == 1);
+        assertTrue(listeners.contains(listener1));
+
+        listeners = index.getListeners("org.test");
+        assertTrue(listeners.size() == 2);
+        assertTrue(listeners.contains(listener1));
+        assertTrue(listeners.contains(listener2));
+
+        listeners = index.getListeners("com.pqr.xyz");
+        assertTrue(listeners.size() == 1);
+        assertTrue(listeners.contains(listener1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectWildcardInMiddle() {
+        index.withListener(listener, "org.motechproject.*.event");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectEmptyPath() {
+        index.withListener(listener, "org.motechproject..event");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_InvalidSubjectWildcard() {
+        index.withListener(listener, "org.motechproject.event*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddListener_Nullsubject() {
+        index.withListener(listener, null);
+    }
+
+    @Test
+    public void testSnapshotsAreNotModified() {
+        EventListenerIndex emptyIndex = index;
+        index = index.withListener(listener, SUBJECT_1);
+
+        assertEquals(0, emptyIndex.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+
+        EventListenerIndex removedIndex = index.withoutListeners(listener.getIdentifier());
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(0, removedIndex.getListenerCount(SUBJECT_1));
+        assertTrue(removedIndex.isEmpty());
+    }
+
+    @Test
+    public void testResolvedListenersAreCached() {
+        index = index.withListener(listener, WILDCARD_SUBJECT);
+
+        assertSame(index.getListeners(SUBJECT_1), index.getListeners(SUBJECT_1));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResolvedListenersCannotBeModified() {
+        index = index.withListener(listener, SUBJECT_1);
+
+        index.getListeners(SUBJECT_1).add(new FooEventListener());
+    }
+
+    @Test
+    public void getListenerCount_Simple() {
+        index = index.withListener(listener, SUBJECT_1);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(0, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void getListenerCount_Wildcard() {
+        index = index.withListener(listener, WILDCARD_SUBJECT);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void getListenerCount_Multiple() {
+        index = index.withListener(listener, WILDCARD_SUBJECT);
+        index = index.withListener(new FooEventListener(), SUBJECT_1);
+
+        assertEquals(2, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void testRemoveAllListeners() {
+        index = index.withListener(new FooEventListener(), SUBJECT_1);
+        index = index.withListener(new FooEventListener(), SUBJECT_2);
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+
+        index = index.withoutListeners("FooEventListener");
+
+        assertEquals(0, index.getListenerCount(SUBJECT_1));
+        assertEquals(0, index.getListenerCount(SUBJECT_2));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testRemoveAllNonWildcardListeners() {
+        index = index.withListener(new FooEventListener(), SUBJECT_1);
+        index = index.withListener(new FooEventListener(), SUBJECT_2);
+        index = index.withListener(new BarEventListener(), WILDCARD_SUBJECT);
+
+        assertEquals(2, index.getListenerCount(SUBJECT_1));
+        assertEquals(2, index.getListenerCount(SUBJECT_2));
+
+        index = index.withoutListeners("FooEventListener");
+
+        assertEquals(1, index.getListenerCount(SUBJECT_1));
+        assertEquals(1, index.getListenerCount(SUBJECT_2));
+    }
+
+    @Test
+    public void testRemoveUnknownListenerReturnsSameIndex() {
+        index = index.withListener(listener, SUBJECT_1);
+
+        assertSame(index, index.withoutListeners("FooEventListener"));
+    }
+
+    class FooEventListener implements EventListener {
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "FooEventListener";
+        }
+    }
+
+    class BarEventListener implements EventListener {
+
+        @Override
+        public void handle(MotechEvent event) {
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "BarEventListener";
+        }
+    }
+}
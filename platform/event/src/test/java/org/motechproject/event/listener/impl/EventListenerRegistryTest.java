@@ -3,13 +3,10 @@ package org.motechproject.event.listener.impl;
 import junitx.util.PrivateAccessor;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.Matchers;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.OtherSampleEventListener;
 import org.motechproject.event.listener.SampleEventListener;
-import org.motechproject.event.listener.impl.EventListenerRegistry;
-import org.motechproject.event.listener.impl.EventListenerTree;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,11 +15,8 @@ import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
 
 public class EventListenerRegistryTest {
     private EventListenerRegistry registry;
@@ -47,12 +41,11 @@ public class EventListenerRegistryTest {
         List<String> subjects = new ArrayList<String>();
         EventListener sel = new SampleEventListener();
 
-        EventListenerTree mockTree = mock(EventListenerTree.class);
-        PrivateAccessor.setField(registry, "listenerTree", mockTree);
+        Object index = PrivateAccessor.getField(registry, "listenerIndex");
 
         registry.registerListener(sel, subjects);
 
-        verify(mockTree, times(0)).addListener(Matchers.<EventListener>anyObject(), anyString());
+        assertSame(index, PrivateAccessor.getField(registry, "listenerIndex"));
     }
 
     @Test
@@ -249,6 +242,33 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void testRegistrationInvalidatesResolvedListeners() {
+        EventListener sel = new SampleEventListener();
+        registry.registerListener(sel, "org.motechproject.server.*");
+
+        assertEquals(1, registry.getListeners("org.motechproject.server.someevent").size());
+
+        registry.registerListener(new FooEventListener(), "org.motechproject.server.someevent");
+
+        assertEquals(2, registry.getListeners("org.motechproject.server.someevent").size());
+
+        registry.clearListenersForBean("FooEventListener");
+
+        assertEquals(1, registry.getListeners("org.motechproject.server.someevent").size());
+    }
+
+    @Test
+    public void testUniversalListenerIsRemoved() {
+        registry.registerListener(new SampleEventListener(), "*");
+
+        assertTrue(registry.hasListener("org.motechproject.server.someevent"));
+
+        registry.clearListenersForBean("TestEventListener");
+
+        assertFalse(registry.hasListener("org.motechproject.server.someevent"));
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
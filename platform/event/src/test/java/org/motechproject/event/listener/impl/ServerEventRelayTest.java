@@ -1,5 +1,6 @@
 package org.motechproject.event.listener.impl;
 
+import org.apache.activemq.command.ActiveMQQueue;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
@@ -7,30 +8,48 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
-import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.EventTrace;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.domain.BuggyListener;
+import org.motechproject.event.listener.CoalescingMode;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.impl.EventListenerRegistry;
 import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.EventCoalescer;
+import org.motechproject.event.messaging.EventLaneRouter;
+import org.motechproject.event.messaging.LocalEventDispatcher;
 import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchSender;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.messaging.TopicEventDispatcher;
+import org.motechproject.event.metrics.EventMetricsRecorder;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Properties;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
-import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -48,6 +67,9 @@ public class ServerEventRelayTest {
     @Mock
     private OutboundEventGateway outboundEventGateway;
 
+    @Mock
+    private OutboundEventBatchSender outboundEventBatchSender;
+
     @Mock
     private MotechEventConfig motechEventConfig;
 
@@ -63,11 +85,30 @@ public class ServerEventRelayTest {
     @Mock
     private EventListenerRegistry registry;
 
+    @Mock
+    private LocalEventDispatcher localEventDispatcher;
+
+    @Mock
+    private TopicEventDispatcher topicEventDispatcher;
+
+    private EventMetricsRecorder eventMetrics;
+
+    private EventCoalescer eventCoalescer;
+
     private ServerEventRelay eventRelay;
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin);
+        Properties properties = new Properties();
+        properties.setProperty("motech.message.lanes", "sms");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        EventLaneRouter eventLaneRouter = new EventLaneRouter(properties, new ActiveMQQueue("QueueForEvents"), 1, 10);
+
+        eventMetrics = new EventMetricsRecorder();
+        eventCoalescer = new EventCoalescer(motechEventConfig);
+
+        eventRelay = new ServerEventRelay(outboundEventGateway, outboundEventBatchSender, eventLaneRouter, registry,
+                motechEventConfig, eventAdmin, localEventDispatcher, topicEventDispatcher, eventMetrics, eventCoalescer);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -106,6 +147,275 @@ public class ServerEventRelayTest {
         assertThat(capturedEvent.getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
     }
 
+    @Test
+    public void shouldSendEventsOfPriorityLanesThroughBatchSender() throws Exception {
+        MotechEvent motechEvent = new MotechEvent("org.motechproject.sms.sent");
+        setUpListeners("org.motechproject.sms.sent", eventListener);
+        eventRelay.sendEventMessage(motechEvent);
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchSender).sendEventMessages(captor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        MotechEvent sentEvent = (MotechEvent) captor.getValue().iterator().next();
+        assertEquals("org.motechproject.sms.sent", sentEvent.getSubject());
+        assertThat(sentEvent.getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+    }
+
+    @Test
+    public void shouldDispatchEventsLocallyIfEnabled() {
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(localEventDispatcher).dispatch(eq(LISTENER_IDENTIFIER), captor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        captor.getValue().run();
+
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventListener).handle(eventCaptor.capture());
+        assertNotNull(eventCaptor.getValue().getId());
+        assertEquals("value", eventCaptor.getValue().getParameters().get("test"));
+    }
+
+    @Test
+    public void shouldSendEventsThroughBrokerIfNotAcceptedLocally() {
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(false);
+        when(localEventDispatcher.dispatch(eq(SECONDARY_LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(captor.capture());
+        assertThat(captor.getValue().getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+    }
+
+    @Test
+    public void shouldRedeliverLocallyDispatchedEventsThroughBroker() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(true);
+        doThrow(new RuntimeException()).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(localEventDispatcher).dispatch(eq(LISTENER_IDENTIFIER), captor.capture());
+        captor.getValue().run();
+
+        ArgumentCaptor<MotechEvent> eventCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(eventCaptor.capture());
+        assertEquals(1, eventCaptor.getValue().getMessageRedeliveryCount());
+        assertEquals(Boolean.TRUE, eventCaptor.getValue().getParameters().get(MotechEvent.PARAM_INVALID_MOTECH_EVENT));
+    }
+
+    @Test
+    public void shouldAssignSameTraceIdToAllCopiesOfEvent() {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        eventRelay.sendEventMessage(createEvent());
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway, times(2)).sendEventMessage(captor.capture());
+
+        String traceId = EventTrace.getTraceId(captor.getAllValues().get(0));
+        assertNotNull(traceId);
+        assertEquals(traceId, EventTrace.getTraceId(captor.getAllValues().get(1)));
+    }
+
+    @Test
+    public void shouldPropagateTraceIdToEventsPublishedByListener() {
+        final MotechEvent eventFromListener = new MotechEvent("other.subject");
+        setUpListeners("other.subject", secondaryEventListener);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                eventRelay.sendEventMessage(eventFromListener);
+                return null;
+            }
+        }).when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        MotechEvent motechEvent = createEvent(LISTENER_IDENTIFIER);
+        motechEvent.getParameters().put(MotechEvent.PARAM_TRACE_ID, "trace");
+        eventRelay.relayQueueEvent(motechEvent);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(captor.capture());
+        assertEquals("other.subject", captor.getValue().getSubject());
+        assertEquals("trace", EventTrace.getTraceId(captor.getValue()));
+        assertNull(EventTrace.getCurrentTraceId());
+    }
+
+    @Test
+    public void shouldPublishEventsWithImmutableParameters() {
+        setUpListeners(SUBJECT, eventListener);
+        Map<String, Object> parameters = Collections.singletonMap("test", (Object) "value");
+        MotechEvent motechEvent = new MotechEvent(SUBJECT, parameters);
+
+        eventRelay.sendEventMessage(motechEvent);
+        eventRelay.broadcastEventMessage(motechEvent);
+        eventRelay.sendEventMessages(Arrays.asList(motechEvent));
+        eventRelay.broadcastEventMessages(Arrays.asList(motechEvent));
+
+        ArgumentCaptor<MotechEvent> sentCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(sentCaptor.capture());
+        ArgumentCaptor<MotechEvent> broadcastCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).broadcastEventMessage(broadcastCaptor.capture());
+
+        assertNotNull(EventTrace.getTraceId(sentCaptor.getValue()));
+        assertEquals("value", sentCaptor.getValue().getParameters().get("test"));
+        assertNotNull(EventTrace.getTraceId(broadcastCaptor.getValue()));
+        assertEquals(Boolean.TRUE, broadcastCaptor.getValue().getParameters().get("broadcast-message"));
+
+        // the internal parameters are put on copies, not on the event of the publisher
+        assertEquals(Collections.singletonMap("test", (Object) "value"), motechEvent.getParameters());
+    }
+
+    @Test
+    public void shouldRecordEventMetrics() {
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        doThrow(new RuntimeException()).doNothing().when(eventListener).handle(any(MotechEvent.class));
+        setUpListeners(SUBJECT, eventListener);
+
+        eventRelay.sendEventMessage(createEvent());
+        MotechEvent motechEvent = createEvent(LISTENER_IDENTIFIER);
+        motechEvent.getParameters().put(MotechEvent.PARAM_PUBLISH_TIME, System.currentTimeMillis());
+        eventRelay.relayQueueEvent(motechEvent);
+        eventRelay.relayQueueEvent(motechEvent);
+
+        SubjectMetrics subjectMetrics = eventMetrics.getSubjectMetrics().get(0);
+        assertEquals(SUBJECT, subjectMetrics.getSubject());
+        assertEquals(1, subjectMetrics.getPublishedCount());
+        assertEquals(1, subjectMetrics.getFailedCount());
+        assertEquals(1, subjectMetrics.getRetriedCount());
+        assertEquals(0, subjectMetrics.getDiscardedCount());
+        assertEquals(2, subjectMetrics.getQueueWaitTime().getCount());
+        assertEquals(2, subjectMetrics.getHandlingTime().getCount());
+
+        ListenerMetrics listenerMetrics = eventMetrics.getListenerMetrics().get(0);
+        assertEquals(LISTENER_IDENTIFIER, listenerMetrics.getListener());
+        assertEquals(2, listenerMetrics.getHandledCount());
+        assertEquals(1, listenerMetrics.getFailedCount());
+    }
+
+    @Test
+    public void shouldSendBatchOfEventsInSingleCall() {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        setUpListeners("other.subject", eventListener);
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), createEvent(), new MotechEvent("other.subject")));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchSender).sendEventMessages(captor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> messages = new ArrayList<>(captor.getValue());
+        assertEquals(5, messages.size());
+        assertThat(messages.get(0).getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) LISTENER_IDENTIFIER));
+        assertThat(messages.get(1).getParameters(), Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
+        assertEquals("other.subject", messages.get(4).getSubject());
+
+        // listeners are resolved once per subject
+        verify(registry).getListeners(SUBJECT);
+        verify(registry).getListeners("other.subject");
+    }
+
+    @Test
+    public void shouldNotSendBatchIfThereAreNoListeners() {
+        setUpListeners(SUBJECT);
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), createEvent()));
+        eventRelay.broadcastEventMessages(Arrays.asList(createEvent(), createEvent()));
+
+        verify(outboundEventBatchSender, never()).sendEventMessages(anyCollection());
+        verify(outboundEventBatchSender, never()).broadcastEventMessages(anyCollection());
+    }
+
+    @Test
+    public void shouldDispatchBatchedEventsLocallyIfEnabled() {
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(true);
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), createEvent()));
+
+        verify(localEventDispatcher, times(2)).dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchSender).sendEventMessages(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        for (Object message : captor.getValue()) {
+            assertThat(((MotechEvent) message).getParameters(),
+                    Matchers.hasEntry(MESSAGE_DESTINATION, (Object) SECONDARY_LISTENER_IDENTIFIER));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldHandOverLocalDeliveriesBeforeSendingBatch() {
+        when(localEventDispatcher.isEnabled()).thenReturn(true);
+        when(localEventDispatcher.dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class))).thenReturn(true);
+        doThrow(new IllegalStateException("broker unavailable")).when(outboundEventBatchSender).sendEventMessages(anyCollection());
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+
+        try {
+            eventRelay.sendEventMessages(Arrays.asList(createEvent(), createEvent()));
+        } finally {
+            // only the messages going through the broker are sent in a transaction
+            verify(localEventDispatcher, times(2)).dispatch(eq(LISTENER_IDENTIFIER), any(Runnable.class));
+        }
+    }
+
+    @Test
+    public void shouldBroadcastBatchOfEvents() {
+        setUpListeners(SUBJECT, eventListener);
+        setUpListeners("other.subject");
+        Map<String, Object> params = new HashMap<>();
+        params.put("proxy-in-osgi", true);
+
+        MotechEvent event = createEvent();
+        MotechEvent proxiedEvent = new MotechEvent("other.subject", params);
+        MotechEvent skippedEvent = new MotechEvent("other.subject");
+
+        eventRelay.broadcastEventMessages(Arrays.asList(event, proxiedEvent, skippedEvent));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchSender).broadcastEventMessages(captor.capture());
+        verify(outboundEventGateway, never()).broadcastEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> broadcastEvents = new ArrayList<>(captor.getValue());
+        assertEquals(2, broadcastEvents.size());
+        assertEquals("value", broadcastEvents.get(0).getParameters().get("test"));
+        assertEquals(Boolean.TRUE, broadcastEvents.get(0).getParameters().get("broadcast-message"));
+        assertEquals(Boolean.TRUE, broadcastEvents.get(1).getParameters().get("proxy-in-osgi"));
+        assertEquals(Boolean.TRUE, broadcastEvents.get(1).getParameters().get("broadcast-message"));
+        assertNull(event.getParameters().get("broadcast-message"));
+        verify(registry).getListeners("other.subject");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotSendBatchContainingNullEvent() {
+        setUpListeners(SUBJECT, eventListener);
+        try {
+            eventRelay.sendEventMessages(Arrays.asList(createEvent(), null));
+        } finally {
+            verify(outboundEventBatchSender, never()).sendEventMessages(anyCollection());
+        }
+    }
+
+    @Test
+    public void shouldNotSendEmptyBatch() {
+        eventRelay.sendEventMessages(Collections.<MotechEvent>emptyList());
+
+        verify(outboundEventBatchSender, never()).sendEventMessages(anyCollection());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRelayNullQueueEvent() throws Exception {
         eventRelay.relayQueueEvent(null);
@@ -140,51 +450,24 @@ public class ServerEventRelayTest {
     }
 
     @Test
-    public void shouldRetryEventHandlingWhenRelyingTopicEvent() {
-        final BooleanValue handled = new BooleanValue(false);
-        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
-        when(eventListener.getIdentifier()).thenReturn("retrying");
-        doThrow(new RuntimeException())
-                .doThrow(new RuntimeException())
-                .doAnswer(new Answer<Void>() {
-                    @Override
-                    public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
-                        handled.setValue(true);
-                        return null;
-                    }
-                })
-                .when(eventListener).handle(any(MotechEvent.class));
-        setUpListeners(SUBJECT, eventListener);
+    public void shouldDispatchTopicEventCopyToEveryListener() {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        MotechEvent motechEvent = createEvent();
 
-        eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
-        verify(eventListener, times(3)).handle(any(MotechEvent.class));
-        assertTrue(handled.getValue());
+        eventRelay.relayTopicEvent(motechEvent);
 
-        verify(eventAdmin, never()).postEvent(any(Event.class));
-        verify(eventAdmin, never()).sendEvent(any(Event.class));
-    }
+        ArgumentCaptor<MotechEvent> firstCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        ArgumentCaptor<MotechEvent> secondCaptor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(topicEventDispatcher).dispatch(eq(eventListener), firstCaptor.capture());
+        verify(topicEventDispatcher).dispatch(eq(secondaryEventListener), secondCaptor.capture());
 
-    @Test
-    public void shouldStopRetryingEventHandlingAfterMaxRedeliveryCountIsHitWhenRelyingTopicEvent() {
-        final BooleanValue handled = new BooleanValue(false);
-        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
-        when(eventListener.getIdentifier()).thenReturn("retrying");
-        doThrow(new RuntimeException())
-                .doThrow(new RuntimeException())
-                .doThrow(new RuntimeException())
-                .doAnswer(new Answer<Void>() {
-                    @Override
-                    public Void answer(InvocationOnMock invocationOnMock) throws Throwable {
-                        handled.setValue(true);
-                        return null;
-                    }
-                })
-                .when(eventListener).handle(any(MotechEvent.class));
-        setUpListeners(SUBJECT, eventListener);
+        assertEquals(motechEvent, firstCaptor.getValue());
+        assertEquals(motechEvent, secondCaptor.getValue());
+        assertNotSame(firstCaptor.getValue().getParameters(), secondCaptor.getValue().getParameters());
+        assertNotSame(motechEvent.getParameters(), firstCaptor.getValue().getParameters());
 
-        eventRelay.relayTopicEvent(new MotechEvent(SUBJECT));
-        verify(eventListener, times(3)).handle(any(MotechEvent.class));
-        assertFalse(handled.getValue());
+        verify(eventListener, never()).handle(any(MotechEvent.class));
+        verify(eventAdmin, never()).postEvent(any(Event.class));
     }
 
     @Test
@@ -201,6 +484,78 @@ public class ServerEventRelayTest {
         assertEquals("subject", captor.getValue().getTopic());
     }
 
+    @Test
+    public void shouldSendOnlyLastOfCoalescedEvents() {
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(60000L);
+        when(motechEventConfig.getCoalescingMaxPending()).thenReturn(10);
+        setUpListeners(SUBJECT, eventListener);
+
+        for (int i = 0; i < 3; i++) {
+            MotechEvent event = createEvent();
+            event.getParameters().put("count", i);
+            eventRelay.sendCoalescedEventMessage(event, "key", CoalescingMode.LAST_WRITE_WINS);
+        }
+
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        eventCoalescer.flush();
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(captor.capture());
+        assertEquals(2, captor.getValue().getParameters().get("count"));
+        assertEquals(1, eventMetrics.getSubjectMetrics().get(0).getPublishedCount());
+    }
+
+    @Test
+    public void shouldBroadcastMergedCoalescedEvents() {
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(60000L);
+        when(motechEventConfig.getCoalescingMaxPending()).thenReturn(10);
+        setUpListeners(SUBJECT, eventListener);
+
+        MotechEvent first = createEvent();
+        first.getParameters().put("first", 1);
+        MotechEvent second = createEvent();
+        second.getParameters().put("second", 2);
+
+        eventRelay.broadcastCoalescedEventMessage(first, "key", CoalescingMode.MERGE);
+        eventRelay.broadcastCoalescedEventMessage(second, "key", CoalescingMode.MERGE);
+        eventCoalescer.flush();
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).broadcastEventMessage(captor.capture());
+        assertEquals(1, captor.getValue().getParameters().get("first"));
+        assertEquals(2, captor.getValue().getParameters().get("second"));
+    }
+
+    @Test
+    public void shouldCoalesceProxiedOsgiEventsWithCoalescingKey() {
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(60000L);
+        when(motechEventConfig.getCoalescingMaxPending()).thenReturn(10);
+        setUpListeners(SUBJECT, eventListener);
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("subject", SUBJECT);
+            properties.put("parameters", new HashMap<>(Collections.singletonMap("count", (Object) i)));
+            properties.put("broadcast", false);
+            properties.put("coalescingKey", "key");
+            eventRelay.handleEvent(new Event("org/motechproject/osgi/event/PROXY", properties));
+        }
+
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        eventCoalescer.flush();
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(outboundEventGateway).sendEventMessage(captor.capture());
+        assertEquals(2, captor.getValue().getParameters().get("count"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotCoalesceEventsWithoutKey() {
+        eventRelay.sendCoalescedEventMessage(createEvent(), null, CoalescingMode.LAST_WRITE_WINS);
+    }
+
     private MotechEvent createEvent(String messageDestination) {
         MotechEvent event = createEvent();
         event.getParameters().put(MESSAGE_DESTINATION, messageDestination);
@@ -216,20 +571,4 @@ public class ServerEventRelayTest {
     private void setUpListeners(String subject, EventListener... listeners) {
         when(registry.getListeners(eq(subject))).thenReturn(new LinkedHashSet<>(Arrays.asList(listeners)));
     }
-
-    private class BooleanValue {
-        private Boolean value;
-
-        public BooleanValue(Boolean value) {
-            this.value = value;
-        }
-
-        public Boolean getValue() {
-            return value;
-        }
-
-        public void setValue(Boolean value) {
-            this.value = value;
-        }
-    }
 }
@@ -0,0 +1,130 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class AdaptiveConsumerControllerTest {
+
+    private static final String QUEUE_NAME = "QueueForEvents-sms";
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private QueueStatisticsProvider statisticsProvider;
+
+    @Mock
+    private DefaultMessageListenerContainer container;
+
+    private EventLane lane;
+
+    private AdaptiveConsumerController controller;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.getAdaptiveConsumersInterval()).thenReturn(10L);
+        when(motechEventConfig.getConsumersDrainTime()).thenReturn(30L);
+
+        lane = new EventLane("sms", Arrays.asList("org.motechproject.sms.*"), new ActiveMQQueue(QUEUE_NAME), 2, 16);
+        controller = new AdaptiveConsumerController(motechEventConfig, Arrays.asList(statisticsProvider));
+        controller.register(lane, container);
+    }
+
+    @Test
+    public void shouldAddConsumersWhenBacklogGrows() {
+        when(container.getConcurrentConsumers()).thenReturn(2);
+        when(statisticsProvider.getQueueSize(QUEUE_NAME)).thenReturn(3000L);
+        recordHandled(100, 200);
+
+        controller.adjustConsumers();
+
+        // 200 ms * (10/s + 100/s) = 22 consumers, limited to twice the current number
+        verify(container).setConcurrentConsumers(4);
+    }
+
+    @Test
+    public void shouldRemoveConsumersWhenQueueIsEmpty() {
+        when(container.getConcurrentConsumers()).thenReturn(8);
+        when(statisticsProvider.getQueueSize(QUEUE_NAME)).thenReturn(0L);
+        recordHandled(100, 50);
+
+        controller.adjustConsumers();
+
+        // 50 ms * 10/s = 1 consumer, limited to half the current number
+        verify(container).setConcurrentConsumers(4);
+    }
+
+    @Test
+    public void shouldKeepConsumersWithinLaneLimits() {
+        when(container.getConcurrentConsumers()).thenReturn(2);
+        when(statisticsProvider.getQueueSize(QUEUE_NAME)).thenReturn(0L);
+
+        controller.adjustConsumers();
+
+        verify(container, never()).setConcurrentConsumers(anyInt());
+    }
+
+    @Test
+    public void shouldUseUtilizationIfQueueSizeIsUnknown() {
+        controller = new AdaptiveConsumerController(motechEventConfig, Collections.<QueueStatisticsProvider>emptyList());
+        controller.register(lane, container);
+        when(container.getConcurrentConsumers()).thenReturn(4);
+        recordHandled(400, 100);
+
+        controller.adjustConsumers();
+
+        // 100 ms * 40/s = 4 busy consumers
+        verify(container).setConcurrentConsumers(5);
+    }
+
+    @Test
+    public void shouldRemoveConsumersOfIdleLaneIfQueueSizeIsUnknown() {
+        controller = new AdaptiveConsumerController(motechEventConfig, Collections.<QueueStatisticsProvider>emptyList());
+        controller.register(lane, container);
+        when(container.getConcurrentConsumers()).thenReturn(4);
+
+        controller.adjustConsumers();
+
+        verify(container).setConcurrentConsumers(3);
+    }
+
+    @Test
+    public void shouldRemoveConsumersOfIdleLaneIfQueueSizeCanNotBeRead() {
+        when(container.getConcurrentConsumers()).thenReturn(4);
+        when(statisticsProvider.getQueueSize(QUEUE_NAME)).thenThrow(new IllegalStateException());
+
+        controller.adjustConsumers();
+
+        verify(container).setConcurrentConsumers(3);
+    }
+
+    @Test
+    public void shouldNotAdjustUnregisteredLanes() {
+        controller.unregister(lane);
+        recordHandled(100, 200);
+
+        controller.adjustConsumers();
+
+        verify(container, never()).setConcurrentConsumers(anyInt());
+    }
+
+    private void recordHandled(int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            lane.recordHandled(millis);
+        }
+    }
+}
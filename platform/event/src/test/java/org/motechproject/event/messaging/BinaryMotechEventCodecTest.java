@@ -0,0 +1,117 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.motechproject.commons.api.MotechException;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.domain.TestEventPayload;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private static final String SUBJECT = "org.motechproject.event.test";
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldEncodeAndDecodeEventWithoutParameters() {
+        MotechEvent event = new MotechEvent(SUBJECT);
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getId());
+        assertTrue(decoded.getParameters().isEmpty());
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeCommonParameterTypes() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("count", 3);
+        nested.put("names", Arrays.asList("a", "b"));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "za\u017c\u00f3\u0142\u0107");
+        parameters.put("integer", 42);
+        parameters.put("long", Long.MAX_VALUE);
+        parameters.put("double", 1.5);
+        parameters.put("float", 2.5f);
+        parameters.put("short", (short) 7);
+        parameters.put("byte", (byte) -3);
+        parameters.put("char", 'x');
+        parameters.put("true", true);
+        parameters.put("false", false);
+        parameters.put("null", null);
+        parameters.put("decimal", new BigDecimal("12.345"));
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("date", new Date());
+        parameters.put("dateTime", new DateTime(2014, 10, 1, 12, 30, DateTimeZone.forID("Africa/Nairobi")));
+        parameters.put("list", new ArrayList<>(Arrays.asList(1, "two", null)));
+        parameters.put("map", nested);
+
+        MotechEvent event = new MotechEvent(SUBJECT, parameters);
+        event.setId(UUID.randomUUID());
+        event.incrementMessageRedeliveryCount();
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+        assertEquals(1, decoded.getMessageRedeliveryCount());
+        assertEquals(DateTimeZone.forID("Africa/Nairobi"), ((DateTime) decoded.getParameters().get("dateTime")).getZone());
+    }
+
+    @Test
+    public void shouldUseJavaSerializationForOtherTypes() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("payload", new TestEventPayload());
+        parameters.put("payloads", Arrays.asList(new TestEventPayload()));
+
+        MotechEvent decoded = codec.decode(codec.encode(new MotechEvent(SUBJECT, parameters)));
+
+        assertTrue(decoded.getParameters().get("payload") instanceof TestEventPayload);
+        assertTrue(((List) decoded.getParameters().get("payloads")).get(0) instanceof TestEventPayload);
+    }
+
+    @Test
+    public void shouldBeSmallerThanJavaSerialization() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("externalId", "patient-1234");
+        parameters.put("count", 2);
+
+        MotechEvent event = new MotechEvent(SUBJECT, parameters);
+        event.setId(UUID.randomUUID());
+
+        assertTrue(codec.encode(event).length < new SerializableMotechEventCodec().encode(event).length);
+    }
+
+    @Test(expected = MotechException.class)
+    public void shouldNotEncodeNonSerializableValues() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("object", new Object());
+
+        codec.encode(new MotechEvent(SUBJECT, parameters));
+    }
+
+    @Test(expected = MotechException.class)
+    public void shouldNotDecodeUnknownFormatVersion() {
+        byte[] data = codec.encode(new MotechEvent(SUBJECT));
+        data[0] = -1;
+
+        codec.decode(data);
+    }
+}
@@ -0,0 +1,131 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ScheduledMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddedBrokerTest {
+
+    private static final String QUEUE = "EmbeddedBrokerTestQueue";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Properties properties;
+    private EmbeddedBroker broker;
+
+    @Before
+    public void setUp() {
+        properties = new Properties();
+        properties.setProperty("jms.broker.url", "tcp://localhost:61616");
+        properties.setProperty(EmbeddedBroker.EMBEDDED_PROPERTY, "true");
+        properties.setProperty(EmbeddedBroker.NAME_PROPERTY, "motech-test");
+        properties.setProperty(EmbeddedBroker.DATA_DIR_PROPERTY, folder.getRoot().getAbsolutePath());
+        properties.setProperty(EmbeddedBroker.DISK_SYNCS_PROPERTY, "false");
+    }
+
+    @After
+    public void tearDown() {
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    public void shouldUseExternalBrokerIfNotEnabled() {
+        properties.setProperty(EmbeddedBroker.EMBEDDED_PROPERTY, "false");
+        broker = new EmbeddedBroker(properties);
+
+        broker.start();
+
+        assertFalse(broker.isStarted());
+        assertEquals("tcp://localhost:61616", broker.getBrokerUrl());
+    }
+
+    @Test
+    public void shouldUseVmTransportIfEnabled() {
+        broker = new EmbeddedBroker(properties);
+
+        assertEquals("vm://motech-test?create=false", broker.getBrokerUrl());
+        assertEquals(folder.getRoot().getAbsoluteFile(), broker.getDataDirectory().getAbsoluteFile());
+    }
+
+    @Test
+    public void shouldKeepMessagesAcrossRestarts() throws JMSException {
+        broker = new EmbeddedBroker(properties);
+        broker.start();
+        assertTrue(broker.isStarted());
+
+        send("persisted", 0);
+        broker.stop();
+
+        broker = new EmbeddedBroker(properties);
+        broker.start();
+
+        TextMessage message = (TextMessage) receive(5000);
+        assertNotNull(message);
+        assertEquals("persisted", message.getText());
+    }
+
+    @Test
+    public void shouldDelayScheduledMessages() throws JMSException {
+        broker = new EmbeddedBroker(properties);
+        broker.start();
+
+        send("delayed", 1000);
+
+        assertNull(receive(100));
+        assertNotNull(receive(10000));
+    }
+
+    private void send(String text, long delay) throws JMSException {
+        Connection connection = new ActiveMQConnectionFactory(broker.getBrokerUrl()).createConnection();
+        try {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue(QUEUE);
+            MessageProducer producer = session.createProducer(queue);
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+
+            TextMessage message = session.createTextMessage(text);
+            if (delay > 0) {
+                message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay);
+            }
+            producer.send(message);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private Message receive(long timeout) throws JMSException {
+        Connection connection = new ActiveMQConnectionFactory(broker.getBrokerUrl()).createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE));
+            return consumer.receive(timeout);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.motechproject.event.messaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.CoalescingMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class EventCoalescerTest {
+
+    private static final long LONG_WINDOW = 60000L;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private EventCoalescer coalescer;
+    private RecordingPublisher queuePublisher;
+    private RecordingPublisher topicPublisher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(LONG_WINDOW);
+        when(motechEventConfig.getCoalescingMaxPending()).thenReturn(10);
+
+        coalescer = new EventCoalescer(motechEventConfig);
+        queuePublisher = new RecordingPublisher("queue", 1);
+        topicPublisher = new RecordingPublisher("topic", 1);
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void shouldPublishOnlyLastEventForKey() {
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("key", event("subject", "b", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("key", event("subject", "a", 3), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+
+        assertEquals(0, queuePublisher.published.size());
+        assertEquals(1, coalescer.getPendingCount());
+
+        coalescer.flush();
+
+        assertEquals(1, queuePublisher.published.size());
+        MotechEvent published = queuePublisher.published.get(0);
+        assertEquals(3, published.getParameters().get("a"));
+        assertEquals(null, published.getParameters().get("b"));
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void shouldMergeParametersOfEventsForKey() {
+        coalescer.submit("key", event("first", "a", 1), CoalescingMode.MERGE, queuePublisher);
+        coalescer.submit("key", event("second", "b", 2), CoalescingMode.MERGE, queuePublisher);
+        coalescer.submit("key", event("second", "a", 3), CoalescingMode.MERGE, queuePublisher);
+
+        coalescer.flush();
+
+        assertEquals(1, queuePublisher.published.size());
+        MotechEvent published = queuePublisher.published.get(0);
+        assertEquals("second", published.getSubject());
+        assertEquals(3, published.getParameters().get("a"));
+        assertEquals(2, published.getParameters().get("b"));
+    }
+
+    @Test
+    public void shouldNotCoalesceEventsWithDifferentKeysOrPublishers() {
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("other", event("subject", "a", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("key", event("subject", "a", 3), CoalescingMode.LAST_WRITE_WINS, topicPublisher);
+
+        coalescer.flush();
+
+        assertEquals(2, queuePublisher.published.size());
+        assertEquals(1, topicPublisher.published.size());
+    }
+
+    @Test
+    public void shouldPublishImmediatelyIfWindowIsNotPositive() {
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(0L);
+
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("key", event("subject", "a", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+
+        assertEquals(2, queuePublisher.published.size());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void shouldPublishImmediatelyIfTooManyKeysArePending() {
+        when(motechEventConfig.getCoalescingMaxPending()).thenReturn(1);
+
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("other", event("subject", "a", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+
+        assertEquals(1, queuePublisher.published.size());
+        assertEquals(2, queuePublisher.published.get(0).getParameters().get("a"));
+        assertEquals(1, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void shouldPublishWhenWindowCloses() throws InterruptedException {
+        when(motechEventConfig.getCoalescingWindow()).thenReturn(50L);
+
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        coalescer.submit("key", event("subject", "a", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+
+        assertTrue(queuePublisher.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, queuePublisher.published.size());
+        assertEquals(2, queuePublisher.published.get(0).getParameters().get("a"));
+    }
+
+    @Test
+    public void shouldPublishPendingEventsOnShutdown() {
+        coalescer.submit("key", event("subject", "a", 1), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+
+        coalescer.shutdown();
+
+        assertEquals(1, queuePublisher.published.size());
+
+        coalescer.submit("key", event("subject", "a", 2), CoalescingMode.LAST_WRITE_WINS, queuePublisher);
+        assertEquals(2, queuePublisher.published.size());
+    }
+
+    private MotechEvent event(String subject, String key, Object value) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(key, value);
+        return new MotechEvent(subject, parameters);
+    }
+
+    private static class RecordingPublisher implements EventCoalescer.Publisher {
+
+        private final String name;
+        private final List<MotechEvent> published = Collections.synchronizedList(new ArrayList<MotechEvent>());
+        private final CountDownLatch latch;
+
+        RecordingPublisher(String name, int expected) {
+            this.name = name;
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void publish(MotechEvent event) {
+            published.add(event);
+            latch.countDown();
+        }
+    }
+}
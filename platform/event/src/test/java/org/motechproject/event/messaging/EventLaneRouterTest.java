@@ -0,0 +1,74 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventLaneRouterTest {
+
+    private Properties properties;
+
+    @Before
+    public void setUp() {
+        properties = new Properties();
+        properties.setProperty("motech.message.lanes", "sms, reports, default, empty");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*, org.motechproject.ivr.call");
+        properties.setProperty("motech.message.lane.sms.concurrent.consumers", "3");
+        properties.setProperty("motech.message.lane.sms.max.concurrent.consumers", "20");
+        properties.setProperty("motech.message.lane.reports.subjects", "*");
+        properties.setProperty("motech.message.lane.reports.concurrent.consumers", "abc");
+        properties.setProperty("motech.message.lane.default.subjects", "org.motechproject.other");
+    }
+
+    @Test
+    public void shouldParseLaneDefinitions() {
+        EventLaneRouter router = new EventLaneRouter(properties, new ActiveMQQueue("QueueForEvents"), 2, 10);
+
+        List<EventLane> lanes = router.getLanes();
+        assertEquals(2, lanes.size());
+
+        EventLane sms = lanes.get(0);
+        assertEquals("sms", sms.getName());
+        assertEquals("QueueForEvents-sms", sms.getDestination().getQueueName());
+        assertEquals(3, sms.getConcurrentConsumers());
+        assertEquals(20, sms.getMaxConcurrentConsumers());
+        assertFalse(sms.isDefault());
+
+        EventLane reports = lanes.get(1);
+        assertEquals("reports", reports.getName());
+        assertEquals(1, reports.getConcurrentConsumers());
+        assertEquals(5, reports.getMaxConcurrentConsumers());
+
+        EventLane defaultLane = router.getDefaultLane();
+        assertTrue(defaultLane.isDefault());
+        assertEquals("QueueForEvents", defaultLane.getDestination().getQueueName());
+        assertEquals(2, defaultLane.getConcurrentConsumers());
+        assertEquals(10, defaultLane.getMaxConcurrentConsumers());
+    }
+
+    @Test
+    public void shouldRouteEventsToFirstMatchingLane() {
+        EventLaneRouter router = new EventLaneRouter(properties, new ActiveMQQueue("QueueForEvents"), 1, 10);
+
+        assertEquals("sms", router.getLane("org.motechproject.sms.sent").getName());
+        assertEquals("sms", router.getLane("org.motechproject.ivr.call").getName());
+        assertEquals("reports", router.getLane("org.motechproject.ivr.callback").getName());
+        assertSame(router.getLane("org.motechproject.sms.sent"), router.getLane("org.motechproject.sms.sent"));
+    }
+
+    @Test
+    public void shouldUseDefaultLaneIfNoLanesAreDefined() {
+        EventLaneRouter router = new EventLaneRouter(new Properties(), new ActiveMQQueue("QueueForEvents"), 1, 10);
+
+        assertTrue(router.getLanes().isEmpty());
+        assertSame(router.getDefaultLane(), router.getLane("org.motechproject.sms.sent"));
+    }
+}
@@ -0,0 +1,127 @@
+package org.motechproject.event.messaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class LocalEventDispatcherTest {
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private LocalEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.isLocalDispatchEnabled()).thenReturn(true);
+        when(motechEventConfig.getLocalDispatchThreadCount()).thenReturn(2);
+        when(motechEventConfig.getLocalDispatchQueueCapacity()).thenReturn(2);
+
+        dispatcher = new LocalEventDispatcher(motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldNotAcceptDeliveriesIfDisabled() {
+        when(motechEventConfig.isLocalDispatchEnabled()).thenReturn(false);
+
+        assertFalse(dispatcher.isEnabled());
+        assertFalse(dispatcher.dispatch("listener", NOOP));
+    }
+
+    @Test
+    public void shouldExecuteDeliveriesInOrder() throws InterruptedException {
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(2);
+
+        for (int i = 0; i < 2; i++) {
+            final int number = i;
+            assertTrue(dispatcher.dispatch("listener", new Runnable() {
+                @Override
+                public void run() {
+                    executed.add(number);
+                    done.countDown();
+                }
+            }));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executed.size());
+        assertEquals(Integer.valueOf(0), executed.get(0));
+        assertEquals(Integer.valueOf(1), executed.get(1));
+    }
+
+    @Test
+    public void shouldRejectDeliveriesWhenListenerQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Latch blocking = new Latch(release);
+
+        assertTrue(dispatcher.dispatch("listener", blocking));
+        assertTrue(blocking.awaitStarted());
+
+        assertTrue(dispatcher.dispatch("listener", NOOP));
+        assertTrue(dispatcher.dispatch("listener", NOOP));
+        assertFalse(dispatcher.dispatch("listener", NOOP));
+
+        // other listeners have their own queues
+        assertTrue(dispatcher.dispatch("otherListener", NOOP));
+
+        release.countDown();
+    }
+
+    @Test
+    public void shouldNotAcceptDeliveriesAfterShutdown() {
+        dispatcher.shutdown();
+
+        assertFalse(dispatcher.isEnabled());
+        assertFalse(dispatcher.dispatch("listener", NOOP));
+    }
+
+    private static class Latch implements Runnable {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        Latch(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        boolean awaitStarted() throws InterruptedException {
+            return started.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.motechproject.event.messaging;
+
+import org.joda.time.DateTime;
+import org.motechproject.event.MotechEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary event codec with Java serialization, which was used for sending events as object messages.
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.motechproject.event.messaging.MotechEventCodecBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MotechEventCodecBenchmark {
+
+    @Param({ "binary", "serializable" })
+    private String codecName;
+
+    private MotechEventCodec codec;
+    private MotechEvent event;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        codec = "binary".equals(codecName) ? new BinaryMotechEventCodec() : new SerializableMotechEventCodec();
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("JobID", "org.motechproject.messagecampaign.fired-campaign-message-patient-12345");
+        parameters.put("ExternalID", "patient-12345");
+        parameters.put("CampaignName", "Pregnancy Campaign");
+        parameters.put("MessageKey", "week-12");
+        parameters.put("CallCount", 3);
+        parameters.put("FireTime", new DateTime(2015, 3, 1, 8, 0));
+        parameters.put("Languages", Arrays.asList("en", "sw"));
+        parameters.put("message-destination", "org.motechproject.messagecampaign.handler.CampaignHandler:campaignHandler");
+
+        event = new MotechEvent("org.motechproject.messagecampaign.fired-campaign-message", parameters);
+        event.setId(UUID.randomUUID());
+
+        encoded = codec.encode(event);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(event);
+    }
+
+    @Benchmark
+    public MotechEvent decode() {
+        return codec.decode(encoded);
+    }
+
+    @Benchmark
+    public MotechEvent roundTrip() {
+        return codec.decode(codec.encode(event));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MotechEventCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
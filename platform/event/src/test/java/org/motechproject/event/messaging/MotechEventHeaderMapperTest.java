@@ -0,0 +1,78 @@
+package org.motechproject.event.messaging;
+
+import junitx.util.PrivateAccessor;
+import org.apache.activemq.ScheduledMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.springframework.integration.MessageHeaders;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.ObjectMessage;
+import java.util.HashMap;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class MotechEventHeaderMapperTest {
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private BytesMessage bytesMessage;
+
+    @Mock
+    private ObjectMessage objectMessage;
+
+    private MotechEventHeaderMapper headerMapper = new MotechEventHeaderMapper();
+
+    private MessageHeaders headers = new MessageHeaders(new HashMap<String, Object>());
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        initMocks(this);
+        PrivateAccessor.setField(headerMapper, "motechEventConfig", motechEventConfig);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(2L);
+    }
+
+    @Test
+    public void shouldSetDelayFromMessageProperties() throws JMSException {
+        when(bytesMessage.propertyExists(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)).thenReturn(true);
+        when(bytesMessage.getBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)).thenReturn(true);
+        when(bytesMessage.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY)).thenReturn(3);
+
+        headerMapper.fromHeaders(headers, bytesMessage);
+
+        verify(bytesMessage).setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, 8000L);
+        verify(bytesMessage, never()).readBytes(org.mockito.Matchers.<byte[]>any());
+    }
+
+    @Test
+    public void shouldNotSetDelayForValidEvents() throws JMSException {
+        when(bytesMessage.propertyExists(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)).thenReturn(true);
+        when(bytesMessage.getBooleanProperty(MotechEventMessageConverter.INVALID_EVENT_PROPERTY)).thenReturn(false);
+
+        headerMapper.fromHeaders(headers, bytesMessage);
+
+        verify(bytesMessage, never()).setLongProperty(anyString(), anyLong());
+    }
+
+    @Test
+    public void shouldSetDelayForObjectMessages() throws JMSException {
+        MotechEvent event = new MotechEvent("subject");
+        event.getParameters().put(MotechEvent.PARAM_INVALID_MOTECH_EVENT, true);
+        event.incrementMessageRedeliveryCount();
+        when(objectMessage.getObject()).thenReturn(event);
+
+        headerMapper.fromHeaders(headers, objectMessage);
+
+        verify(objectMessage).setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, 2000L);
+    }
+}
@@ -0,0 +1,159 @@
+package org.motechproject.event.messaging;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.jms.JmsHeaderMapper;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.Topic;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class OutboundEventBatchSenderTest {
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private Topic eventTopic;
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    @Mock
+    private JmsHeaderMapper headerMapper;
+
+    @Mock
+    private BytesMessage message;
+
+    @Mock
+    private MessageProducer smsProducer;
+
+    private ActiveMQQueue eventQueue = new ActiveMQQueue("QueueForEvents");
+
+    private ActiveMQQueue smsQueue = new ActiveMQQueue("QueueForEvents-sms");
+
+    private OutboundEventBatchSender batchSender;
+
+    @Before
+    public void setUp() throws JMSException {
+        initMocks(this);
+
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.getTransacted()).thenReturn(true);
+        when(session.createProducer(eventQueue)).thenReturn(producer);
+        when(session.createProducer(eventTopic)).thenReturn(producer);
+        when(session.createProducer(smsQueue)).thenReturn(smsProducer);
+        when(messageConverter.toMessage(any(MotechEvent.class), any(Session.class))).thenReturn(message);
+
+        Properties properties = new Properties();
+        properties.setProperty("motech.message.lanes", "sms");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+
+        batchSender = new OutboundEventBatchSender(connectionFactory, new EventLaneRouter(properties, eventQueue, 1, 10),
+                eventTopic, messageConverter, headerMapper, new MotechEventTransformer());
+    }
+
+    @Test
+    public void shouldSendAllEventsInSingleTransaction() throws JMSException {
+        MotechEvent first = new MotechEvent("subject");
+        MotechEvent second = new MotechEvent("subject");
+
+        batchSender.sendEventMessages(Arrays.asList(first, second));
+
+        verify(connection).createSession(true, Session.AUTO_ACKNOWLEDGE);
+        verify(session).createProducer(eventQueue);
+        verify(headerMapper, times(2)).fromHeaders(any(MessageHeaders.class), any(javax.jms.Message.class));
+
+        InOrder inOrder = inOrder(producer, session);
+        inOrder.verify(producer, times(2)).send(message);
+        inOrder.verify(session).commit();
+        verify(session, never()).rollback();
+        verify(producer).close();
+
+        assertNotNull(first.getId());
+        assertNotNull(second.getId());
+    }
+
+    @Test
+    public void shouldSendEventsToQueuesOfTheirLanes() throws JMSException {
+        batchSender.sendEventMessages(Arrays.asList(new MotechEvent("org.motechproject.sms.sent"),
+                new MotechEvent("subject"), new MotechEvent("org.motechproject.sms.failed")));
+
+        verify(session, times(1)).createProducer(eventQueue);
+        verify(session, times(1)).createProducer(smsQueue);
+        verify(producer).send(message);
+        verify(smsProducer, times(2)).send(message);
+        verify(session).commit();
+        verify(producer).close();
+        verify(smsProducer).close();
+    }
+
+    @Test
+    public void shouldBroadcastEventsToTopic() throws JMSException {
+        batchSender.broadcastEventMessages(Arrays.asList(new MotechEvent("subject")));
+
+        verify(session).createProducer(eventTopic);
+        verify(session, never()).createProducer(eventQueue);
+        verify(producer).send(message);
+        verify(session).commit();
+    }
+
+    @Test
+    public void shouldRollbackIfAnyEventCannotBeSent() throws JMSException {
+        doThrow(new JMSException("broker unavailable")).doNothing().when(producer).send(message);
+
+        try {
+            batchSender.sendEventMessages(Arrays.asList(new MotechEvent("subject"), new MotechEvent("subject")));
+        } catch (UncategorizedJmsException e) {
+            verify(session).rollback();
+            verify(session, never()).commit();
+            verify(producer).close();
+            return;
+        }
+        throw new AssertionError("Exception was not propagated");
+    }
+
+    @Test
+    public void shouldNotOpenSessionForEmptyBatch() {
+        batchSender.sendEventMessages(Collections.<MotechEvent>emptyList());
+
+        verifyZeroInteractions(connectionFactory);
+    }
+}
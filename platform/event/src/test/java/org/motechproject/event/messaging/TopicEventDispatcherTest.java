@@ -0,0 +1,251 @@
+package org.motechproject.event.messaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.OrderedEventListener;
+import org.motechproject.event.metrics.EventMetricsRecorder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TopicEventDispatcherTest {
+
+    private static final String SUBJECT = "subject";
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private TopicEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(motechEventConfig.getTopicDispatchThreadCount()).thenReturn(2);
+        when(motechEventConfig.getTopicDispatchQueueCapacity()).thenReturn(100);
+        when(motechEventConfig.getTopicListenerTimeout()).thenReturn(60L);
+        when(motechEventConfig.getMessageMaxRedeliveryCount()).thenReturn(2);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(0L);
+
+        dispatcher = new TopicEventDispatcher(motechEventConfig, new EventMetricsRecorder());
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void shouldRetryFailedDeliveries() throws InterruptedException {
+        final CountDownLatch handled = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        dispatcher.dispatch(new TestListener("retrying") {
+            @Override
+            public void handle(MotechEvent event) {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new RuntimeException();
+                }
+                handled.countDown();
+            }
+        }, new MotechEvent(SUBJECT));
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        TopicListenerMetrics metrics = awaitMetrics("retrying");
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getFailedCount());
+        assertEquals(2, metrics.getRetriedCount());
+        assertEquals(1, metrics.getHandledCount());
+        assertEquals(0, metrics.getDiscardedCount());
+    }
+
+    @Test
+    public void shouldDiscardEventAfterMaxRetryCountIsReached() throws InterruptedException {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        dispatcher.dispatch(new TestListener("failing") {
+            @Override
+            public void handle(MotechEvent event) {
+                attempts.incrementAndGet();
+                throw new RuntimeException();
+            }
+        }, new MotechEvent(SUBJECT));
+
+        TopicListenerMetrics metrics = awaitMetrics("failing");
+        assertEquals(3, attempts.get());
+        assertEquals(3, metrics.getFailedCount());
+        assertEquals(2, metrics.getRetriedCount());
+        assertEquals(1, metrics.getDiscardedCount());
+    }
+
+    @Test
+    public void shouldNotLetSlowListenerBlockOthers() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(1);
+
+        dispatcher.dispatch(new TestListener("slow") {
+            @Override
+            public void handle(MotechEvent event) {
+                await(release);
+            }
+        }, new MotechEvent(SUBJECT));
+        dispatcher.dispatch(new TestListener("fast") {
+            @Override
+            public void handle(MotechEvent event) {
+                handled.countDown();
+            }
+        }, new MotechEvent(SUBJECT));
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void shouldInterruptListenerAfterTimeout() throws InterruptedException {
+        when(motechEventConfig.getTopicListenerTimeout()).thenReturn(1L);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        dispatcher.dispatch(new TestListener("stuck") {
+            @Override
+            public void handle(MotechEvent event) {
+                try {
+                    new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        }, new MotechEvent(SUBJECT));
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        TopicListenerMetrics metrics = awaitMetrics("stuck");
+        assertEquals(1, metrics.getTimedOutCount());
+        assertEquals(0, metrics.getRetriedCount());
+        assertEquals(0, metrics.getHandledCount());
+    }
+
+    @Test
+    public void shouldDeliverEventsInOrderToOrderedListeners() throws InterruptedException {
+        final List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch handled = new CountDownLatch(20);
+
+        OrderedListener listener = new OrderedListener() {
+            @Override
+            public void handle(MotechEvent event) {
+                received.add(event.getParameters().get("number"));
+                handled.countDown();
+            }
+        };
+
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            MotechEvent event = new MotechEvent(SUBJECT);
+            event.getParameters().put("number", i);
+            expected.add(i);
+            dispatcher.dispatch(listener, event);
+        }
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(expected, received);
+    }
+
+    @Test
+    public void shouldNotDeliverNextEventToOrderedListenerBeforeTimedOutHandlerReturns() throws InterruptedException {
+        when(motechEventConfig.getTopicListenerTimeout()).thenReturn(1L);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch handled = new CountDownLatch(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        OrderedListener listener = new OrderedListener() {
+            @Override
+            public void handle(MotechEvent event) {
+                maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                if (event.getParameters().get("number").equals(0)) {
+                    awaitIgnoringInterrupts(release);
+                }
+                running.decrementAndGet();
+                handled.countDown();
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            MotechEvent event = new MotechEvent(SUBJECT);
+            event.getParameters().put("number", i);
+            dispatcher.dispatch(listener, event);
+        }
+
+        TopicListenerMetrics metrics = awaitMetrics("ordered");
+        assertEquals(1, metrics.getTimedOutCount());
+        // the first handler ignored the interruption and is still running, the second event has to wait for it
+        assertEquals(2, handled.getCount());
+
+        release.countDown();
+
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    private TopicListenerMetrics awaitMetrics(String identifier) throws InterruptedException {
+        // metrics are updated after the listener returns, wait until the delivery is finished
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            TopicListenerMetrics metrics = dispatcher.getListenerMetrics().get(identifier);
+            if (metrics != null && (metrics.getHandledCount() + metrics.getDiscardedCount() + metrics.getTimedOutCount()) > 0) {
+                return metrics;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Delivery to " + identifier + " did not finish");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitIgnoringInterrupts(CountDownLatch latch) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (latch.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                latch.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // keep running, like a listener which does not respond to interruption
+            }
+        }
+    }
+
+    private abstract static class TestListener implements EventListener {
+        private final String identifier;
+
+        TestListener(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+    }
+
+    private abstract static class OrderedListener extends TestListener implements OrderedEventListener {
+        OrderedListener() {
+            super("ordered");
+        }
+    }
+}
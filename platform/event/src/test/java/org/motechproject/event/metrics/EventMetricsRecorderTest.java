@@ -0,0 +1,67 @@
+package org.motechproject.event.metrics;
+
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventMetricsRecorderTest {
+
+    @Test
+    public void shouldKeepMetricsOfSubjectsAndListeners() {
+        EventMetricsRecorder recorder = new EventMetricsRecorder();
+        MotechEvent event = new MotechEvent("subject");
+
+        recorder.recordPublished(event);
+        recorder.recordHandled(event, "listener", 10, false);
+        recorder.recordHandled(event, "listener", 30, true);
+        recorder.recordDiscarded(event);
+
+        SubjectMetrics subjectMetrics = recorder.getSubjectMetrics().get(0);
+        assertEquals("subject", subjectMetrics.getSubject());
+        assertEquals(1, subjectMetrics.getPublishedCount());
+        assertEquals(1, subjectMetrics.getFailedCount());
+        assertEquals(1, subjectMetrics.getDiscardedCount());
+        assertEquals(2, subjectMetrics.getHandlingTime().getCount());
+        assertEquals(0, subjectMetrics.getQueueWaitTime().getCount());
+
+        ListenerMetrics listenerMetrics = recorder.getListenerMetrics().get(0);
+        assertEquals("listener", listenerMetrics.getListener());
+        assertEquals(2, listenerMetrics.getHandledCount());
+        assertEquals(1, listenerMetrics.getFailedCount());
+        assertEquals(30, listenerMetrics.getHandlingTime().getMaxTime());
+
+        recorder.reset();
+        assertTrue(recorder.getSubjectMetrics().isEmpty());
+        assertTrue(recorder.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldLimitNumberOfTrackedSubjects() {
+        EventMetricsRecorder recorder = new EventMetricsRecorder();
+        for (int i = 0; i < 1100; i++) {
+            recorder.recordPublished(new MotechEvent("subject" + i));
+        }
+
+        assertEquals(1001, recorder.getSubjectMetrics().size());
+    }
+
+    @Test
+    public void shouldRegisterInMBeanServer() throws Exception {
+        EventMetricsRecorder recorder = new EventMetricsRecorder();
+        ObjectName objectName = new ObjectName(EventMetricsService.OBJECT_NAME);
+
+        recorder.registerMBean();
+        try {
+            assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+        } finally {
+            recorder.unregisterMBean();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+}
@@ -0,0 +1,49 @@
+package org.motechproject.event.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldCalculateStatistics() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertEquals(100, statistics.getCount());
+        assertEquals(5050, statistics.getTotalTime());
+        assertEquals(100, statistics.getMaxTime());
+        assertEquals(50.5, statistics.getAverageTime(), 0.001);
+        assertEquals(50, statistics.getP50());
+        assertEquals(100, statistics.getP95());
+        assertEquals(100, statistics.getP99());
+        assertEquals(statistics.getBucketBounds().length + 1, statistics.getBucketCounts().length);
+    }
+
+    @Test
+    public void shouldUseMaximumForValuesExceedingLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(120000);
+
+        LatencyStatistics statistics = histogram.getStatistics();
+        assertEquals(2, statistics.getCount());
+        assertEquals(1, statistics.getP50());
+        assertEquals(120000, statistics.getP99());
+        assertEquals(1, statistics.getBucketCounts()[0]);
+        assertEquals(1, statistics.getBucketCounts()[statistics.getBucketCounts().length - 1]);
+    }
+
+    @Test
+    public void shouldReturnZerosIfNothingWasRecorded() {
+        LatencyStatistics statistics = new LatencyHistogram().getStatistics();
+
+        assertEquals(0, statistics.getCount());
+        assertEquals(0, statistics.getAverageTime(), 0.001);
+        assertEquals(0, statistics.getP99());
+    }
+}
@@ -29,6 +29,13 @@ public class MotechProxyUtilsTest {
         assertThat(target, IsSame.sameInstance(bean));
     }
 
+    @Test
+    public void shouldReturnClassLoaderOfProxyTarget() {
+        TestProxy proxy = new TestProxy(new MotechProxyUtilsTest());
+        assertThat(MotechProxyUtils.getTargetClassLoader(proxy), IsSame.sameInstance(MotechProxyUtilsTest.class.getClassLoader()));
+        assertThat(MotechProxyUtils.getTargetClassLoader("string"), IsSame.sameInstance(String.class.getClassLoader()));
+    }
+
     private class TestProxy extends MotechListenerAbstractProxy {
 
         public TestProxy(Object bean) {
@@ -3,6 +3,7 @@ package org.motechproject.mds;
 import org.apache.commons.collections.CollectionUtils;
 import org.eclipse.gemini.blueprint.util.OsgiBundleUtils;
 import org.motechproject.commons.api.AbstractDataProvider;
+import org.motechproject.commons.api.BatchDataProvider;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.mds.builder.MDSDataProviderBuilder;
 import org.motechproject.mds.dto.EntityDto;
@@ -63,16 +64,42 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
     }
 
+    @Override
+    public List<Object> lookupAll(String type, String lookupName, List<Map<String, String>> lookupMaps) {
+        List<Object> result = new ArrayList<>(lookupMaps.size());
+
+        if (FIND_BY_ID_LOOKUP.equals(lookupName)) {
+            MotechDataService service = findService(type);
+            for (Map<String, String> lookupMap : lookupMaps) {
+                result.add(findInstance(service, lookupMap.get(ID_LOOKUP_FIELD)));
+            }
+        } else {
+            // the entity, lookup and data service are resolved only once for the whole batch
+            LookupExecutor executor = getLookupExecutor(type, lookupName);
+            for (Map<String, String> lookupMap : lookupMaps) {
+                result.add(executeLookup(executor, type, lookupMap));
+            }
+        }
+
+        return result;
+    }
+
     private Object findById(String type, String idParam) {
+        return findInstance(findService(type), idParam);
+    }
+
+    private Object findInstance(MotechDataService service, String idParam) {
         Long id = parseId(idParam);
+        return (null != service) ? service.findById(id) : null;
+    }
+
+    private MotechDataService findService(String type) {
         String serviceName = MotechClassPool.getInterfaceName(type);
         MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
-        if (null != service) {
-            return service.findById(id);
-        } else {
+        if (null == service) {
             getLogger().error("Service %s not found", serviceName);
-            return null;
         }
+        return service;
     }
 
     private Long parseId(String idParam) {
@@ -84,29 +111,32 @@ public class MDSDataProvider extends AbstractDataProvider {
     }
 
     private Object findUsingLookup(String type, String lookupName, Map<String, String> lookupMap) {
-        Object obj = null;
+        return executeLookup(getLookupExecutor(type, lookupName), type, lookupMap);
+    }
 
+    private LookupExecutor getLookupExecutor(String type, String lookupName) {
         LookupDto lookup = null;
         EntityDto entity = entityService.getEntityByClassName(type);
         if (entity != null) {
             lookup = entityService.getLookupByName(entity.getId(), lookupName);
         }
 
+        LookupExecutor executor = null;
         if (entity != null && lookup != null) {
-            String serviceName = MotechClassPool.getInterfaceName(type);
-            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
+            MotechDataService service = findService(type);
 
             if (service != null) {
                 Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
-
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
-
-                obj = executor.execute(lookupMap);
-            } else {
-                getLogger().error("Service %s not found", serviceName);
+                executor = new LookupExecutor(service, lookup, fieldsByName);
             }
         }
 
+        return executor;
+    }
+
+    private Object executeLookup(LookupExecutor executor, String type, Map<String, String> lookupMap) {
+        Object obj = (executor == null) ? null : executor.execute(lookupMap);
+
         // we allow executing lookups that return multiple objects
         // if such a lookup returns more then 1 object we throw an exception
         Object result = null;
@@ -168,7 +198,8 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
         // only register if we actually have entities
         if (CollectionUtils.isNotEmpty(entityService.listEntities())) {
-            serviceRegistration = bundleContext.registerService(DataProvider.class.getName(), this, null);
+            serviceRegistration = bundleContext.registerService(
+                    new String[]{DataProvider.class.getName(), BatchDataProvider.class.getName()}, this, null);
         }
     }
 
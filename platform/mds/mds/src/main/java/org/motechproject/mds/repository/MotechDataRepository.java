@@ -87,6 +87,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> createAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -159,10 +163,18 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> updateAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -34,7 +34,10 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -138,6 +141,24 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        final List<T> createdInstances = repository.createAll(objects);
+
+        if (recordHistory) {
+            historyService.recordAll(createdInstances);
+        }
+
+        if (allowCreateEvent) {
+            sendEventsAfterCommit(createdInstances, CREATE);
+        }
+
+        return createdInstances;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
@@ -185,6 +206,27 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return updatedInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects) {
+        for (T object : objects) {
+            validateCredentials(object);
+            updateModificationData(object);
+        }
+
+        final List<T> updatedInstances = repository.updateAll(objects);
+
+        if (recordHistory) {
+            historyService.recordAll(updatedInstances);
+        }
+
+        if (allowUpdateEvent) {
+            sendEventsAfterCommit(updatedInstances, UPDATE);
+        }
+
+        return updatedInstances;
+    }
+
     @Override
     @Transactional
     public T createOrUpdate (final T object) {
@@ -198,6 +240,36 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return result;
     }
 
+    @Override
+    @Transactional
+    public List<T> createOrUpdateAll(Collection<T> objects) {
+        List<T> newObjects = new ArrayList<>();
+        List<T> existingObjects = new ArrayList<>();
+        // ids of new objects are set once they are created, so we have to remember which ones they are
+        boolean[] isNew = new boolean[objects.size()];
+
+        int i = 0;
+        for (T object : objects) {
+            isNew[i] = getId(object) == null;
+            if (isNew[i]) {
+                newObjects.add(object);
+            } else {
+                existingObjects.add(object);
+            }
+            i++;
+        }
+
+        Iterator<T> created = newObjects.isEmpty() ? newObjects.iterator() : createAll(newObjects).iterator();
+        Iterator<T> updated = existingObjects.isEmpty() ? existingObjects.iterator() : updateAll(existingObjects).iterator();
+
+        List<T> result = new ArrayList<>(objects.size());
+        for (boolean newObject : isNew) {
+            result.add(newObject ? created.next() : updated.next());
+        }
+
+        return result;
+    }
+
     @Override
     @Transactional
     public T updateFromTransient(T transientObject) {
@@ -279,6 +351,47 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
+    @Override
+    public void deleteAll(final Collection<T> objects) {
+        for (T object : objects) {
+            if (object == null) {
+                throw new IllegalArgumentException("Unable to delete null object");
+            }
+
+            validateCredentials(object);
+        }
+
+        List<Long> deletedInstanceIds = doInTransaction(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(TransactionStatus status) {
+                boolean trashMode = trashService.isTrashMode();
+                List<Long> ids = new ArrayList<>(objects.size());
+                List<T> existing = new ArrayList<>(objects.size());
+
+                for (T object : objects) {
+                    if (trashMode) {
+                        trashService.moveToTrash(object, schemaVersion, recordHistory);
+                    } else if (recordHistory) {
+                        historyService.remove(object);
+                    }
+
+                    Long id = (Long) getId(object);
+                    ids.add(id);
+                    existing.add(findById(id));
+                }
+
+                repository.deleteAll(existing);
+                return ids;
+            }
+        });
+
+        if (allowDeleteEvent) {
+            for (Long id : deletedInstanceIds) {
+                sendEvent(id, DELETE);
+            }
+        }
+    }
+
     @Override
     public void deleteById(long id) {
         delete(Constants.Util.ID_FIELD_NAME, id);
@@ -453,6 +566,18 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return restriction;
     }
 
+    private void sendEventsAfterCommit(final List<T> instances, final CrudEventType action) {
+        // a single synchronization sends the events of all instances
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (T instance : instances) {
+                    sendEvent((Long) getId(instance), action);
+                }
+            }
+        });
+    }
+
     private void sendEvent(Long id, CrudEventType action) {
         String subject = createSubject(module, namespace, entityName, action);
         Map<String, Object> params = buildEventParams(module, namespace, entityName, getClassType().getName(), id);
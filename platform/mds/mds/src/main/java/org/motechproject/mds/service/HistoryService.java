@@ -2,6 +2,7 @@ package org.motechproject.mds.service;
 
 import org.motechproject.mds.query.QueryParams;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,6 +21,14 @@ public interface HistoryService {
      */
     void record(Object instance);
 
+    /**
+     * Records changes made on the given instances of entity, in the same way as {@link #record(Object)}.
+     * The historical data of all instances is persisted at once.
+     *
+     * @param instances instances created from the given entity definition.
+     */
+    void recordAll(Collection<?> instances);
+
     /**
      * Removes all historical data with information what changes were made on the given instance
      * of entity.
@@ -6,6 +6,7 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +28,15 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS, in a single transaction. History of the instances is recorded
+     * at once and the create events are sent after the transaction is committed.
+     *
+     * @param objects instances to create
+     * @return created instances, in the same order
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -60,6 +70,15 @@ public interface MotechDataService<T> {
      */
     T update(T object);
 
+    /**
+     * Updates the given instances in MDS, in a single transaction. History of the instances is recorded
+     * at once and the update events are sent after the transaction is committed.
+     *
+     * @param objects instances to update
+     * @return updated instances, in the same order
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Updates the given instance in MDS if it exists (checks the presence of the instances id to verify that)
      * or creates a new one if it doesn't.
@@ -69,6 +88,15 @@ public interface MotechDataService<T> {
      */
     T createOrUpdate(T object);
 
+    /**
+     * Updates the given instances in MDS if they exist (checks the presence of the instances id to verify that)
+     * or creates new ones if they don't, in a single transaction.
+     *
+     * @param objects instances to update or create
+     * @return updated or created instances, in the same order
+     */
+    List<T> createOrUpdateAll(Collection<T> objects);
+
     /**
      * Returns the persistent instance, updated with the values from the transient instance. If there's
      * no instance of the id from the transient instance, it will create one.
@@ -96,6 +124,13 @@ public interface MotechDataService<T> {
      */
     void delete(T object);
 
+    /**
+     * Deletes given instances from MDS, in a single transaction.
+     *
+     * @param objects instances to delete
+     */
+    void deleteAll(Collection<T> objects);
+
     /**
      * Deletes instance from MDS, by its id.
      *
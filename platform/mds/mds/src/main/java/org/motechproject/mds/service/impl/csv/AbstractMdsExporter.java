@@ -6,6 +6,7 @@ import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.ex.csv.DataExportException;
 import org.motechproject.mds.ex.entity.EntityNotFoundException;
 import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.AllEntities;
 import org.motechproject.mds.service.CsvExportCustomizer;
@@ -13,10 +14,14 @@ import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.TableWriter;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.jdo.Query;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,9 +35,14 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * Unless a page was requested, instances are retrieved and written in chunks of {@value #CHUNK_SIZE}, the writer is
+ * flushed and the persistence manager is cleared after every chunk, so that exporting does not hold all instances
+ * in memory.
  */
 public abstract class AbstractMdsExporter {
 
+    private static final int CHUNK_SIZE = 1000;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -69,14 +79,24 @@ public abstract class AbstractMdsExporter {
             long rowsExported = 0;
             Map<String, String> row = new HashMap<>();
 
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, params);
+            boolean singlePage = params != null && params.isPagingSet();
+            int page = 1;
+            List<Object> instances;
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
-            }
+            do {
+                QueryParams chunkParams = singlePage ? params : chunkParams(params, page++);
+                instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(chunkParams) :
+                        mdsLookupService.findMany(entity.getClassName(), lookupName, lookupFields, chunkParams);
+
+                for (Object instance : instances) {
+                    buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
+                    writer.writeRow(row, orderedHeaders);
+                    rowsExported++;
+                }
+
+                writer.flush();
+                evictInstances(dataService);
+            } while (!singlePage && instances.size() == CHUNK_SIZE);
 
             return rowsExported;
         } catch (IOException e) {
@@ -84,6 +104,40 @@ public abstract class AbstractMdsExporter {
         }
     }
 
+    private QueryParams chunkParams(QueryParams params, int page) {
+        List<Order> orderList = new ArrayList<>();
+        if (params != null) {
+            orderList.addAll(params.getOrderList());
+        }
+
+        // pages must have a stable order, otherwise instances could be skipped or exported twice
+        if (!containsOrderOnId(orderList)) {
+            orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+
+        return new QueryParams(page, CHUNK_SIZE, orderList);
+    }
+
+    private boolean containsOrderOnId(List<Order> orderList) {
+        for (Order order : orderList) {
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evictInstances(MotechDataService dataService) {
+        // the exported instances are no longer needed, release them from the persistence manager cache
+        dataService.executeQuery(new QueryExecution<Void>() {
+            @Override
+            public Void execute(Query query, InstanceSecurityRestriction restriction) {
+                query.getPersistenceManager().evictAll();
+                return null;
+            }
+        });
+    }
+
     protected Entity getEntity(long entityId) {
         Entity entity = allEntities.retrieveById(entityId);
         if (entity == null) {
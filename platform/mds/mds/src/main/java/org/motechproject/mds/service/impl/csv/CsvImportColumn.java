@@ -0,0 +1,225 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.domain.Field;
+import org.motechproject.mds.domain.FieldMetadata;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.domain.Type;
+import org.motechproject.mds.ex.csv.CsvImportException;
+import org.motechproject.mds.helper.DataServiceHelper;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+
+/**
+ * A column of an imported CSV file, compiled once for the whole import. The column knows how to convert its values
+ * into the type of the entity field it is imported to, and holds the setter of that field. Converting a value with
+ * {@link #parse(String)} does not touch the database, so it can be done on any thread. Related instances are looked
+ * up only in {@link #resolve(Object)}, which has to be called within the import transaction.
+ */
+final class CsvImportColumn {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvImportColumn.class);
+
+    private enum Kind { COMBOBOX, RELATIONSHIP, MAP, OTHER }
+
+    private final String header;
+    private final String propertyName;
+    private final Method setter;
+    private final Kind kind;
+    private final boolean blankAsEmptyString;
+
+    private Class<?> typeClass;
+    private ClassLoader classLoader;
+    private String typeClassName;
+    private String genericType;
+    private boolean collection;
+
+    private BundleContext bundleContext;
+    private MotechDataService relatedDataService;
+    private String relatedClass;
+    private String collectionClassName;
+
+    /**
+     * Compiles the column for the given field. Must be called within a transaction, since it reads the field.
+     *
+     * @param header the header of the column in the CSV file
+     * @param field the field to which values of this column are imported
+     * @param entityClass the class of the imported instances
+     * @param bundleContext the context used for retrieving data services of related entities
+     */
+    CsvImportColumn(String header, Field field, Class<?> entityClass, BundleContext bundleContext) {
+        this.header = header;
+        this.propertyName = StringUtils.uncapitalize(field.getName());
+        this.setter = findSetter(entityClass, propertyName);
+
+        Type type = field.getType();
+        this.blankAsEmptyString = String.class.equals(type.getTypeClass());
+
+        if (type.isCombobox()) {
+            kind = Kind.COMBOBOX;
+            compileCombobox(new ComboboxHolder(field), entityClass.getClassLoader());
+        } else if (type.isRelationship()) {
+            kind = Kind.RELATIONSHIP;
+            compileRelationship(new RelationshipHolder(field), bundleContext);
+        } else if (type.isMap()) {
+            kind = Kind.MAP;
+            FieldMetadata keyMetadata = field.getMetadata(MAP_KEY_TYPE);
+            FieldMetadata valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
+            typeClassName = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
+            genericType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
+        } else {
+            kind = Kind.OTHER;
+            typeClass = type.getTypeClass();
+        }
+    }
+
+    private void compileCombobox(ComboboxHolder holder, ClassLoader entityClassLoader) {
+        collection = holder.isCollection();
+        typeClassName = collection ? holder.getTypeClassName() : holder.getUnderlyingType();
+        genericType = holder.getUnderlyingType();
+        classLoader = entityClassLoader;
+    }
+
+    private void compileRelationship(RelationshipHolder holder, BundleContext bundleContext) {
+        collection = holder.isManyToMany() || holder.isOneToMany();
+        relatedClass = holder.getRelatedClass();
+        collectionClassName = holder.getCollectionClassName();
+        this.bundleContext = bundleContext;
+    }
+
+    private static Method findSetter(Class<?> entityClass, String propertyName) {
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entityClass, propertyName);
+        return descriptor == null ? null : descriptor.getWriteMethod();
+    }
+
+    String getHeader() {
+        return header;
+    }
+
+    /**
+     * Converts the given CSV value. Relationships are converted into the IDs of the related instances,
+     * which are looked up by {@link #resolve(Object)}.
+     *
+     * @param csvValue the value from the CSV file
+     * @return the converted value
+     */
+    Object parse(String csvValue) {
+        Object value;
+        switch (kind) {
+            case COMBOBOX:
+                value = collection ? TypeHelper.parse(csvValue, typeClassName, genericType, classLoader) :
+                        TypeHelper.parse(csvValue, typeClassName, classLoader);
+                break;
+            case RELATIONSHIP:
+                value = collection ? TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName()) :
+                        TypeHelper.parse(csvValue, Long.class);
+                break;
+            case MAP:
+                value = TypeHelper.parseStringToMap(typeClassName, genericType, csvValue);
+                break;
+            default:
+                value = TypeHelper.parse(csvValue, typeClass);
+                break;
+        }
+
+        // for strings, return a blank if the columns is in the file
+        if (value == null && blankAsEmptyString) {
+            value = "";
+        }
+
+        return value;
+    }
+
+    /**
+     * Replaces the IDs of related instances returned by {@link #parse(String)} with the instances themselves.
+     * Values of other columns are returned unchanged.
+     *
+     * @param parsedValue the value returned by {@link #parse(String)}
+     * @return the value to set in the imported instance
+     */
+    Object resolve(Object parsedValue) {
+        if (kind != Kind.RELATIONSHIP) {
+            return parsedValue;
+        } else if (collection) {
+            Collection<Object> relatedObjects = buildRelationshipCollection();
+            if (parsedValue != null) {
+                for (Long id : (List<Long>) parsedValue) {
+                    Object relatedObj = getRelatedObject(id);
+                    if (relatedObj != null) {
+                        relatedObjects.add(relatedObj);
+                    }
+                }
+            }
+            return relatedObjects;
+        } else {
+            return getRelatedObject((Long) parsedValue);
+        }
+    }
+
+    /**
+     * Sets the given value in the imported instance.
+     *
+     * @param instance the imported instance
+     * @param value the value returned by {@link #resolve(Object)}
+     * @param csvValue the value from the CSV file, used in error messages
+     */
+    void setValue(Object instance, Object value, String csvValue) {
+        try {
+            if (setter == null) {
+                PropertyUtil.setProperty(instance, propertyName, value);
+            } else {
+                setter.invoke(instance, value);
+            }
+        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException |
+                NoSuchMethodException e) {
+            // the setter throws IllegalArgumentException if the value does not fit, e.g. null for a primitive
+            String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                    header, csvValue);
+            throw new CsvImportException(msg, e);
+        }
+    }
+
+    private Collection<Object> buildRelationshipCollection() {
+        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
+        if (collectionClass == null) {
+            return new ArrayList<>();
+        } else {
+            try {
+                return (Collection<Object>) collectionClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to parse collection type " + collectionClassName, e);
+            }
+        }
+    }
+
+    private Object getRelatedObject(Long id) {
+        if (relatedDataService == null) {
+            relatedDataService = DataServiceHelper.getDataService(bundleContext, relatedClass);
+        }
+
+        Object obj = relatedDataService.findById(id);
+
+        if (obj == null) {
+            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                    relatedClass, id);
+        }
+
+        return obj;
+    }
+}
@@ -1,13 +1,9 @@
 package org.motechproject.mds.service.impl.csv;
 
-import org.apache.commons.lang.StringUtils;
-import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
-import org.motechproject.mds.domain.FieldMetadata;
-import org.motechproject.mds.domain.RelationshipHolder;
-import org.motechproject.mds.domain.Type;
 import org.motechproject.mds.dto.CsvImportResults;
+import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.ex.csv.CsvImportException;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
@@ -19,35 +15,55 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
-import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.orm.jdo.JdoTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Component used for importing CSV records to the database.
  * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
  * This bean lives in the context of the generated MDS entities bundle.
+ * <p/>
+ * Rows are imported in batches of {@link #setImportBatchSize(int)} rows, every batch is imported and committed in its
+ * own transaction. The columns of the file are compiled once for the whole import and values of large files are
+ * converted by {@link #setImportThreads(int)} threads, while the instances are created and updated on the importing
+ * thread. With the {@link DefaultCsvImportCustomizer}, the new and the existing instances of a batch are stored with
+ * single {@link MotechDataService#createAll(java.util.Collection)} and
+ * {@link MotechDataService#updateAll(java.util.Collection)} calls, custom customizers store every row separately.
+ * The batch size and the number of threads are read from the {@code mds.csvImport.batchSize} and
+ * {@code mds.csvImport.threads} MDS properties.
  */
 public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    private static final int DEFAULT_IMPORT_BATCH_SIZE = 1000;
+
+    private JdoTransactionManager transactionManager;
+    private int importBatchSize = DEFAULT_IMPORT_BATCH_SIZE;
+    private int importThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * Imports instances of the given entity to the database.
      * @param entityId the ID of the entity for which instances will be imported
@@ -56,10 +72,8 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, continueOnError);
+        return importCsv(entityId, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
@@ -71,10 +85,8 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer, boolean continueOnError) {
-        Entity entity = getEntity(entityId);
-        return importCsv(entity, reader, importCustomizer, continueOnError);
+        return importCsv(entityId, null, reader, importCustomizer, continueOnError);
     }
 
     /**
@@ -85,10 +97,8 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      *                        if false, import process will stop and rethrow the exception
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final String entityClassName, final Reader reader, boolean continueOnError) {
-        Entity entity = getEntity(entityClassName);
-        return importCsv(entity, reader, continueOnError);
+        return importCsv(null, entityClassName, reader, new DefaultCsvImportCustomizer(), continueOnError);
     }
 
     /**
@@ -225,99 +235,237 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, boolean continueOnError) {
-        return importCsv(entity, reader, new DefaultCsvImportCustomizer(), continueOnError);
-    }
-
-    private CsvImportResults importCsv(final Entity entity, final Reader reader, CsvImportCustomizer importCustomizer,
-                                       boolean continueOnError) {
-        final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entity);
-
-        Map<String, Field> fieldCacheMap = new HashMap<>();
+    private CsvImportResults importCsv(final Long entityId, final String entityClassName, final Reader reader,
+                                       final CsvImportCustomizer importCustomizer, boolean continueOnError) {
+        ExecutorService executor = null;
 
         try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
+            final String[] headers = csvMapReader.getHeader(true);
 
-            Map <Integer, String> exceptions = new HashMap<>();
+            ImportPlan plan = doInTransaction(new TransactionCallback<ImportPlan>() {
+                @Override
+                public ImportPlan doInTransaction(TransactionStatus status) {
+                    Entity entity = (entityId == null) ? getEntity(entityClassName) : getEntity(entityId);
+                    return prepareImport(entity, headers, importCustomizer);
+                }
+            });
 
-            Map<String, String> row;
-            int rowNum = 0;
+            ImportProgress progress = new ImportProgress();
+            List<ParsedRow> rows = readRows(csvMapReader, headers, progress.getRowsRead());
 
-            final String headers[] = csvMapReader.getHeader(true);
+            while (!rows.isEmpty()) {
+                // small files are parsed on the importing thread only
+                if (executor == null && importThreads > 1 && rows.size() == importBatchSize) {
+                    executor = Executors.newFixedThreadPool(importThreads);
+                }
 
-            while ((row = csvMapReader.read(headers)) != null) {
-                rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(row, headers, fieldCacheMap, entity.getFields(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
+                parseRows(plan, rows, executor);
+                importRows(plan, rows, importCustomizer, continueOnError, progress);
 
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
-                    }
-                }
+                rows = readRows(csvMapReader, headers, progress.getRowsRead());
             }
 
-            return new CsvImportResults(entity.toDto(), newInstanceIDs, updatedInstanceIDs, exceptions);
+            return new CsvImportResults(plan.getEntityDto(), progress.getNewInstanceIDs(),
+                    progress.getUpdatedInstanceIDs(), progress.getExceptions());
         } catch (IOException e) {
             throw new CsvImportException("IO Error when importing CSV", e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
     }
 
-    private RowImportResult importInstanceFromRow(Map<String, String> row, String[] headers, Map<String, Field> fieldMap, List<Field> fields,
-                                              MotechDataService dataService, CsvImportCustomizer importCustomizer) {
+    private ImportPlan prepareImport(Entity entity, String[] headers, CsvImportCustomizer importCustomizer) {
+        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entity);
         Class entityClass = dataService.getClassType();
 
-        boolean isNewInstance = true;
-        Object instance;
-        try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
-            if (instance == null) {
-                LOGGER.debug("Creating new {}", entityClass.getName());
-                instance = entityClass.newInstance();
-            } else {
-                isNewInstance = false;
-                LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.get(Constants.Util.ID_FIELD_NAME));
-            }
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
-        }
+        CsvImportColumn[] columns = new CsvImportColumn[headers.length];
+        Map<String, Field> fieldCacheMap = new HashMap<>();
 
-        for (String fieldName : headers) {
-            Field field = findField(fieldName, fields, fieldMap, importCustomizer);
+        for (int i = 0; i < headers.length; i++) {
+            String fieldName = headers[i];
+            Field field = findField(fieldName, entity.getFields(), fieldCacheMap, importCustomizer);
 
             if (field == null) {
                 LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
                         fieldName, entityClass.getName());
-                continue;
+            } else {
+                columns[i] = new CsvImportColumn(fieldName, field, entityClass, getBundleContext());
+            }
+        }
+
+        return new ImportPlan(entity.toDto(), dataService, columns);
+    }
+
+    private List<ParsedRow> readRows(CsvMapReader csvMapReader, String[] headers, int rowsRead) throws IOException {
+        List<ParsedRow> rows = new ArrayList<>();
+
+        while (rows.size() < importBatchSize) {
+            Map<String, String> row = csvMapReader.read(headers);
+            if (row == null) {
+                break;
             }
+            rows.add(new ParsedRow(rowsRead + rows.size() + 1, row));
+        }
+
+        return rows;
+    }
+
+    private void parseRows(final ImportPlan plan, List<ParsedRow> rows, ExecutorService executor) {
+        if (executor == null) {
+            for (ParsedRow row : rows) {
+                row.parse(plan.getColumns());
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int sliceSize = (rows.size() + importThreads - 1) / importThreads;
+
+        for (int start = 0; start < rows.size(); start += sliceSize) {
+            final List<ParsedRow> slice = rows.subList(start, Math.min(start + sliceSize, rows.size()));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (ParsedRow row : slice) {
+                        row.parse(plan.getColumns());
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("CSV import was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CsvImportException("Unable to parse CSV rows", e.getCause());
+        }
+    }
+
+    private void importRows(final ImportPlan plan, final List<ParsedRow> rows, final CsvImportCustomizer importCustomizer,
+                            final boolean continueOnError, final ImportProgress progress) {
+        // every batch is committed separately, so a failed import keeps the rows imported before the failed batch
+        doInTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(TransactionStatus status) {
+                // a custom customizer can create and update instances in its own way, so it gets every row separately
+                if (importCustomizer.getClass() == DefaultCsvImportCustomizer.class) {
+                    importBatch(plan, rows, importCustomizer, continueOnError, progress, status);
+                } else {
+                    importEachRow(plan, rows, importCustomizer, continueOnError, progress);
+                }
+                progress.addRowsRead(rows.size());
+                return null;
+            }
+        });
+    }
 
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
+    private void importEachRow(ImportPlan plan, List<ParsedRow> rows, CsvImportCustomizer importCustomizer,
+                               boolean continueOnError, ImportProgress progress) {
+        for (ParsedRow row : rows) {
+            try {
+                progress.add(importInstanceFromRow(row, plan, importCustomizer));
+            } catch (RuntimeException e) {
+                handleRowError(row, rows, e, continueOnError, progress);
+            }
+        }
+    }
 
-                Object parsedValue = parseValue(csvValue, field, entityClass.getClassLoader());
+    private void importBatch(ImportPlan plan, List<ParsedRow> rows, CsvImportCustomizer importCustomizer,
+                             boolean continueOnError, ImportProgress progress, TransactionStatus status) {
+        MotechDataService dataService = plan.getDataService();
+        List<ParsedRow> importedRows = new ArrayList<>();
+        List<Object> newInstances = new ArrayList<>();
+        List<Object> existingInstances = new ArrayList<>();
 
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
+        for (ParsedRow row : rows) {
+            try {
+                Object instance = importCustomizer.findExistingInstance(row.getValues(), dataService);
+                if (instance == null) {
+                    instance = newInstance(dataService.getClassType());
+                    row.applyTo(instance, plan.getColumns());
+                    newInstances.add(instance);
+                } else {
+                    row.applyTo(instance, plan.getColumns());
+                    existingInstances.add(instance);
                 }
+                importedRows.add(row);
+            } catch (RuntimeException e) {
+                handleRowError(row, rows, e, continueOnError, progress);
             }
         }
 
+        List<RowImportResult> results = new ArrayList<>();
+        try {
+            for (Object created : createAll(dataService, newInstances)) {
+                results.add(new RowImportResult(getId(created), true));
+            }
+            for (Object updated : updateAll(dataService, existingInstances)) {
+                results.add(new RowImportResult(getId(updated), false));
+            }
+        } catch (RuntimeException e) {
+            if (!continueOnError) {
+                LOGGER.warn("Unable to import rows {} to {}, rows before row {} have been imported",
+                        rows.get(0).getRowNum(), rows.get(rows.size() - 1).getRowNum(), rows.get(0).getRowNum());
+                throw e;
+            }
+            // the instances are stored together, so none of the rows of this batch is imported
+            status.setRollbackOnly();
+            for (ParsedRow row : importedRows) {
+                progress.addException(row.getRowNum(), e.getMessage());
+            }
+            return;
+        }
+
+        for (RowImportResult result : results) {
+            progress.add(result);
+        }
+    }
+
+    private List createAll(MotechDataService dataService, List<Object> instances) {
+        LOGGER.debug("Creating {} instances of {}", instances.size(), dataService.getClassType().getName());
+        return instances.isEmpty() ? instances : dataService.createAll(instances);
+    }
+
+    private List updateAll(MotechDataService dataService, List<Object> instances) {
+        LOGGER.debug("Updating {} instances of {}", instances.size(), dataService.getClassType().getName());
+        return instances.isEmpty() ? instances : dataService.updateAll(instances);
+    }
+
+    private void handleRowError(ParsedRow row, List<ParsedRow> rows, RuntimeException e, boolean continueOnError,
+                                ImportProgress progress) {
+        if (continueOnError) {
+            progress.addException(row.getRowNum(), e.getMessage());
+        } else {
+            LOGGER.warn("Unable to import row {}, rows before row {} have been imported",
+                    row.getRowNum(), rows.get(0).getRowNum());
+            throw e;
+        }
+    }
+
+    private RowImportResult importInstanceFromRow(ParsedRow row, ImportPlan plan, CsvImportCustomizer importCustomizer) {
+        MotechDataService dataService = plan.getDataService();
+        Class entityClass = dataService.getClassType();
+
+        boolean isNewInstance = true;
+        Object instance = importCustomizer.findExistingInstance(row.getValues(), dataService);
+        if (instance == null) {
+            LOGGER.debug("Creating new {}", entityClass.getName());
+            instance = newInstance(entityClass);
+        } else {
+            isNewInstance = false;
+            LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.getValues().get(Constants.Util.ID_FIELD_NAME));
+        }
+
+        row.applyTo(instance, plan.getColumns());
+
         Object importedInstance;
         if (isNewInstance) {
             importedInstance = importCustomizer.doCreate(instance, dataService);
@@ -325,9 +473,19 @@ public class CsvImporterExporter extends AbstractMdsExporter {
             importedInstance = importCustomizer.doUpdate(instance, dataService);
         }
 
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
+        return new RowImportResult(getId(importedInstance), isNewInstance);
+    }
+
+    private Object newInstance(Class entityClass) {
+        try {
+            return entityClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
+        }
+    }
 
-        return new RowImportResult(importedId, isNewInstance);
+    private Long getId(Object instance) {
+        return (Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
     }
 
     private Field findField(String fieldName, List<Field> fields, Map<String, Field> fieldMap, CsvImportCustomizer importCustomizer) {
@@ -338,88 +496,154 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         return fieldMap.get(fieldName);
     }
 
-    private Object parseValue(String csvValue, Field field, ClassLoader entityCl) {
-        final Type type = field.getType();
+    private <T> T doInTransaction(TransactionCallback<T> callback) {
+        return new TransactionTemplate(transactionManager).execute(callback);
+    }
 
-        Object value;
-        if (type.isCombobox()) {
-            value = parseComboboxValue(csvValue, field, entityCl);
-        } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
-        } else if (type.isMap()) {
-            FieldMetadata keyMetadata = field.getMetadata(MAP_KEY_TYPE);
-            FieldMetadata valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
-            String mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
-            String mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
 
-            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
-        } else {
-            value = TypeHelper.parse(csvValue, type.getTypeClass());
+    public void setImportBatchSize(int importBatchSize) {
+        this.importBatchSize = importBatchSize;
+    }
+
+    public int getImportThreads() {
+        return importThreads;
+    }
+
+    public void setImportThreads(int importThreads) {
+        this.importThreads = importThreads;
+    }
+
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(JdoTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    /**
+     * The entity data and the compiled columns used by a single import.
+     */
+    private static class ImportPlan {
+        private final EntityDto entityDto;
+        private final MotechDataService dataService;
+        private final CsvImportColumn[] columns;
+
+        public ImportPlan(EntityDto entityDto, MotechDataService dataService, CsvImportColumn[] columns) {
+            this.entityDto = entityDto;
+            this.dataService = dataService;
+            this.columns = columns;
         }
 
-        // for strings, return a blank if the columns is in the file
-        if (value == null && String.class.equals(type.getTypeClass())) {
-            value = "";
+        public EntityDto getEntityDto() {
+            return entityDto;
         }
 
-        return value;
-    }
+        public MotechDataService getDataService() {
+            return dataService;
+        }
 
-    private Object parseComboboxValue(String csvValue, Field field, ClassLoader classLoader) {
-        ComboboxHolder comboboxHolder = new ComboboxHolder(field);
-        if (comboboxHolder.isCollection()) {
-            return TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(),
-                    comboboxHolder.getUnderlyingType(), classLoader);
-        } else {
-            return TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), classLoader);
+        public CsvImportColumn[] getColumns() {
+            return columns;
         }
     }
 
-    private Object parseRelationshipValue(String csvValue, Field field) {
-        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
-        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
+    /**
+     * A row read from the CSV file, with its values converted by the columns of the import. A conversion error is kept
+     * until the row is imported, so that it is reported in the same way as the other errors of the row.
+     */
+    private static class ParsedRow {
+        private final int rowNum;
+        private final Map<String, String> values;
+        private Object[] parsedValues;
+        private RuntimeException parseError;
+        private int parseErrorColumn = -1;
+
+        public ParsedRow(int rowNum, Map<String, String> values) {
+            this.rowNum = rowNum;
+            this.values = values;
+        }
 
-            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        public Map<String, String> getValues() {
+            return values;
+        }
+
+        public void parse(CsvImportColumn[] columns) {
+            parsedValues = new Object[columns.length];
+
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] != null && values.containsKey(columns[i].getHeader())) {
+                    try {
+                        parsedValues[i] = columns[i].parse(values.get(columns[i].getHeader()));
+                    } catch (RuntimeException e) {
+                        parseError = e;
+                        parseErrorColumn = i;
+                        return;
                     }
                 }
             }
-            return relatedObjects;
-        } else {
-            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
         }
-    }
 
-    private Collection<Object> buildRelationshipCollection(RelationshipHolder relationshipHolder) {
-        String collectionClassName = relationshipHolder.getCollectionClassName();
-        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
-        if (collectionClass == null) {
-            return new ArrayList<>();
-        } else {
-            try {
-                return (Collection<Object>) collectionClass.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new CsvImportException("Unable to parse collection type " + relationshipHolder.getCollectionClassName(), e);
+        public void applyTo(Object instance, CsvImportColumn[] columns) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i == parseErrorColumn) {
+                    throw parseError;
+                }
+
+                if (columns[i] != null && values.containsKey(columns[i].getHeader())) {
+                    Object value = columns[i].resolve(parsedValues[i]);
+                    columns[i].setValue(instance, value, values.get(columns[i].getHeader()));
+                }
             }
         }
     }
 
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
+    /**
+     * The results of the rows imported so far.
+     */
+    private static class ImportProgress {
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+        private int rowsRead;
+
+        public void add(RowImportResult rowImportResult) {
+            // put its ID in the correct list
+            if (rowImportResult.isNewInstance()) {
+                newInstanceIDs.add(rowImportResult.getId());
+            } else {
+                updatedInstanceIDs.add(rowImportResult.getId());
+            }
+        }
+
+        public void addException(int rowNum, String message) {
+            exceptions.put(rowNum, message);
+        }
+
+        public void addRowsRead(int rows) {
+            rowsRead += rows;
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
+        }
 
-        if (obj == null) {
-            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
-                    entityClass, id);
+        public List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
         }
 
-        return obj;
+        public Map<Integer, String> getExceptions() {
+            return exceptions;
+        }
     }
 
     /**
@@ -25,11 +25,13 @@ import java.util.Map;
 
 /**
  * An implementation of the table writer that writes the table data in PDF format.
- * Uses the iText PDF library underneath.
+ * Uses the iText PDF library underneath. Rows are buffered in blocks of at most {@value #ROWS_PER_BLOCK} rows,
+ * every block is laid out on its own pages, so that the memory used does not depend on the number of rows.
  */
 public class PdfTableWriter implements TableWriter {
 
     private static final String ROW_NUMBER_HEADER = "No";
+    private static final int ROWS_PER_BLOCK = 1000;
     private static final float MARGIN = 36f;
     private static final float PAGE_HEIGHT = PageSize.A4.getWidth() - 2 * MARGIN;
     private static final float PAGE_WIDTH = PageSize.A4.getHeight() - 2 * MARGIN;
@@ -38,8 +40,10 @@ public class PdfTableWriter implements TableWriter {
     private final Document pdfDocument;
     private final PdfContentByte pdfCanvas;
     private PdfPTable dataTable;
+    private String[] headers;
     private Map<String, Float> columnsWidths;
     private int rows = 0;
+    private boolean blockWritten;
     private float tableContentOffset;
 
     public PdfTableWriter(OutputStream outputStream) {
@@ -65,35 +69,40 @@ public class PdfTableWriter implements TableWriter {
         for (String header : headers) {
             writeCell(header, row.get(header));
         }
+
+        if (rowsInBlock() >= ROWS_PER_BLOCK) {
+            flush();
+        }
     }
 
     @Override
     public void writeHeader(String[] headers) throws IOException {
-
-        dataTable = new PdfPTable(headers.length + 1);
+        this.headers = headers;
         columnsWidths = new LinkedHashMap<>();
 
-        writeHeaderCell(ROW_NUMBER_HEADER);
+        startBlock();
+    }
 
-        for (String header : headers) {
-            writeHeaderCell(header);
+    @Override
+    public void flush() throws IOException {
+        if (dataTable != null && rowsInBlock() > 0) {
+            try {
+                writeBlock();
+            } catch (DocumentException e) {
+                throw new DataExportException("Unable to add a table to the PDF file", e);
+            }
+            pdfWriter.flush();
+            startBlock();
         }
     }
 
     @Override
     public void close() {
         try {
-            float[] relativeWidths = getRelativeWidths();
-
-            List<Integer> lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
-            resizeColumns(relativeWidths, lastColumnsForPages);
-            setTableContentOffset(relativeWidths[0]);
-
-            dataTable.setWidths(relativeWidths);
-            dataTable.setLockedWidth(true);
-            dataTable.setTotalWidth(calculateTotalTableWidth(relativeWidths));
-
-            writeTable(lastColumnsForPages);
+            // the header is written even if there are no rows at all
+            if (!blockWritten || rowsInBlock() > 0) {
+                writeBlock();
+            }
 
             pdfDocument.close();
         } catch (DocumentException e) {
@@ -103,6 +112,36 @@ public class PdfTableWriter implements TableWriter {
         }
     }
 
+    private void startBlock() {
+        dataTable = new PdfPTable(headers.length + 1);
+
+        writeHeaderCell(ROW_NUMBER_HEADER);
+
+        for (String header : headers) {
+            writeHeaderCell(header);
+        }
+    }
+
+    private void writeBlock() throws DocumentException {
+        float[] relativeWidths = getRelativeWidths();
+
+        List<Integer> lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
+        resizeColumns(relativeWidths, lastColumnsForPages);
+        setTableContentOffset(relativeWidths[0]);
+
+        dataTable.setWidths(relativeWidths);
+        dataTable.setLockedWidth(true);
+        dataTable.setTotalWidth(calculateTotalTableWidth(relativeWidths));
+
+        writeTable(lastColumnsForPages);
+        blockWritten = true;
+    }
+
+    private int rowsInBlock() {
+        // the first row of every block is the header
+        return dataTable.getRows().size() - 1;
+    }
+
     private void writeTable(List<Integer> lastColumnsForPages) {
 
         //1 is the index of first non-header row
@@ -168,7 +207,13 @@ public class PdfTableWriter implements TableWriter {
         PdfPCell cell = new PdfPCell(new Phrase(column));
         cell.setBackgroundColor(BaseColor.GRAY);
         dataTable.addCell(cell);
-        columnsWidths.put(column, calculateTotalCellWidth(cell));
+
+        // columns keep the widths of the previous blocks
+        Float width = calculateTotalCellWidth(cell);
+        Float currentWidth = columnsWidths.get(column);
+        if (currentWidth == null || currentWidth < width) {
+            columnsWidths.put(column, width);
+        }
     }
 
     private void resizeColumns(float[] relativeWidths, List<Integer> lastColumnsForPages) {
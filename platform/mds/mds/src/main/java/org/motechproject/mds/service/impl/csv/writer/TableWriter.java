@@ -25,6 +25,12 @@ public interface TableWriter extends AutoCloseable {
      */
     void writeHeader(String[] headers) throws IOException;
 
+    /**
+     * Writes all buffered rows to the output, so that they do not have to be held in memory.
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
     /**
      * {@inheritDoc}
      */
@@ -18,7 +18,9 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
 
@@ -42,6 +44,31 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         }
     }
 
+    @Override
+    @Transactional
+    public void recordAll(Collection<?> instances) {
+        ValueGetter valueGetter = new HistoryValueGetter(this, getBundleContext());
+        Map<Class<?>, Class<?>> historyClasses = new HashMap<>();
+        List<Object> historyInstances = new ArrayList<>(instances.size());
+
+        for (Object instance : instances) {
+            Class<?> historyClass = getHistoryClass(instance, historyClasses);
+
+            if (null != historyClass) {
+                Object currentHistoryInstance = create(historyClass, instance, EntityType.HISTORY, valueGetter);
+                setHistoryProperties(currentHistoryInstance, instance);
+                historyInstances.add(currentHistoryInstance);
+            }
+        }
+
+        if (!historyInstances.isEmpty()) {
+            LOGGER.debug("Recording {} history entries", historyInstances.size());
+
+            PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+            manager.makePersistentAll(historyInstances);
+        }
+    }
+
     @Override
     @Transactional
     public void remove(Object instance) {
@@ -156,6 +183,20 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return currentHistoryInstance;
     }
 
+    private Class<?> getHistoryClass(Object instance, Map<Class<?>, Class<?>> historyClasses) {
+        if (null == instance) {
+            return null;
+        }
+
+        // instances of the same class share the history class, which is looked up only once
+        if (!historyClasses.containsKey(instance.getClass())) {
+            historyClasses.put(instance.getClass(),
+                    HistoryTrashClassHelper.getClass(instance, EntityType.HISTORY, getBundleContext()));
+        }
+
+        return historyClasses.get(instance.getClass());
+    }
+
     private void setHistoryProperties(Object newHistoryObj, Object realCurrentObj) {
         // creates connection between instance object and history object
         Long id = getInstanceId(realCurrentObj);
@@ -27,6 +27,7 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -122,6 +123,23 @@ public class MdsDataProviderTest {
         assertEquals("multi", record.getValue());
     }
 
+    @Test
+    public void testBatchOfLookups() {
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+        List<Map<String, String>> lookupMaps = asList(lookupMap, lookupMap);
+
+        List<Object> result = dataProvider.lookupAll(Record.class.getName(), "singleLookup", lookupMaps);
+
+        assertEquals(2, result.size());
+        for (Object record : result) {
+            assertTrue("Wrong type returned", record instanceof Record);
+            assertEquals("single", ((Record) record).getValue());
+        }
+        // the lookup is resolved once for the whole batch
+        verify(entityService).getEntityByClassName(Record.class.getName());
+    }
+
     @Test
     public void testFindByInstanceId() {
         Map<String, String> lookupMap = new HashMap<>();
@@ -0,0 +1,246 @@
+package org.motechproject.mds.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.repository.AllEntities;
+import org.motechproject.mds.repository.MotechDataRepository;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.springframework.orm.jdo.JdoTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
+import static org.motechproject.mds.event.CrudEventType.CREATE;
+import static org.motechproject.mds.event.CrudEventType.DELETE;
+import static org.motechproject.mds.event.CrudEventType.UPDATE;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultMotechDataServiceTest {
+
+    private static final String ENTITY_NAME = "Record";
+    private static final Long SCHEMA_VERSION = 2L;
+
+    @Mock
+    private MotechDataRepository<Record> repository;
+
+    @Mock
+    private HistoryService historyService;
+
+    @Mock
+    private TrashService trashService;
+
+    @Mock
+    private AllEntities allEntities;
+
+    @Mock
+    private OsgiEventProxy osgiEventProxy;
+
+    @Mock
+    private JdoTransactionManager transactionManager;
+
+    @Mock
+    private Entity entity;
+
+    private RecordService recordService;
+
+    @Before
+    public void setUp() {
+        when(repository.getClassType()).thenReturn(Record.class);
+        when(allEntities.retrieveByClassName(Record.class.getName())).thenReturn(entity);
+        when(entity.getName()).thenReturn(ENTITY_NAME);
+        when(entity.getEntityVersion()).thenReturn(SCHEMA_VERSION);
+        when(entity.isRecordHistory()).thenReturn(true);
+        when(entity.isAllowCreateEvent()).thenReturn(true);
+        when(entity.isAllowUpdateEvent()).thenReturn(true);
+        when(entity.isAllowDeleteEvent()).thenReturn(true);
+
+        recordService = new RecordService();
+        recordService.setRepository(repository);
+        recordService.setAllEntities(allEntities);
+        recordService.setHistoryService(historyService);
+        recordService.setTrashService(trashService);
+        recordService.setOsgiEventProxy(osgiEventProxy);
+        recordService.setTransactionManager(transactionManager);
+        recordService.initializeSecurityState();
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    public void shouldRecordHistoryAndSendEventsOfCreatedInstancesAfterCommit() {
+        List<Record> records = asList(record(null, "first"), record(null, "second"));
+        List<Record> created = asList(record(1L, "first"), record(2L, "second"));
+        when(repository.createAll(records)).thenReturn(created);
+
+        List<Record> result = recordService.createAll(records);
+
+        assertEquals(created, result);
+        verify(historyService).recordAll(created);
+        verify(historyService, never()).record(any());
+        verify(osgiEventProxy, never()).sendEvent(anyString(), anyMap());
+
+        commit();
+
+        assertEvents(CREATE, 1L, 2L);
+    }
+
+    @Test
+    public void shouldRecordHistoryAndSendEventsOfUpdatedInstancesAfterCommit() {
+        List<Record> records = asList(record(1L, "first"), record(2L, "second"));
+        when(repository.updateAll(records)).thenReturn(records);
+
+        List<Record> result = recordService.updateAll(records);
+
+        assertEquals(records, result);
+        verify(historyService).recordAll(records);
+        verify(historyService, never()).record(any());
+        verify(osgiEventProxy, never()).sendEvent(anyString(), anyMap());
+
+        commit();
+
+        assertEvents(UPDATE, 1L, 2L);
+    }
+
+    @Test
+    public void shouldKeepOrderOfNewAndExistingInstances() {
+        Record firstNew = record(null, "firstNew");
+        Record firstExisting = record(1L, "firstExisting");
+        Record secondNew = record(null, "secondNew");
+        Record secondExisting = record(2L, "secondExisting");
+
+        Record firstCreated = record(3L, "firstNew");
+        Record secondCreated = record(4L, "secondNew");
+
+        when(repository.createAll(asList(firstNew, secondNew))).thenReturn(asList(firstCreated, secondCreated));
+        when(repository.updateAll(asList(firstExisting, secondExisting))).thenReturn(asList(firstExisting, secondExisting));
+
+        List<Record> result = recordService.createOrUpdateAll(asList(firstNew, firstExisting, secondNew, secondExisting));
+
+        assertEquals(4, result.size());
+        assertSame(firstCreated, result.get(0));
+        assertSame(firstExisting, result.get(1));
+        assertSame(secondCreated, result.get(2));
+        assertSame(secondExisting, result.get(3));
+
+        verify(historyService).recordAll(asList(firstCreated, secondCreated));
+        verify(historyService).recordAll(asList(firstExisting, secondExisting));
+        verify(osgiEventProxy, never()).sendEvent(anyString(), anyMap());
+
+        commit();
+
+        verify(osgiEventProxy, times(2)).sendEvent(eq(subject(CREATE)), anyMap());
+        verify(osgiEventProxy, times(2)).sendEvent(eq(subject(UPDATE)), anyMap());
+    }
+
+    @Test
+    public void shouldMoveDeletedInstancesToTrashInTrashMode() {
+        when(trashService.isTrashMode()).thenReturn(true);
+        Record first = stubRecord(1L, "first");
+        Record second = stubRecord(2L, "second");
+
+        recordService.deleteAll(asList(first, second));
+
+        verify(trashService).moveToTrash(first, SCHEMA_VERSION, true);
+        verify(trashService).moveToTrash(second, SCHEMA_VERSION, true);
+        verify(historyService, never()).remove(any());
+        verify(repository).deleteAll(asList(first, second));
+
+        assertEvents(DELETE, 1L, 2L);
+    }
+
+    @Test
+    public void shouldRemoveHistoryOfDeletedInstancesWithoutTrashMode() {
+        when(trashService.isTrashMode()).thenReturn(false);
+        Record first = stubRecord(1L, "first");
+        Record second = stubRecord(2L, "second");
+
+        recordService.deleteAll(asList(first, second));
+
+        verify(historyService).remove(first);
+        verify(historyService).remove(second);
+        verify(trashService, never()).moveToTrash(any(), anyLong(), anyBoolean());
+        verify(repository).deleteAll(asList(first, second));
+
+        assertEvents(DELETE, 1L, 2L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDeleteAnythingIfOneOfInstancesIsNull() {
+        try {
+            recordService.deleteAll(asList(stubRecord(1L, "first"), null));
+        } finally {
+            verify(repository, never()).deleteAll(anyCollection());
+            verify(osgiEventProxy, never()).sendEvent(anyString(), anyMap());
+        }
+    }
+
+    private void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+    }
+
+    private void assertEvents(CrudEventType action, Long... ids) {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(osgiEventProxy, times(ids.length)).sendEvent(eq(subject(action)), captor.capture());
+
+        List<Object> sentIds = new ArrayList<>();
+        for (Map params : captor.getAllValues()) {
+            sentIds.add(params.get(OBJECT_ID));
+        }
+
+        assertEquals(asList((Object[]) ids), sentIds);
+    }
+
+    private String subject(CrudEventType action) {
+        return createSubject(null, null, ENTITY_NAME, action);
+    }
+
+    private Record stubRecord(Long id, String value) {
+        Record record = record(id, value);
+        when(repository.retrieve("id", id)).thenReturn(record);
+        return record;
+    }
+
+    private Record record(Long id, String value) {
+        Record record = new Record();
+        record.setId(id);
+        record.setValue(value);
+        return record;
+    }
+
+    private static class RecordService extends DefaultMotechDataService<Record> {
+    }
+}
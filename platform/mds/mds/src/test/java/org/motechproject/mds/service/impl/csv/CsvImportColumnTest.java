@@ -0,0 +1,51 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.junit.Test;
+import org.motechproject.mds.ex.csv.CsvImportException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.motechproject.mds.testutil.FieldTestHelper.field;
+
+public class CsvImportColumnTest {
+
+    @Test
+    public void shouldSetValueOfPrimitiveField() {
+        CsvImportColumn column = new CsvImportColumn("Count", field("count", Integer.class), Counter.class, null);
+        Counter counter = new Counter();
+
+        column.setValue(counter, column.resolve(column.parse("7")), "7");
+
+        assertEquals(7, counter.getCount());
+    }
+
+    @Test
+    public void shouldThrowImportExceptionForEmptyValueOfPrimitiveField() {
+        CsvImportColumn column = new CsvImportColumn("Count", field("count", Integer.class), Counter.class, null);
+        Object value = column.resolve(column.parse(""));
+
+        assertNull(value);
+
+        try {
+            column.setValue(new Counter(), value, "");
+            fail("Expected " + CsvImportException.class.getName());
+        } catch (CsvImportException e) {
+            assertEquals("Error when processing field: Count, value in CSV file is ", e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    public static class Counter {
+        private int count;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+}
@@ -28,6 +28,9 @@ import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.orm.jdo.JdoTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -36,6 +39,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
@@ -45,6 +49,7 @@ import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -102,6 +107,9 @@ public class CsvImporterExporterTest {
     @Mock
     private MDSLookupService mdsLookupService;
 
+    @Mock
+    private JdoTransactionManager transactionManager;
+
     @Before
     public void setUp() {
         MotechClassPool.registerServiceInterface(ENTITY_CLASSNAME, DATA_SERVICE_CLASSNAME);
@@ -142,6 +150,37 @@ public class CsvImporterExporterTest {
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
     }
 
+    @Test
+    public void shouldExportInstancesInChunks() {
+        final List<Record2> instances = testInstances(IdMode.INCLUDE_ID);
+        final List<Record2> fullChunk = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            fullChunk.add(instances.get(i % INSTANCE_COUNT));
+        }
+
+        when(motechDataService.retrieveAll(any(QueryParams.class))).thenAnswer(new Answer<List<Record2>>() {
+            @Override
+            public List<Record2> answer(InvocationOnMock invocation) {
+                QueryParams params = (QueryParams) invocation.getArguments()[0];
+                return params.getPage() == 1 ? fullChunk : instances;
+            }
+        });
+
+        long result = csvImporterExporter.exportCsv(ENTITY_ID, new StringWriter());
+
+        assertEquals(1000 + INSTANCE_COUNT, result);
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(motechDataService, times(2)).retrieveAll(captor.capture());
+
+        for (int i = 0; i < 2; i++) {
+            QueryParams params = captor.getAllValues().get(i);
+            assertEquals(Integer.valueOf(i + 1), params.getPage());
+            assertEquals(Integer.valueOf(1000), params.getPageSize());
+            assertTrue(params.containsOrderOnField("id"));
+        }
+    }
+
     @Test
     public void shouldUseExportCustomizer() {
         when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
@@ -196,6 +235,8 @@ public class CsvImporterExporterTest {
         verify(csvImportCustomizer, times(INSTANCE_COUNT)).doCreate(captor.capture(), eq(motechDataService));
         verify(csvImportCustomizer, times(FIELD_COUNT)).findField(anyString(), anyList());
         verify(csvImportCustomizer, never()).doUpdate(captor.capture(), eq(motechDataService));
+        verify(motechDataService, never()).createAll(anyList());
+        verify(motechDataService, never()).updateAll(anyList());
 
         assertNotNull(results);
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
@@ -207,14 +248,16 @@ public class CsvImporterExporterTest {
 
         // This will provide csv import with 3 rows with invalid enum fields
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
+        when(motechDataService.createAll(anyList())).thenAnswer(new CreateAllAnswer());
 
         // First import call with continueOnError flag on
         results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
 
-        // Check how many times create was called, how many objects were created and how many errors were caught
+        // Check how many objects were created and how many errors were caught
         // Expecting 17 creates and 3 errors since we got 3 invalid rows in a set of 20 passed as import input
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
-        verify(motechDataService, times(17)).create(captor.capture());
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(motechDataService).createAll(captor.capture());
+        assertEquals(17, captor.getValue().size());
         assertNotNull(results);
         assertEquals(17, results.totalNumberOfImportedInstances());
         assertEquals(3, results.getRowErrors().size());
@@ -231,35 +274,83 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldImportInBatches() {
+        when(motechDataService.createAll(anyList())).thenAnswer(new CreateAllAnswer());
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID,
+                new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID)), true);
+
+        csvImporterExporter.setImportBatchSize(6);
+        csvImporterExporter.setImportThreads(3);
+
+        CsvImportResults batchResults = csvImporterExporter.importCsv(ENTITY_ID,
+                new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID)), true);
+
+        // the same rows fail, no matter on which thread they were parsed
+        assertEquals(results.getRowErrors(), batchResults.getRowErrors());
+        assertEquals(17, batchResults.totalNumberOfImportedInstances());
+
+        // a single call for the only batch of the first import, one for every batch of the second
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(motechDataService, times(1 + 4)).createAll(captor.capture());
+        assertEquals(17, captor.getAllValues().get(0).size());
+        assertEquals(asList(5, 4, 6, 2), asList(captor.getAllValues().get(1).size(), captor.getAllValues().get(2).size(),
+                captor.getAllValues().get(3).size(), captor.getAllValues().get(4).size()));
+        verify(motechDataService, never()).create(any(Record2.class));
+
+        // one transaction for reading the entity, one for every batch of rows
+        verify(transactionManager, times(2 + 5)).commit(any(TransactionStatus.class));
+    }
+
+    @Test
+    public void shouldReportAllRowsOfBatchThatCouldNotBeStored() {
+        TransactionStatus status = mock(TransactionStatus.class);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(status);
+        when(motechDataService.createAll(anyList())).thenThrow(new IllegalStateException("constraint violation"));
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID,
+                new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID)), true);
+
+        assertEquals(0, results.totalNumberOfImportedInstances());
+        assertEquals(INSTANCE_COUNT, results.getRowErrors().size());
+        assertEquals("constraint violation", results.getRowErrors().get(2));
+        verify(status).setRollbackOnly();
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
         if (idMode == IdMode.INCLUDE_ID) {
-            when(motechDataService.update(any(Record2.class))).thenAnswer(new Answer<Record2>() {
+            when(motechDataService.updateAll(anyList())).thenAnswer(new Answer<List<Record2>>() {
                 @Override
-                public Record2 answer(InvocationOnMock invocation) throws Throwable {
-                    return (Record2) invocation.getArguments()[0];
+                public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                    return (List<Record2>) invocation.getArguments()[0];
                 }
             });
             for (long i = 0; i < INSTANCE_COUNT; i++) {
                 when(motechDataService.findById(i)).thenReturn(new Record2());
             }
         } else {
-            when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+            when(motechDataService.createAll(anyList())).thenAnswer(new CreateAllAnswer());
         }
 
         CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
 
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
         if (idMode == IdMode.INCLUDE_ID) {
-            verify(motechDataService, times(INSTANCE_COUNT)).update(captor.capture());
+            verify(motechDataService).updateAll(captor.capture());
+            verify(motechDataService, never()).createAll(anyList());
         } else {
-            verify(motechDataService, times(INSTANCE_COUNT)).create(captor.capture());
+            verify(motechDataService).createAll(captor.capture());
+            verify(motechDataService, never()).updateAll(anyList());
         }
+        verify(motechDataService, never()).create(any(Record2.class));
+        verify(motechDataService, never()).update(any(Record2.class));
 
         assertNotNull(results);
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
-        assertEquals(testInstances(idMode), captor.getAllValues());
+        assertEquals(testInstances(idMode), captor.getValue());
 
         assertEquals(ENTITY_CLASSNAME, results.getEntityClassName());
         assertEquals(ENTITY_NAME, results.getEntityName());
@@ -390,6 +481,23 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private class CreateAllAnswer implements Answer<List<Record2>> {
+
+        private long idCounter = 0;
+
+        @Override
+        public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+            List<Record2> created = new ArrayList<>();
+            int count = ((List) invocation.getArguments()[0]).size();
+            for (int i = 0; i < count; i++) {
+                Record2 record = new Record2();
+                record.setId(idCounter++);
+                created.add(record);
+            }
+            return created;
+        }
+    }
+
     private enum IdMode {
         INCLUDE_ID, EMPTY_ID_COLUMN, NO_ID_COLUMN, INVALID
     }
@@ -40,10 +40,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -84,6 +86,9 @@ public class HistoryServiceTest {
     @Captor
     private ArgumentCaptor<String> stringCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<Object>> historyListCaptor;
+
     private HistoryService historyService;
 
     @Before
@@ -163,6 +168,41 @@ public class HistoryServiceTest {
         assertEquals(instance.getDate(), history.getDate());
     }
 
+    @Test
+    public void shouldRecordHistoryOfManyInstancesAtOnce() throws Exception {
+        Entity entity = mock(Entity.class);
+
+        Field valueField = mock(Field.class);
+        doReturn("value").when(valueField).getName();
+
+        Type valueType = mock(Type.class);
+        doReturn(valueType).when(valueField).getType();
+        doReturn(String.class.getName()).when(valueType).getTypeClassName();
+        doReturn(String.class).when(valueType).getTypeClass();
+
+        doReturn(17L).when(entity).getEntityVersion();
+        doReturn(true).when(entity).isRecordHistory();
+        doReturn(Arrays.asList(valueField)).when(entity).getFields();
+
+        doReturn(null).when(query).execute(anyLong());
+        doReturn(entity).when(allEntities).retrieveByClassName(anyString());
+
+        Record first = new Record();
+        first.setValue("first");
+        Record second = new Record();
+        second.setValue("second");
+        historyService.recordAll(Arrays.asList(first, second));
+
+        verify(manager).makePersistentAll(historyListCaptor.capture());
+        verify(manager, never()).makePersistent(any());
+
+        List<Object> history = historyListCaptor.getValue();
+
+        assertEquals(2, history.size());
+        assertEquals("first", ((Record__History) history.get(0)).getValue());
+        assertEquals("second", ((Record__History) history.get(1)).getValue());
+    }
+
     @Test
     public void shouldNotRemoveIfClassNotFound() throws Exception {
         doReturn(null).when(classLoader).loadClass(anyString());
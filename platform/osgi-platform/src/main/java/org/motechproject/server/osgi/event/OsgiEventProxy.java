@@ -16,6 +16,7 @@ public interface OsgiEventProxy {
     String PARAMETERS_PARAM = "parameters";
     String BROADCAST_PARAM = "broadcast";
     String PROXY_ON_RECEIVING_END_PARAM = "proxyOnReceivingEnd";
+    String COALESCING_KEY_PARAM = "coalescingKey";
 
     /**
      * Calling this method will result in sending an OSGi event that will be then relayed by the event module
@@ -52,4 +53,14 @@ public interface OsgiEventProxy {
      * @param proxyHandledEventInOSGi if true, the event will be also sent as an OSGi event upon being received by the event system
      */
     void broadcastEvent(String subject, Map<String, Object> parameters, boolean proxyHandledEventInOSGi);
+
+    /**
+     * Calling this method will result in sending an OSGi event that will be then relayed by the event module
+     * as a coalesced Motech Event through the event queue. Events sent with the same coalescing key within a short window
+     * are coalesced by the event module, only the last one of them is relayed.
+     * @param subject the subject of the event
+     * @param parameters the parameters map which will act as the payload of the event
+     * @param coalescingKey the key identifying events superseding each other
+     */
+    void sendCoalescedEvent(String subject, Map<String, Object> parameters, String coalescingKey);
 }
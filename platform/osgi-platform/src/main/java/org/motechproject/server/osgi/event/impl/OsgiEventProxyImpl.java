@@ -41,7 +41,18 @@ public class OsgiEventProxyImpl implements OsgiEventProxy {
         eventAdmin.postEvent(event);
     }
 
+    @Override
+    public void sendCoalescedEvent(String subject, Map<String, Object> parameters, String coalescingKey) {
+        Map<String, Object> properties = buildProperties(subject, parameters, false, false);
+        properties.put(COALESCING_KEY_PARAM, coalescingKey);
+        eventAdmin.postEvent(new Event(PROXY_EVENT_TOPIC, properties));
+    }
+
     private Event buildEvent(String subject, Map<String, Object> parameters, boolean proxyOnReceivingEnd, boolean broadcast) {
+        return new Event(PROXY_EVENT_TOPIC, buildProperties(subject, parameters, proxyOnReceivingEnd, broadcast));
+    }
+
+    private Map<String, Object> buildProperties(String subject, Map<String, Object> parameters, boolean proxyOnReceivingEnd, boolean broadcast) {
         Map<String, Object> properties = new HashMap<>();
 
         // the paylod will be interpreted by the event module
@@ -50,6 +61,6 @@ public class OsgiEventProxyImpl implements OsgiEventProxy {
         properties.put(BROADCAST_PARAM, broadcast);
         properties.put(PROXY_ON_RECEIVING_END_PARAM, proxyOnReceivingEnd);
 
-        return new Event(PROXY_EVENT_TOPIC, properties);
+        return properties;
     }
 }
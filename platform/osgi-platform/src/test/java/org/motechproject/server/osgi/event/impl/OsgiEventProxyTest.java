@@ -58,6 +58,14 @@ public class OsgiEventProxyTest {
         verifyEvent(true, true, params);
     }
 
+    @Test
+    public void shouldProxyCoalescedEventsForQueue() {
+        Map<String, Object> params = buildParams();
+        osgiEventProxy.sendCoalescedEvent(SUBJECT, params, "key");
+
+        Event event = verifyEvent(false, false, params);
+        assertEquals("key", event.getProperty(OsgiEventProxy.COALESCING_KEY_PARAM));
+    }
 
     private Map<String, Object> buildParams() {
         Map<String, Object> params = new HashMap<>();
@@ -68,7 +76,7 @@ public class OsgiEventProxyTest {
         return params;
     }
 
-    private void verifyEvent(boolean broadcast, boolean proxyOnReceive, Map params) {
+    private Event verifyEvent(boolean broadcast, boolean proxyOnReceive, Map params) {
         ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
         verify(eventAdmin).postEvent(captor.capture());
         Event event = captor.getValue();
@@ -80,5 +88,7 @@ public class OsgiEventProxyTest {
         assertEquals(proxyOnReceive, event.getProperty(OsgiEventProxy.PROXY_ON_RECEIVING_END_PARAM));
 
         assertEquals(params, event.getProperty(OsgiEventProxy.PARAMETERS_PARAM));
+
+        return event;
     }
 }
@@ -189,12 +189,18 @@ public class ConfigFileMonitor implements FileListener {
 
             try {
                 motechEventClass = serviceClass.getClassLoader().loadClass(ConfigurationConstants.MOTECH_EVENT_CLASS_NAME);
-                Method sendEventMessage = serviceClass.getMethod("sendEventMessage", motechEventClass);
                 Object obj = motechEventClass.getDeclaredConstructor(String.class, Map.class).newInstance(subject, params);
 
-                sendEventMessage.invoke(service, obj);
-            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                LOGGER.error("Can't invoke sendEventMessage method.", e);
+                // editors tend to write a file several times when saving it, only the last event for the file is sent
+                Class<?> coalescingModeClass = serviceClass.getClassLoader().loadClass(ConfigurationConstants.COALESCING_MODE_CLASS_NAME);
+                Method sendCoalescedEventMessage = serviceClass.getMethod("sendCoalescedEventMessage", motechEventClass,
+                        String.class, coalescingModeClass);
+                Object lastWriteWins = coalescingModeClass.getField("LAST_WRITE_WINS").get(null);
+
+                sendCoalescedEventMessage.invoke(service, obj, subject + ':' + params.get(ConfigurationConstants.FILE_PATH),
+                        lastWriteWins);
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | NoSuchFieldException e) {
+                LOGGER.error("Can't invoke sendCoalescedEventMessage method.", e);
             }
         }
     }